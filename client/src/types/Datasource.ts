@@ -54,6 +54,12 @@ export type DatasourceSettings = {
     hasHeader?: boolean;
     isWritable?: boolean;
     isQueryable?: boolean;
+    /** For postgresql, mongodb, and neo4j. The number of partitions of a kind that are pulled concurrently. */
+    pullParallelism?: number;
+    /** For postgresql. The number of statements after which a bulk load commits. If not set, the whole load is one transaction. */
+    commitInterval?: number;
+    /** For mongodb and neo4j. The maximal number of documents (or rows) inserted by one batch. */
+    writeBatchSize?: number;
 };
 
 export type DatasourceInit = {
@@ -141,6 +141,7 @@ function jobDataFromResponse(input: JobDataResponse, info: CategoryInfo): JobDat
 export type TransformationJobData = {
     type: JobDataType.Transformation;
     fileId: Id;
+    statementsCount: number;
 };
 
 export type SessionResponse = {
@@ -15,6 +15,11 @@ public interface AbstractControlWrapper {
 
     void execute(Path path) throws ExecuteException;
 
+    /**
+     * Returns a new wrapper that executes the pushed statements. Unlike {@link #execute(Collection)}, it doesn't need all statements at once.
+     */
+    AbstractPushWrapper getPushWrapper();
+
     AbstractDDLWrapper getDDLWrapper();
 
     AbstractICWrapper getICWrapper();
@@ -1,6 +1,7 @@
 package cz.matfyz.abstractwrappers;
 
 import cz.matfyz.core.mapping.IdentifierStructure;
+import cz.matfyz.core.mapping.Mapping;
 
 import java.util.Collection;
 import java.util.List;
@@ -15,6 +16,13 @@ public interface AbstractICWrapper {
 
     void appendIdentifier(String kindName, IdentifierStructure identifier);
 
+    /**
+     * The wrappers that need more than the name of the kind (e.g., whether it's a node or a relationship) can decide by the whole mapping.
+     */
+    default void appendIdentifier(Mapping mapping, IdentifierStructure identifier) {
+        appendIdentifier(mapping.kindName(), identifier);
+    }
+
     record AttributePair(String referencing, String referenced) implements Comparable<AttributePair> {
 
         @Override public int compareTo(AttributePair pair) {
@@ -30,6 +38,14 @@ public interface AbstractICWrapper {
 
     Collection<AbstractStatement> dropICStatements();
 
+    /**
+     * By default, the constraints are created after all data are inserted, so that the inserts can't violate them in the meantime (e.g., the foreign keys).
+     * Some constraints (e.g., the unique ones that make the inserts faster) should be created before the data instead.
+     */
+    default boolean isCreatedBeforeData() {
+        return false;
+    }
+
     static AbstractICWrapper createEmpty() {
         return EmptyICWrapper.instance;
     }
@@ -9,8 +9,11 @@ import cz.matfyz.core.adminer.Reference;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.querying.QueryResult;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
 
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -22,6 +25,22 @@ public interface AbstractPullWrapper {
 
     ForestOfRecords pullForest(ComplexProperty path, QueryContent query) throws PullForestException;
 
+    /**
+     * Like {@link #pullForest(ComplexProperty, QueryContent)}, but the records are created lazily (as the stream is consumed). So the whole kind doesn't have to be in memory at once.
+     * The stream holds the underlying resources (e.g., a file or a database cursor) so it has to be closed.
+     * The default implementation just pulls the whole forest.
+     */
+    default Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) throws PullForestException {
+        return StreamSupport.stream(pullForest(path, query).spliterator(), false);
+    }
+
+    /**
+     * The maximal number of kinds that should be streamed at once (each by its own wrapper), e.g., because each stream holds connections from a limited pool.
+     */
+    default int maxConcurrentStreams() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Executes an arbitrary query on the data source and returns the result.
      */
@@ -0,0 +1,59 @@
+package cz.matfyz.abstractwrappers;
+
+import java.util.List;
+
+/**
+ * Receives the statements one by one as they are created and pushes them to some output (a file, a database, etc.).
+ * The statements don't have to be kept in memory (unless the wrapper itself decides to batch them), so the size of the output isn't limited by the available memory.
+ * The wrapper has to be closed after the last statement is pushed - it flushes whatever is still buffered.
+ * If the pushing fails, the wrapper has to be aborted instead, so that the partial output isn't finished as if it was complete.
+ */
+public interface AbstractPushWrapper extends AutoCloseable {
+
+    void push(AbstractStatement statement);
+
+    @Override void close();
+
+    /**
+     * Discards whatever is still buffered and releases the resources. Call this instead of {@link #close()} if the pushing (or creating the statements) fails.
+     * The wrappers that write in a transaction roll it back. The other ones can't undo what was already written.
+     * Doesn't throw - the original failure is what matters.
+     */
+    void abort();
+
+    /** Pushes each statement to all given wrappers (in the given order). All of them are closed (or aborted) together. */
+    static AbstractPushWrapper all(List<AbstractPushWrapper> wrappers) {
+        if (wrappers.size() == 1)
+            return wrappers.getFirst();
+
+        return new AbstractPushWrapper() {
+            @Override public void push(AbstractStatement statement) {
+                for (final var wrapper : wrappers)
+                    wrapper.push(statement);
+            }
+
+            @Override public void close() {
+                RuntimeException error = null;
+                for (final var wrapper : wrappers) {
+                    try {
+                        wrapper.close();
+                    }
+                    catch (RuntimeException e) {
+                        if (error == null)
+                            error = e;
+                        else
+                            error.addSuppressed(e);
+                    }
+                }
+
+                if (error != null)
+                    throw error;
+            }
+
+            @Override public void abort() {
+                wrappers.forEach(AbstractPushWrapper::abort);
+            }
+        };
+    }
+
+}
@@ -2,6 +2,7 @@ package cz.matfyz.abstractwrappers;
 
 import cz.matfyz.abstractwrappers.AbstractInferenceWrapper.SparkSettings;
 import cz.matfyz.abstractwrappers.exception.ConfigurationException;
+import cz.matfyz.abstractwrappers.utils.BatchPushWrapper;
 import cz.matfyz.core.datasource.Datasource;
 import cz.matfyz.core.datasource.Datasource.DatasourceType;
 
@@ -29,6 +30,11 @@ public abstract class BaseControlWrapper implements AbstractControlWrapper {
         return isQueryable;
     }
 
+    /** Executes the statements in batches. Override if the datasource has a more efficient way of loading many statements. */
+    @Override public AbstractPushWrapper getPushWrapper() {
+        return new BatchPushWrapper(this);
+    }
+
     private @Nullable SparkSettings sparkSettings;
 
     protected SparkSettings getSparkSettings() {
@@ -2,6 +2,7 @@ package cz.matfyz.abstractwrappers.exception;
 
 import cz.matfyz.abstractwrappers.AbstractPullWrapper;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
+import cz.matfyz.core.adminer.AdminerFilter;
 
 import java.io.Serializable;
 
@@ -27,4 +28,8 @@ public class PullForestException extends WrapperException {
         return new PullForestException("invalidQuery", data, null);
     }
 
+    public static PullForestException unsupportedFilter(AdminerFilter filter) {
+        return new PullForestException("unsupportedFilter", filter.operator(), null);
+    }
+
 }
@@ -0,0 +1,156 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import cz.matfyz.abstractwrappers.exception.PullForestException;
+import cz.matfyz.core.adminer.AdminerFilter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Evaluates the adminer filters on records that are read from files (the databases evaluate the filters by themselves).
+ * The filters are compiled just once so that they can be cheaply evaluated for each record while it's being parsed.
+ * The values are compared as numbers if both of them are numbers, otherwise as strings.
+ * A missing value is matched only by the <code>IsNull</code> operator (just like in SQL).
+ */
+public final class AdminerFilterMatcher {
+
+    private record Condition(String propertyName, Predicate<String> predicate, boolean matchesNull) {}
+
+    private final Condition[] conditions;
+    private final Set<String> propertyNames;
+
+    private AdminerFilterMatcher(Condition[] conditions) {
+        this.conditions = conditions;
+        this.propertyNames = new TreeSet<>();
+        for (final var condition : conditions)
+            propertyNames.add(condition.propertyName);
+    }
+
+    /** Returns null if there are no filters (so that there is nothing to evaluate). */
+    public static @Nullable AdminerFilterMatcher create(@Nullable List<AdminerFilter> filters) {
+        if (filters == null || filters.isEmpty())
+            return null;
+
+        final var conditions = filters.stream()
+            .map(AdminerFilterMatcher::createCondition)
+            .toArray(Condition[]::new);
+
+        return new AdminerFilterMatcher(conditions);
+    }
+
+    /** The names of the properties whose values are needed for the evaluation. */
+    public Set<String> propertyNames() {
+        return propertyNames;
+    }
+
+    /**
+     * Returns true if the record matches all filters.
+     * @param getValue Returns the value of the property with the given name (or null if there isn't any).
+     */
+    public boolean matches(Function<String, @Nullable String> getValue) {
+        for (final var condition : conditions) {
+            final @Nullable String value = getValue.apply(condition.propertyName);
+            final boolean isMatched = value == null
+                ? condition.matchesNull
+                : condition.predicate.test(value);
+
+            if (!isMatched)
+                return false;
+        }
+
+        return true;
+    }
+
+    private static Condition createCondition(AdminerFilter filter) {
+        final String name = filter.propertyName();
+        final String expected = filter.propertyValue();
+
+        return switch (filter.operator()) {
+            case "IsNull" -> new Condition(name, value -> false, true);
+            case "IsNotNull" -> new Condition(name, value -> true, false);
+
+            case "Equal" -> new Condition(name, value -> compare(value, expected) == 0, false);
+            case "NotEqual" -> new Condition(name, value -> compare(value, expected) != 0, false);
+            case "Less" -> new Condition(name, value -> compare(value, expected) < 0, false);
+            case "LessOrEqual" -> new Condition(name, value -> compare(value, expected) <= 0, false);
+            case "Greater" -> new Condition(name, value -> compare(value, expected) > 0, false);
+            case "GreaterOrEqual" -> new Condition(name, value -> compare(value, expected) >= 0, false);
+
+            case "Like" -> regexCondition(name, likeToRegex(expected, 0), true);
+            case "ILike" -> regexCondition(name, likeToRegex(expected, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE), true);
+            case "NotLike" -> regexCondition(name, likeToRegex(expected, 0), false);
+            case "MatchRegEx" -> regexCondition(name, Pattern.compile(expected), true);
+            case "NotMatchRegEx" -> regexCondition(name, Pattern.compile(expected), false);
+
+            case "StartsWith" -> new Condition(name, value -> value.startsWith(expected), false);
+            case "EndsWith" -> new Condition(name, value -> value.endsWith(expected), false);
+            case "Contains" -> new Condition(name, value -> value.contains(expected), false);
+
+            case "In" -> setCondition(name, expected, true);
+            case "NotIn" -> setCondition(name, expected, false);
+
+            default -> throw PullForestException.unsupportedFilter(filter);
+        };
+    }
+
+    private static Condition regexCondition(String name, Pattern pattern, boolean isPositive) {
+        return new Condition(name, value -> pattern.matcher(value).find() == isPositive, false);
+    }
+
+    private static Condition setCondition(String name, String expected, boolean isPositive) {
+        final String[] set = parseSet(expected);
+        return new Condition(name, value -> Arrays.stream(set).anyMatch(item -> compare(value, item) == 0) == isPositive, false);
+    }
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?$");
+
+    private static int compare(String value, String expected) {
+        if (NUMBER_PATTERN.matcher(value).matches() && NUMBER_PATTERN.matcher(expected).matches())
+            return Double.compare(Double.parseDouble(value), Double.parseDouble(expected));
+
+        return value.compareTo(expected);
+    }
+
+    /** The whole value has to match the SQL pattern (the <code>%</code> stands for any string and the <code>_</code> for any character). */
+    private static Pattern likeToRegex(String like, int flags) {
+        final var regex = new StringBuilder("^");
+        final var literal = new StringBuilder();
+
+        for (final char c : like.toCharArray()) {
+            if (c != '%' && c != '_') {
+                literal.append(c);
+                continue;
+            }
+
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '%' ? ".*" : ".");
+        }
+
+        if (!literal.isEmpty())
+            regex.append(Pattern.quote(literal.toString()));
+
+        return Pattern.compile(regex.append("$").toString(), flags | Pattern.DOTALL);
+    }
+
+    /** The set is written like in SQL, e.g., <code>'a', 'b'</code> or <code>1, 2</code>. */
+    private static String[] parseSet(String value) {
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .map(item -> item.length() >= 2 && (item.startsWith("'") && item.endsWith("'") || item.startsWith("\"") && item.endsWith("\""))
+                ? item.substring(1, item.length() - 1)
+                : item
+            )
+            .toArray(String[]::new);
+    }
+
+}
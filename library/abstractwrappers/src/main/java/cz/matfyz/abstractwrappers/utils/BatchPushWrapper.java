@@ -0,0 +1,56 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import cz.matfyz.abstractwrappers.AbstractControlWrapper;
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes the statements by the control wrapper in batches of a fixed size. So there is at most one batch in memory at a time.
+ * This is the default way how to push statements to a database. The wrappers with a more efficient bulk mode can replace it.
+ */
+public class BatchPushWrapper implements AbstractPushWrapper {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final AbstractControlWrapper control;
+    private final int batchSize;
+
+    public BatchPushWrapper(AbstractControlWrapper control, int batchSize) {
+        this.control = control;
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    public BatchPushWrapper(AbstractControlWrapper control) {
+        this(control, DEFAULT_BATCH_SIZE);
+    }
+
+    private List<AbstractStatement> batch;
+
+    @Override public void push(AbstractStatement statement) {
+        batch.add(statement);
+        if (batch.size() >= batchSize)
+            flush();
+    }
+
+    private void flush() {
+        if (batch.isEmpty())
+            return;
+
+        control.execute(batch);
+        batch = new ArrayList<>(batchSize);
+    }
+
+    @Override public void close() {
+        flush();
+    }
+
+    /** The executed batches stay in the database, only the last one is discarded. */
+    @Override public void abort() {
+        batch = new ArrayList<>();
+    }
+
+}
@@ -0,0 +1,74 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.core.exception.OtherException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the statements to a file, each one followed by a newline. Only a small buffer is kept in memory.
+ */
+public class FilePushWrapper implements AbstractPushWrapper {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    /** The file is created (or truncated if it already exists). */
+    public FilePushWrapper(Path path) {
+        this.path = path;
+        try {
+            this.writer = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        catch (IOException e) {
+            throw new OtherException(e);
+        }
+    }
+
+    private long statementsCount = 0;
+
+    @Override public void push(AbstractStatement statement) {
+        try {
+            writer.write(statement.getContent());
+            writer.write('\n');
+            statementsCount++;
+        }
+        catch (IOException e) {
+            throw new OtherException(e);
+        }
+    }
+
+    @Override public void close() {
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            throw new OtherException(e);
+        }
+    }
+
+    /** The file is left as it is (with whatever was written so far). It's up to the caller to delete it. */
+    @Override public void abort() {
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            // The file is incomplete anyway.
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long statementsCount() {
+        return statementsCount;
+    }
+
+}
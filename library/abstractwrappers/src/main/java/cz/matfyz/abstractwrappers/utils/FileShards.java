@@ -0,0 +1,253 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import cz.matfyz.core.utils.FileUtils;
+import cz.matfyz.core.utils.InputStreamProvider.UrlInputStreamProvider;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The url of a file datasource (JSON, CSV) can point to multiple files (shards) that together make one kind:
+ * <ul>
+ *  <li>A local directory (i.e., a url with the file scheme) stands for all files in it.</li>
+ *  <li>A local path whose file name contains a glob pattern (e.g., <code>file:///exports/orders/part-*.jsonl.gz</code>) stands for all matching files in its directory.</li>
+ *  <li>Any other url is just one shard.</li>
+ * </ul>
+ * The shards compressed by gzip (<code>.gz</code>) or zstd (<code>.zst</code>) are decompressed while they are read, so they don't have to be decompressed on the disk first.
+ */
+public final class FileShards {
+
+    private FileShards() {}
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Returns the urls of all shards of the url (sorted by their names, so the order is stable). */
+    public static List<String> resolve(String url) throws IOException {
+        final @Nullable Path path = tryGetLocalPath(url);
+        if (path == null || Files.isRegularFile(path))
+            return List.of(url);
+
+        if (Files.isDirectory(path))
+            return listFiles(path, null);
+
+        final @Nullable Path parent = path.getParent();
+        final String pattern = path.getFileName().toString();
+        if (parent == null || !isGlob(pattern))
+            // The file doesn't exist, so let the reader report it.
+            return List.of(url);
+
+        return listFiles(parent, FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+    }
+
+    private static List<String> listFiles(Path directory, @Nullable PathMatcher matcher) throws IOException {
+        final var files = new ArrayList<Path>();
+        try (
+            DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+        ) {
+            for (final Path file : stream) {
+                if (!Files.isRegularFile(file) || Files.isHidden(file) || RecordOffsetIndex.isSidecar(file))
+                    continue;
+                if (matcher != null && !matcher.matches(file.getFileName()))
+                    continue;
+
+                files.add(file);
+            }
+        }
+
+        files.sort(null);
+        return files.stream().map(file -> file.toUri().toString()).toList();
+    }
+
+    private static boolean isGlob(String name) {
+        return name.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) != -1);
+    }
+
+    private static @Nullable Path tryGetLocalPath(String url) {
+        try {
+            final var uri = new URI(url);
+            return "file".equals(uri.getScheme()) ? Path.of(uri) : null;
+        }
+        catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The name of the kind stored in the shards of the url - the name of the file without its extensions (e.g., <code>orders.jsonl.gz</code> -> <code>orders</code>).
+     * If the url stands for multiple files, it's the name of their directory.
+     */
+    public static String extractKindName(String url) {
+        final @Nullable Path path = tryGetLocalPath(url);
+        if (path != null && path.getFileName() != null && !Files.isRegularFile(path)) {
+            final @Nullable Path directory = Files.isDirectory(path)
+                ? path
+                : isGlob(path.getFileName().toString()) ? path.getParent() : null;
+            if (directory != null && directory.getFileName() != null)
+                return FileUtils.extractBaseName(directory.getFileName().toString());
+        }
+
+        final @Nullable Compression compression = Compression.fromName(url);
+        return FileUtils.extractBaseName(compression == null ? url : url.substring(0, url.length() - compression.extension.length()));
+    }
+
+    // #region Compression
+
+    private enum Compression {
+        GZIP(".gz"),
+        ZSTD(".zst");
+
+        final String extension;
+
+        Compression(String extension) {
+            this.extension = extension;
+        }
+
+        static @Nullable Compression fromName(String url) {
+            for (final var compression : values()) {
+                if (url.endsWith(compression.extension))
+                    return compression;
+            }
+            return null;
+        }
+
+        InputStream decompress(InputStream input) throws IOException {
+            return switch (this) {
+                case GZIP -> new GZIPInputStream(input, BUFFER_SIZE);
+                case ZSTD -> new BufferedInputStream(new ZstdInputStream(input), BUFFER_SIZE);
+            };
+        }
+    }
+
+    /** Whether the shard has to be decompressed. Such shard can't be read directly from its file (e.g., it can't be memory-mapped or indexed). */
+    public static boolean isCompressed(String shardUrl) {
+        return Compression.fromName(shardUrl) != null;
+    }
+
+    /** Opens the shard. If it's compressed, the returned stream decompresses it. */
+    public static InputStream open(String shardUrl) throws IOException {
+        final InputStream input = new UrlInputStreamProvider(shardUrl).getInputStream();
+        final @Nullable Compression compression = Compression.fromName(shardUrl);
+        if (compression == null)
+            return input;
+
+        try {
+            return compression.decompress(input);
+        }
+        catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens all shards as one stream (the shards are read one after another). Each shard ends with a newline, so the records from different shards can't be merged.
+     * @param skippedLines The number of lines skipped at the start of each shard but the first one (e.g., the repeated CSV headers).
+     */
+    public static InputStream openAll(List<String> shardUrls, int skippedLines) throws IOException {
+        if (shardUrls.size() == 1)
+            return open(shardUrls.getFirst());
+
+        return new ConcatenatedInputStream(shardUrls.iterator(), skippedLines);
+    }
+
+    // #endregion
+
+    /** Opens the shards lazily, so at most one of them is open at a time. */
+    private static class ConcatenatedInputStream extends InputStream {
+
+        private static final int NEWLINE = '\n';
+
+        private final Iterator<String> shardUrls;
+        private final int skippedLines;
+        private boolean isFirst = true;
+        private @Nullable InputStream current = null;
+        private int lastByte = NEWLINE;
+        private boolean isNewlineMissing = false;
+
+        ConcatenatedInputStream(Iterator<String> shardUrls, int skippedLines) {
+            this.shardUrls = shardUrls;
+            this.skippedLines = skippedLines;
+        }
+
+        /** Returns false if there are no more shards. */
+        private boolean nextShard() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+                // The last line of a shard doesn't have to end with a newline.
+                isNewlineMissing = lastByte != NEWLINE;
+            }
+
+            if (!shardUrls.hasNext())
+                return false;
+
+            current = open(shardUrls.next());
+            if (!isFirst)
+                skipLines(current, skippedLines);
+            isFirst = false;
+
+            return true;
+        }
+
+        private static void skipLines(InputStream input, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                int b;
+                while ((b = input.read()) != -1 && b != NEWLINE);
+            }
+        }
+
+        @Override public int read() throws IOException {
+            final byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+
+            while (true) {
+                if (isNewlineMissing) {
+                    isNewlineMissing = false;
+                    lastByte = NEWLINE;
+                    bytes[offset] = NEWLINE;
+                    return 1;
+                }
+
+                if (current == null && !nextShard())
+                    return -1;
+
+                final int read = current.read(bytes, offset, length);
+                if (read > 0) {
+                    lastByte = bytes[offset + read - 1];
+                    return read;
+                }
+
+                if (read == -1 && !nextShard() && !isNewlineMissing)
+                    return -1;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            if (current != null)
+                current.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,189 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import cz.matfyz.abstractwrappers.exception.PullForestException;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.RootRecord;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads the records of several partitions (e.g., chunks of a file or ranges of a table) in parallel and merges them into one stream.
+ * Each partition is read by one of the workers. Their order is kept only within the partitions.
+ * The workers block if the stream isn't consumed fast enough, so there are always only a few batches of records in the memory.
+ */
+public final class ParallelRecordStream implements Iterator<RootRecord> {
+
+    /** Reads all records of one partition. */
+    public interface Partition {
+        void read(Consumer<RootRecord> output) throws Exception;
+    }
+
+    /** The workers send the records in batches so that they don't have to synchronize for each record. */
+    private static final int BATCH_SIZE = 1024;
+
+    /** Marks the end of a partition. */
+    private static final List<RootRecord> PARTITION_END = List.of();
+
+    private final int partitionsCount;
+    private final ExecutorService executor;
+    private final BlockingQueue<List<RootRecord>> queue;
+
+    /** Set by a worker before it sends the {@link #PARTITION_END}. */
+    private volatile @Nullable Exception error = null;
+
+    private int finishedPartitions = 0;
+    private Iterator<RootRecord> currentBatch = List.<RootRecord>of().iterator();
+
+    private ParallelRecordStream(List<? extends Partition> partitions, int parallelism, String threadName) {
+        this.partitionsCount = partitions.size();
+        this.queue = new ArrayBlockingQueue<>(2 * parallelism);
+
+        // The threads are daemons so that they don't block the JVM if the stream isn't closed.
+        this.executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name(threadName + "-", 0).daemon().factory());
+        for (final var partition : partitions)
+            executor.execute(() -> readPartition(partition));
+        // The workers finish when there are no more partitions.
+        executor.shutdown();
+    }
+
+    /**
+     * The workers are stopped when the stream is closed.
+     * @param parallelism The maximal number of partitions that are read at once.
+     * @param threadName The prefix of the names of the worker threads.
+     */
+    public static Stream<RootRecord> create(List<? extends Partition> partitions, int parallelism, String threadName) {
+        final var iterator = new ParallelRecordStream(partitions, Math.max(1, Math.min(parallelism, partitions.size())), threadName);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+            .onClose(iterator::close);
+    }
+
+    /** The access path initializes its name lookups lazily. So they have to be initialized before the path is shared by the workers. */
+    public static void initializeForThreads(ComplexProperty path) {
+        path.getIndexSubpaths();
+        for (final var subpath : path.subpaths()) {
+            if (subpath instanceof final ComplexProperty complexSubpath)
+                initializeForThreads(complexSubpath);
+        }
+    }
+
+    /** Returns the starts of all ranges (but the first one) so that the [min, max] interval is split into (at most) the given number of ranges of the same size. */
+    public static long[] splitRange(long min, long max, int count) {
+        final var start = BigInteger.valueOf(min);
+        final var size = BigInteger.valueOf(max).subtract(start).add(BigInteger.ONE);
+
+        return LongStream.range(1, count)
+            .map(i -> start.add(size.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count))).longValueExact())
+            .filter(boundary -> boundary > min)
+            .distinct()
+            .toArray();
+    }
+
+    private void readPartition(Partition partition) {
+        try {
+            try {
+                final var output = new BatchingConsumer();
+                partition.read(output);
+                output.flush();
+            }
+            catch (CancellationException e) {
+                // The stream was closed while the partition was being read.
+                return;
+            }
+            catch (Exception e) {
+                error = e;
+            }
+
+            queue.put(PARTITION_END);
+        }
+        catch (InterruptedException e) {
+            // The stream was closed, so nobody is waiting for the records.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class BatchingConsumer implements Consumer<RootRecord> {
+
+        private List<RootRecord> batch = new ArrayList<>(BATCH_SIZE);
+
+        @Override public void accept(RootRecord rootRecord) {
+            batch.add(rootRecord);
+            if (batch.size() == BATCH_SIZE)
+                flush();
+        }
+
+        void flush() {
+            if (batch.isEmpty())
+                return;
+
+            try {
+                queue.put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+        }
+
+    }
+
+    @Override public boolean hasNext() {
+        while (!currentBatch.hasNext()) {
+            if (finishedPartitions == partitionsCount)
+                return false;
+
+            final List<RootRecord> batch = takeBatch();
+            if (batch == PARTITION_END) {
+                finishedPartitions++;
+                final var currentError = error;
+                if (currentError != null)
+                    throw PullForestException.inner(currentError);
+                continue;
+            }
+
+            currentBatch = batch.iterator();
+        }
+
+        return true;
+    }
+
+    private List<RootRecord> takeBatch() {
+        try {
+            return queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the records.", e);
+        }
+    }
+
+    @Override public RootRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        return currentBatch.next();
+    }
+
+    private void close() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,168 @@
+package cz.matfyz.abstractwrappers.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.LongConsumer;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps the record numbers of a local file to the byte offsets at which the records start. So a scan can start at any record without parsing all the records before it.
+ * Only the offset of every {@link #STRIDE}-th record is stored, the rest of the records has to be skipped by the scan.
+ * The index is persisted in a sidecar file next to the indexed file. It's rebuilt whenever the file changes (i.e., its size or its last modified time).
+ */
+public final class RecordOffsetIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordOffsetIndex.class);
+
+    private final long fileSize;
+    private final long lastModified;
+    private final long recordsCount;
+    /** The i-th item is the offset of the (i * STRIDE)-th record. */
+    private final long[] offsets;
+
+    private RecordOffsetIndex(long fileSize, long lastModified, long recordsCount, long[] offsets) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.recordsCount = recordsCount;
+        this.offsets = offsets;
+    }
+
+    /** Scans the whole file and reports the offset of each record (in the order of the records). */
+    public interface Scanner {
+        void scan(Path file, LongConsumer onRecordStart) throws IOException;
+    }
+
+    /**
+     * Loads the index from the sidecar file. If there isn't any (or if it's outdated), the index is created by the scanner and saved.
+     * A sidecar file that can't be written isn't an error - the index is just created again next time.
+     */
+    public static RecordOffsetIndex getOrCreate(Path file, Scanner scanner) throws IOException {
+        return getOrCreate(file, null, scanner);
+    }
+
+    /**
+     * Like {@link #getOrCreate(Path, Scanner)}, but for a scanner whose records depend on how the file is read (e.g., on the separator of a CSV file).
+     * @param variant Distinguishes the sidecar files of the different variants. So a file can have multiple indexes at the same time.
+     */
+    public static RecordOffsetIndex getOrCreate(Path file, @Nullable String variant, Scanner scanner) throws IOException {
+        final long fileSize = Files.size(file);
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        final Path sidecar = getSidecarPath(file, variant);
+
+        final @Nullable RecordOffsetIndex loaded = tryLoad(sidecar);
+        if (loaded != null && loaded.fileSize == fileSize && loaded.lastModified == lastModified)
+            return loaded;
+
+        final var offsets = new LongArrayList();
+        final long[] recordsCount = { 0 };
+        scanner.scan(file, offset -> {
+            if (recordsCount[0] % STRIDE == 0)
+                offsets.add(offset);
+            recordsCount[0]++;
+        });
+
+        final var index = new RecordOffsetIndex(fileSize, lastModified, recordsCount[0], offsets.toLongArray());
+        try {
+            index.save(sidecar);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Can't save the record offset index to {}.", sidecar, e);
+        }
+
+        return index;
+    }
+
+    private static Path getSidecarPath(Path file, @Nullable String variant) {
+        final String suffix = variant == null ? SIDECAR_EXTENSION : "." + variant + SIDECAR_EXTENSION;
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    /** Whether the file is a sidecar file of some index (or its unfinished version), i.e., not a data file. */
+    static boolean isSidecar(Path file) {
+        final String name = file.getFileName().toString();
+        return name.endsWith(SIDECAR_EXTENSION) || name.endsWith(SIDECAR_EXTENSION + TEMPORARY_EXTENSION);
+    }
+
+    public long recordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * The position from which a scan should start.
+     * @param record The number of the first record at the offset (it's at most the requested one).
+     * @param offset The offset in bytes.
+     */
+    public record Position(long record, long offset) {}
+
+    /** Finds the closest position before the given record. */
+    public Position find(long record) {
+        if (offsets.length == 0)
+            return new Position(0, 0);
+
+        final int i = (int) Math.min(record / STRIDE, offsets.length - 1);
+        return new Position((long) i * STRIDE, offsets[i]);
+    }
+
+    private static @Nullable RecordOffsetIndex tryLoad(Path sidecar) {
+        try (
+            final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)));
+        ) {
+            if (input.readInt() != MAGIC || input.readInt() != STRIDE)
+                return null;
+
+            final long fileSize = input.readLong();
+            final long lastModified = input.readLong();
+            final long recordsCount = input.readLong();
+            final long[] offsets = new long[input.readInt()];
+            for (int i = 0; i < offsets.length; i++)
+                offsets[i] = input.readLong();
+
+            return new RecordOffsetIndex(fileSize, lastModified, recordsCount, offsets);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        catch (IOException e) {
+            LOGGER.warn("Can't load the record offset index from {}.", sidecar, e);
+            return null;
+        }
+    }
+
+    private void save(Path sidecar) throws IOException {
+        // The index is written to a temporary file first so that an interrupted write can't leave a broken index behind.
+        final Path temporary = sidecar.resolveSibling(sidecar.getFileName() + TEMPORARY_EXTENSION);
+
+        try (
+            final var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+        ) {
+            output.writeInt(MAGIC);
+            output.writeInt(STRIDE);
+            output.writeLong(fileSize);
+            output.writeLong(lastModified);
+            output.writeLong(recordsCount);
+            output.writeInt(offsets.length);
+            for (final long offset : offsets)
+                output.writeLong(offset);
+        }
+
+        Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final String SIDECAR_EXTENSION = ".offsets";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int MAGIC = 0x4D4D4F49;
+    /** At most this number of records has to be skipped after a jump. */
+    private static final int STRIDE = 1024;
+
+}
@@ -97,6 +97,10 @@ public class SignatureId implements Serializable, Comparable<SignatureId> {
         return object instanceof SignatureId id && compareTo(id) == 0;
     }
 
+    @Override public int hashCode() {
+        return signatures.hashCode();
+    }
+
     @Override public String toString() {
         final var sb = new StringBuilder();
 
@@ -0,0 +1,355 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.Key;
+import cz.matfyz.core.schema.SchemaCategory.SchemaEdge;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An alternative to the {@link InstanceMerger} for bulk loading. The rows and mappings are first appended without any merging (see {@link #createRow(InstanceObjex, SuperIdValues)}, {@link #addValues(InstanceObjex, DomainRow, SuperIdValues)} and {@link #createMappingForEdge(SchemaEdge, DomainRow, DomainRow)}).
+ * However, all conflicts are recorded - a new row has the same values of some id as an existing row, or a row would have two mappings of the same morphism.
+ * Then, all of them are merged at once by {@link #mergeAll()}. The merging is done in iterations until nothing changes:
+ * <ol>
+ *  <li>The conflicting rows are grouped (by a union-find).</li>
+ *  <li>References are propagated from the rows that have changed in the previous iteration.</li>
+ *  <li>Each group (together with the propagated values) is merged into a new row. This might cause new conflicts for the next iteration.</li>
+ * </ol>
+ * Whenever a row is replaced by a new one, the old row is forwarded to the new one. So the rows that are still used by the caller can be resolved by {@link #resolve(DomainRow)}.
+ */
+public class DeferredMerger {
+
+    @SuppressWarnings({ "java:s1068", "unused" })
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeferredMerger.class);
+
+    private final InstanceCategory instance;
+
+    public DeferredMerger(InstanceCategory instance) {
+        this.instance = instance;
+    }
+
+    /** Old row -> the row that replaced it. */
+    private final Map<DomainRow, DomainRow> forwards = new IdentityHashMap<>();
+
+    /** Rows that were created or replaced since the last iteration, by their objexes. Their references have to be propagated. */
+    private Map<Key, List<DomainRow>> changedRows = new TreeMap<>();
+
+    private record RowPair(InstanceObjex objex, DomainRow first, DomainRow second) {}
+
+    /** Rows that have to be merged (because of the same ids or the mappings). */
+    private final List<RowPair> pendingPairs = new ArrayList<>();
+
+    /**
+     * Returns the row that has replaced the given row (or the row itself if it hasn't been replaced).
+     */
+    public DomainRow resolve(DomainRow row) {
+        DomainRow current = row;
+        DomainRow next;
+        while ((next = forwards.get(current)) != null)
+            current = next;
+
+        // Path compression.
+        if (current != row)
+            forwards.put(row, current);
+
+        return current;
+    }
+
+    private boolean isAlive(DomainRow row) {
+        return !forwards.containsKey(row);
+    }
+
+    /**
+     * Creates a new row without any merging.
+     */
+    public DomainRow createRow(InstanceObjex objex, SuperIdValues values) {
+        final var conflicts = findRowsWithSameIds(objex, values);
+        final var row = objex.createRow(values);
+        addConflicts(objex, row, conflicts);
+        markChanged(objex, row);
+        return row;
+    }
+
+    /**
+     * Creates the mapping (in the direction of the edge) unless the domain row already has a mapping of the same morphism. In that case, the codomain rows are merged later.
+     */
+    public void createMappingForEdge(SchemaEdge edge, DomainRow fromRow, DomainRow toRow) {
+        final var morphism = instance.getMorphism(edge.morphism().signature());
+        if (edge.direction())
+            connect(morphism, fromRow, toRow);
+        else
+            connect(morphism, toRow, fromRow);
+    }
+
+    /**
+     * Adds the values to the row without any further merging (i.e., other rows identified by the new values are merged later).
+     * Returns the row that contains the values. It might be a new row (in which case the old one is replaced by it).
+     */
+    public DomainRow addValues(InstanceObjex objex, DomainRow row, SuperIdValues values) {
+        final var current = resolve(row);
+        final var mutator = new SuperIdValues.Mutator(objex.layout()).add(current.superId);
+        final int prevSize = mutator.size();
+        mutator.add(values);
+        if (mutator.size() == prevSize)
+            return current;
+
+        return replaceRows(objex, List.of(current), mutator.build());
+    }
+
+    /**
+     * Appends all rows and mappings from the other instance (which has to have the same schema). The rows are matched with the existing rows by their ids.
+     * Used for combining the partial instances of the concurrently imported mappings (see the DatabaseToInstance).
+     */
+    public void appendInstance(InstanceCategory source) {
+        final Map<DomainRow, DomainRow> sourceToTarget = new IdentityHashMap<>();
+
+        for (final var sourceObjex : source.allObjexes()) {
+            final var objex = instance.getObjex(sourceObjex.schema.key());
+
+            for (final var sourceRow : sourceObjex.allRows()) {
+                final var row = appendRow(objex, sourceRow.superId);
+                row.copyPropertyValuesFrom(sourceRow);
+                sourceToTarget.put(sourceRow, row);
+            }
+        }
+
+        for (final var sourceMorphism : source.allMorphisms()) {
+            final var morphism = instance.getMorphism(sourceMorphism.schema.signature());
+
+            for (final var mapping : sourceMorphism.allMappings())
+                connect(morphism, resolve(sourceToTarget.get(mapping.dom())), resolve(sourceToTarget.get(mapping.cod())));
+        }
+    }
+
+    private DomainRow appendRow(InstanceObjex objex, SuperIdValues values) {
+        if (!values.containsSomeIds(objex.schema.ids()))
+            return createRow(objex, values);
+
+        final var currentRow = objex.tryFindRow(values);
+        return currentRow != null
+            ? addValues(objex, currentRow, values)
+            : createRow(objex, values);
+    }
+
+    private void markChanged(InstanceObjex objex, DomainRow row) {
+        changedRows.computeIfAbsent(objex.schema.key(), x -> new ArrayList<>()).add(row);
+    }
+
+    // #region Merging
+
+    /**
+     * Merges all rows and mappings until there is nothing left to merge.
+     */
+    public void mergeAll() {
+        int iteration = 0;
+
+        while (true) {
+            final var groups = new TreeMap<Key, RowGroups>();
+
+            for (final var pair : pendingPairs)
+                getGroups(groups, pair.objex).union(resolve(pair.first), resolve(pair.second));
+            pendingPairs.clear();
+
+            final var currentChangedRows = changedRows;
+            changedRows = new TreeMap<>();
+            propagateReferences(currentChangedRows, groups);
+
+            if (groups.values().stream().allMatch(RowGroups::isEmpty))
+                break;
+
+            for (final var rowGroups : groups.values())
+                rowGroups.merge();
+
+            iteration++;
+        }
+
+        LOGGER.debug("Deferred merging finished after {} iterations.", iteration);
+    }
+
+    private RowGroups getGroups(Map<Key, RowGroups> groups, InstanceObjex objex) {
+        return groups.computeIfAbsent(objex.schema.key(), x -> new RowGroups(objex));
+    }
+
+    /** Returns the rows that are already indexed by the same values of some id. */
+    private List<DomainRow> findRowsWithSameIds(InstanceObjex objex, SuperIdValues values) {
+        final var output = new ArrayList<DomainRow>();
+        for (final var id : objex.schema.ids().signatureIds()) {
+            if (!values.containsId(id))
+                continue;
+
+            final var row = objex.findRowById(id, values);
+            if (row != null)
+                output.add(row);
+        }
+
+        return output;
+    }
+
+    private void addConflicts(InstanceObjex objex, DomainRow row, List<DomainRow> conflicts) {
+        for (final var conflict : conflicts) {
+            final var resolved = resolve(conflict);
+            if (resolved != row)
+                pendingPairs.add(new RowPair(objex, resolved, row));
+        }
+    }
+
+    /**
+     * The values from the superIds of the changed rows are propagated to all rows that reference them.
+     */
+    private void propagateReferences(Map<Key, List<DomainRow>> rowsByObjexes, Map<Key, RowGroups> groups) {
+        for (final var entry : rowsByObjexes.entrySet()) {
+            final var objex = instance.getObjex(entry.getKey());
+
+            for (final var row : entry.getValue()) {
+                if (!isAlive(row))
+                    continue;
+
+                for (final var signature : row.superId.signatures()) {
+                    final var references = objex.getReferencesForSignature(signature);
+                    if (references == null)
+                        continue;
+
+                    final var value = row.superId.getValue(signature);
+                    for (final var reference : references) {
+                        final var targetObjex = instance.getObjex(reference.path().to());
+
+                        for (final var targetRow : row.traverseThrough(reference.path())) {
+                            if (!targetRow.superId.hasSignature(reference.signatureInOther()))
+                                getGroups(groups, targetObjex).addValue(targetRow, reference, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Union-find of the rows of one objex. Each group is then merged into one row. */
+    private class RowGroups {
+
+        private final InstanceObjex objex;
+        private final Map<DomainRow, DomainRow> parents = new IdentityHashMap<>();
+        private final Map<DomainRow, SuperIdValues.Mutator> addedValues = new IdentityHashMap<>();
+
+        RowGroups(InstanceObjex objex) {
+            this.objex = objex;
+        }
+
+        boolean isEmpty() {
+            return parents.isEmpty() && addedValues.isEmpty();
+        }
+
+        private DomainRow find(DomainRow row) {
+            DomainRow root = row;
+            DomainRow parent;
+            while ((parent = parents.get(root)) != null && parent != root)
+                root = parent;
+
+            if (root != row)
+                parents.put(row, root);
+
+            return root;
+        }
+
+        void union(DomainRow a, DomainRow b) {
+            final var rootA = find(a);
+            final var rootB = find(b);
+            if (rootA == rootB)
+                return;
+
+            // The smaller surrogate id wins so that the result doesn't depend on the order of the unions.
+            if (rootA.compareTo(rootB) < 0) {
+                parents.put(rootB, rootA);
+                parents.putIfAbsent(rootA, rootA);
+            }
+            else {
+                parents.put(rootA, rootB);
+                parents.putIfAbsent(rootB, rootB);
+            }
+        }
+
+        void addValue(DomainRow row, InstanceObjex.Reference reference, String value) {
+            addedValues.computeIfAbsent(row, x -> new SuperIdValues.Mutator(objex.layout())).add(reference.signatureInOther(), value);
+        }
+
+        void merge() {
+            final var groups = new TreeMap<DomainRow, List<DomainRow>>();
+            for (final var row : parents.keySet())
+                groups.computeIfAbsent(find(row), x -> new ArrayList<>()).add(row);
+            for (final var row : addedValues.keySet())
+                groups.computeIfAbsent(find(row), x -> new ArrayList<>(List.of(row)));
+
+            for (final var group : groups.values()) {
+                final var mutator = new SuperIdValues.Mutator(objex.layout());
+                for (final var row : group) {
+                    mutator.add(row.superId);
+                    final var values = addedValues.get(row);
+                    if (values != null)
+                        mutator.add(values);
+                }
+
+                replaceRows(objex, group, mutator.build());
+            }
+        }
+
+    }
+
+    /**
+     * Replaces the rows by a new row with the given values. All property values and mappings are moved to the new row.
+     * If the new row would have more mappings for the same morphism, the codomain rows are scheduled for merging.
+     */
+    private DomainRow replaceRows(InstanceObjex objex, List<DomainRow> rows, SuperIdValues values) {
+        final var conflicts = findRowsWithSameIds(objex, values);
+        final var newRow = objex.createRow(values);
+        objex.removeRows(rows);
+
+        for (final var row : rows) {
+            forwards.put(row, newRow);
+            newRow.copyPropertyValuesFrom(row);
+        }
+
+        // The replaced rows are found as well, but they are resolved to the new row.
+        addConflicts(objex, newRow, conflicts);
+
+        for (final var row : rows) {
+            for (final var entry : List.copyOf(row.getAllMappingsFrom())) {
+                final var morphism = instance.getMorphism(entry.getKey());
+                final var mapping = entry.getValue();
+                morphism.removeMapping(mapping);
+                // The mapping might point to one of the replaced rows.
+                connect(morphism, newRow, resolve(mapping.cod()));
+            }
+
+            for (final var entry : List.copyOf(row.getAllMappingsTo())) {
+                final var morphism = instance.getMorphism(entry.getKey());
+                for (final var mapping : List.copyOf(entry.getValue())) {
+                    morphism.removeMapping(mapping);
+                    connect(morphism, resolve(mapping.dom()), newRow);
+                }
+            }
+        }
+
+        markChanged(objex, newRow);
+
+        return newRow;
+    }
+
+    private void connect(InstanceMorphism morphism, DomainRow dom, DomainRow cod) {
+        final var existing = dom.getMappingFrom(morphism.schema.signature());
+        if (existing == null) {
+            morphism.createMapping(dom, cod);
+            return;
+        }
+
+        if (existing.cod() != cod)
+            pendingPairs.add(new RowPair(instance.getObjex(morphism.schema.cod()), existing.cod(), cod));
+    }
+
+    // #endregion
+
+}
@@ -13,6 +13,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Map.Entry;
 
+import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,7 +23,7 @@ import org.slf4j.LoggerFactory;
  * The tuple is made of pairs (signature, value) for each signature in the superid. This structure is implemented by a map.
  * Each value is unique among all the values associated with the same signature.
  */
-public class DomainRow implements Comparable<DomainRow> {
+public class DomainRow implements InstanceRow, Comparable<DomainRow> {
 
     @SuppressWarnings({ "java:s1068", "unused" })
     private static final Logger LOGGER = LoggerFactory.getLogger(DomainRow.class);
@@ -32,7 +33,10 @@ public class DomainRow implements Comparable<DomainRow> {
     /** For easy comparisons. Uniqueness is ensured by the {@link InstanceObjex}. */
     final int surrogateId;
     // FIXME consider this when merging
-    private final Map<BaseSignature, String> propertyValues = new TreeMap<>();
+    /** Codes of the property values (from the {@link #dictionary}). Created lazily because many rows don't have any properties. */
+    private @Nullable Object2IntArrayMap<BaseSignature> propertyValues;
+    /** The dictionary of the instance. The rows that don't belong to any instance have their own. */
+    private final ValueDictionary dictionary;
 
     /**
      * All signatures from the superId of this objex that point to values that are used in superIds of some other objexes.
@@ -44,6 +48,25 @@ public class DomainRow implements Comparable<DomainRow> {
         this.superId = superId;
         this.surrogateId = surrogateId;
         this.pendingReferences = pendingReferences;
+
+        final var superIdDictionary = superId.dictionary();
+        this.dictionary = superIdDictionary != null ? superIdDictionary : new ValueDictionary();
+    }
+
+    private @Nullable String getPropertyValue(BaseSignature signature) {
+        if (propertyValues == null || !propertyValues.containsKey(signature))
+            return null;
+
+        return dictionary.decode(propertyValues.getInt(signature));
+    }
+
+    /** Returns the code of the property value in the given dictionary (the value is encoded if needed) or -1 if there isn't any value. */
+    int getPropertyCode(BaseSignature signature, ValueDictionary dictionary) {
+        if (propertyValues == null || !propertyValues.containsKey(signature))
+            return -1;
+
+        final int code = propertyValues.getInt(signature);
+        return this.dictionary == dictionary ? code : dictionary.encode(this.dictionary.decode(code));
     }
 
     /**
@@ -54,20 +77,17 @@ public class DomainRow implements Comparable<DomainRow> {
         if (superIdValue != null || !(signature instanceof final BaseSignature base))
             return superIdValue;
 
-        return propertyValues.get(base);
+        return getPropertyValue(base);
     }
 
-    /**
-     * If the value is not here, traverses other rows and tries to find the value there.
-     */
-    public @Nullable String tryFindScalarValue(Signature signature) {
+    @Override public @Nullable String tryFindScalarValue(Signature signature) {
         final var superIdValue = superId.getValue(signature);
         if (superIdValue != null)
             return superIdValue;
 
         // A base signature can only be in propertyValues (if it's not in the superId).
         if (signature instanceof final BaseSignature base)
-            return propertyValues.get(base);
+            return getPropertyValue(base);
 
         final var bases = signature.toBases();
         DomainRow current = this;
@@ -87,10 +107,7 @@ public class DomainRow implements Comparable<DomainRow> {
         return current.tryGetScalarValue(lastBase);
     }
 
-    /**
-     * If the values are not here, traverses other rows and tries to find the values there.
-     */
-    public Collection<String> findArrayValues(Signature signature) {
+    @Override public Collection<String> findArrayValues(Signature signature) {
         // Similarly to the function above, we traverse up to the last base.
         final var rows = traverseThrough(signature.cutLast());
         final var lastBase = signature.getLast();
@@ -110,7 +127,24 @@ public class DomainRow implements Comparable<DomainRow> {
     }
 
     public void addPropertyValue(BaseSignature signature, String value) {
-        propertyValues.put(signature, value);
+        if (propertyValues == null)
+            propertyValues = new Object2IntArrayMap<>(2);
+
+        propertyValues.put(signature, dictionary.encode(value));
+    }
+
+    /** Copies all property values of the other row (the existing values with the same signatures are overwritten). */
+    void copyPropertyValuesFrom(DomainRow other) {
+        if (other.propertyValues == null || other.propertyValues.isEmpty())
+            return;
+
+        if (propertyValues == null)
+            propertyValues = new Object2IntArrayMap<>(other.propertyValues.size());
+
+        for (final var entry : other.propertyValues.object2IntEntrySet()) {
+            final int code = other.dictionary == dictionary ? entry.getIntValue() : dictionary.encode(other.dictionary.decode(entry.getIntValue()));
+            propertyValues.put(entry.getKey(), code);
+        }
     }
 
     // These properties are managed by the morphisms, so they shouldn't be cloned.
@@ -163,6 +197,10 @@ public class DomainRow implements Comparable<DomainRow> {
         return mappingsFrom.get(signature);
     }
 
+    Set<MappingRow> getMappingsTo(BaseSignature signature) {
+        return mappingsTo.getOrDefault(signature, Set.of());
+    }
+
     public Collection<Entry<BaseSignature, MappingRow>> getAllMappingsFrom() {
         return mappingsFrom.entrySet();
     }
@@ -189,7 +227,7 @@ public class DomainRow implements Comparable<DomainRow> {
         mappingsOfSameType.remove(mapping);
     }
 
-    public Set<DomainRow> traverseThrough(SchemaPath path) {
+    @Override public Set<DomainRow> traverseThrough(SchemaPath path) {
         Set<DomainRow> current = Set.of(this);
 
         for (final var edge : path.edges())
@@ -198,7 +236,7 @@ public class DomainRow implements Comparable<DomainRow> {
         return current;
     }
 
-    public Set<DomainRow> traverseThrough(Signature signature) {
+    @Override public Set<DomainRow> traverseThrough(Signature signature) {
         Set<DomainRow> current = Set.of(this);
 
         for (final var base : signature.toBases())
@@ -269,14 +307,16 @@ public class DomainRow implements Comparable<DomainRow> {
         sb.append(": (");
         final var SEPARATOR = ", ";
 
-        for (final var entry : propertyValues.entrySet()) {
-            sb
-                .append(entry.getKey()).append(": \"").append(entry.getValue()).append("\"")
-                .append(SEPARATOR);
-        }
+        if (propertyValues != null && !propertyValues.isEmpty()) {
+            // The map isn't sorted so we have to sort the signatures here.
+            for (final var signature : new TreeSet<>(propertyValues.keySet())) {
+                sb
+                    .append(signature).append(": \"").append(getPropertyValue(signature)).append("\"")
+                    .append(SEPARATOR);
+            }
 
-        if (!propertyValues.isEmpty())
             sb.setLength(sb.length() - SEPARATOR.length());
+        }
 
         sb.append(")");
 
@@ -0,0 +1,26 @@
+package cz.matfyz.core.instance;
+
+/**
+ * Selects how the {@link InstanceObjex} stores and indexes its domain rows.
+ * All storages behave the same way, they differ only in performance.
+ */
+public enum DomainStorage {
+
+    /** The rows are kept in a tree set and the ids in tree maps ordered by the {@link SuperIdValues.IdComparator}. */
+    TREE,
+    /**
+     * The rows are addressed by their surrogate ids and kept in the insertion order.
+     * The ids are indexed by open-addressing hash tables over precomputed hashes of their values.
+     */
+    HASH;
+
+    public static final DomainStorage DEFAULT = HASH;
+
+    DomainStore createStore() {
+        return switch (this) {
+            case TREE -> new TreeDomainStore();
+            case HASH -> new HashDomainStore();
+        };
+    }
+
+}
@@ -0,0 +1,46 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.SignatureId;
+
+import java.util.Collection;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Stores all rows of one {@link InstanceObjex} and indexes them by the values of their ids.
+ * The implementation is selected by the {@link DomainStorage} of the instance.
+ */
+interface DomainStore {
+
+    /**
+     * Finds the row with the same values of the given id as the given values have.
+     * The values have to contain the whole id.
+     */
+    @Nullable DomainRow find(SignatureId id, SuperIdValues values);
+
+    /**
+     * Indexes the row by the given id (its superId has to contain the whole id).
+     * If there already is a row with the same values of the id, it's replaced.
+     */
+    void index(SignatureId id, DomainRow row);
+
+    /** Adds the row to the domain. It isn't indexed by any id. */
+    void add(DomainRow row);
+
+    /** Removes the row from the domain. The indexes aren't changed because the row is expected to be overwritten there anyway. */
+    void remove(DomainRow row);
+
+    boolean isEmpty();
+
+    int size();
+
+    /** All rows in the domain. They are ordered by their surrogate ids (as long as they are added in the order they were created). */
+    Iterable<DomainRow> rows();
+
+    /** All ids by which at least one row was indexed. */
+    Collection<SignatureId> indexedIds();
+
+    /** All rows indexed by the given id. */
+    Iterable<DomainRow> indexedRows(SignatureId id);
+
+}
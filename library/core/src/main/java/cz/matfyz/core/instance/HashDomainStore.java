@@ -0,0 +1,189 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.SignatureId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Rows are addressed by their surrogate ids and the ids are indexed by open-addressing hash tables.
+ * Unlike the {@link TreeDomainStore}, neither the lookups nor the insertions have to compare the values (except for the rows with the same hash).
+ * It also needs less memory - there are no entry objects, just parallel arrays (about 20 bytes per row for the domain and 10 bytes per row for each id, instead of 40 bytes for each tree entry).
+ * @see DomainStorage#HASH
+ */
+class HashDomainStore implements DomainStore {
+
+    /** All rows in the domain of the objex (even those without any id), in the order they were added. */
+    private final Int2ObjectLinkedOpenHashMap<DomainRow> domain = new Int2ObjectLinkedOpenHashMap<>();
+
+    /** There are only a few ids per objex so a list is faster than a map. */
+    private final List<IdHashIndex> indexes = new ArrayList<>(2);
+
+    private @Nullable IdHashIndex findIndex(SignatureId id) {
+        // The ids are usually the same instances (from the schema objex) so we check the identity first.
+        for (final var index : indexes)
+            if (index.id == id)
+                return index;
+
+        for (final var index : indexes)
+            if (index.id.equals(id))
+                return index;
+
+        return null;
+    }
+
+    private IdHashIndex getOrCreateIndex(SignatureId id) {
+        final var index = findIndex(id);
+        if (index != null)
+            return index;
+
+        final var newIndex = new IdHashIndex(id);
+        indexes.add(newIndex);
+        return newIndex;
+    }
+
+    @Override public @Nullable DomainRow find(SignatureId id, SuperIdValues values) {
+        final var index = findIndex(id);
+        return index == null ? null : index.get(values);
+    }
+
+    @Override public void index(SignatureId id, DomainRow row) {
+        getOrCreateIndex(id).put(row);
+    }
+
+    @Override public void add(DomainRow row) {
+        domain.put(row.surrogateId, row);
+    }
+
+    @Override public void remove(DomainRow row) {
+        domain.remove(row.surrogateId);
+    }
+
+    @Override public boolean isEmpty() {
+        return domain.isEmpty();
+    }
+
+    @Override public int size() {
+        return domain.size();
+    }
+
+    @Override public Iterable<DomainRow> rows() {
+        return domain.values();
+    }
+
+    @Override public Collection<SignatureId> indexedIds() {
+        return indexes.stream().map(index -> index.id).toList();
+    }
+
+    @Override public Iterable<DomainRow> indexedRows(SignatureId id) {
+        final var index = findIndex(id);
+        return index == null ? List.of() : index.rows();
+    }
+
+    /**
+     * Maps values of one id to rows. Uses linear probing over two parallel arrays - the hashes are stored so that the values have to be compared only if the hashes match.
+     * Nothing is ever removed (the rows are overwritten instead), so there is no need for tombstones.
+     */
+    private static class IdHashIndex {
+
+        private static final float LOAD_FACTOR = 0.75f;
+        private static final int INITIAL_CAPACITY = 16;
+
+        final SignatureId id;
+
+        private int[] hashes;
+        private DomainRow[] rows;
+        private int mask;
+        private int size = 0;
+        private int maxFill;
+
+        IdHashIndex(SignatureId id) {
+            this.id = id;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            hashes = new int[capacity];
+            rows = new DomainRow[capacity];
+            mask = capacity - 1;
+            maxFill = HashCommon.maxFill(capacity, LOAD_FACTOR);
+        }
+
+        private int hash(SuperIdValues values) {
+            return HashCommon.mix(values.idHash(id));
+        }
+
+        private boolean isEqual(SuperIdValues a, SuperIdValues b) {
+            return a.idEquals(b, id);
+        }
+
+        @Nullable DomainRow get(SuperIdValues values) {
+            final int hash = hash(values);
+            int position = hash & mask;
+            DomainRow current;
+
+            while ((current = rows[position]) != null) {
+                if (hashes[position] == hash && isEqual(current.superId, values))
+                    return current;
+                position = (position + 1) & mask;
+            }
+
+            return null;
+        }
+
+        void put(DomainRow row) {
+            final int hash = hash(row.superId);
+            int position = hash & mask;
+            DomainRow current;
+
+            while ((current = rows[position]) != null) {
+                if (hashes[position] == hash && isEqual(current.superId, row.superId)) {
+                    rows[position] = row;
+                    return;
+                }
+                position = (position + 1) & mask;
+            }
+
+            hashes[position] = hash;
+            rows[position] = row;
+
+            if (++size >= maxFill)
+                rehash(HashCommon.arraySize(size + 1, LOAD_FACTOR));
+        }
+
+        private void rehash(int capacity) {
+            final var oldHashes = hashes;
+            final var oldRows = rows;
+            allocate(capacity);
+
+            for (int i = 0; i < oldRows.length; i++) {
+                final var row = oldRows[i];
+                if (row == null)
+                    continue;
+
+                int position = oldHashes[i] & mask;
+                while (rows[position] != null)
+                    position = (position + 1) & mask;
+
+                hashes[position] = oldHashes[i];
+                rows[position] = row;
+            }
+        }
+
+        List<DomainRow> rows() {
+            final var output = new ArrayList<DomainRow>(size);
+            for (final var row : rows)
+                if (row != null)
+                    output.add(row);
+
+            return output;
+        }
+
+    }
+
+}
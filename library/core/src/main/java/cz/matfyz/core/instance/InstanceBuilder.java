@@ -24,13 +24,17 @@ public class InstanceBuilder {
     private final InstanceCategory instance;
 
     public InstanceBuilder(SchemaCategory schema) {
-        this.instance = createEmptyInstance(schema);
+        this(schema, DomainStorage.DEFAULT);
     }
 
-    private static InstanceCategory createEmptyInstance(SchemaCategory schema) {
+    public InstanceBuilder(SchemaCategory schema, DomainStorage domainStorage) {
+        this.instance = createEmptyInstance(schema, domainStorage);
+    }
+
+    private static InstanceCategory createEmptyInstance(SchemaCategory schema, DomainStorage domainStorage) {
         final Map<Key, InstanceObjex> objexes = new TreeMap<>();
         final Map<BaseSignature, InstanceMorphism> morphisms = new TreeMap<>();
-        final var instance = new InstanceCategory(schema, objexes, morphisms);
+        final var instance = new InstanceCategory(schema, objexes, morphisms, domainStorage);
         /** For each objex A, we store a list of signatures of morphisms from A to all value-identified objexes B. */
         final Map<SchemaObjex, Set<BaseSignature>> dependentObjexes = new TreeMap<>();
 
@@ -100,7 +104,7 @@ public class InstanceBuilder {
     public DomainRow objex(Key key) {
         final var instanceObjex = instance.getObjex(key);
 
-        final var builder = new SuperIdValues.Mutator();
+        final var builder = new SuperIdValues.Mutator(instanceObjex.layout());
         instanceObjex.schema.superId().forEach(s -> {
             final var value = values.get(s);
             if (value != null)
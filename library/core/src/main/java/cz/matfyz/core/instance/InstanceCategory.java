@@ -10,22 +10,34 @@ import cz.matfyz.core.schema.SchemaObjex;
 import java.util.Collection;
 import java.util.Map;
 
-public class InstanceCategory {
+public class InstanceCategory implements ReadableInstance {
 
     private final SchemaCategory schema;
     private final Map<Key, InstanceObjex> objexes;
     private final Map<BaseSignature, InstanceMorphism> morphisms;
+    private final DomainStorage domainStorage;
+    private final ValueDictionary dictionary = new ValueDictionary();
 
-    InstanceCategory(SchemaCategory schema, Map<Key, InstanceObjex> objexes, Map<BaseSignature, InstanceMorphism> morphisms) {
+    InstanceCategory(SchemaCategory schema, Map<Key, InstanceObjex> objexes, Map<BaseSignature, InstanceMorphism> morphisms, DomainStorage domainStorage) {
         this.schema = schema;
         this.objexes = objexes;
         this.morphisms = morphisms;
+        this.domainStorage = domainStorage;
     }
 
-    public SchemaCategory schema() {
+    @Override public SchemaCategory schema() {
         return schema;
     }
 
+    public DomainStorage domainStorage() {
+        return domainStorage;
+    }
+
+    /** All scalar values of this instance are encoded by this dictionary. */
+    public ValueDictionary dictionary() {
+        return dictionary;
+    }
+
     public InstanceObjex getObjex(Key key) {
         return objexes.get(key);
     }
@@ -49,6 +61,10 @@ public class InstanceCategory {
         return morphism;
     }
 
+    @Override public Iterable<DomainRow> allRows(SchemaObjex objex) {
+        return getObjex(objex).allRows();
+    }
+
     public Collection<InstanceObjex> allObjexes() {
         return this.objexes.values();
     }
@@ -89,7 +89,7 @@ class InstanceMerger {
          * Merges all rows corresponding to the given values into one domain row.
          */
         public DomainRow process() {
-            final var mutator = new SuperIdValues.Mutator(superId);
+            final var mutator = new SuperIdValues.Mutator(objex.layout()).add(superId);
             for (final var row : originalRows)
                 mutator.add(row.superId);
 
@@ -147,7 +147,7 @@ class InstanceMerger {
 
                     foundIds.add(id);
 
-                    final var row = objex.getRowsById(id).get(mutator);
+                    final var row = objex.findRowById(id, mutator);
                     if (row == null || originalRows.contains(row))
                         continue;
 
@@ -271,7 +271,7 @@ class InstanceMerger {
                     continue; // The row already has the value.
 
                 // Add value to the targetRow.
-                final var newValue = new SuperIdValues.Mutator().add(reference.signatureInOther(), value).build();
+                final var newValue = new SuperIdValues.Mutator(objex.layout()).add(reference.signatureInOther(), value).build();
 
                 merger.addMergeJob(objex, targetRow, newValue);
             }
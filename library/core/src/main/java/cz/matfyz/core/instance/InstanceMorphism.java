@@ -55,7 +55,9 @@ public class InstanceMorphism implements Identified<InstanceMorphism, Signature>
 
     void removeMapping(MappingRow mapping) {
         mappings.remove(mapping);
-        mapping.dom().unsetMappingFrom(this);
+        // The domain row might already have another mapping (if the previous one was overwritten).
+        if (mapping.dom().getMappingFrom(schema.signature()) == mapping)
+            mapping.dom().unsetMappingFrom(this);
         mapping.cod().removeMappingTo(this, mapping);
     }
 
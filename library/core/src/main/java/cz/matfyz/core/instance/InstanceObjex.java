@@ -5,7 +5,6 @@ import cz.matfyz.core.identifiers.Identified;
 import cz.matfyz.core.identifiers.Key;
 import cz.matfyz.core.identifiers.Signature;
 import cz.matfyz.core.identifiers.SignatureId;
-import cz.matfyz.core.instance.SuperIdValues.IdComparator;
 import cz.matfyz.core.schema.SchemaObjex;
 import cz.matfyz.core.schema.SchemaCategory.SchemaPath;
 import cz.matfyz.core.utils.UniqueSequentialGenerator;
@@ -28,25 +27,26 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
     private final InstanceCategory instance;
 
     /**
-     * All rows in the domain of this object (even those without any id).
-     * We need this because some rows don't have any id (or we didn't discover the ids yet).
+     * All rows in the domain of this object (even those without any id), together with their indexes by the values of the ids.
+     * We need all rows because some rows don't have any id (or we didn't discover the ids yet).
      */
-    private final Set<DomainRow> domain = new TreeSet<>();
+    private final DomainStore domain;
 
-    /**
-     * All rows in the domain of this object (which have at least one id).
-     * The first map is indexed by the different identifiers the object can have (they have to be signatureIds).
-     * The second map is the actual rows, indexed by actual values of these identifiers.
-     */
-    private final Map<SignatureId, Map<SuperIdValues, DomainRow>> domainByIds = new TreeMap<>();
+    /** Finds the row by the given id. The values have to contain the whole id. */
+    @Nullable DomainRow findRowById(SignatureId id, SuperIdValues values) {
+        final var encoded = values.withLayoutForLookup(layout);
+        // Some values of the id aren't in the dictionary so there can't be any such row.
+        if (!encoded.containsId(id))
+            return null;
 
-    Map<SuperIdValues, DomainRow> getRowsById(SignatureId id) {
-        return domainByIds.computeIfAbsent(id, i -> new TreeMap<>(new IdComparator(id)));
+        return domain.find(id, encoded);
     }
 
     public InstanceObjex(SchemaObjex schema, InstanceCategory instance, Collection<BaseSignature> dependentObjexes) {
         this.schema = schema;
         this.instance = instance;
+        this.domain = instance.domainStorage().createStore();
+        this.layout = SuperIdLayout.forObjex(schema, instance.dictionary());
 
         for (final var signature : dependentObjexes)
             assert !signature.isDual() : "Property signatures cannot be dual: " + signature;
@@ -56,6 +56,13 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
 
     private final SortedSet<BaseSignature> propertySignatures;
 
+    private final SuperIdLayout layout;
+
+    /** All rows of this objex share this layout. Use it for creating new values (see {@link SuperIdValues.Mutator#Mutator(SuperIdLayout)}). */
+    public SuperIdLayout layout() {
+        return layout;
+    }
+
     /** Signatures of objexes whose values should be stored in the domain row (and which are not already part of the superId). */
     public Collection<BaseSignature> propertySignatures() {
         return propertySignatures;
@@ -67,11 +74,14 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
 
     /** Finds the row by any id that can be found in the given values. */
     public @Nullable DomainRow tryFindRow(SuperIdValues values) {
+        // The domain store expects the values to be encoded by the same dictionary as the rows. The unknown values are left out, so the ids with them are skipped.
+        final var encoded = values.withLayoutForLookup(layout);
+
         for (final var id : schema.ids().signatureIds()) {
-            if (!values.containsId(id))
+            if (!encoded.containsId(id))
                 continue;
 
-            final var row = getRowsById(id).get(values);
+            final var row = domain.find(id, encoded);
             if (row != null)
                 return row;
         }
@@ -88,7 +98,7 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
      * If it is, call the `merge` methods instead.
      */
     public DomainRow createRow(SuperIdValues values) {
-        final var row = new DomainRow(values, rowIdGenerator.next(), references.keySet());
+        final var row = new DomainRow(values.withLayout(layout), rowIdGenerator.next(), references.keySet());
         setRow(row);
         return row;
     }
@@ -99,7 +109,7 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
     void setRow(DomainRow row) {
         final var ids = row.superId.findAllIds(schema.ids());
         for (final var id : ids)
-            getRowsById(id).put(row.superId, row);
+            domain.index(id, row);
 
         domain.add(row);
     }
@@ -126,14 +136,14 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
         return merger.getTrackedRow();
     }
 
-    /** Removes rows from the domain. Doesn't remove them from the {@link #domainByIds} because they are expected to be overwriten there anyway. */
+    /** Removes rows from the domain. Doesn't remove them from the indexes by ids because they are expected to be overwriten there anyway. */
     void removeRows(Iterable<DomainRow> rows) {
         for (final DomainRow row : rows)
             domain.remove(row);
     }
 
     public Iterable<DomainRow> allRows() {
-        return domain;
+        return domain.rows();
     }
 
     /** Groups references by the signature from the superId of this objex. */
@@ -192,21 +202,17 @@ public class InstanceObjex implements Identified<InstanceObjex, Key> {
         // FIXME This is not correct (yet), because it doesn't use correct ids (the ids do have to change because the morphisms that form them have to change).
 
         // TODO How to copy signature ids?
-        for (final var domainEntry : source.domainByIds.entrySet()) {
-            final SignatureId id = domainEntry.getKey();
-            final var sourceRows = domainEntry.getValue();
-            final var targetRows = getRowsById(id);
-
-            for (final DomainRow sourceRow : sourceRows.values()) {
+        for (final SignatureId id : source.domain.indexedIds()) {
+            for (final DomainRow sourceRow : source.domain.indexedRows(id)) {
                 // TODO Pending references (probably should be empty, but we should check it).
-                final DomainRow targetRow = rowsById.computeIfAbsent(sourceRow.surrogateId, x -> new DomainRow(sourceRow.superId, x, Set.of()));
-                targetRows.put(targetRow.superId, targetRow);
+                final DomainRow targetRow = rowsById.computeIfAbsent(sourceRow.surrogateId, x -> new DomainRow(sourceRow.superId.withLayout(layout), x, Set.of()));
+                domain.index(id, targetRow);
             }
         }
 
         // Finally, copy (or just reuse) all rows to the domain.
-        for (final var sourceRow : source.domain) {
-            final DomainRow targetRow = rowsById.computeIfAbsent(sourceRow.surrogateId, x -> new DomainRow(sourceRow.superId, x, Set.of()));
+        for (final var sourceRow : source.domain.rows()) {
+            final DomainRow targetRow = rowsById.computeIfAbsent(sourceRow.surrogateId, x -> new DomainRow(sourceRow.superId.withLayout(layout), x, Set.of()));
             domain.add(targetRow);
         }
     }
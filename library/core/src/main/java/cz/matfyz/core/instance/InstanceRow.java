@@ -0,0 +1,31 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.schema.SchemaCategory.SchemaPath;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A read-only view of one row of an instance. It's all the algorithms that only read the instance (e.g., the DML algorithm) need.
+ * Implemented by the on-heap {@link DomainRow} and by the off-heap {@link MappedInstance.MappedRow}.
+ */
+public interface InstanceRow {
+
+    /**
+     * If the value is not here, traverses other rows and tries to find the value there.
+     */
+    @Nullable String tryFindScalarValue(Signature signature);
+
+    /**
+     * If the values are not here, traverses other rows and tries to find the values there.
+     */
+    Collection<String> findArrayValues(Signature signature);
+
+    Set<? extends InstanceRow> traverseThrough(SchemaPath path);
+
+    Set<? extends InstanceRow> traverseThrough(Signature signature);
+
+}
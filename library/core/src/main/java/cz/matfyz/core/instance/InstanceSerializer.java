@@ -4,11 +4,14 @@ import cz.matfyz.core.identifiers.BaseSignature;
 import cz.matfyz.core.identifiers.Key;
 import cz.matfyz.core.identifiers.Signature;
 import cz.matfyz.core.schema.SchemaCategory;
+import cz.matfyz.core.schema.SchemaMorphism;
+import cz.matfyz.core.schema.SchemaObjex;
 import cz.matfyz.core.utils.UniqueSequentialGenerator;
 import cz.matfyz.core.utils.UniqueSequentialGenerator.SerializedUniqueSequentialGenerator;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -102,6 +105,47 @@ public class InstanceSerializer {
         return new SerializedInstanceMorphism(morphism.schema.signature(), mappings);
     }
 
+    /**
+     * The result is the same as if the original {@link InstanceCategory} was serialized, so the instance doesn't have to stay on the heap until it's serialized.
+     * The mappings are found by traversing the rows.
+     */
+    public static SerializedInstance serialize(MappedInstance instance) {
+        return new InstanceSerializer().serializeMappedInstance(instance);
+    }
+
+    private SerializedInstance serializeMappedInstance(MappedInstance instance) {
+        final var schema = instance.schema();
+        final List<SerializedInstanceObjex> objexes = new ArrayList<>();
+        // The same objexes and morphisms as in the instance category.
+        for (final SchemaObjex objex : schema.allObjexes()) {
+            if (!objex.isEntity())
+                continue;
+
+            final List<SerializedDomainRow> rows = new ArrayList<>();
+            for (final var row : instance.allRows(objex))
+                rows.add(new SerializedDomainRow(row.surrogateId(), row.superId(), row.pendingReferences()));
+
+            objexes.add(new SerializedInstanceObjex(objex.key(), rows, new SerializedUniqueSequentialGenerator(instance.nextRowId(objex))));
+        }
+        objexes.sort(Comparator.comparing(SerializedInstanceObjex::key));
+
+        final List<SerializedInstanceMorphism> morphisms = new ArrayList<>();
+        for (final SchemaMorphism morphism : schema.allMorphisms()) {
+            final var signature = morphism.signature();
+            final List<SerializedMappingRow> mappings = new ArrayList<>();
+            // The rows are sorted by their surrogate ids and so are the rows of each traversal. So the mappings are sorted the same way as in the instance morphism.
+            for (final var domRow : instance.allRows(morphism.dom())) {
+                for (final var codRow : domRow.traverseThrough(signature))
+                    mappings.add(new SerializedMappingRow(domRow.surrogateId(), codRow.surrogateId()));
+            }
+
+            morphisms.add(new SerializedInstanceMorphism(signature, mappings));
+        }
+        morphisms.sort(Comparator.comparing(SerializedInstanceMorphism::signature));
+
+        return new SerializedInstance(objexes, morphisms);
+    }
+
     public static InstanceCategory deserialize(SerializedInstance serializedInstance, SchemaCategory schema) {
         return new InstanceSerializer().deserializeInstance(serializedInstance, schema);
     }
@@ -129,7 +173,7 @@ public class InstanceSerializer {
 
         for (final var serializedRow : serializedObjex.rows) {
             final var row = new DomainRow(
-                serializedRow.values,
+                serializedRow.values.withLayout(objex.layout()),
                 serializedRow.id,
                 new TreeSet<>(serializedRow.pendingReferences)
             );
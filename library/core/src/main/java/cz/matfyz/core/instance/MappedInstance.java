@@ -0,0 +1,600 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.BaseSignature;
+import cz.matfyz.core.identifiers.Key;
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.schema.SchemaCategory;
+import cz.matfyz.core.schema.SchemaCategory.SchemaPath;
+import cz.matfyz.core.schema.SchemaObjex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A read-only instance that lives off-heap, in memory-mapped segment files in a given directory.
+ * It's written from an {@link InstanceCategory} (which can be dropped afterwards) and it can be opened again later (e.g., by another job of the same session).
+ * Only the rows that are currently traversed are on the heap (as lightweight {@link MappedRow} handles), so an instance larger than the heap can be read without GC thrashing.
+ * <p>
+ * The files are:
+ * <ul>
+ *  <li><code>values</code> and <code>value-offsets</code> - the value dictionary (UTF-8 bytes and the offset of each code).</li>
+ *  <li><code>objex-{key}</code> - a fixed-width table of value codes (superId signatures first, then property signatures). Missing values are -1.</li>
+ *  <li><code>objex-{key}-ids</code> - the surrogate id of each row.</li>
+ *  <li><code>objex-{key}-pending-offsets</code> and <code>objex-{key}-pending</code> - for each row the columns of its pending references (in the CSR format).</li>
+ *  <li><code>morphism-{signature}-from</code> - for each domain row the index of the codomain row (or -1).</li>
+ *  <li><code>morphism-{signature}-to-offsets</code> and <code>morphism-{signature}-to</code> - for each codomain row the indexes of all domain rows (in the CSR format).</li>
+ * </ul>
+ * The rows are identified by their index in the objex table, which follows the order of their surrogate ids.
+ * <p>
+ * The instance has to be closed so that the files are unmapped. Neither the instance nor its rows can be used after that.
+ */
+public final class MappedInstance implements ReadableInstance, AutoCloseable {
+
+    private static final String METADATA_FILE = "instance.json";
+    private static final int MISSING = -1;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private record Metadata(
+        List<ObjexMetadata> objexes,
+        List<Signature> morphisms
+    ) {}
+
+    private record ObjexMetadata(
+        Key key,
+        int rowsCount,
+        List<Signature> superId,
+        List<Signature> properties,
+        /** The next value of the generator of the surrogate ids. */
+        int nextRowId
+    ) {}
+
+    private final Path directory;
+    private final SchemaCategory schema;
+    private final MappedSegments values;
+    private final MappedSegments valueOffsets;
+    private final Map<Key, MappedObjex> objexes = new TreeMap<>();
+    private final Map<BaseSignature, MappedMorphism> morphisms = new TreeMap<>();
+
+    private MappedInstance(Path directory, SchemaCategory schema, MappedSegments values, MappedSegments valueOffsets) {
+        this.directory = directory;
+        this.schema = schema;
+        this.values = values;
+        this.valueOffsets = valueOffsets;
+    }
+
+    /** The directory with all files of the instance. */
+    public Path directory() {
+        return directory;
+    }
+
+    @Override public SchemaCategory schema() {
+        return schema;
+    }
+
+    @Override public Iterable<MappedRow> allRows(SchemaObjex schemaObjex) {
+        final var objex = objexes.get(schemaObjex.key());
+        if (objex == null)
+            return List.of();
+
+        return () -> new Iterator<>() {
+            private int index = 0;
+
+            @Override public boolean hasNext() {
+                return index < objex.rowsCount;
+            }
+
+            @Override public MappedRow next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                return new MappedRow(objex, index++);
+            }
+        };
+    }
+
+    public int rowsCount(SchemaObjex schemaObjex) {
+        final var objex = objexes.get(schemaObjex.key());
+        return objex == null ? 0 : objex.rowsCount;
+    }
+
+    /** The next value of the generator of the surrogate ids of the objex. */
+    int nextRowId(SchemaObjex schemaObjex) {
+        final var objex = objexes.get(schemaObjex.key());
+        return objex == null ? 0 : objex.nextRowId;
+    }
+
+    /** Unmaps all files. They aren't deleted. */
+    @Override public void close() {
+        values.unmap();
+        valueOffsets.unmap();
+        for (final var objex : objexes.values())
+            objex.unmap();
+        for (final var morphism : morphisms.values())
+            morphism.unmap();
+    }
+
+    private String decode(int code) {
+        final long start = valueOffsets.getLong(code);
+        final long end = valueOffsets.getLong(code + 1L);
+        return new String(values.getBytes(start, (int) (end - start)), StandardCharsets.UTF_8);
+    }
+
+    private class MappedObjex {
+
+        final int rowsCount;
+        final int nextRowId;
+        final MappedSegments table;
+        final MappedSegments ids;
+        final MappedSegments pendingOffsets;
+        final MappedSegments pending;
+        /** The superId columns go first. */
+        final List<Signature> superId;
+        /** The values of the superId are decoded into this layout (it has no dictionary). */
+        final SuperIdLayout superIdLayout;
+        /** Number of columns of the table. */
+        final int width;
+        final Object2IntOpenHashMap<Signature> columns = new Object2IntOpenHashMap<>();
+        /** The property values can be only under base signatures. */
+        final int firstPropertyColumn;
+
+        MappedObjex(ObjexMetadata metadata, MappedSegments table, MappedSegments ids, MappedSegments pendingOffsets, MappedSegments pending) {
+            this.rowsCount = metadata.rowsCount;
+            this.nextRowId = metadata.nextRowId;
+            this.table = table;
+            this.ids = ids;
+            this.pendingOffsets = pendingOffsets;
+            this.pending = pending;
+            this.superId = metadata.superId;
+            this.superIdLayout = SuperIdLayout.of(metadata.superId);
+            this.width = metadata.superId.size() + metadata.properties.size();
+            this.firstPropertyColumn = metadata.superId.size();
+
+            columns.defaultReturnValue(MISSING);
+            int column = 0;
+            for (final var signature : metadata.superId)
+                columns.put(signature, column++);
+            for (final var signature : metadata.properties)
+                columns.putIfAbsent(signature, column++);
+        }
+
+        int getCode(int row, int column) {
+            return table.getInt((long) row * width + column);
+        }
+
+        @Nullable String getValue(int row, Signature signature) {
+            final int column = columns.getInt(signature);
+            // A non-base signature can only be in the superId.
+            if (column == MISSING || (column >= firstPropertyColumn && !(signature instanceof BaseSignature)))
+                return null;
+
+            final int code = getCode(row, column);
+            return code == MISSING ? null : decode(code);
+        }
+
+        void unmap() {
+            table.unmap();
+            ids.unmap();
+            pendingOffsets.unmap();
+            pending.unmap();
+        }
+
+    }
+
+    private record MappedMorphism(
+        MappedObjex dom,
+        MappedObjex cod,
+        MappedSegments from,
+        MappedSegments toOffsets,
+        MappedSegments to
+    ) {
+
+        /** Returns the codomain row of the given domain row (or -1). */
+        int getCod(int domRow) {
+            return from.getInt(domRow);
+        }
+
+        void unmap() {
+            from.unmap();
+            toOffsets.unmap();
+            to.unmap();
+        }
+
+    }
+
+    /**
+     * A lightweight handle of a row. Two handles are equal if they point to the same row.
+     */
+    public final class MappedRow implements InstanceRow, Comparable<MappedRow> {
+
+        private final MappedObjex objex;
+        private final int index;
+
+        private MappedRow(MappedObjex objex, int index) {
+            this.objex = objex;
+            this.index = index;
+        }
+
+        int surrogateId() {
+            return objex.ids.getInt(index);
+        }
+
+        /** Decodes the values of the superId. */
+        SuperIdValues superId() {
+            final var mutator = new SuperIdValues.Mutator(objex.superIdLayout);
+            for (int column = 0; column < objex.superId.size(); column++) {
+                final int code = objex.getCode(index, column);
+                if (code != MISSING)
+                    mutator.add(objex.superId.get(column), decode(code));
+            }
+
+            return mutator.build();
+        }
+
+        List<Signature> pendingReferences() {
+            final long start = objex.pendingOffsets.getLong(index);
+            final long end = objex.pendingOffsets.getLong(index + 1L);
+            final var output = new ArrayList<Signature>((int) (end - start));
+            for (long i = start; i < end; i++)
+                output.add(objex.superId.get(objex.pending.getInt(i)));
+
+            return output;
+        }
+
+        /** A scalar value is either a property value or a value from the superId. */
+        public @Nullable String tryGetScalarValue(Signature signature) {
+            return objex.getValue(index, signature);
+        }
+
+        @Override public @Nullable String tryFindScalarValue(Signature signature) {
+            final var value = objex.getValue(index, signature);
+            if (value != null || signature instanceof BaseSignature)
+                return value;
+
+            final var bases = signature.toBases();
+            MappedRow current = this;
+            for (int i = 0; i < bases.size() - 1; i++) {
+                // A scalar value can only be in a "from" mapping.
+                final var morphism = morphisms.get(bases.get(i));
+                if (morphism == null)
+                    return null;
+
+                final int cod = morphism.getCod(current.index);
+                if (cod == MISSING)
+                    return null;
+
+                current = new MappedRow(morphism.cod, cod);
+            }
+
+            return current.tryGetScalarValue(bases.get(bases.size() - 1));
+        }
+
+        @Override public Collection<String> findArrayValues(Signature signature) {
+            final var rows = traverseThrough(signature.cutLast());
+            final var lastBase = signature.getLast();
+
+            final Set<String> output = new TreeSet<>();
+            for (final var row : rows) {
+                final var value = row.tryGetScalarValue(lastBase);
+                if (value != null)
+                    output.add(value);
+            }
+
+            return output;
+        }
+
+        @Override public Set<MappedRow> traverseThrough(SchemaPath path) {
+            Set<MappedRow> current = Set.of(this);
+
+            for (final var edge : path.edges())
+                current = collectCodomainRows(current, edge.direction(), edge.absoluteSignature());
+
+            return current;
+        }
+
+        @Override public Set<MappedRow> traverseThrough(Signature signature) {
+            Set<MappedRow> current = Set.of(this);
+
+            for (final var base : signature.toBases())
+                current = collectCodomainRows(current, !base.isDual(), base.toAbsolute());
+
+            return current;
+        }
+
+        private Set<MappedRow> collectCodomainRows(Collection<MappedRow> prev, boolean direction, BaseSignature absoluteBase) {
+            final var next = new TreeSet<MappedRow>();
+            final var morphism = morphisms.get(absoluteBase);
+            if (morphism == null)
+                return next;
+
+            if (direction) {
+                for (final var row : prev) {
+                    final int cod = morphism.getCod(row.index);
+                    if (cod != MISSING)
+                        next.add(new MappedRow(morphism.cod, cod));
+                }
+            }
+            else {
+                for (final var row : prev) {
+                    final long start = morphism.toOffsets.getLong(row.index);
+                    final long end = morphism.toOffsets.getLong(row.index + 1L);
+                    for (long i = start; i < end; i++)
+                        next.add(new MappedRow(morphism.dom, morphism.to.getInt(i)));
+                }
+            }
+
+            return next;
+        }
+
+        @Override public int compareTo(MappedRow other) {
+            return Integer.compare(index, other.index);
+        }
+
+        @Override public boolean equals(Object object) {
+            return object instanceof MappedRow row && row.objex == objex && row.index == index;
+        }
+
+        @Override public int hashCode() {
+            return index;
+        }
+
+        @Override public String toString() {
+            return superId() + "#" + surrogateId();
+        }
+
+    }
+
+    // #region Opening
+
+    public static MappedInstance open(Path directory, SchemaCategory schema) throws IOException {
+        final Metadata metadata = mapper.readValue(directory.resolve(METADATA_FILE).toFile(), Metadata.class);
+
+        final var output = new MappedInstance(
+            directory,
+            schema,
+            MappedSegments.open(directory, "values"),
+            MappedSegments.open(directory, "value-offsets")
+        );
+
+        for (final var objexMetadata : metadata.objexes) {
+            final var name = objexFileName(objexMetadata.key);
+            final var objex = output.new MappedObjex(
+                objexMetadata,
+                MappedSegments.open(directory, name),
+                MappedSegments.open(directory, name + "-ids"),
+                MappedSegments.open(directory, name + "-pending-offsets"),
+                MappedSegments.open(directory, name + "-pending")
+            );
+            output.objexes.put(objexMetadata.key, objex);
+        }
+
+        for (final var signature : metadata.morphisms) {
+            final var schemaMorphism = schema.getMorphism(signature.getLast());
+            final var name = morphismFileName(schemaMorphism.signature());
+            output.morphisms.put(schemaMorphism.signature(), new MappedMorphism(
+                output.objexes.get(schemaMorphism.dom().key()),
+                output.objexes.get(schemaMorphism.cod().key()),
+                MappedSegments.open(directory, name + "-from"),
+                MappedSegments.open(directory, name + "-to-offsets"),
+                MappedSegments.open(directory, name + "-to")
+            ));
+        }
+
+        return output;
+    }
+
+    private static String objexFileName(Key key) {
+        return "objex-" + key.getValue();
+    }
+
+    private static String morphismFileName(BaseSignature signature) {
+        return "morphism-" + signature;
+    }
+
+    // #endregion
+    // #region Writing
+
+    /**
+     * Writes the instance to the directory (which is created if needed) and opens it.
+     */
+    public static MappedInstance write(InstanceCategory instance, Path directory) throws IOException {
+        return write(instance, directory, MappedSegments.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize The maximal size of one file (in bytes). Has to be divisible by 8.
+     */
+    public static MappedInstance write(InstanceCategory instance, Path directory, long segmentSize) throws IOException {
+        new Writer(instance, directory, segmentSize).write();
+        return open(directory, instance.schema());
+    }
+
+    private static class Writer {
+
+        private final InstanceCategory instance;
+        private final Path directory;
+        private final long segmentSize;
+        private final ValueDictionary dictionary;
+
+        /** For each objex, maps the surrogate ids of the rows to their indexes in the table. */
+        private final Map<Key, Int2IntOpenHashMap> rowIndexes = new TreeMap<>();
+        /** For each objex, its rows in the order of the table. */
+        private final Map<Key, List<DomainRow>> sortedRows = new TreeMap<>();
+
+        Writer(InstanceCategory instance, Path directory, long segmentSize) {
+            this.instance = instance;
+            this.directory = directory;
+            this.segmentSize = segmentSize;
+            this.dictionary = instance.dictionary();
+        }
+
+        void write() throws IOException {
+            Files.createDirectories(directory);
+
+            final var objexesMetadata = new ArrayList<ObjexMetadata>();
+            for (final var objex : instance.allObjexes())
+                objexesMetadata.add(writeObjex(objex));
+
+            final var morphismsMetadata = new ArrayList<Signature>();
+            for (final var morphism : instance.allMorphisms()) {
+                if (writeMorphism(morphism))
+                    morphismsMetadata.add(morphism.schema.signature());
+            }
+
+            // The values go last because some of them might be encoded only while writing the rows.
+            writeValues();
+
+            mapper.writeValue(directory.resolve(METADATA_FILE).toFile(), new Metadata(objexesMetadata, morphismsMetadata));
+        }
+
+        /** The rows are usually already sorted by their surrogate ids, but it isn't guaranteed. */
+        private List<DomainRow> sortedRows(InstanceObjex objex) {
+            return sortedRows.computeIfAbsent(objex.schema.key(), key -> {
+                final var output = new ArrayList<DomainRow>();
+                objex.allRows().forEach(output::add);
+                output.sort(Comparator.naturalOrder());
+                return output;
+            });
+        }
+
+        private ObjexMetadata writeObjex(InstanceObjex objex) throws IOException {
+            final var layout = objex.layout();
+            final var superId = new ArrayList<Signature>();
+            final var superIdColumns = new Object2IntOpenHashMap<Signature>();
+            superIdColumns.defaultReturnValue(MISSING);
+            for (int i = 0; i < layout.size(); i++) {
+                superIdColumns.put(layout.signature(i), i);
+                superId.add(layout.signature(i));
+            }
+
+            final var properties = new ArrayList<BaseSignature>(objex.propertySignatures());
+
+            final var indexes = new Int2IntOpenHashMap();
+            indexes.defaultReturnValue(MISSING);
+            rowIndexes.put(objex.schema.key(), indexes);
+
+            final var name = objexFileName(objex.schema.key());
+            try (
+                var table = new MappedSegments.Writer(directory, name, segmentSize);
+                var ids = new MappedSegments.Writer(directory, name + "-ids", segmentSize);
+                var pendingOffsets = new MappedSegments.Writer(directory, name + "-pending-offsets", segmentSize);
+                var pending = new MappedSegments.Writer(directory, name + "-pending", segmentSize);
+            ) {
+                long pendingOffset = 0;
+                for (final DomainRow row : sortedRows(objex)) {
+                    indexes.put(row.surrogateId, indexes.size());
+                    ids.writeInt(row.surrogateId);
+
+                    for (final var signature : superId)
+                        table.writeInt(row.superId.getCode(signature, dictionary));
+                    for (final var signature : properties)
+                        table.writeInt(row.getPropertyCode(signature, dictionary));
+
+                    pendingOffsets.writeLong(pendingOffset);
+                    for (final var signature : row.pendingReferences) {
+                        // The references are always from the superId (which is a part of the layout).
+                        final int column = superIdColumns.getInt(signature);
+                        if (column == MISSING)
+                            throw new IllegalStateException("A pending reference " + signature + " isn't in the superId of objex " + objex.schema.key());
+
+                        pending.writeInt(column);
+                        pendingOffset++;
+                    }
+                }
+                pendingOffsets.writeLong(pendingOffset);
+            }
+
+            final var nextRowId = objex.rowIdGenerator.serialize().nextValue();
+
+            return new ObjexMetadata(objex.schema.key(), indexes.size(), superId, List.copyOf(properties), nextRowId);
+        }
+
+        private static int getRowIndex(Int2IntOpenHashMap indexes, DomainRow row, InstanceMorphism morphism) {
+            final int index = indexes.get(row.surrogateId);
+            if (index == MISSING)
+                throw new IllegalStateException("A mapping of morphism " + morphism.schema.signature() + " ends in a row that isn't in its objex: " + row);
+
+            return index;
+        }
+
+        private boolean writeMorphism(InstanceMorphism morphism) throws IOException {
+            final var signature = morphism.schema.signature();
+            final var dom = instance.getObjex(morphism.schema.dom());
+            final var cod = instance.getObjex(morphism.schema.cod());
+            // Only the morphisms between entities have mappings.
+            if (dom == null || cod == null)
+                return false;
+
+            final var domIndexes = rowIndexes.get(dom.schema.key());
+            final var codIndexes = rowIndexes.get(cod.schema.key());
+            final var name = morphismFileName(signature);
+
+            try (
+                var from = new MappedSegments.Writer(directory, name + "-from", segmentSize);
+            ) {
+                for (final DomainRow row : sortedRows(dom)) {
+                    final var mapping = row.getMappingFrom(signature);
+                    from.writeInt(mapping == null ? MISSING : getRowIndex(codIndexes, mapping.cod(), morphism));
+                }
+            }
+
+            try (
+                var toOffsets = new MappedSegments.Writer(directory, name + "-to-offsets", segmentSize);
+                var to = new MappedSegments.Writer(directory, name + "-to", segmentSize);
+            ) {
+                long offset = 0;
+                for (final DomainRow row : sortedRows(cod)) {
+                    toOffsets.writeLong(offset);
+                    final int[] domRows = row.getMappingsTo(signature).stream()
+                        .mapToInt(mapping -> getRowIndex(domIndexes, mapping.dom(), morphism))
+                        .sorted().toArray();
+
+                    for (final int domRow : domRows)
+                        to.writeInt(domRow);
+
+                    offset += domRows.length;
+                }
+                toOffsets.writeLong(offset);
+            }
+
+            return true;
+        }
+
+        private void writeValues() throws IOException {
+            try (
+                var blob = new MappedSegments.Writer(directory, "values", segmentSize);
+                var offsets = new MappedSegments.Writer(directory, "value-offsets", segmentSize);
+            ) {
+                long offset = 0;
+                for (int code = 0; code < dictionary.size(); code++) {
+                    final var bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+                    offsets.writeLong(offset);
+                    blob.writeBytes(bytes);
+                    offset += bytes.length;
+                }
+                offsets.writeLong(offset);
+            }
+        }
+
+    }
+
+    // #endregion
+
+}
@@ -0,0 +1,211 @@
+package cz.matfyz.core.instance;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only array of ints, longs or bytes that is stored in a sequence of memory-mapped files (segments).
+ * A single mapped buffer can't be larger than 2 GB, so the data is split into segments of the same size (except for the last one).
+ * The memory is managed by the OS page cache, not by the JVM heap.
+ * The reads are thread-safe. However, the segments must not be read after they're unmapped.
+ */
+final class MappedSegments {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedSegments.class);
+
+    /** Has to be divisible by 8 so that no int or long is split between two segments. */
+    static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long segmentSize;
+    private final long size;
+
+    private MappedSegments(MappedByteBuffer[] segments, long segmentSize, long size) {
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.size = size;
+    }
+
+    private static Path segmentPath(Path directory, String name, int index) {
+        return directory.resolve(name + "." + index + ".seg");
+    }
+
+    static MappedSegments open(Path directory, String name) throws IOException {
+        final var segments = new ArrayList<MappedByteBuffer>();
+        long segmentSize = 0;
+        long size = 0;
+
+        for (int i = 0; Files.exists(segmentPath(directory, name, i)); i++) {
+            try (
+                FileChannel channel = FileChannel.open(segmentPath(directory, name, i), StandardOpenOption.READ);
+            ) {
+                final long channelSize = channel.size();
+                // All segments except the last one have the same size.
+                if (i == 0)
+                    segmentSize = channelSize;
+
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channelSize));
+                size += channelSize;
+            }
+        }
+
+        return new MappedSegments(segments.toArray(MappedByteBuffer[]::new), Math.max(segmentSize, 1), size);
+    }
+
+    /** The size in bytes. */
+    long size() {
+        return size;
+    }
+
+    int getInt(long index) {
+        final long offset = index * Integer.BYTES;
+        return segments[(int) (offset / segmentSize)].getInt((int) (offset % segmentSize));
+    }
+
+    long getLong(long index) {
+        final long offset = index * Long.BYTES;
+        return segments[(int) (offset / segmentSize)].getLong((int) (offset % segmentSize));
+    }
+
+    /** Unlike the numbers, the bytes might be split between segments. */
+    byte[] getBytes(long offset, int length) {
+        final var output = new byte[length];
+        int written = 0;
+
+        while (written < length) {
+            final long position = offset + written;
+            final var segment = segments[(int) (position / segmentSize)];
+            final int segmentOffset = (int) (position % segmentSize);
+            final int chunk = (int) Math.min(length - written, segment.capacity() - segmentOffset);
+
+            segment.get(segmentOffset, output, written, chunk);
+            written += chunk;
+        }
+
+        return output;
+    }
+
+    /**
+     * Releases the mapped memory right away (otherwise, it would be released only when the buffers are garbage collected, which might be never).
+     * If that isn't possible, it's left to the garbage collector.
+     */
+    void unmap() {
+        for (int i = 0; i < segments.length; i++) {
+            final var segment = segments[i];
+            segments[i] = null;
+            if (segment != null && invokeCleaner != null)
+                invokeCleaner(segment);
+        }
+    }
+
+    /** The JDK can't unmap a buffer by a public API (unless the buffer is created by the still-preview foreign memory API). So the internal cleaner is used instead. */
+    private static final @Nullable Object unsafe;
+    private static final @Nullable Method invokeCleaner;
+
+    static {
+        Object foundUnsafe = null;
+        Method foundInvokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            foundUnsafe = field.get(null);
+            foundInvokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("The mapped segments can't be unmapped explicitly, they will be unmapped by the garbage collector.", e);
+            foundUnsafe = null;
+            foundInvokeCleaner = null;
+        }
+        unsafe = foundUnsafe;
+        invokeCleaner = foundInvokeCleaner;
+    }
+
+    private static void invokeCleaner(MappedByteBuffer segment) {
+        try {
+            invokeCleaner.invoke(unsafe, segment);
+        }
+        catch (ReflectiveOperationException e) {
+            LOGGER.warn("Can't unmap a segment.", e);
+        }
+    }
+
+    /**
+     * Writes the data sequentially. A new segment file is started whenever the current one is full.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path directory;
+        private final String name;
+        private final long segmentSize;
+
+        private DataOutputStream output;
+        private int segmentIndex = 0;
+        private long segmentPosition = 0;
+
+        Writer(Path directory, String name, long segmentSize) throws IOException {
+            this.directory = directory;
+            this.name = name;
+            this.segmentSize = segmentSize;
+            this.output = createOutput();
+        }
+
+        private DataOutputStream createOutput() throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segmentPath(directory, name, segmentIndex)), 1 << 16));
+        }
+
+        private void ensureSpace() throws IOException {
+            if (segmentPosition < segmentSize)
+                return;
+
+            output.close();
+            segmentIndex++;
+            segmentPosition = 0;
+            output = createOutput();
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureSpace();
+            output.writeInt(value);
+            segmentPosition += Integer.BYTES;
+        }
+
+        void writeLong(long value) throws IOException {
+            ensureSpace();
+            output.writeLong(value);
+            segmentPosition += Long.BYTES;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            int written = 0;
+            while (written < bytes.length) {
+                ensureSpace();
+                final int chunk = (int) Math.min(bytes.length - written, segmentSize - segmentPosition);
+                output.write(bytes, written, chunk);
+                written += chunk;
+                segmentPosition += chunk;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            output.close();
+        }
+
+    }
+
+}
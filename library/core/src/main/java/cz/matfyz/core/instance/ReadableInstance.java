@@ -0,0 +1,16 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.schema.SchemaCategory;
+import cz.matfyz.core.schema.SchemaObjex;
+
+/**
+ * A read-only view of an instance. Implemented by the on-heap {@link InstanceCategory} and by the off-heap {@link MappedInstance}.
+ */
+public interface ReadableInstance {
+
+    SchemaCategory schema();
+
+    /** All rows of the objex (it has to be an entity). */
+    Iterable<? extends InstanceRow> allRows(SchemaObjex objex);
+
+}
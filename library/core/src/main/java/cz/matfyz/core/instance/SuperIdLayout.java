@@ -0,0 +1,160 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.identifiers.SignatureId;
+import cz.matfyz.core.schema.SchemaObjex;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Assigns a dense slot to each signature of a superId so that the {@link SuperIdValues} can store their values in an array.
+ * The slots are ordered the same way as the signatures.
+ * Each {@link InstanceObjex} has its own layout (with all signatures from its superId and all its ids). The values created without a layout get a loose one that grows as needed.
+ * Immutable.
+ */
+public final class SuperIdLayout implements Serializable {
+
+    /** The presence of the values in the slots below this one is stored in a bitmask. The other slots (rarely needed) mark their presence in the values themselves - see {@link SuperIdValues}. */
+    public static final int MASKED_SIZE = Long.SIZE;
+
+    /** Up to this size, the slots are found by a linear scan (which is faster than hashing). */
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private final Signature[] signatures;
+    private final @Nullable Object2IntOpenHashMap<Signature> slots;
+    /** If set, the values are stored as codes from this dictionary. */
+    private final @Nullable ValueDictionary dictionary;
+
+    private final SignatureId[] ids;
+    /** For each id, the bits of the slots of its signatures. Only the masked slots are included (so it's complete only if {@link #isMasked()}). */
+    private final long[] idMasks;
+    /** For each id, the slots of its signatures (in the order of the signatures). */
+    private final int[][] idSlots;
+
+    private SuperIdLayout(Collection<Signature> signatures, List<SignatureId> ids, @Nullable ValueDictionary dictionary) {
+        this.dictionary = dictionary;
+
+        final var sorted = new TreeSet<>(signatures);
+        for (final var id : ids)
+            id.signatures().forEach(sorted::add);
+
+        this.signatures = sorted.toArray(Signature[]::new);
+
+        if (this.signatures.length > LINEAR_SCAN_LIMIT) {
+            slots = new Object2IntOpenHashMap<>(this.signatures.length);
+            slots.defaultReturnValue(-1);
+            for (int i = 0; i < this.signatures.length; i++)
+                slots.put(this.signatures[i], i);
+        }
+        else {
+            slots = null;
+        }
+
+        this.ids = ids.toArray(SignatureId[]::new);
+        this.idMasks = new long[this.ids.length];
+        this.idSlots = new int[this.ids.length][];
+        for (int i = 0; i < this.ids.length; i++) {
+            final var id = this.ids[i];
+            final var idSlot = new int[id.size()];
+            int j = 0;
+            for (final var signature : id.signatures()) {
+                final int slot = slot(signature);
+                idSlot[j++] = slot;
+                if (slot < MASKED_SIZE)
+                    idMasks[i] |= 1L << slot;
+            }
+            idSlots[i] = idSlot;
+        }
+    }
+
+    static SuperIdLayout forObjex(SchemaObjex objex, ValueDictionary dictionary) {
+        final var ids = new ArrayList<SignatureId>();
+        objex.ids().signatureIds().forEach(ids::add);
+
+        return new SuperIdLayout(objex.superId(), ids, dictionary);
+    }
+
+    public static SuperIdLayout of(Collection<Signature> signatures) {
+        return new SuperIdLayout(signatures, List.of(), null);
+    }
+
+    static final SuperIdLayout EMPTY = of(List.of());
+
+    static final SuperIdLayout EMPTY_SIGNATURE = new SuperIdLayout(List.of(Signature.empty()), List.of(SignatureId.empty()), null);
+
+    public int size() {
+        return signatures.length;
+    }
+
+    /** Whether the presence of all slots is stored in the bitmask. */
+    boolean isMasked() {
+        return signatures.length <= MASKED_SIZE;
+    }
+
+    @Nullable ValueDictionary dictionary() {
+        return dictionary;
+    }
+
+    public Signature signature(int slot) {
+        return signatures[slot];
+    }
+
+    /** Returns the slot of the signature or -1 if there isn't any. */
+    public int slot(Signature signature) {
+        if (slots != null)
+            return slots.getInt(signature);
+
+        for (int i = 0; i < signatures.length; i++)
+            if (signatures[i] == signature || signatures[i].equals(signature))
+                return i;
+
+        return -1;
+    }
+
+    /** Returns a new layout with the additional signature. The ids and the dictionary are kept (the slots might change). */
+    SuperIdLayout extend(Signature signature) {
+        final var extended = Arrays.copyOf(signatures, signatures.length + 1);
+        extended[signatures.length] = signature;
+
+        return new SuperIdLayout(Arrays.asList(extended), Arrays.asList(ids), dictionary);
+    }
+
+    // #region Ids
+
+    /** Returns the index of the id in this layout or -1 if the id isn't known here. */
+    int idIndex(SignatureId id) {
+        // The ids are usually the same instances (from the schema objex) so we check the identity first.
+        for (int i = 0; i < ids.length; i++)
+            if (ids[i] == id)
+                return i;
+
+        for (int i = 0; i < ids.length; i++)
+            if (ids[i].equals(id))
+                return i;
+
+        return -1;
+    }
+
+    long idMask(int idIndex) {
+        return idMasks[idIndex];
+    }
+
+    int[] idSlots(int idIndex) {
+        return idSlots[idIndex];
+    }
+
+    // #endregion
+
+    @Override public String toString() {
+        return Arrays.toString(signatures);
+    }
+
+}
@@ -7,6 +7,7 @@ import cz.matfyz.core.identifiers.SignatureId;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -23,48 +24,150 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import it.unimi.dsi.fastutil.objects.ObjectArraySet;
+import it.unimi.dsi.fastutil.objects.ObjectSets;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Immutable.
+ * The values are stored in an array, indexed by the slots of a {@link SuperIdLayout}. Which slots are filled is stored in a bitmask.
+ * The bitmask covers only the first {@link SuperIdLayout#MASKED_SIZE} slots. The other slots (there are such only in very large superIds) are filled if they contain a value (i.e., a non-null string or a code other than {@link #MISSING_CODE}).
+ * If the layout has a {@link ValueDictionary} (which is the case for all rows of an instance), only the codes of the values are stored.
  */
 @JsonSerialize(using = SuperIdValues.Serializer.class)
 @JsonDeserialize(using = SuperIdValues.Deserializer.class)
 public class SuperIdValues implements Serializable {
 
     /** Actually immutable (except for a very specific use case in the {@link Mutator} class). */
-    protected Map<Signature, String> tuples;
+    protected SuperIdLayout layout;
+    /** Indexed by the slots of the layout. Used only if the layout doesn't have a dictionary. */
+    protected String @Nullable [] values;
+    /** Indexed by the slots of the layout. Used only if the layout has a dictionary. */
+    protected int @Nullable [] codes;
+    /** The n-th bit is set if the n-th slot is filled. */
+    protected long presence;
+
+    /** Marks the empty unmasked slots in the codes. */
+    private static final int MISSING_CODE = -1;
+
+    private SuperIdValues(SuperIdLayout layout, String @Nullable [] values, int @Nullable [] codes, long presence) {
+        this.layout = layout;
+        this.values = values;
+        this.codes = codes;
+        this.presence = presence;
+    }
+
+    /** Creates empty values with arrays suitable for the layout. */
+    private SuperIdValues(SuperIdLayout layout) {
+        this(
+            layout,
+            layout.dictionary() == null ? new String[layout.size()] : null,
+            layout.dictionary() == null ? null : createCodes(layout),
+            0L
+        );
+    }
+
+    private static int[] createCodes(SuperIdLayout layout) {
+        final var codes = new int[layout.size()];
+        if (!layout.isMasked())
+            Arrays.fill(codes, SuperIdLayout.MASKED_SIZE, codes.length, MISSING_CODE);
 
-    private SuperIdValues(Map<Signature, String> map) {
-        this.tuples = map;
+        return codes;
     }
 
     public static SuperIdValues fromEmptySignature(String value) {
-        return new Mutator().add(Signature.empty(), value).build();
+        return new SuperIdValues(SuperIdLayout.EMPTY_SIGNATURE, new String[] { value }, null, 1L);
     }
 
     public static SuperIdValues empty() {
-        return new SuperIdValues(new TreeMap<>());
+        return new SuperIdValues(SuperIdLayout.EMPTY);
+    }
+
+    @Nullable ValueDictionary dictionary() {
+        return layout.dictionary();
+    }
+
+    private boolean isFilled(int slot) {
+        if (slot < SuperIdLayout.MASKED_SIZE)
+            return (presence & (1L << slot)) != 0;
+
+        return codes != null ? codes[slot] != MISSING_CODE : values[slot] != null;
+    }
+
+    /** Returns the first filled slot that isn't lower than the given one, or -1 if there isn't any. */
+    private int nextFilledSlot(int from) {
+        if (from < SuperIdLayout.MASKED_SIZE) {
+            final long bits = presence & (-1L << from);
+            if (bits != 0)
+                return Long.numberOfTrailingZeros(bits);
+
+            from = SuperIdLayout.MASKED_SIZE;
+        }
+
+        for (int slot = from; slot < layout.size(); slot++)
+            if (isFilled(slot))
+                return slot;
+
+        return -1;
+    }
+
+    private String valueAt(int slot) {
+        return codes != null ? layout.dictionary().decode(codes[slot]) : values[slot];
+    }
+
+    /** If both values use the same dictionary, the codes are compared instead of the values. */
+    private boolean isSameValue(int slot, SuperIdValues other, int otherSlot) {
+        if (codes != null && other.codes != null && layout.dictionary() == other.layout.dictionary())
+            return codes[slot] == other.codes[otherSlot];
+
+        return Objects.equals(valueAt(slot), other.valueAt(otherSlot));
+    }
+
+    /** The code is used directly if there is a dictionary. So the hashes are comparable only between values with the same dictionary. */
+    private int hashAt(int slot) {
+        return codes != null ? codes[slot] : Objects.hashCode(values[slot]);
     }
 
     public boolean hasSignature(Signature signature) {
-        return tuples.containsKey(signature);
+        final int slot = layout.slot(signature);
+        return slot != -1 && isFilled(slot);
     }
 
     public Set<Signature> signatures() {
-        return tuples.keySet();
+        final var output = new Signature[size()];
+        int i = 0;
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1))
+            output[i++] = layout.signature(slot);
+
+        // The slots are ordered the same way as the signatures so the set is sorted.
+        return ObjectSets.unmodifiable(ObjectArraySet.ofUnchecked(output));
     }
 
     public @Nullable String getValue(Signature signature) {
-        return tuples.get(signature);
+        final int slot = layout.slot(signature);
+        return (slot == -1 || !isFilled(slot)) ? null : valueAt(slot);
+    }
+
+    /** Returns the code of the value in the given dictionary (the value is encoded if needed) or -1 if there isn't any value. */
+    int getCode(Signature signature, ValueDictionary dictionary) {
+        final int slot = layout.slot(signature);
+        if (slot == -1 || !isFilled(slot))
+            return -1;
+
+        return (codes != null && layout.dictionary() == dictionary) ? codes[slot] : dictionary.encode(valueAt(slot));
     }
 
     public int size() {
-        return tuples.size();
+        int size = Long.bitCount(presence);
+        for (int slot = SuperIdLayout.MASKED_SIZE; slot < layout.size(); slot++)
+            if (isFilled(slot))
+                size++;
+
+        return size;
     }
 
     public boolean isEmpty() {
-        return tuples.isEmpty();
+        return nextFilledSlot(0) == -1;
     }
 
     public boolean containsSomeIds(ObjexIds ids) {
@@ -78,9 +181,23 @@ public class SuperIdValues implements Serializable {
     }
 
     public boolean containsId(SignatureId id) {
+        final int idIndex = layout.idIndex(id);
+        if (idIndex != -1) {
+            final long mask = layout.idMask(idIndex);
+            if ((presence & mask) != mask)
+                return false;
+            if (layout.isMasked())
+                return true;
+
+            for (final int slot : layout.idSlots(idIndex))
+                if (!isFilled(slot))
+                    return false;
+
+            return true;
+        }
+
         for (final var signature : id.signatures()) {
-            final var containsSignature = tuples.containsKey(signature);
-            if (!containsSignature)
+            if (!hasSignature(signature))
                 return false;
         }
 
@@ -109,13 +226,102 @@ public class SuperIdValues implements Serializable {
         return output;
     }
 
+    /**
+     * Returns the values of this object in the given layout (the values are encoded by its dictionary, if there is one).
+     * The {@link InstanceObjex} uses this to make all its rows share the same layout. If some signatures aren't in the layout, it's extended.
+     */
+    SuperIdValues withLayout(SuperIdLayout target) {
+        if (layout == target)
+            return this;
+
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+            final var signature = layout.signature(slot);
+            if (target.slot(signature) == -1)
+                target = target.extend(signature);
+        }
+
+        final var output = new Mutator(target);
+        output.add(this);
+
+        return output.build();
+    }
+
+    /**
+     * Like {@link #withLayout(SuperIdLayout)}, but the dictionary of the target isn't changed. The values that aren't in it are left out (no row can contain them anyway).
+     * Use this for lookups - otherwise, each missed lookup would add its values to the dictionary.
+     */
+    SuperIdValues withLayoutForLookup(SuperIdLayout target) {
+        if (layout == target)
+            return this;
+
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+            final var signature = layout.signature(slot);
+            if (target.slot(signature) == -1)
+                target = target.extend(signature);
+        }
+
+        final var output = new Mutator(target);
+        output.addKnown(this);
+
+        return output.build();
+    }
+
+    // #region Id hashing
+
+    /**
+     * Hash of the values of the given id. The values have to contain the whole id.
+     * It isn't cached - the domain stores keep the hashes of their rows themselves (and a cache in each row would cost more memory than the stores save).
+     * The hashes can be compared only between values with the same dictionary (or without any).
+     */
+    int idHash(SignatureId id) {
+        final int idIndex = layout.idIndex(id);
+        if (idIndex == -1)
+            return computeIdHash(id);
+
+        int hash = 1;
+        for (final int slot : layout.idSlots(idIndex))
+            hash = 31 * hash + hashAt(slot);
+
+        return hash;
+    }
+
+    private int computeIdHash(SignatureId id) {
+        int hash = 1;
+        for (final var signature : id.signatures())
+            hash = 31 * hash + hashAt(layout.slot(signature));
+
+        return hash;
+    }
+
+    /** Whether the values of the given id are the same in both objects. */
+    boolean idEquals(SuperIdValues other, SignatureId id) {
+        if (layout == other.layout) {
+            final int idIndex = layout.idIndex(id);
+            if (idIndex != -1) {
+                for (final int slot : layout.idSlots(idIndex))
+                    if (!isSameValue(slot, other, slot))
+                        return false;
+
+                return true;
+            }
+        }
+
+        for (final var signature : id.signatures())
+            if (!isSameValue(layout.slot(signature), other, other.layout.slot(signature)))
+                return false;
+
+        return true;
+    }
+
+    // #endregion
+
     public static record IdComparator(
         SignatureId id
     ) implements Comparator<SuperIdValues> {
 
         @Override public int compare(SuperIdValues a, SuperIdValues b) {
             for (final Signature signature : id.signatures()) {
-                final int result = a.tuples.get(signature).compareTo(b.tuples.get(signature));
+                final int result = a.getValue(signature).compareTo(b.getValue(signature));
                 if (result != 0)
                     return result;
             }
@@ -128,27 +334,121 @@ public class SuperIdValues implements Serializable {
     public static class Mutator extends SuperIdValues {
 
         public Mutator() {
-            super(new TreeMap<>());
+            this(SuperIdLayout.EMPTY);
+        }
+
+        /** Use the layout of the objex (if known) so that the values don't have to be moved around later. */
+        public Mutator(SuperIdLayout layout) {
+            super(layout);
         }
 
         public Mutator(@Nullable SuperIdValues input) {
-            super(input == null ? new TreeMap<>() : new TreeMap<>(input.tuples));
+            super(
+                input == null ? SuperIdLayout.EMPTY : input.layout,
+                input == null ? new String[0] : (input.values == null ? null : input.values.clone()),
+                input == null ? null : (input.codes == null ? null : input.codes.clone()),
+                input == null ? 0L : input.presence
+            );
         }
 
         public Mutator add(Signature signature, String value) {
-            tuples.put(signature, value);
+            int slot = layout.slot(signature);
+            if (slot == -1) {
+                extendLayout(signature);
+                slot = layout.slot(signature);
+            }
+
+            if (codes != null)
+                codes[slot] = layout.dictionary().encode(value);
+            else
+                values[slot] = value;
+
+            markFilled(slot);
             return this;
         }
 
+        private void addKnown(Signature signature, String value) {
+            final int code = layout.dictionary().find(value);
+            if (code == ValueDictionary.NOT_FOUND)
+                return;
+
+            // The layout already contains all signatures (see the caller).
+            final int slot = layout.slot(signature);
+            codes[slot] = code;
+            markFilled(slot);
+        }
+
+        /** The unmasked slots are filled just by setting their values. */
+        private void markFilled(int slot) {
+            if (slot < SuperIdLayout.MASKED_SIZE)
+                presence |= 1L << slot;
+        }
+
         public Mutator add(SuperIdValues other) {
-            tuples.putAll(other.tuples);
+            return add(other, false);
+        }
+
+        /** Adds only the values that are already in the dictionary (if there is one). */
+        private Mutator addKnown(SuperIdValues other) {
+            return add(other, true);
+        }
+
+        private Mutator add(SuperIdValues other, boolean isOnlyKnown) {
+            if (other.layout == layout) {
+                for (int slot = other.nextFilledSlot(0); slot != -1; slot = other.nextFilledSlot(slot + 1)) {
+                    if (codes != null)
+                        codes[slot] = other.codes[slot];
+                    else
+                        values[slot] = other.values[slot];
+                }
+                presence |= other.presence;
+                return this;
+            }
+
+            final boolean isSameDictionary = codes != null && other.codes != null && layout.dictionary() == other.layout.dictionary();
+
+            for (int otherSlot = other.nextFilledSlot(0); otherSlot != -1; otherSlot = other.nextFilledSlot(otherSlot + 1)) {
+                final var signature = other.layout.signature(otherSlot);
+                if (!isSameDictionary) {
+                    if (isOnlyKnown && codes != null)
+                        addKnown(signature, other.valueAt(otherSlot));
+                    else
+                        add(signature, other.valueAt(otherSlot));
+                    continue;
+                }
+
+                // There is no need to decode and encode the value again.
+                int slot = layout.slot(signature);
+                if (slot == -1) {
+                    extendLayout(signature);
+                    slot = layout.slot(signature);
+                }
+                codes[slot] = other.codes[otherSlot];
+                markFilled(slot);
+            }
+
             return this;
         }
 
+        private void extendLayout(Signature signature) {
+            final var extended = new Mutator(layout.extend(signature));
+            extended.add(this);
+            layout = extended.layout;
+            values = extended.values;
+            codes = extended.codes;
+            presence = extended.presence;
+        }
+
+        @Override int idHash(SignatureId id) {
+            // The mutator can change its layout, so the slots of the ids can't be used.
+            return super.computeIdHash(id);
+        }
+
         public SuperIdValues build() {
-            final var output = new SuperIdValues(tuples);
+            final var output = new SuperIdValues(layout, values, codes, presence);
             // Prevent further modifications. Not the most elegant way, but it works.
-            tuples = null;
+            values = null;
+            codes = null;
             return output;
         }
 
@@ -158,12 +458,37 @@ public class SuperIdValues implements Serializable {
         if (!(object instanceof SuperIdValues other))
             return false;
 
-        return Objects.equals(tuples, other.tuples);
+        // The unmasked slots of the other values might be filled even if they aren't filled here.
+        if (presence == other.presence && layout == other.layout && (layout.isMasked() || size() == other.size())) {
+            for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+                if (!isSameValue(slot, other, slot))
+                    return false;
+            }
+
+            return true;
+        }
+
+        if (size() != other.size())
+            return false;
+
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+            final var signature = layout.signature(slot);
+            if (!other.hasSignature(signature) || !Objects.equals(valueAt(slot), other.getValue(signature)))
+                return false;
+        }
+
+        return true;
     }
 
     @Override public int hashCode() {
+        // The same as the hash of the signature -> value map. It can't depend on the layout.
+        int mapHash = 0;
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+            mapHash += layout.signature(slot).hashCode() ^ Objects.hashCode(valueAt(slot));
+        }
+
         int hash = 3;
-        hash = 83 * hash + Objects.hashCode(tuples);
+        hash = 83 * hash + mapHash;
         return hash;
     }
 
@@ -182,14 +507,14 @@ public class SuperIdValues implements Serializable {
 
         sb.append("{");
         final var SEPARATOR = ", ";
-        for (final var entry : tuples.entrySet()) {
-            final var signature = entry.getKey();
-            final var value = (signature.isEmpty() && isTest) ? "<generated>" : entry.getValue();
+        for (int slot = nextFilledSlot(0); slot != -1; slot = nextFilledSlot(slot + 1)) {
+            final var signature = layout.signature(slot);
+            final var value = (signature.isEmpty() && isTest) ? "<generated>" : valueAt(slot);
             sb
                 .append(signature).append(": \"").append(value).append("\"")
                 .append(SEPARATOR);
         }
-        if (!tuples.isEmpty())
+        if (!isEmpty())
             sb.setLength(sb.length() - SEPARATOR.length());
 
         sb.append("}");
@@ -205,10 +530,10 @@ public class SuperIdValues implements Serializable {
 
         @Override public void serialize(SuperIdValues values, JsonGenerator generator, SerializerProvider provider) throws IOException {
             generator.writeStartArray();
-            for (final var entry : values.tuples.entrySet()) {
+            for (int slot = values.nextFilledSlot(0); slot != -1; slot = values.nextFilledSlot(slot + 1)) {
                 generator.writeStartObject();
-                generator.writePOJOField("signature", entry.getKey());
-                generator.writeStringField("value", entry.getValue());
+                generator.writePOJOField("signature", values.layout.signature(slot));
+                generator.writeStringField("value", values.valueAt(slot));
                 generator.writeEndObject();
             }
             generator.writeEndArray();
@@ -232,7 +557,11 @@ public class SuperIdValues implements Serializable {
                 tuples.put(signature, value);
             }
 
-            return new SuperIdValues(tuples);
+            final var layout = SuperIdLayout.of(tuples.keySet());
+            final var output = new Mutator(layout);
+            tuples.forEach(output::add);
+
+            return output.build();
         }
     }
 
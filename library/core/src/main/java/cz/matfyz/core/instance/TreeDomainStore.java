@@ -0,0 +1,73 @@
+package cz.matfyz.core.instance;
+
+import cz.matfyz.core.identifiers.SignatureId;
+import cz.matfyz.core.instance.SuperIdValues.IdComparator;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The original domain storage. Both the rows and the ids are kept in trees.
+ * @see DomainStorage#TREE
+ */
+class TreeDomainStore implements DomainStore {
+
+    /**
+     * All rows in the domain of the objex (even those without any id).
+     * We need this because some rows don't have any id (or we didn't discover the ids yet).
+     */
+    private final Set<DomainRow> domain = new TreeSet<>();
+
+    /**
+     * All rows in the domain of the objex (which have at least one id).
+     * The first map is indexed by the different identifiers the objex can have (they have to be signatureIds).
+     * The second map is the actual rows, indexed by actual values of these identifiers.
+     */
+    private final Map<SignatureId, Map<SuperIdValues, DomainRow>> domainByIds = new TreeMap<>();
+
+    private Map<SuperIdValues, DomainRow> getRowsById(SignatureId id) {
+        return domainByIds.computeIfAbsent(id, i -> new TreeMap<>(new IdComparator(id)));
+    }
+
+    @Override public @Nullable DomainRow find(SignatureId id, SuperIdValues values) {
+        return getRowsById(id).get(values);
+    }
+
+    @Override public void index(SignatureId id, DomainRow row) {
+        getRowsById(id).put(row.superId, row);
+    }
+
+    @Override public void add(DomainRow row) {
+        domain.add(row);
+    }
+
+    @Override public void remove(DomainRow row) {
+        domain.remove(row);
+    }
+
+    @Override public boolean isEmpty() {
+        return domain.isEmpty();
+    }
+
+    @Override public int size() {
+        return domain.size();
+    }
+
+    @Override public Iterable<DomainRow> rows() {
+        return domain;
+    }
+
+    @Override public Collection<SignatureId> indexedIds() {
+        return domainByIds.keySet();
+    }
+
+    @Override public Iterable<DomainRow> indexedRows(SignatureId id) {
+        return getRowsById(id).values();
+    }
+
+}
@@ -0,0 +1,50 @@
+package cz.matfyz.core.instance;
+
+import java.io.Serializable;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * Instance-wide dictionary of all scalar values. Each distinct value is stored only once and the rows refer to it by its int code.
+ * The codes are dense (starting from 0) and they are never reused. Values are never removed, because the rows are immutable and it's not worth to track which codes are still in use.
+ * Not thread-safe. Concurrent reads (i.e., {@link #find(String)} and {@link #decode(int)}) are fine as long as nothing is encoded at the same time.
+ */
+public class ValueDictionary implements Serializable {
+
+    public static final int NOT_FOUND = -1;
+
+    private final Object2IntOpenHashMap<String> valueToCode = new Object2IntOpenHashMap<>();
+    private final ObjectArrayList<String> codeToValue = new ObjectArrayList<>();
+
+    public ValueDictionary() {
+        valueToCode.defaultReturnValue(NOT_FOUND);
+    }
+
+    /** Returns the code of the value. If the value isn't in the dictionary yet, it's added. */
+    public int encode(String value) {
+        final int code = valueToCode.getInt(value);
+        if (code != NOT_FOUND)
+            return code;
+
+        final int newCode = codeToValue.size();
+        codeToValue.add(value);
+        valueToCode.put(value, newCode);
+        return newCode;
+    }
+
+    /** Returns the code of the value or {@link #NOT_FOUND} if the value isn't in the dictionary. The dictionary isn't changed. */
+    public int find(String value) {
+        return valueToCode.getInt(value);
+    }
+
+    public String decode(int code) {
+        return codeToValue.get(code);
+    }
+
+    /** Number of distinct values. */
+    public int size() {
+        return codeToValue.size();
+    }
+
+}
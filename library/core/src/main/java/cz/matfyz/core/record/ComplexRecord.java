@@ -9,6 +9,7 @@ import cz.matfyz.core.mapping.Name.TypedName;
 import cz.matfyz.core.utils.printable.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -18,78 +19,140 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * This class represents an inner node of the record tree. Something like object in JSON.
+ * The values and children are stored in arrays, by the slots of the {@link RecordLayout} (usually compiled from the access path the record was pulled by).
+ * The values and children that aren't in the layout are stored in maps.
  */
 public class ComplexRecord implements Printable {
 
+    private static final Object[] NO_VALUES = new Object[0];
+    @SuppressWarnings("unchecked")
+    private static final List<ComplexRecord>[] NO_CHILDREN = new List[0];
+
+    /** Stands for the null value (so that it can be distinguished from an empty slot). */
+    private static final Object NULL_VALUE = new Object();
+
+    /** A slot with more values. */
+    private static final class MultipleValues extends ArrayList<Object> {}
+
+    private final RecordLayout layout;
+    /** Each slot is either null (no value), a single value, or {@link MultipleValues}. */
+    private final Object[] values;
+    /** Each slot is either null (no children) or a list of the children. */
+    private final @Nullable List<ComplexRecord>[] children;
+
     /** The signatures can't be empty. */
-    private final Map<Signature, List<ComplexRecord>> children = new TreeMap<>();
+    private @Nullable Map<Signature, List<Object>> otherValues = null;
     /** The signatures can't be empty. */
-    private final Map<Signature, List<SimpleRecord<?>>> values = new TreeMap<>();
+    private @Nullable Map<Signature, List<ComplexRecord>> otherChildren = null;
 
-    protected ComplexRecord() {}
+    @SuppressWarnings("unchecked")
+    protected ComplexRecord(RecordLayout layout) {
+        this.layout = layout;
+        this.values = layout.valuesCount() == 0 ? NO_VALUES : new Object[layout.valuesCount()];
+        this.children = layout.childrenCount() == 0 ? NO_CHILDREN : new List[layout.childrenCount()];
+    }
 
     public @Nullable List<ComplexRecord> getComplexRecords(Signature signature) {
-        return children.get(signature);
+        final int slot = layout.childSlot(signature);
+        if (slot != -1)
+            return children[slot];
+
+        return otherChildren == null ? null : otherChildren.get(signature);
     }
 
     public <TDataType> @Nullable List<TDataType> findArrayValues(Signature signature, boolean onlyDirect) {
-        final var records = onlyDirect ? values.get(signature) : findSimpleRecords(signature);
-        if (records == null)
+        final var found = onlyDirect ? getValues(signature) : findValues(signature);
+        if (found == null)
             return null;
 
-        final var values = new ArrayList<TDataType>();
-        for (final var record : records)
-            values.add((TDataType) record.getValue());
-
-        return values;
+        return new ArrayList<>((List<TDataType>) found);
     }
 
     public <TDataType> @Nullable TDataType findScalarValue(Signature signature, boolean onlyDirect) {
-        final @Nullable List<TDataType> values = findArrayValues(signature, onlyDirect);
-        if (values == null)
+        // The most common case - a single value in the slot.
+        final int slot = layout.valueSlot(signature);
+        if (slot != -1) {
+            final Object value = values[slot];
+            if (value != null && !(value instanceof MultipleValues))
+                return value == NULL_VALUE ? null : (TDataType) value;
+        }
+
+        final var found = onlyDirect ? getValues(signature) : findValues(signature);
+        if (found == null)
             return null;
 
-        assert values.size() == 1 : "There should be exactly one value for a signature in a complex record, but found: " + values.size();
+        assert found.size() == 1 : "There should be exactly one value for a signature in a complex record, but found: " + found.size();
+
+        return (TDataType) found.get(0);
+    }
+
+    private @Nullable List<Object> getValues(Signature signature) {
+        final int slot = layout.valueSlot(signature);
+        if (slot != -1)
+            return slotToList(values[slot]);
+
+        return otherValues == null ? null : otherValues.get(signature);
+    }
+
+    private static @Nullable List<Object> slotToList(@Nullable Object slot) {
+        if (slot == null)
+            return null;
+        if (slot instanceof final MultipleValues multipleValues)
+            return multipleValues;
 
-        return values.get(0);
+        return Collections.singletonList(slot == NULL_VALUE ? null : slot);
     }
 
-    private @Nullable List<SimpleRecord<?>> findSimpleRecords(Signature signature) {
-        final var directSimpleRecord = values.get(signature);
-        if (directSimpleRecord != null)
-            return directSimpleRecord;
+    private @Nullable List<Object> findValues(Signature signature) {
+        final var directValues = getValues(signature);
+        if (directValues != null)
+            return directValues;
 
-        // There is no hope to find the simple record in the children because that would require at least two-part signature (one base to find the child and one to find the record in it).
+        // There is no hope to find the value in the children because that would require at least two-part signature (one base to find the child and one to find the value in it).
         if (signature instanceof BaseSignature)
             return null;
 
         var currentPath = Signature.empty();
         for (final var base : signature.toBases()) {
             currentPath = currentPath.concatenate(base);
-            final var childRecords = children.get(currentPath);
+            final var childRecords = getComplexRecords(currentPath);
 
             if (childRecords == null)
                 continue;
             if (childRecords.size() != 1)
                 return null;
 
-            return childRecords.get(0).findSimpleRecords(currentPath.traverseBack(signature));
+            return childRecords.get(0).findValues(currentPath.traverseBack(signature));
         }
 
         return null;
     }
 
     public boolean hasPrefix(Signature prefix) {
-        for (final Signature signature : values.keySet()) {
-            if (signature.hasPrefix(prefix))
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && layout.valueSignature(i).hasPrefix(prefix))
                 return true;
         }
 
-        for (final Signature signature : children.keySet()) {
-            if (signature.hasPrefix(prefix))
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != null && layout.childSignature(i).hasPrefix(prefix))
                 return true;
         }
 
+        if (otherValues != null) {
+            for (final Signature signature : otherValues.keySet()) {
+                if (signature.hasPrefix(prefix))
+                    return true;
+            }
+        }
+
+        if (otherChildren != null) {
+            for (final Signature signature : otherChildren.keySet()) {
+                if (signature.hasPrefix(prefix))
+                    return true;
+            }
+        }
+
         return false;
     }
 
@@ -99,20 +162,54 @@ public class ComplexRecord implements Printable {
         if (signature.isEmpty())
             return this;
 
-        final ComplexRecord complexRecord = new ComplexRecord();
-        children.computeIfAbsent(signature, x -> new ArrayList<>()).add(complexRecord);
+        return addChild(signature);
+    }
+
+    private ComplexRecord addChild(Signature signature) {
+        final int slot = layout.childSlot(signature);
+        if (slot != -1) {
+            final var child = new ComplexRecord(layout.childLayout(slot));
+            if (children[slot] == null)
+                children[slot] = new ArrayList<>(1);
+            children[slot].add(child);
+
+            return child;
+        }
+
+        if (otherChildren == null)
+            otherChildren = new TreeMap<>();
+
+        final var child = new ComplexRecord(RecordLayout.EMPTY);
+        otherChildren.computeIfAbsent(signature, x -> new ArrayList<>()).add(child);
 
-        return complexRecord;
+        return child;
     }
 
-    public <TDataType> SimpleRecord<TDataType> addSimpleRecord(Signature signature, TDataType value) {
+    public <TDataType> void addSimpleRecord(Signature signature, TDataType value) {
         if (signature.isEmpty())
             throw SignatureException.isEmpty();
 
-        final var simpleRecord = new SimpleRecord<>(value);
-        values.computeIfAbsent(signature, x -> new ArrayList<>()).add(simpleRecord);
+        final int slot = layout.valueSlot(signature);
+        if (slot == -1) {
+            if (otherValues == null)
+                otherValues = new TreeMap<>();
+            otherValues.computeIfAbsent(signature, x -> new ArrayList<>()).add(value);
+            return;
+        }
 
-        return simpleRecord;
+        final Object current = values[slot];
+        if (current == null) {
+            values[slot] = value == null ? NULL_VALUE : value;
+        }
+        else if (current instanceof final MultipleValues multipleValues) {
+            multipleValues.add(value);
+        }
+        else {
+            final var multipleValues = new MultipleValues();
+            multipleValues.add(current == NULL_VALUE ? null : current);
+            multipleValues.add(value);
+            values[slot] = multipleValues;
+        }
     }
 
     /** Make sure the property is a {@link ComplexProperty} and that it has a dynamic name! */
@@ -120,8 +217,7 @@ public class ComplexRecord implements Printable {
         if (property.signature().isEmpty())
             throw SignatureException.isEmpty();
 
-        final ComplexRecord dynamicRecord = new ComplexRecord();
-        children.computeIfAbsent(property.signature(), x -> new ArrayList<>()).add(dynamicRecord);
+        final ComplexRecord dynamicRecord = addChild(property.signature());
 
         final var keyProperty = ((ComplexProperty) property).getTypedSubpath(TypedName.KEY);
         dynamicRecord.addSimpleRecord(keyProperty.signature(), key);
@@ -183,28 +279,61 @@ public class ComplexRecord implements Printable {
 
     // #region Print + comparing
 
+    /** All values (both from the slots and the map), sorted by their signatures. */
+    private Map<Signature, List<Object>> allValues() {
+        final var output = new TreeMap<Signature, List<Object>>();
+        for (int i = 0; i < values.length; i++) {
+            final var list = slotToList(values[i]);
+            if (list != null)
+                output.put(layout.valueSignature(i), list);
+        }
+
+        if (otherValues != null)
+            output.putAll(otherValues);
+
+        return output;
+    }
+
+    /** All children (both from the slots and the map), sorted by their signatures. */
+    private Map<Signature, List<ComplexRecord>> allChildren() {
+        final var output = new TreeMap<Signature, List<ComplexRecord>>();
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] != null)
+                output.put(layout.childSignature(i), children[i]);
+        }
+
+        if (otherChildren != null)
+            output.putAll(otherChildren);
+
+        return output;
+    }
+
+    private static String valueToString(@Nullable Object value) {
+        return "\"" + value + "\"";
+    }
+
     @Override public void printTo(Printer printer) {
         printer.append("{").down().nextLine();
 
-        for (final Signature signature : values.keySet()) {
-            final List<SimpleRecord<?>> list = values.get(signature);
-            printer.append("[").append(signature).append("]: [");
+        for (final var entry : allValues().entrySet()) {
+            final List<Object> list = entry.getValue();
+            printer.append("[").append(entry.getKey()).append("]: [");
 
             if (list.size() == 1) {
-                printer.append(" ").append(list.get(0)).append(" ");
+                printer.append(" ").append(valueToString(list.get(0))).append(" ");
             }
             else {
                 printer.down().nextLine();
-                for (final SimpleRecord<?> record : list)
-                    printer.append(record).append(",").nextLine();
+                for (final Object value : list)
+                    printer.append(valueToString(value)).append(",").nextLine();
                 printer.remove().up().nextLine();
             }
             printer.append("],").nextLine();
         }
 
-        for (final Signature signature : children.keySet()) {
-            final List<ComplexRecord> list = children.get(signature);
-            printer.append("[").append(signature).append("]: [ ");
+        for (final var entry : allChildren().entrySet()) {
+            final List<ComplexRecord> list = entry.getValue();
+            printer.append("[").append(entry.getKey()).append("]: [ ");
 
             for (int i = 0; i < list.size(); i++)
                 printer.append(list.get(i)).append(", ");
@@ -226,22 +355,22 @@ public class ComplexRecord implements Printable {
         final var sb = new StringBuilder();
         sb.append("{\n");
 
-        for (final Signature signature : values.keySet()) {
-            final String content = values.get(signature).stream()
-                .map(SimpleRecord::toString)
+        for (final var entry : allValues().entrySet()) {
+            final String content = entry.getValue().stream()
+                .map(ComplexRecord::valueToString)
                 .sorted()
                 .collect(Collectors.joining(", "));
 
-            sb.append(signature).append(": [ ").append(content).append(" ],\n");
+            sb.append(entry.getKey()).append(": [ ").append(content).append(" ],\n");
         }
 
-        for (final Signature signature : children.keySet()) {
-            final String content = children.get(signature).stream()
+        for (final var entry : allChildren().entrySet()) {
+            final String content = entry.getValue().stream()
                 .map(ComplexRecord::toComparableString)
                 .sorted()
                 .collect(Collectors.joining(", "));
 
-            sb.append(signature).append(": [ ").append(content).append(" ],\n");
+            sb.append(entry.getKey()).append(": [ ").append(content).append(" ],\n");
         }
 
         sb.append("}");
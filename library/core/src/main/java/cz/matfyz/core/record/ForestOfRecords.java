@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ForestOfRecords implements Iterable<RootRecord> {
 
@@ -29,6 +30,13 @@ public class ForestOfRecords implements Iterable<RootRecord> {
         records.add(rootRecord);
     }
 
+    /** Consumes the whole stream (but doesn't close it). */
+    public static ForestOfRecords fromStream(Stream<RootRecord> stream) {
+        final var forest = new ForestOfRecords();
+        stream.forEachOrdered(forest::addRecord);
+        return forest;
+    }
+
     public int size() {
         return records.size();
     }
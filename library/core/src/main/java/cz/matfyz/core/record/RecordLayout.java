@@ -0,0 +1,123 @@
+package cz.matfyz.core.record;
+
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.mapping.AccessPath;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.mapping.SimpleProperty;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Assigns a dense slot to each signature that a {@link ComplexRecord} can contain so that the record can store its values and children in arrays.
+ * It's compiled from an access path - the simple subpaths become value slots and the complex ones become child slots (with their own layouts).
+ * The auxiliary subpaths don't have their own records, so their subpaths are added to the layout of the parent.
+ * The slots are ordered the same way as the signatures.
+ * Immutable, so it can be shared by all records pulled by the same access path (even between threads).
+ */
+public final class RecordLayout {
+
+    private final Signature[] valueSignatures;
+    private final Object2IntOpenHashMap<Signature> valueSlots;
+
+    private final Signature[] childSignatures;
+    private final Object2IntOpenHashMap<Signature> childSlots;
+    private final RecordLayout[] childLayouts;
+
+    private RecordLayout(Set<Signature> values, Map<Signature, RecordLayout> children) {
+        valueSignatures = values.toArray(Signature[]::new);
+        valueSlots = createSlots(valueSignatures);
+
+        childSignatures = children.keySet().toArray(Signature[]::new);
+        childSlots = createSlots(childSignatures);
+        childLayouts = children.values().toArray(RecordLayout[]::new);
+    }
+
+    private static Object2IntOpenHashMap<Signature> createSlots(Signature[] signatures) {
+        final var output = new Object2IntOpenHashMap<Signature>(signatures.length);
+        output.defaultReturnValue(-1);
+        for (int i = 0; i < signatures.length; i++)
+            output.put(signatures[i], i);
+
+        return output;
+    }
+
+    /** For records without any access path. All their values and children are stored outside of the slots. */
+    public static final RecordLayout EMPTY = new RecordLayout(Set.of(), Map.of());
+
+    public static RecordLayout create(ComplexProperty path) {
+        // The values are sorted so that the slots have the same order as the signatures.
+        final var values = new TreeSet<Signature>();
+        final var children = new TreeMap<Signature, RecordLayout>();
+        addSubpaths(path, values, children);
+
+        return new RecordLayout(values, children);
+    }
+
+    private static void addSubpaths(ComplexProperty path, Set<Signature> values, Map<Signature, RecordLayout> children) {
+        for (final AccessPath subpath : path.subpaths()) {
+            if (subpath instanceof SimpleProperty) {
+                values.add(subpath.signature());
+                continue;
+            }
+
+            final var complexSubpath = (ComplexProperty) subpath;
+            if (complexSubpath.isAuxiliary())
+                addSubpaths(complexSubpath, values, children);
+            else
+                children.put(subpath.signature(), create(complexSubpath));
+        }
+    }
+
+    int valuesCount() {
+        return valueSignatures.length;
+    }
+
+    Signature valueSignature(int slot) {
+        return valueSignatures[slot];
+    }
+
+    /** Returns the slot of the value or -1 if there isn't any. */
+    int valueSlot(Signature signature) {
+        return valueSlots.getInt(signature);
+    }
+
+    int childrenCount() {
+        return childSignatures.length;
+    }
+
+    Signature childSignature(int slot) {
+        return childSignatures[slot];
+    }
+
+    /** Returns the slot of the children or -1 if there isn't any. */
+    int childSlot(Signature signature) {
+        return childSlots.getInt(signature);
+    }
+
+    RecordLayout childLayout(int slot) {
+        return childLayouts[slot];
+    }
+
+    /** Returns the layout of the children with the given signature (or the empty one if they aren't in this layout). */
+    RecordLayout childLayout(Signature signature) {
+        final int slot = childSlot(signature);
+        return slot == -1 ? EMPTY : childLayouts[slot];
+    }
+
+    @Override public String toString() {
+        final var sb = new StringBuilder("{ values: [");
+        for (final var signature : valueSignatures)
+            sb.append(" ").append(signature);
+        sb.append(" ], children: [");
+        for (int i = 0; i < childSignatures.length; i++)
+            sb.append(" ").append(childSignatures[i]).append(": ").append(childLayouts[i]);
+
+        return sb.append(" ] }").toString();
+    }
+
+}
@@ -5,8 +5,13 @@ package cz.matfyz.core.record;
  */
 public class RootRecord extends ComplexRecord {
 
+    /** All values and children are stored outside of the slots. Prefer {@link #RootRecord(RecordLayout)}. */
     public RootRecord() {
-        super();
+        super(RecordLayout.EMPTY);
+    }
+
+    public RootRecord(RecordLayout layout) {
+        super(layout);
     }
 
 }
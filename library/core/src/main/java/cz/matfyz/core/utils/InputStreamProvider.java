@@ -6,9 +6,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 public interface InputStreamProvider {
 
     InputStream getInputStream() throws IOException;
@@ -44,9 +47,35 @@ public interface InputStreamProvider {
             this.url = url;
         }
 
+        /** The http and https urls are read from their local copies (see {@link UrlCache}). */
         public InputStream getInputStream() throws IOException {
+            final URI uri = parseUri();
+            return UrlCache.isCacheable(uri)
+                ? Files.newInputStream(UrlCache.getFile(uri))
+                : uri.toURL().openStream();
+        }
+
+        /**
+         * Returns the path to a local file with the content of the url - either the file itself (for the file scheme) or its validated copy (for http and https, see {@link UrlCache}).
+         * Returns null for all other urls.
+         */
+        public @Nullable Path getLocalPath() throws IOException {
+            final URI uri = parseUri();
+            if ("file".equals(uri.getScheme())) {
+                try {
+                    return Path.of(uri);
+                }
+                catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+
+            return UrlCache.isCacheable(uri) ? UrlCache.getFile(uri) : null;
+        }
+
+        private URI parseUri() throws IOException {
             try {
-                return new URI(url).toURL().openStream();
+                return new URI(url);
             }
             catch (URISyntaxException e) {
                 throw new IOException(e);
@@ -8,22 +8,25 @@ import java.util.TreeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The intervals are measured by each thread separately (so they can overlap in different threads). Their times are summed over all threads.
+ */
 public abstract class Statistics {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Statistics.class);
 
-    private static Map<String, Long> starts = new TreeMap<>();
+    private static final ThreadLocal<Map<String, Long>> starts = ThreadLocal.withInitial(TreeMap::new);
     private static Map<String, Long> times = new TreeMap<>();
     private static Map<String, Long> counters = new TreeMap<>();
 
     public static void start(String interval) {
-        starts.put(interval, System.nanoTime());
+        starts.get().put(interval, System.nanoTime());
     }
 
-    public static long end(String interval) {
+    public static synchronized long end(String interval) {
         final var endTime = System.nanoTime();
 
-        final var startTime = starts.get(interval);
+        final var startTime = starts.get().get(interval);
         if (startTime == null)
             throw new RuntimeException("Interval '" + interval + "' was not started.");
 
@@ -31,12 +34,12 @@ public abstract class Statistics {
 
         final var current = times.get(interval);
         times.put(interval, (current != null ? current : 0) + difference);
-        starts.put(interval, null);
+        starts.get().put(interval, null);
 
         return difference;
     }
 
-    public static long increment(String counter) {
+    public static synchronized long increment(String counter) {
         var value = getCounter(counter);
         value++;
         counters.put(counter, value);
@@ -44,26 +47,26 @@ public abstract class Statistics {
         return value;
     }
 
-    public static void set(String counter, long value) {
+    public static synchronized void set(String counter, long value) {
         counters.put(counter, value);
     }
 
-    public static void resetInterval(String interval) {
+    public static synchronized void resetInterval(String interval) {
         times.put(interval, null);
-        starts.put(interval, null);
+        starts.get().put(interval, null);
     }
 
-    public static void resetCounter(String counter) {
+    public static synchronized void resetCounter(String counter) {
         counters.put(counter, 0L);
     }
 
-    public static void reset() {
+    public static synchronized void reset() {
         times.clear();
-        starts.clear();
+        starts.get().clear();
         counters.clear();
     }
 
-    public static long getInterval(String interval) {
+    public static synchronized long getInterval(String interval) {
         final var output = times.get(interval);
         if (output == null)
             throw new RuntimeException("Interval '" + interval + "' was not ended.");
@@ -71,12 +74,12 @@ public abstract class Statistics {
         return output;
     }
 
-    public static long getCounter(String counter) {
+    public static synchronized long getCounter(String counter) {
         final var output = counters.get(counter);
         return output == null ? 0L : output;
     }
 
-    public static String getIntervalInfo(String interval) {
+    public static synchronized String getIntervalInfo(String interval) {
         final var value = times.get(interval);
         return value == null ? "Null" : printNanoseconds(value);
     }
@@ -124,6 +127,13 @@ public abstract class Statistics {
         private static final Map<String, Long> currentRun = new TreeMap<>();
 
         public static void collectBatch() {
+            synchronized (Statistics.class) {
+                collectTimes();
+            }
+            Statistics.reset();
+        }
+
+        private static void collectTimes() {
             times.keySet().forEach(interval -> {
                 final var value = times.get(interval);
                 final var currentRaw = currentRun.get(interval);
@@ -131,7 +141,6 @@ public abstract class Statistics {
 
                 currentRun.put(interval, current + value);
             });
-            Statistics.reset();
         }
 
         public static void collectRun() {
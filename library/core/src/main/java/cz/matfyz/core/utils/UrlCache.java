@@ -0,0 +1,331 @@
+package cz.matfyz.core.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps local copies of the files that are downloaded from http(s) urls, so that they don't have to be downloaded again for each pull.
+ * Each entry consists of the downloaded file and its metadata (the url, the ETag, and the Last-Modified header). Any other files next to the downloaded one (e.g., the offset indexes) belong to the entry as well.
+ * Before a copy is used, it's validated by a conditional request. If the server says it's modified (or if it didn't send any validators), the file is downloaded again.
+ * The least recently used entries are deleted whenever the cache exceeds its max size.
+ */
+public final class UrlCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UrlCache.class);
+
+    private UrlCache() {}
+
+    private static Path directory = Path.of(System.getProperty("java.io.tmpdir"), "mmcat-url-cache");
+    private static long maxSize = 4L << 30;
+
+    /**
+     * The copies in the new directory are validated again before they're used.
+     * @param maxSize In bytes. The last downloaded file is kept even if it alone exceeds it.
+     */
+    public static synchronized void configure(Path directory, long maxSize) {
+        UrlCache.directory = directory;
+        UrlCache.maxSize = maxSize;
+        validations.clear();
+    }
+
+    /** A copy that was validated less than this ago is used without asking the server again (one pull usually asks for the file several times). */
+    private static final Duration VALIDATION_INTERVAL = Duration.ofMinutes(1);
+
+    private static final String DATA_EXTENSION = ".data";
+    private static final String META_EXTENSION = ".properties";
+
+    private static final HttpClient client = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+
+    /** Key -> the lock of the entry, so that each url is downloaded only once at a time. */
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+    /** Key -> the time (in nanoseconds) of the last validation. */
+    private static final Map<String, Long> validations = new ConcurrentHashMap<>();
+
+    /** Returns whether the url can be cached, i.e., whether it has the http or https scheme. */
+    public static boolean isCacheable(URI uri) {
+        return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    /**
+     * Returns the path to a validated local copy of the file (downloading it if needed). The url has to be {@link #isCacheable(URI)}.
+     * The copy must not be modified. It can be deleted by the eviction in the meantime, so it should be opened right away (an opened file stays readable).
+     */
+    public static Path getFile(URI uri) throws IOException {
+        final String key = createKey(uri.toString());
+        final Path dataFile;
+        final Path metaFile;
+
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            final Path cacheDirectory = getDirectory();
+            dataFile = cacheDirectory.resolve(key + DATA_EXTENSION);
+            metaFile = cacheDirectory.resolve(key + META_EXTENSION);
+
+            final @Nullable Properties meta = Files.exists(dataFile) ? tryLoadMeta(metaFile) : null;
+            if (meta != null && isRecentlyValidated(key)) {
+                touch(metaFile);
+                return dataFile;
+            }
+
+            final boolean isDownloaded = validateOrDownload(uri, dataFile, metaFile, meta);
+            validations.put(key, System.nanoTime());
+            touch(metaFile);
+
+            if (!isDownloaded)
+                return dataFile;
+        }
+
+        evict(dataFile.getParent(), key);
+
+        return dataFile;
+    }
+
+    private static synchronized Path getDirectory() throws IOException {
+        return Files.createDirectories(directory);
+    }
+
+    private static synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    private static String createKey(String url) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Each java platform has to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isRecentlyValidated(String key) {
+        final @Nullable Long validatedAt = validations.get(key);
+        return validatedAt != null && System.nanoTime() - validatedAt < VALIDATION_INTERVAL.toNanos();
+    }
+
+    // #region Downloading
+
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String URL = "url";
+
+    /** Returns true if the file was downloaded (i.e., the previous copy was missing or outdated). */
+    private static boolean validateOrDownload(URI uri, Path dataFile, Path metaFile, @Nullable Properties meta) throws IOException {
+        final var request = HttpRequest.newBuilder(uri).GET();
+        if (meta != null) {
+            final @Nullable String etag = meta.getProperty(ETAG);
+            final @Nullable String lastModified = meta.getProperty(LAST_MODIFIED);
+            if (etag != null)
+                request.header("If-None-Match", etag);
+            if (lastModified != null)
+                request.header("If-Modified-Since", lastModified);
+        }
+
+        final Path tempFile = Files.createTempFile(dataFile.getParent(), dataFile.getFileName().toString(), ".tmp");
+        try {
+            final HttpResponse<Path> response;
+            try {
+                response = send(request.build(), tempFile);
+            }
+            catch (IOException e) {
+                if (meta == null)
+                    throw e;
+
+                // The server is probably unavailable, so we use the last known copy.
+                LOGGER.warn("Cannot validate the cached copy of {}, using it anyway.", uri, e);
+                return false;
+            }
+
+            if (response.statusCode() == 304 && meta != null)
+                return false;
+
+            if (response.statusCode() != 200)
+                throw new IOException("Cannot download " + uri + " (status " + response.statusCode() + ").");
+
+            final var newMeta = new Properties();
+            newMeta.setProperty(URL, uri.toString());
+            response.headers().firstValue(ETAG).ifPresent(value -> newMeta.setProperty(ETAG, value));
+            response.headers().firstValue(LAST_MODIFIED).ifPresent(value -> newMeta.setProperty(LAST_MODIFIED, value));
+
+            // The old metadata has to be gone first - the entry without them is just considered missing.
+            Files.deleteIfExists(metaFile);
+            Files.move(tempFile, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saveMeta(metaFile, newMeta);
+
+            LOGGER.info("Downloaded {} to the url cache ({} bytes).", uri, Files.size(dataFile));
+            return true;
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static HttpResponse<Path> send(HttpRequest request, Path file) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofFile(file));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + request.uri() + ".", e);
+        }
+    }
+
+    private static @Nullable Properties tryLoadMeta(Path metaFile) {
+        try (
+            InputStream input = Files.newInputStream(metaFile);
+        ) {
+            final var output = new Properties();
+            output.load(input);
+            return output;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void saveMeta(Path metaFile, Properties meta) throws IOException {
+        final Path tempFile = metaFile.resolveSibling(metaFile.getFileName() + ".tmp");
+        try (
+            OutputStream output = Files.newOutputStream(tempFile);
+        ) {
+            meta.store(output, null);
+        }
+        Files.move(tempFile, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The last modified time of the metadata file is the last access time of the entry (the downloaded file itself can't be touched because its indexes depend on it). */
+    private static void touch(Path metaFile) {
+        try {
+            Files.setLastModifiedTime(metaFile, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e) {
+            // Then the entry is just evicted sooner.
+        }
+    }
+
+    // #endregion
+
+    // #region Eviction
+
+    private record Entry(String key, long size, long lastAccess, List<Path> files) {}
+
+    /** Deletes the least recently used entries (but the kept one) until the cache fits into the max size. */
+    private static void evict(Path cacheDirectory, String keptKey) throws IOException {
+        final List<Entry> entries = listEntries(cacheDirectory);
+        long totalSize = entries.stream().mapToLong(Entry::size).sum();
+        final long limit = getMaxSize();
+        if (totalSize <= limit)
+            return;
+
+        entries.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        for (final Entry entry : entries) {
+            if (totalSize <= limit)
+                break;
+            if (entry.key.equals(keptKey))
+                continue;
+
+            synchronized (locks.computeIfAbsent(entry.key, k -> new Object())) {
+                if (!deleteEntry(entry))
+                    continue;
+            }
+
+            validations.remove(entry.key);
+            totalSize -= entry.size;
+            LOGGER.info("Evicted {} bytes from the url cache.", entry.size);
+        }
+    }
+
+    private static List<Entry> listEntries(Path cacheDirectory) throws IOException {
+        final var filesByKey = new TreeMap<String, List<Path>>();
+        try (
+            DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory);
+        ) {
+            for (final Path file : stream) {
+                final String name = file.getFileName().toString();
+                final int dotIndex = name.indexOf('.');
+                if (dotIndex > 0)
+                    filesByKey.computeIfAbsent(name.substring(0, dotIndex), k -> new ArrayList<>()).add(file);
+            }
+        }
+
+        final var output = new ArrayList<Entry>();
+        for (final var keyAndFiles : filesByKey.entrySet()) {
+            final String key = keyAndFiles.getKey();
+            long size = 0;
+            for (final Path file : keyAndFiles.getValue())
+                size += sizeOrZero(file);
+
+            output.add(new Entry(key, size, lastAccess(cacheDirectory.resolve(key + META_EXTENSION)), keyAndFiles.getValue()));
+        }
+
+        return output;
+    }
+
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastAccess(Path metaFile) {
+        try {
+            return Files.getLastModifiedTime(metaFile).toMillis();
+        }
+        catch (IOException e) {
+            // An unfinished entry - it's the first to go.
+            return 0;
+        }
+    }
+
+    /** Returns false if some of the files couldn't be deleted (e.g., because they are still open on a system that doesn't allow that). */
+    private static boolean deleteEntry(Entry entry) {
+        boolean isDeleted = true;
+        // The metadata go first so that the rest of the entry is considered missing.
+        final List<Path> files = new ArrayList<>(entry.files);
+        files.sort(Comparator.comparing(file -> !file.getFileName().toString().endsWith(META_EXTENSION)));
+        for (final Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException e) {
+                isDeleted = false;
+            }
+        }
+
+        return isDeleted;
+    }
+
+    // #endregion
+
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 
 import cz.matfyz.core.identifiers.BaseSignature;
 import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.instance.SuperIdValues;
 import cz.matfyz.core.mapping.Name.DynamicName;
 import cz.matfyz.core.mapping.Name.IndexName;
 import cz.matfyz.core.mapping.Name.TypedName;
@@ -86,6 +87,20 @@ class JsonTests {
         fullTest(path);
     }
 
+    @Test
+    void superIdValues() throws IOException {
+        final var values = new SuperIdValues.Mutator()
+            .add(Signature.createBase(1), "a")
+            .add(Signature.createBase(2).concatenate(Signature.createBase(3)), "b")
+            .build();
+        fullTest(values);
+
+        final SuperIdValues parsed = mapper.readValue(serialize(values), SuperIdValues.class);
+        assertEquals(values, parsed);
+        assertEquals(values.hashCode(), parsed.hashCode());
+        assertEquals(values.toString(), parsed.toString());
+    }
+
     private record ExceptionData(
         String a,
         int b
@@ -0,0 +1,140 @@
+package cz.matfyz.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.identifiers.SignatureId;
+import cz.matfyz.core.instance.InstanceBuilder;
+import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.InstanceObjex;
+import cz.matfyz.core.instance.SuperIdLayout;
+import cz.matfyz.core.instance.SuperIdValues;
+import cz.matfyz.core.schema.SchemaBuilder;
+import cz.matfyz.core.schema.SchemaBuilder.BuilderMorphism;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The presence of the values is stored in a bitmask, which has only {@link SuperIdLayout#MASKED_SIZE} bits. The larger superIds have to work as well.
+ */
+class SuperIdValuesTests {
+
+    private static final int SIGNATURES_COUNT = SuperIdLayout.MASKED_SIZE + 6;
+
+    private final List<Signature> signatures = new ArrayList<>();
+    /** Contains all signatures but the last two. */
+    private SignatureId wideId;
+    /** Contains only the last two signatures, so both are outside of the bitmask. */
+    private SignatureId narrowId;
+    private InstanceCategory instance;
+
+    private InstanceObjex createObjex() {
+        final var b = new SchemaBuilder();
+        final var entity = b.objex("entity", 1);
+        final var morphisms = new ArrayList<BuilderMorphism>();
+        for (int i = 0; i < SIGNATURES_COUNT; i++)
+            morphisms.add(b.morphism(entity, b.objex("attribute_" + i, i + 2), i + 1));
+
+        b.ids(entity, morphisms.subList(0, SIGNATURES_COUNT - 2).toArray(BuilderMorphism[]::new));
+        b.ids(entity, morphisms.get(SIGNATURES_COUNT - 2), morphisms.get(SIGNATURES_COUNT - 1));
+
+        morphisms.forEach(morphism -> signatures.add(morphism.signature()));
+        wideId = SignatureId.fromSignatures(signatures.subList(0, SIGNATURES_COUNT - 2).toArray(Signature[]::new));
+        narrowId = SignatureId.fromSignatures(signatures.get(SIGNATURES_COUNT - 2), signatures.get(SIGNATURES_COUNT - 1));
+
+        final var schema = b.build();
+        instance = new InstanceBuilder(schema).build();
+        return instance.getObjex(entity.key());
+    }
+
+    private SuperIdValues createValues(SuperIdValues.Mutator mutator, int from, int to) {
+        for (int i = from; i < to; i++)
+            mutator.add(signatures.get(i), "value_" + i);
+
+        return mutator.build();
+    }
+
+    @Test
+    void largeSuperIdInObjexLayout() {
+        final InstanceObjex objex = createObjex();
+        assertEquals(SIGNATURES_COUNT, objex.layout().size());
+
+        final var values = createValues(new SuperIdValues.Mutator(objex.layout()), 0, SIGNATURES_COUNT);
+        assertEquals(SIGNATURES_COUNT, values.size());
+        assertEquals(SIGNATURES_COUNT, values.signatures().size());
+        assertEquals("value_" + (SIGNATURES_COUNT - 1), values.getValue(signatures.get(SIGNATURES_COUNT - 1)));
+        assertTrue(values.containsId(wideId));
+        assertTrue(values.containsId(narrowId));
+
+        final var row = objex.createRow(values);
+
+        // Only the values outside of the bitmask.
+        final var narrowValues = createValues(new SuperIdValues.Mutator(objex.layout()), SIGNATURES_COUNT - 2, SIGNATURES_COUNT);
+        assertEquals(2, narrowValues.size());
+        assertFalse(narrowValues.containsId(wideId));
+        assertTrue(narrowValues.containsId(narrowId));
+        assertSame(row, objex.tryFindRow(narrowValues));
+
+        final var partialValues = createValues(new SuperIdValues.Mutator(objex.layout()), SIGNATURES_COUNT - 1, SIGNATURES_COUNT);
+        assertFalse(partialValues.containsId(narrowId));
+        assertNull(objex.tryFindRow(partialValues));
+    }
+
+    @Test
+    void largeSuperIdInLooseLayout() {
+        final InstanceObjex objex = createObjex();
+
+        // The loose layout grows one signature at a time (and it doesn't use the dictionary).
+        final var looseValues = createValues(new SuperIdValues.Mutator(), 0, SIGNATURES_COUNT);
+        assertEquals(SIGNATURES_COUNT, looseValues.size());
+        assertTrue(looseValues.containsId(narrowId));
+
+        final var objexValues = createValues(new SuperIdValues.Mutator(objex.layout()), 0, SIGNATURES_COUNT);
+        assertEquals(objexValues, looseValues);
+        assertEquals(objexValues.hashCode(), looseValues.hashCode());
+
+        final var row = objex.createRow(looseValues);
+        assertEquals(looseValues, row.superId);
+        assertSame(row, objex.tryFindRow(looseValues));
+
+        final var otherValues = new SuperIdValues.Mutator(objexValues)
+            .add(signatures.get(SIGNATURES_COUNT - 1), "other")
+            .build();
+        assertFalse(otherValues.equals(objexValues));
+        assertEquals(SIGNATURES_COUNT, otherValues.size());
+    }
+
+    @Test
+    void missedLookupDoesNotGrowDictionary() {
+        final InstanceObjex objex = createObjex();
+        final var row = objex.createRow(createValues(new SuperIdValues.Mutator(), 0, SIGNATURES_COUNT));
+        final int dictionarySize = instance.dictionary().size();
+        assertEquals(SIGNATURES_COUNT, dictionarySize);
+
+        // The values from the loose layout have to be encoded by the dictionary of the instance. The unknown ones can't be found.
+        final var unknownValues = new SuperIdValues.Mutator()
+            .add(signatures.get(SIGNATURES_COUNT - 2), "unknown_1")
+            .add(signatures.get(SIGNATURES_COUNT - 1), "unknown_2")
+            .build();
+        assertNull(objex.tryFindRow(unknownValues));
+
+        // Only one value of the narrow id is known. The whole wide id is known, so the row is still found by it.
+        final var partlyKnownValues = new SuperIdValues.Mutator(createValues(new SuperIdValues.Mutator(), 0, SIGNATURES_COUNT - 1))
+            .add(signatures.get(SIGNATURES_COUNT - 1), "unknown_2")
+            .build();
+        assertSame(row, objex.tryFindRow(partlyKnownValues));
+
+        final var knownValues = createValues(new SuperIdValues.Mutator(), SIGNATURES_COUNT - 2, SIGNATURES_COUNT);
+        assertSame(row, objex.tryFindRow(knownValues));
+
+        assertEquals(dictionarySize, instance.dictionary().size());
+    }
+
+}
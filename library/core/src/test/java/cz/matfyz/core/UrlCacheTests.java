@@ -0,0 +1,200 @@
+package cz.matfyz.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cz.matfyz.core.utils.UrlCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The cached copies are validated by conditional requests to a local server. The server sends the ETag of each file and answers 304 if it matches.
+ */
+class UrlCacheTests {
+
+    private static final long MAX_SIZE = 1L << 20;
+
+    @TempDir
+    Path directory;
+    private HttpServer server;
+    /** Path -> content. */
+    private final Map<String, String> files = new ConcurrentHashMap<>();
+    private final AtomicInteger requestsCount = new AtomicInteger();
+    private final AtomicInteger downloadsCount = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        UrlCache.configure(directory, MAX_SIZE);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestsCount.incrementAndGet();
+        final String content = files.get(exchange.getRequestURI().getPath());
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        final String etag = "\"" + Integer.toHexString(content.hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        downloadsCount.incrementAndGet();
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (
+            OutputStream output = exchange.getResponseBody();
+        ) {
+            output.write(bytes);
+        }
+    }
+
+    private URI createUri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    /** The copies are validated at most once per minute, so the validations are forgotten by configuring the cache again. */
+    private void forgetValidations(long maxSize) {
+        UrlCache.configure(directory, maxSize);
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (
+            Stream<Path> stream = Files.list(directory);
+        ) {
+            return stream.toList();
+        }
+    }
+
+    @Test
+    void notModifiedCopyIsReused() throws IOException {
+        files.put("/data.json", "{ \"a\": 1 }");
+        final URI uri = createUri("/data.json");
+
+        final Path copy = UrlCache.getFile(uri);
+        assertEquals("{ \"a\": 1 }", Files.readString(copy));
+        // A recently validated copy is used without asking the server.
+        assertEquals(copy, UrlCache.getFile(uri));
+        assertEquals(1, requestsCount.get());
+
+        forgetValidations(MAX_SIZE);
+        assertEquals(copy, UrlCache.getFile(uri));
+        assertEquals(2, requestsCount.get());
+        assertEquals(1, downloadsCount.get());
+        assertEquals("{ \"a\": 1 }", Files.readString(copy));
+    }
+
+    @Test
+    void modifiedCopyIsDownloadedAgain() throws IOException {
+        files.put("/data.json", "{ \"a\": 1 }");
+        final URI uri = createUri("/data.json");
+        UrlCache.getFile(uri);
+
+        files.put("/data.json", "{ \"a\": 2 }");
+        forgetValidations(MAX_SIZE);
+        assertEquals("{ \"a\": 2 }", Files.readString(UrlCache.getFile(uri)));
+        assertEquals(2, downloadsCount.get());
+    }
+
+    @Test
+    void copyIsUsedWhenServerIsOffline() throws IOException {
+        files.put("/data.json", "{ \"a\": 1 }");
+        final URI uri = createUri("/data.json");
+        final Path copy = UrlCache.getFile(uri);
+
+        server.stop(0);
+        forgetValidations(MAX_SIZE);
+        assertEquals(copy, UrlCache.getFile(uri));
+        assertEquals("{ \"a\": 1 }", Files.readString(copy));
+
+        // There is nothing to fall back to.
+        assertThrows(IOException.class, () -> UrlCache.getFile(createUri("/other.json")));
+    }
+
+    @Test
+    void missingFileIsNotCached() throws IOException {
+        assertThrows(IOException.class, () -> UrlCache.getFile(createUri("/missing.json")));
+        // Neither the downloaded nor the temporary files are kept.
+        assertEquals(List.of(), listFiles());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws IOException, InterruptedException {
+        final int size = 1000;
+        for (final String name : List.of("a", "b", "c", "d"))
+            files.put("/" + name + ".csv", name.repeat(size));
+
+        // Two entries fit in (with their metadata), three don't.
+        forgetValidations(2 * size + 1000);
+
+        final Path a = UrlCache.getFile(createUri("/a.csv"));
+        // Other files next to the downloaded one (e.g., the offset indexes) belong to the entry as well.
+        final Path aIndex = a.resolveSibling(a.getFileName() + ".offsets");
+        Files.writeString(aIndex, "index");
+        Thread.sleep(20);
+        final Path b = UrlCache.getFile(createUri("/b.csv"));
+        Thread.sleep(20);
+        // The access to the (recently validated) copy makes it the most recently used.
+        assertEquals(a, UrlCache.getFile(createUri("/a.csv")));
+        Thread.sleep(20);
+
+        final Path c = UrlCache.getFile(createUri("/c.csv"));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(a));
+        assertTrue(Files.exists(c));
+
+        final Path d = UrlCache.getFile(createUri("/d.csv"));
+        assertFalse(Files.exists(a));
+        assertFalse(Files.exists(aIndex));
+        assertTrue(Files.exists(c));
+        assertTrue(Files.exists(d));
+
+        // The evicted entry is downloaded again.
+        assertEquals("b".repeat(size), Files.readString(UrlCache.getFile(createUri("/b.csv"))));
+        assertEquals(5, downloadsCount.get());
+    }
+
+    @Test
+    void lastDownloadedFileIsKept() throws IOException {
+        files.put("/large.csv", "x".repeat(10_000));
+        forgetValidations(1000);
+
+        final Path copy = UrlCache.getFile(createUri("/large.csv"));
+        assertEquals(10_000, Files.size(copy));
+        assertEquals(2, listFiles().size());
+    }
+
+}
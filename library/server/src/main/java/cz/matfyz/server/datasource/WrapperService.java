@@ -2,7 +2,9 @@ package cz.matfyz.server.datasource;
 
 import cz.matfyz.abstractwrappers.AbstractDatasourceProvider;
 import cz.matfyz.abstractwrappers.BaseControlWrapper;
+import cz.matfyz.core.utils.UrlCache;
 import cz.matfyz.server.exception.DatasourceException;
+import cz.matfyz.server.utils.Configuration.CacheProperties;
 import cz.matfyz.server.utils.entity.Id;
 import cz.matfyz.wrapperjsonld.JsonLdControlWrapper;
 import cz.matfyz.wrapperjsonld.JsonLdProvider;
@@ -23,6 +25,7 @@ import cz.matfyz.wrapperpostgresql.PostgreSQLProvider;
 import cz.matfyz.wrapperpostgresql.PostgreSQLProvider.PostgreSQLSettings;
 import cz.matfyz.wrapperpostgresql.PostgreSQLControlWrapper;
 
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -33,6 +36,10 @@ import org.springframework.stereotype.Service;
 @Service
 public class WrapperService {
 
+    public WrapperService(CacheProperties cache) {
+        UrlCache.configure(Path.of(cache.directory()), cache.maxSize().toBytes());
+    }
+
     public BaseControlWrapper getControlWrapper(DatasourceEntity datasource) {
         try {
             return switch (datasource.type) {
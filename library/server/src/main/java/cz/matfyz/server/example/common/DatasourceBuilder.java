@@ -35,7 +35,9 @@ public class DatasourceBuilder {
             properties.password(),
             true,
             true,
-            false
+            false,
+            null,
+            null
         );
 
         return new DatasourceInit(label, DatasourceType.postgresql, mapper.valueToTree(settings));
@@ -51,7 +53,9 @@ public class DatasourceBuilder {
             properties.password(),
             true,
             true,
-            false
+            false,
+            null,
+            null
         );
 
         return new DatasourceInit(label, DatasourceType.mongodb, mapper.valueToTree(settings));
@@ -67,7 +71,9 @@ public class DatasourceBuilder {
             true,
             // TODO enable when it's implemented
             false,
-            false
+            false,
+            null,
+            null
         );
 
         return new DatasourceInit(label, DatasourceType.neo4j, mapper.valueToTree(settings));
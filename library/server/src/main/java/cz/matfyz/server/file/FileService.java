@@ -2,7 +2,9 @@ package cz.matfyz.server.file;
 
 import cz.matfyz.abstractwrappers.AbstractControlWrapper;
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.utils.FilePushWrapper;
 import cz.matfyz.core.datasource.Datasource.DatasourceType;
 import cz.matfyz.server.datasource.DatasourceEntity;
 import cz.matfyz.server.datasource.DatasourceInit;
@@ -15,11 +17,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,25 +48,43 @@ public class FileService {
     @Autowired
     private DatasourceRepository datasourceRepository;
 
-    public File create(@Nullable Id jobId, @Nullable Id datasourceId, boolean isExecuted, DatasourceType datasourceType, String content) {
+    /**
+     * The content is pushed to the file statement by statement, so it doesn't have to be in memory.
+     * The file is saved only if the writer finishes successfully.
+     */
+    public File create(@Nullable Id jobId, @Nullable Id datasourceId, boolean isExecuted, DatasourceType datasourceType, Consumer<AbstractPushWrapper> writer) {
         final var file = File.createNew(jobId, datasourceId, isExecuted, datasourceType);
+        final var path = file.path(uploads);
 
-        repository.save(file);
+        try {
+            Files.createDirectories(Paths.get(uploads.directory()));
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to save file: " + path, e);
+        }
 
-        writeToFile(file, content);
+        final FilePushWrapper output = new FilePushWrapper(path);
+        try {
+            writer.accept(output);
+            output.close();
+        }
+        catch (RuntimeException e) {
+            output.abort();
+            deleteQuietly(path);
+            throw e;
+        }
+
+        repository.save(file);
 
         return file;
     }
 
-    private void writeToFile(File file, String content) {
-        final var path = file.path(uploads);
-
+    private static void deleteQuietly(Path path) {
         try {
-            Files.createDirectories(Paths.get(uploads.directory()));
-            Files.writeString(path, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            Files.deleteIfExists(path);
         }
         catch (IOException e) {
-            throw new RuntimeException("Failed to save file: " + path, e);
+            LOGGER.warn("Failed to delete unfinished file: {}", path, e);
         }
     }
 
@@ -3,6 +3,7 @@ package cz.matfyz.server.instance;
 import cz.matfyz.core.instance.InstanceCategory;
 import cz.matfyz.core.instance.InstanceSerializer;
 import cz.matfyz.core.instance.InstanceSerializer.SerializedInstance;
+import cz.matfyz.core.instance.MappedInstance;
 import cz.matfyz.core.schema.SchemaCategory;
 import cz.matfyz.server.utils.entity.Id;
 
@@ -38,6 +39,14 @@ public record InstanceCategoryEntity(
         );
     }
 
+    public static InstanceCategoryEntity fromMappedInstance(Id sessionId, Id categoryId, MappedInstance instance) {
+        return new InstanceCategoryEntity(
+            sessionId,
+            categoryId,
+            InstanceSerializer.serialize(instance)
+        );
+    }
+
     public InstanceCategory toInstanceCategory(SchemaCategory schema) {
         return InstanceSerializer.deserialize(data, schema);
     }
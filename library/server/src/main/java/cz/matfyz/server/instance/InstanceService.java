@@ -1,10 +1,12 @@
 package cz.matfyz.server.instance;
 
 import cz.matfyz.abstractwrappers.AbstractControlWrapper;
-import cz.matfyz.abstractwrappers.AbstractPullWrapper;
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
 import cz.matfyz.core.datasource.Datasource;
 import cz.matfyz.core.instance.InstanceBuilder;
 import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.MappedInstance;
+import cz.matfyz.core.instance.ReadableInstance;
 import cz.matfyz.core.mapping.Mapping;
 import cz.matfyz.core.schema.SchemaCategory;
 import cz.matfyz.server.category.SchemaCategoryRepository;
@@ -18,6 +20,7 @@ import cz.matfyz.server.job.Job;
 import cz.matfyz.server.job.Run;
 import cz.matfyz.server.mapping.MappingRepository;
 import cz.matfyz.server.utils.Configuration.ServerProperties;
+import cz.matfyz.server.utils.entity.Id;
 import cz.matfyz.transformations.DatabaseToInstance;
 import cz.matfyz.transformations.InstanceToDatabase;
 
@@ -37,6 +40,9 @@ public class InstanceService {
     @Autowired
     private InstanceCategoryRepository repository;
 
+    @Autowired
+    private MappedInstanceRepository mappedInstanceRepository;
+
     @Autowired
     private MappingRepository mappingRepository;
 
@@ -60,9 +66,27 @@ public class InstanceService {
             throw SessionException.runNotInSession(run.id());
 
         final SchemaCategory schema = schemaRepository.find(run.categoryId).toSchemaCategory();
+
+        // The on-heap instance isn't referenced after it's written to the mapped files. So it can be collected before it's serialized.
+        final MappedInstance mappedInstance = mappedInstanceRepository.write(run.sessionId, importInstance(run, payload, schema));
+        try (
+            mappedInstance;
+        ) {
+            final var newEntity = InstanceCategoryEntity.fromMappedInstance(run.sessionId, run.categoryId, mappedInstance);
+            repository.save(newEntity);
+        }
+        catch (RuntimeException e) {
+            mappedInstanceRepository.discard(mappedInstance);
+            throw e;
+        }
+
+        mappedInstanceRepository.makeCurrent(run.sessionId, mappedInstance);
+    }
+
+    private InstanceCategory importInstance(Run run, ModelToCategoryPayload payload, SchemaCategory schema) {
         final @Nullable InstanceCategoryEntity instanceEntity = repository.find(run.sessionId);
 
-        InstanceCategory instance = instanceEntity != null
+        final InstanceCategory instance = instanceEntity != null
             ? instanceEntity.toInstanceCategory(schema)
             : new InstanceBuilder(schema).build();
 
@@ -73,15 +97,24 @@ public class InstanceService {
             .map(entity -> entity.toMapping(datasource, schema))
             .toList();
 
-        final AbstractPullWrapper pullWrapper = wrapperService.getControlWrapper(datasourceEntity).getPullWrapper();
+        final AbstractControlWrapper control = wrapperService.getControlWrapper(datasourceEntity);
 
-        for (final Mapping mapping : mappings)
-            instance = new DatabaseToInstance().input(mapping, instance, pullWrapper).run();
+        new DatabaseToInstance().input(mappings, instance, control).run();
 
-        if (instance != null) {
-            final var newEntity = InstanceCategoryEntity.fromInstanceCategory(run.sessionId, run.categoryId, instance);
-            repository.save(newEntity);
-        }
+        return instance;
+    }
+
+    /** Prefers the mapped instance, because it doesn't have to be loaded to the heap. The caller has to close it. */
+    private ReadableInstance findInstance(Id sessionId, SchemaCategory schema) {
+        final @Nullable MappedInstance mappedInstance = mappedInstanceRepository.find(sessionId, schema);
+        if (mappedInstance != null)
+            return mappedInstance;
+
+        final @Nullable InstanceCategoryEntity instanceEntity = repository.find(sessionId);
+
+        return instanceEntity != null
+            ? instanceEntity.toInstanceCategory(schema)
+            : new InstanceBuilder(schema).build();
     }
 
     public void startCategoryToModelJob(Run run, Job job, CategoryToModelPayload payload) {
@@ -89,12 +122,17 @@ public class InstanceService {
             throw SessionException.runNotInSession(run.id());
 
         final SchemaCategory schema = schemaRepository.find(run.categoryId).toSchemaCategory();
-        final @Nullable InstanceCategoryEntity instanceEntity = repository.find(run.sessionId);
-
-        final InstanceCategory instance = instanceEntity != null
-            ? instanceEntity.toInstanceCategory(schema)
-            : new InstanceBuilder(schema).build();
+        final ReadableInstance instance = findInstance(run.sessionId, schema);
+        try {
+            createModels(run, job, payload, schema, instance);
+        }
+        finally {
+            if (instance instanceof MappedInstance mappedInstance)
+                mappedInstance.close();
+        }
+    }
 
+    private void createModels(Run run, Job job, CategoryToModelPayload payload, SchemaCategory schema, ReadableInstance instance) {
         final DatasourceEntity datasourceEntity = datasourceRepository.find(payload.datasourceId());
         final Datasource datasource = datasourceEntity.toDatasource();
         final List<Mapping> mappings = mappingRepository.findAllInCategory(run.categoryId, payload.datasourceId()).stream()
@@ -104,15 +142,15 @@ public class InstanceService {
 
         final AbstractControlWrapper control = wrapperService.getControlWrapper(datasourceEntity);
 
-        final var result = new InstanceToDatabase()
+        final var process = new InstanceToDatabase()
             .input(
                 mappings,
                 instance,
                 control.getDDLWrapper(),
-                control.getDMLWrapper(),
+                control::getDMLWrapper,
                 control.getICWrapper()
             )
-            .run();
+            .parallelism(server.effectiveDmlParallelism());
 
         // TODO - find a better way how to execute the changes (currently its too likely to fail)
 
@@ -120,21 +158,32 @@ public class InstanceService {
         //  - např. uživatel zvolí "my_db", tak vytvářet "my_db_1", "my_db_2" a podobně
         //  - resp. při opětovném spuštění to smazat a vytvořit znovu ...
 
-        boolean isExecuted = false;
+        final boolean isExecuted = server.executeModels() && control.isWritable();
+        final long[] statementsCount = { 0 };
+
+        // The statements are streamed both to the file and (possibly) to the database, so they are never all in memory at once.
+        final File file = fileService.create(job.id(), datasourceEntity.id(), isExecuted, datasource.type, fileOutput -> {
+            if (!isExecuted) {
+                statementsCount[0] = process.run(fileOutput);
+                return;
+            }
 
-        if (server.executeModels() && control.isWritable()) {
             LOGGER.info("Start executing models ...");
-            control.execute(result.statements());
+            final AbstractPushWrapper databaseOutput = control.getPushWrapper();
+            try {
+                statementsCount[0] = process.run(AbstractPushWrapper.all(List.of(fileOutput, databaseOutput)));
+            }
+            catch (RuntimeException e) {
+                // The file is deleted, so the database shouldn't keep the partial data either (as far as the database can roll them back).
+                databaseOutput.abort();
+                throw e;
+            }
+            databaseOutput.close();
             LOGGER.info("... models executed.");
-            isExecuted = true;
-        }
-
-        final var resultString = result.statementsAsString();
-
-        final File file = fileService.create(job.id(), datasourceEntity.id(), isExecuted, datasource.type, resultString);
+        });
 
         // Instead of the result we are saving only the id of the file, where the result is saved
-        job.data = new TransformationJobData(file.id());
+        job.data = new TransformationJobData(file.id(), statementsCount[0]);
     }
 
 }
@@ -0,0 +1,124 @@
+package cz.matfyz.server.instance;
+
+import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.MappedInstance;
+import cz.matfyz.core.schema.SchemaCategory;
+import cz.matfyz.server.utils.Configuration.SessionsProperties;
+import cz.matfyz.server.utils.entity.Id;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keeps the instance of each session as a {@link MappedInstance} in the session's directory, so the jobs that only read the instance don't have to load it to the heap.
+ * The {@link InstanceCategoryRepository} is still the source of truth - the mapped instance is just its copy.
+ * Each version of the instance has its own directory. A version is used only after it's made current (i.e., after the same instance is saved to the database).
+ */
+@Repository
+public class MappedInstanceRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedInstanceRepository.class);
+
+    /** Contains the name of the directory of the current version. */
+    private static final String CURRENT_FILE = "current";
+
+    @Autowired
+    private SessionsProperties sessions;
+
+    private Path sessionDirectory(Id sessionId) {
+        return Path.of(sessions.directory(), sessionId.toString());
+    }
+
+    /** Writes the instance to a new version directory. The version isn't used until it's made current. */
+    public MappedInstance write(Id sessionId, InstanceCategory instance) {
+        final Path directory = sessionDirectory(sessionId).resolve("instance-" + UUID.randomUUID());
+        try {
+            return MappedInstance.write(instance, directory);
+        }
+        catch (IOException e) {
+            deleteQuietly(directory);
+            throw new RuntimeException("Failed to write the mapped instance: " + directory, e);
+        }
+    }
+
+    /**
+     * Makes the version current and deletes all other versions. The version has to be closed.
+     * The jobs that still read a previous version aren't affected (on Linux, a mapped file stays readable even after it's deleted).
+     */
+    public void makeCurrent(Id sessionId, MappedInstance instance) {
+        final Path sessionDirectory = sessionDirectory(sessionId);
+        final String version = instance.directory().getFileName().toString();
+
+        try {
+            // The file is replaced atomically, so the readers see either the previous version or this one.
+            final Path temporary = Files.createTempFile(sessionDirectory, CURRENT_FILE, ".tmp");
+            Files.writeString(temporary, version);
+            Files.move(temporary, sessionDirectory.resolve(CURRENT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to update the mapped instance of session: " + sessionId, e);
+        }
+
+        try (
+            Stream<Path> paths = Files.list(sessionDirectory);
+        ) {
+            paths
+                .filter(path -> Files.isDirectory(path) && !path.getFileName().toString().equals(version))
+                .forEach(MappedInstanceRepository::deleteQuietly);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Failed to delete the previous mapped instances of session: {}", sessionId, e);
+        }
+    }
+
+    /** Deletes the version that can't be made current. The version has to be closed. */
+    public void discard(MappedInstance instance) {
+        deleteQuietly(instance.directory());
+    }
+
+    /**
+     * Returns the current version of the instance or null if there isn't any (e.g., it was created before the instances were mapped, or it was deleted).
+     * The caller has to close it.
+     */
+    public @Nullable MappedInstance find(Id sessionId, SchemaCategory schema) {
+        final Path currentFile = sessionDirectory(sessionId).resolve(CURRENT_FILE);
+        if (!Files.exists(currentFile))
+            return null;
+
+        try {
+            final Path directory = sessionDirectory(sessionId).resolve(Files.readString(currentFile).trim());
+            return MappedInstance.open(directory, schema);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Failed to open the mapped instance of session: {}", sessionId, e);
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path directory) {
+        if (!Files.exists(directory))
+            return;
+
+        try (
+            Stream<Path> paths = Files.walk(directory);
+        ) {
+            for (final Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Failed to delete the mapped instance: {}", directory, e);
+        }
+    }
+
+}
@@ -3,6 +3,10 @@ package cz.matfyz.server.instance;
 import cz.matfyz.server.job.JobData;
 import cz.matfyz.server.utils.entity.Id;
 
+/**
+ * Only the id of the file with the statements and their count - the statements themselves might be too large.
+ */
 public record TransformationJobData(
-    Id fileId
+    Id fileId,
+    long statementsCount
 ) implements JobData {}
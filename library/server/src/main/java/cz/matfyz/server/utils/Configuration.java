@@ -3,6 +3,7 @@ package cz.matfyz.server.utils;
 import cz.matfyz.server.example.common.DatasourceBuilder.DatasourceProperties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 public class Configuration {
 
@@ -10,8 +11,18 @@ public class Configuration {
     public record ServerProperties(
         Integer port,
         String origin,
-        Boolean executeModels
-    ) {}
+        Boolean executeModels,
+        Integer dmlParallelism
+    ) {
+
+        /** The configured number of threads of the DML algorithm, or the number of the available processors if it isn't configured. */
+        public int effectiveDmlParallelism() {
+            return dmlParallelism != null && dmlParallelism > 0
+                ? dmlParallelism
+                : Runtime.getRuntime().availableProcessors();
+        }
+
+    }
 
     @ConfigurationProperties("database")
     public record DatabaseProperties(
@@ -45,4 +56,15 @@ public class Configuration {
         String directory
     ) {}
 
+    @ConfigurationProperties("sessions")
+    public record SessionsProperties(
+        String directory
+    ) {}
+
+    @ConfigurationProperties("cache")
+    public record CacheProperties(
+        String directory,
+        DataSize maxSize
+    ) {}
+
 }
@@ -56,7 +56,9 @@ public class DatabaseWrapper implements DisposableBean {
                 properties.password(),
                 true,
                 true,
-                true
+                true,
+                null,
+                null
             ));
 
         return connectionProvider;
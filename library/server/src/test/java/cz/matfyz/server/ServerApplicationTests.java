@@ -1,7 +1,6 @@
 package cz.matfyz.server;
 
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
-import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
 import cz.matfyz.abstractwrappers.AbstractICWrapper;
 import cz.matfyz.abstractwrappers.AbstractPullWrapper;
 import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
@@ -137,11 +136,10 @@ class ServerApplicationTests {
 
         final var control = wrapperService.getControlWrapper(datasourceEntity);
         final AbstractDDLWrapper ddlWrapper = control.getDDLWrapper();
-        final AbstractDMLWrapper dmlWrapper = control.getDMLWrapper();
         final AbstractICWrapper icWrapper = control.getICWrapper();
 
         final var process = new InstanceToDatabase();
-        process.input(List.of(mapping), instance, ddlWrapper, dmlWrapper, icWrapper);
+        process.input(List.of(mapping), instance, ddlWrapper, control::getDMLWrapper, icWrapper);
         process.run();
 
         message += "#" + mapping.kindName()
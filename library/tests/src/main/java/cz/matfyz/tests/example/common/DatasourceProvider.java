@@ -44,7 +44,9 @@ public class DatasourceProvider {
                 config.get("password"),
                 true,
                 true,
-                false
+                false,
+                null,
+                null
             ));
         }
 
@@ -71,7 +73,9 @@ public class DatasourceProvider {
                 config.get("password"),
                 true,
                 true,
-                false
+                false,
+                null,
+                null
             ));
         }
 
@@ -97,7 +101,9 @@ public class DatasourceProvider {
                 config.get("password"),
                 true,
                 true,
-                false
+                false,
+                null,
+                null
             ));
         }
 
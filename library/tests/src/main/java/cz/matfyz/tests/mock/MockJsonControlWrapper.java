@@ -0,0 +1,44 @@
+package cz.matfyz.tests.mock;
+
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.abstractwrappers.querycontent.QueryContent;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
+import cz.matfyz.wrapperjson.JsonControlWrapper;
+import cz.matfyz.wrapperjson.JsonPullWrapper;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Each kind has its own content (the {@link MockJsonProvider} has just one), so multiple kinds can be pulled from one datasource.
+ */
+public class MockJsonControlWrapper extends JsonControlWrapper {
+
+    /** Kind name -> content. */
+    private final Map<String, String> contents;
+
+    public MockJsonControlWrapper(Map<String, String> contents) {
+        super(new MockJsonProvider("[]"));
+        this.contents = contents;
+    }
+
+    @Override public JsonPullWrapper getPullWrapper() {
+        return new JsonPullWrapper(new MockJsonProvider("[]")) {
+            @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) {
+                return createKindPullWrapper(query).pullForest(path, query);
+            }
+
+            @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) {
+                return createKindPullWrapper(query).streamForest(path, query);
+            }
+        };
+    }
+
+    private JsonPullWrapper createKindPullWrapper(QueryContent query) {
+        final String kindName = ((KindNameQuery) query).kindName;
+        return new JsonPullWrapper(new MockJsonProvider(contents.get(kindName)));
+    }
+
+}
@@ -1,19 +1,29 @@
 package cz.matfyz.tests.transformations;
 
+import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.core.instance.InstanceBuilder;
 import cz.matfyz.core.instance.InstanceCategory;
 import cz.matfyz.core.instance.InstanceBuilder.InstanceAdder;
+import cz.matfyz.core.instance.InstanceSerializer;
+import cz.matfyz.core.instance.MappedInstance;
 import cz.matfyz.core.mapping.Mapping;
 import cz.matfyz.tests.example.common.TestMapping;
 import cz.matfyz.transformations.algorithms.DMLAlgorithm;
 import cz.matfyz.wrapperdummy.DMLTestStructure;
 import cz.matfyz.wrapperdummy.DummyDMLWrapper;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.json.JSONArray;
 import org.junit.jupiter.api.Assertions;
@@ -69,7 +79,7 @@ public class DMLAlgorithmTestBase {
         }
 
         final var wrapper = new DummyDMLWrapper();
-        DMLAlgorithm.run(mapping, inputInstance, wrapper);
+        final List<AbstractStatement> statements = DMLAlgorithm.run(mapping, inputInstance, wrapper);
 
         final List<DMLTestStructure> actualResult = wrapper.structures();
 
@@ -79,6 +89,69 @@ public class DMLAlgorithmTestBase {
         LOGGER.debug("EXPECTED:\n{}", expectedString);
 
         assertEquals(expectedString, actualString);
+
+        checkParallelRun(statements);
+        checkMappedRun(statements);
+    }
+
+    private static final int PARALLELISM = 3;
+
+    /** The ranges have just one row, so even the small instances are split between all threads. */
+    private void checkParallelRun(List<AbstractStatement> sequentialStatements) {
+        final var wrappersCount = new AtomicInteger();
+        final var parallelStatements = new ArrayList<AbstractStatement>();
+        DMLAlgorithm.runParallel(List.of(mapping), inputInstance, () -> {
+            wrappersCount.incrementAndGet();
+            return new DummyDMLWrapper();
+        }, PARALLELISM, 1, parallelStatements::add);
+
+        assertEquals(toContents(sequentialStatements), toContents(parallelStatements), "Statements differ for the parallel run.");
+        // Each thread reuses its wrapper.
+        assertTrue(wrappersCount.get() <= PARALLELISM, "Too many wrappers (" + wrappersCount.get() + ") for the parallel run.");
+    }
+
+    /** So that the values and the tables are split between multiple files. */
+    private static final long MAPPED_SEGMENT_SIZE = 64;
+
+    /** The same instance, but written to memory-mapped files and read from there. */
+    private void checkMappedRun(List<AbstractStatement> heapStatements) {
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("mapped-instance");
+            try (
+                MappedInstance mappedInstance = MappedInstance.write(inputInstance, directory, MAPPED_SEGMENT_SIZE);
+            ) {
+                final List<AbstractStatement> mappedStatements = DMLAlgorithm.run(mapping, mappedInstance, new DummyDMLWrapper());
+                assertEquals(toContents(heapStatements), toContents(mappedStatements), "Statements differ for the mapped instance.");
+
+                assertEquals(InstanceSerializer.serialize(inputInstance), InstanceSerializer.serialize(mappedInstance), "The mapped instance is serialized differently.");
+            }
+        }
+        catch (IOException e) {
+            Assertions.fail("Exception thrown when writing the mapped instance.", e);
+        }
+        finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (directory == null)
+            return;
+
+        try (
+            Stream<Path> paths = Files.walk(directory);
+        ) {
+            for (final Path path : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(path);
+        }
+        catch (IOException e) {
+            LOGGER.warn("Can't delete the mapped instance.", e);
+        }
+    }
+
+    private static List<String> toContents(List<AbstractStatement> statements) {
+        return statements.stream().map(AbstractStatement::getContent).toList();
     }
 
     private static String resultToString(List<DMLTestStructure> result) {
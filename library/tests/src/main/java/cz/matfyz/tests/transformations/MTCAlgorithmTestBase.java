@@ -2,22 +2,31 @@ package cz.matfyz.tests.transformations;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.StringQuery;
 import cz.matfyz.core.instance.DomainRow;
+import cz.matfyz.core.instance.DomainStorage;
 import cz.matfyz.core.instance.InstanceBuilder;
 import cz.matfyz.core.instance.InstanceCategory;
 import cz.matfyz.core.instance.InstanceObjex;
 import cz.matfyz.core.instance.InstanceBuilder.InstanceAdder;
 import cz.matfyz.core.mapping.Mapping;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
 import cz.matfyz.core.schema.SchemaCategory;
 import cz.matfyz.core.utils.IterableUtils;
+import cz.matfyz.core.utils.UniqueIdGenerator;
 import cz.matfyz.tests.example.common.TestMapping;
+import cz.matfyz.tests.mock.MockJsonControlWrapper;
+import cz.matfyz.tests.mock.MockJsonProvider;
+import cz.matfyz.transformations.DatabaseToInstance;
 import cz.matfyz.transformations.algorithms.MTCAlgorithm;
 import cz.matfyz.wrapperdummy.DummyPullWrapper;
+import cz.matfyz.wrapperjson.JsonControlWrapper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 
 import org.junit.jupiter.api.Assertions;
 import org.slf4j.Logger;
@@ -48,29 +57,102 @@ public class MTCAlgorithmTestBase {
         return this;
     }
 
+    private interface Algorithm {
+        void run(Mapping mapping, InstanceCategory instance, ForestOfRecords forest);
+    }
+
+    /** Runs the test for all domain storages, and also in batches (they should all produce the same instance). */
     public void run() {
+        checkJsonPullWrapper();
+
+        for (final var domainStorage : DomainStorage.values()) {
+            run(domainStorage, "whole forest", MTCAlgorithm::run);
+
+            // Each record is processed in its own run (just like the batches in the database to instance transformation).
+            run(domainStorage, "batched mode", (mapping, instance, forest) -> {
+                final var idGenerator = UniqueIdGenerator.create();
+                for (final RootRecord rootRecord : forest) {
+                    final var batch = new ForestOfRecords();
+                    batch.addRecord(rootRecord);
+                    MTCAlgorithm.run(mapping, instance, batch, idGenerator);
+                }
+            });
+
+            if (kinds.size() > 1)
+                checkConcurrentImport(domainStorage);
+        }
+    }
+
+    /** The JSON pull wrapper parses the records differently (from a stream of tokens), but it should produce the same forests. */
+    private void checkJsonPullWrapper() {
+        for (final MappingWithRecords kind : kinds) {
+            final var expectedForest = new DummyPullWrapper().pullForest(kind.mapping.accessPath(), new StringQuery(kind.records));
+            final var jsonPullWrapper = new JsonControlWrapper(new MockJsonProvider(kind.records)).getPullWrapper();
+            final var forest = jsonPullWrapper.pullForest(kind.mapping.accessPath(), new KindNameQuery(kind.mapping.kindName()));
+
+            assertEquals(expectedForest.toComparableString(), forest.toComparableString(), "The JSON pull wrapper created different records for " + kind.mapping.kindName() + ".");
+        }
+    }
+
+    private ForestOfRecords pullForest(MappingWithRecords kind) {
+        final ForestOfRecords forest = new DummyPullWrapper().pullForest(kind.mapping.accessPath(), new StringQuery(kind.records));
+        LOGGER.debug("FOREST ({}):\n{}", kind.mapping.toString(), forest);
+
+        return forest;
+    }
+
+    private void run(DomainStorage domainStorage, String variant, Algorithm algorithm) {
         final SchemaCategory schema = kinds.get(0).mapping.category();
-        final InstanceCategory actualInstance = new InstanceBuilder(schema).build();
+        final InstanceCategory actualInstance = new InstanceBuilder(schema, domainStorage).build();
 
         for (final MappingWithRecords kind : kinds) {
             ForestOfRecords forest;
             try {
-                forest = new DummyPullWrapper().pullForest(kind.mapping.accessPath(), new StringQuery(kind.records));
+                forest = pullForest(kind);
             }
             catch (Exception e) {
                 Assertions.fail(e.getMessage());
                 return;
             }
 
-            LOGGER.debug("FOREST ({}):\n{}", kind.mapping.toString(), forest);
-
-            MTCAlgorithm.run(kind.mapping, actualInstance, forest);
+            algorithm.run(kind.mapping, actualInstance, forest);
         }
 
         final var builder = new InstanceBuilder(schema);
         instanceAdder.add(builder);
         final InstanceCategory expectedInstance = builder.build();
 
+        assertSameInstances(expectedInstance, actualInstance, "the " + domainStorage + " domain storage and the " + variant);
+    }
+
+    /**
+     * All kinds are imported at once - concurrently, into partial instances that are then merged together (each record in its own batch).
+     * The rows identified by the same ids in multiple kinds have to be merged, so the result should be the same as if the kinds were imported one by one.
+     */
+    private void checkConcurrentImport(DomainStorage domainStorage) {
+        final SchemaCategory schema = kinds.get(0).mapping.category();
+
+        final InstanceCategory sequentialInstance = new InstanceBuilder(schema, domainStorage).build();
+        for (final MappingWithRecords kind : kinds)
+            MTCAlgorithm.run(kind.mapping, sequentialInstance, pullForest(kind));
+
+        final var contents = new TreeMap<String, String>();
+        for (final MappingWithRecords kind : kinds)
+            contents.put(kind.mapping.kindName(), kind.records);
+        assertEquals(kinds.size(), contents.size(), "Each kind has to have its own name to be imported concurrently.");
+
+        final InstanceCategory concurrentInstance = new InstanceBuilder(schema, domainStorage).build();
+        new DatabaseToInstance()
+            .input(kinds.stream().map(MappingWithRecords::mapping).toList(), concurrentInstance, new MockJsonControlWrapper(contents))
+            .batchSize(1)
+            .run();
+
+        assertSameInstances(sequentialInstance, concurrentInstance, "the " + domainStorage + " domain storage and the concurrent import");
+    }
+
+    private static void assertSameInstances(InstanceCategory expectedInstance, InstanceCategory actualInstance, String variant) {
+        final SchemaCategory schema = expectedInstance.schema();
+
         LOGGER.debug("ACTUAL:\n{}", actualInstance);
         LOGGER.debug("EXPECTED:\n{}", expectedInstance);
 
@@ -88,7 +170,7 @@ public class MTCAlgorithmTestBase {
                 .map(row -> rowToMappingsString(row, objex, schema))
                 .sorted().toList();
 
-            assertEquals(expectedString, string);
+            assertEquals(expectedString, string, "Rows differ for " + variant + ".");
         }
     }
 
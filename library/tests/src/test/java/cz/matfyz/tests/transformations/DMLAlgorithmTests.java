@@ -5,6 +5,8 @@ import cz.matfyz.tests.example.basic.Schema;
 import cz.matfyz.tests.example.basic.MongoDB;
 import cz.matfyz.tests.example.basic.PostgreSQL;
 
+import java.util.ArrayList;
+
 import org.junit.jupiter.api.Test;
 
 class DMLAlgorithmTests {
@@ -34,6 +36,23 @@ class DMLAlgorithmTests {
             .run();
     }
 
+    /** There are many more rows than threads, so each thread processes several ranges. */
+    @Test
+    void manyRowsTest() {
+        final int rowsCount = 200;
+        final var expected = new ArrayList<String>();
+        for (int i = 0; i < rowsCount; i++)
+            expected.add("{ \"name\": \"order\", \"values\": [ \"append(number, o_" + i + ")\" ] }");
+
+        new DMLAlgorithmTestBase(PostgreSQL.order(schema))
+            .instance(builder -> {
+                for (int i = 0; i < rowsCount; i++)
+                    PostgreSQL.addOrder(builder, "o_" + i);
+            })
+            .expected("[ " + String.join(", ", expected) + " ]")
+            .run();
+    }
+
     @Test
     void structureTest() {
         new DMLAlgorithmTestBase(MongoDB.address(schema))
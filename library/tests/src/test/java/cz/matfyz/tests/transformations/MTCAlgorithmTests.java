@@ -527,7 +527,7 @@ class MTCAlgorithmTests {
                         "id": "c_1",
                         "x": { "i": "v_1-x-i", "j": "v_1-x-j" },
                         "y": { "i": "v_1-y-i", "j": "v_1-y-j" }
-                    } ],
+                    } ]
                 } ]
             """)
             .expected(builder -> MongoDB.addHardcore(builder))
@@ -1,11 +1,18 @@
 package cz.matfyz.tests.transformations;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
 import cz.matfyz.abstractwrappers.exception.ExecuteException;
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.mapping.AccessPathBuilder;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
 import cz.matfyz.core.schema.SchemaCategory;
 import cz.matfyz.tests.example.basic.Datasources;
 import cz.matfyz.tests.example.basic.Neo4j;
@@ -13,6 +20,7 @@ import cz.matfyz.tests.example.common.TestDatasource;
 import cz.matfyz.wrapperneo4j.Neo4jControlWrapper;
 
 import java.util.List;
+import java.util.TreeSet;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -98,6 +106,39 @@ class Neo4jTests {
             .run();
     }
 
+    @Test
+    void kindLargerThanPageIsReadByParts() {
+        final int nodesCount = 2_500;
+        datasource.wrapper.execute(List.of(
+            StringStatement.create("MATCH (n:PagedTest) DETACH DELETE n;"),
+            StringStatement.create("UNWIND range(0, " + (nodesCount - 1) + ") AS i CREATE (:PagedTest { number: toString(i) });")
+        ));
+
+        final Signature numberSignature = Signature.createBase(1);
+        final var b = new AccessPathBuilder();
+        final ComplexProperty path = b.root(
+            b.simple("number", numberSignature)
+        );
+        final var query = new KindNameQuery("PagedTest");
+
+        final var expected = new TreeSet<String>();
+        for (int i = 0; i < nodesCount; i++)
+            expected.add(String.valueOf(i));
+
+        // Each part has multiple pages and its last page isn't full.
+        for (final int parallelism : new int[] { 1, 2, 3 }) {
+            final ForestOfRecords forest = datasource.wrapper.getPullWrapper().parallelism(parallelism).pageSize(400).pullForest(path, query);
+            final var numbers = new TreeSet<String>();
+            for (final RootRecord rootRecord : forest)
+                numbers.add(rootRecord.findScalarValue(numberSignature, true));
+
+            assertEquals(nodesCount, forest.size(), "Records differ for parallelism " + parallelism + ".");
+            assertEquals(expected, numbers, "Records differ for parallelism " + parallelism + ".");
+        }
+
+        datasource.wrapper.execute(List.of(StringStatement.create("MATCH (n:PagedTest) DETACH DELETE n;")));
+    }
+
     @Test
     void testOfWrite() {
         assertDoesNotThrow(() -> {
@@ -0,0 +1,121 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.exception.PullForestException;
+import cz.matfyz.abstractwrappers.utils.AdminerFilterMatcher;
+import cz.matfyz.core.adminer.AdminerFilter;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The files don't have any types, so the matcher has to guess whether to compare the values as numbers or as strings.
+ */
+class AdminerFilterMatcherTests {
+
+    private static boolean matches(String operator, String expected, @Nullable String value) {
+        final var matcher = AdminerFilterMatcher.create(List.of(new AdminerFilter("property", operator, expected)));
+        return matcher.matches(name -> value);
+    }
+
+    @Test
+    void noFilters() {
+        assertNull(AdminerFilterMatcher.create(null));
+        assertNull(AdminerFilterMatcher.create(List.of()));
+    }
+
+    @Test
+    void like() {
+        assertTrue(matches("Like", "a%c", "abc"));
+        assertTrue(matches("Like", "a%c", "ac"));
+        assertTrue(matches("Like", "a%c", "a\nc"));
+        // The whole value has to match.
+        assertFalse(matches("Like", "a%c", "abcd"));
+        assertFalse(matches("Like", "a%c", "xabc"));
+
+        assertTrue(matches("Like", "a_c", "abc"));
+        assertFalse(matches("Like", "a_c", "ac"));
+        assertFalse(matches("Like", "a_c", "abbc"));
+
+        // The other characters aren't special (like in a regex).
+        assertTrue(matches("Like", "a.b+%", "a.b+c"));
+        assertFalse(matches("Like", "a.b+%", "axbbc"));
+        assertTrue(matches("Like", "(a)[b]\\%", "(a)[b]\\c"));
+
+        assertFalse(matches("Like", "abc", "ABC"));
+        assertTrue(matches("ILike", "abc", "ABC"));
+        assertTrue(matches("ILike", "ŽLUŤ%", "žluťoučký kůň"));
+
+        assertTrue(matches("NotLike", "a%", "ba"));
+        assertFalse(matches("NotLike", "a%", "ab"));
+    }
+
+    @Test
+    void numbersAreComparedAsNumbers() {
+        assertTrue(matches("Equal", "10", "10.0"));
+        assertTrue(matches("Equal", "1000", "1e3"));
+        assertTrue(matches("Less", "10", "9"));
+        assertTrue(matches("Less", "3", "-5"));
+        assertTrue(matches("GreaterOrEqual", "2.5", "2.50"));
+        assertFalse(matches("NotEqual", "7", "7.0"));
+    }
+
+    @Test
+    void otherValuesAreComparedAsStrings() {
+        // The value isn't a number, so "9" > "10a" (as strings).
+        assertFalse(matches("Less", "10a", "9"));
+        assertTrue(matches("Greater", "10a", "9"));
+        assertFalse(matches("Equal", "10", "10 "));
+        assertFalse(matches("Equal", "abc", "ABC"));
+        assertTrue(matches("Less", "b", "a"));
+    }
+
+    @Test
+    void sets() {
+        assertTrue(matches("In", "1, 2.0, 'x y'", "2"));
+        assertTrue(matches("In", "1, 2.0, 'x y'", "x y"));
+        assertTrue(matches("In", "\"a\", b", "a"));
+        assertFalse(matches("In", "1, 2.0, 'x y'", "3"));
+        assertTrue(matches("NotIn", "1, 2", "3"));
+        assertFalse(matches("NotIn", "1, 2", "1.0"));
+    }
+
+    @Test
+    void missingValueIsMatchedOnlyByIsNull() {
+        assertTrue(matches("IsNull", "", null));
+        assertFalse(matches("IsNull", "", ""));
+        assertFalse(matches("IsNotNull", "", null));
+        assertTrue(matches("IsNotNull", "", ""));
+
+        for (final String operator : List.of("Equal", "NotEqual", "Less", "Greater", "Like", "NotLike", "In", "NotIn", "Contains"))
+            assertFalse(matches(operator, "x", null), "The missing value shouldn't match the " + operator + " operator.");
+    }
+
+    @Test
+    void allFiltersHaveToMatch() {
+        final var matcher = AdminerFilterMatcher.create(List.of(
+            new AdminerFilter("name", "StartsWith", "Jo"),
+            new AdminerFilter("age", "Greater", "18")
+        ));
+        assertEquals(2, matcher.propertyNames().size());
+
+        assertTrue(matcher.matches(Map.of("name", "John", "age", "20")::get));
+        assertFalse(matcher.matches(Map.of("name", "John", "age", "18")::get));
+        assertFalse(matcher.matches(Map.of("name", "Bob", "age", "20")::get));
+        assertFalse(matcher.matches(Map.of("name", "John")::get));
+    }
+
+    @Test
+    void unsupportedOperator() {
+        assertThrows(PullForestException.class, () -> AdminerFilterMatcher.create(List.of(new AdminerFilter("property", "Sounds", "x"))));
+    }
+
+}
@@ -0,0 +1,230 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.mapping.AccessPathBuilder;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
+import cz.matfyz.tests.mock.MockCsvProvider;
+import cz.matfyz.wrappercsv.CsvProvider;
+import cz.matfyz.wrappercsv.CsvProvider.CsvSettings;
+import cz.matfyz.wrappercsv.CsvPullWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The CSV reader parses the rows directly from the bytes, which are read to a buffer (from a stream or from the memory-mapped windows of a local file).
+ * Any value can be split between two reads - in the middle of a quoted newline, a <code>""</code> pair, a <code>\r\n</code>, or a multi-byte character.
+ */
+class CsvReaderTests {
+
+    private static final Signature idSignature = Signature.createBase(1);
+    private static final Signature textSignature = Signature.createBase(2);
+
+    private static final AccessPathBuilder b = new AccessPathBuilder();
+    private static final ComplexProperty path = b.root(
+        b.simple("id", idSignature),
+        b.simple("text", textSignature)
+    );
+
+    private record Value(String encoded, @Nullable String decoded) {}
+
+    private static final List<Value> values = List.of(
+        new Value("plain", "plain"),
+        new Value("\"with, separator\"", "with, separator"),
+        new Value("\"multi\nline\"", "multi\nline"),
+        new Value("\"crlf\r\ninside\"", "crlf\r\ninside"),
+        new Value("\"say \"\"hi\"\"\"", "say \"hi\""),
+        new Value("esc\\,aped", "esc,aped"),
+        new Value("\"žluťoučký kůň 🐴\"", "žluťoučký kůň 🐴"),
+        new Value("🐴🐴", "🐴🐴"),
+        new Value("mid\"quote", "mid\"quote"),
+        new Value("\"quoted\"tail", "quotedtail"),
+        new Value("", ""),
+        // The row is too short, so there isn't any value.
+        new Value(null, null)
+    );
+
+    private static final String[] lineEndings = { "\n", "\r\n", "\r" };
+
+    /**
+     * Each value is in its own row (with the id column before it). The rows are repeated for the given number of times.
+     * @param columnsBefore The columns between the id and the text (they aren't mapped).
+     */
+    private static String createRows(int repetitions, String columnsBefore, Map<String, @Nullable String> expected) {
+        final var sb = new StringBuilder();
+        for (int i = 0; i < repetitions; i++) {
+            for (int j = 0; j < values.size(); j++) {
+                final var value = values.get(j);
+                final String id = "id_" + i + "_" + j;
+                sb.append(id);
+                if (value.encoded != null)
+                    sb.append(',').append(columnsBefore).append(value.encoded);
+                sb.append(lineEndings[(i + j) % lineEndings.length]);
+                expected.put(id, value.decoded);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static Map<String, @Nullable String> pullValues(CsvProvider provider) {
+        final ForestOfRecords forest = new CsvPullWrapper(provider).pullForest(path, new KindNameQuery(provider.getKindName()));
+        final var output = new LinkedHashMap<String, @Nullable String>();
+        for (final RootRecord rootRecord : forest)
+            output.put(rootRecord.findScalarValue(idSignature, true), rootRecord.findScalarValue(textSignature, true));
+
+        return output;
+    }
+
+    /** Each read returns at most the given number of bytes. */
+    private static class ShortReadsProvider extends MockCsvProvider {
+
+        private final int maxRead;
+
+        ShortReadsProvider(String content, int maxRead) {
+            super(',', true, content);
+            this.maxRead = maxRead;
+        }
+
+        @Override public InputStream getInputStream() {
+            return new FilterInputStream(super.getInputStream()) {
+                @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+                    return super.read(bytes, offset, Math.min(length, maxRead));
+                }
+            };
+        }
+
+    }
+
+    @Test
+    void valuesSplitBetweenReads() {
+        final var expected = new LinkedHashMap<String, @Nullable String>();
+        final String content = "id,text\r\n" + createRows(3, "", expected);
+
+        // The reads end at all possible places of all values.
+        for (int maxRead = 1; maxRead <= 7; maxRead++)
+            assertEquals(expected, pullValues(new ShortReadsProvider(content, maxRead)), "Values differ for reads of " + maxRead + " bytes.");
+    }
+
+    @Test
+    void valuesAcrossBufferRefills(@TempDir Path directory) throws IOException {
+        final var expected = new LinkedHashMap<String, @Nullable String>();
+        // A value larger than the whole buffer (1 MB) has to be kept when the buffer is refilled.
+        final String large = "large\n\"value\" ".repeat(200_000);
+        expected.put("large", large);
+
+        final String content = "\uFEFFid,text\n"
+            + "large,\"" + large.replace("\"", "\"\"") + "\"\n"
+            + createRows(20_000, "", expected);
+        final Path file = directory.resolve("rows.csv");
+        Files.writeString(file, content);
+
+        assertEquals(expected, pullValues(new CsvProvider(new CsvSettings(file.toUri().toString(), ',', true, false, false, false))));
+    }
+
+    /** Local files are mapped by windows of this size. */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    @Test
+    void rowAcrossWindowBoundary(@TempDir Path directory) throws IOException {
+        final var expected = new LinkedHashMap<String, @Nullable String>();
+
+        // The window boundary is right in the middle of the multi-byte character.
+        final String straddling = "straddle,,\"a \"\"quoted\"\" value\r\nwith 🐴 in it\"\n";
+        final byte[] straddlingBytes = straddling.getBytes(StandardCharsets.UTF_8);
+        final long straddlingStart = WINDOW_SIZE - (straddling.substring(0, straddling.indexOf("🐴")).getBytes(StandardCharsets.UTF_8).length + 2);
+        expected.put("straddle", "a \"quoted\" value\r\nwith 🐴 in it");
+
+        final String rows = createRows(3, ",", expected);
+
+        final Path file = directory.resolve("large.csv");
+        try (
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ) {
+            channel.write(ByteBuffer.wrap("id,pad,text\n".getBytes(StandardCharsets.UTF_8)));
+
+            // The padding columns aren't mapped, so they're just skipped.
+            final int paddingRowSize = 1 << 20;
+            int paddingRows = 0;
+            while (channel.position() < straddlingStart) {
+                final String id = "pad_" + paddingRows++;
+                final long remaining = straddlingStart - channel.position();
+                // The last row takes all the rest.
+                final byte[] row = new byte[(int) (remaining < 2 * paddingRowSize ? remaining : paddingRowSize)];
+                System.arraycopy(id.getBytes(StandardCharsets.UTF_8), 0, row, 0, id.length());
+                row[id.length()] = ',';
+                Arrays.fill(row, id.length() + 1, row.length - 2, (byte) 'x');
+                row[row.length - 2] = ',';
+                row[row.length - 1] = '\n';
+                channel.write(ByteBuffer.wrap(row));
+                expected.put(id, "");
+            }
+            assertEquals(straddlingStart, channel.position(), "The padding has to end right at the straddling row.");
+
+            channel.write(ByteBuffer.wrap(straddlingBytes));
+            channel.write(ByteBuffer.wrap(rows.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        assertEquals(expected, pullValues(new CsvProvider(new CsvSettings(file.toUri().toString(), ',', true, false, false, false))));
+    }
+
+    private static Map<String, @Nullable String> pullValues(CsvProvider provider, int limit, int offset) {
+        final ForestOfRecords forest = new CsvPullWrapper(provider).pullForest(path, new KindNameQuery(provider.getKindName(), limit, offset));
+        final var output = new LinkedHashMap<String, @Nullable String>();
+        for (final RootRecord rootRecord : forest)
+            output.put(rootRecord.findScalarValue(idSignature, true), rootRecord.findScalarValue(textSignature, true));
+
+        return output;
+    }
+
+    @Test
+    void offsetIsFoundForOtherSeparator(@TempDir Path directory) throws IOException {
+        // Each quoted value contains a comma and a newline. So the rows would end elsewhere if the file was scanned with a comma as the separator.
+        final int rowsCount = 5000;
+        final var sb = new StringBuilder("id;text\n");
+        for (int i = 0; i < rowsCount; i++)
+            sb.append("id_").append(i).append(";\"a,\nb ").append(i).append("\"\n");
+
+        final Path file = directory.resolve("rows.csv");
+        Files.writeString(file, sb.toString());
+        final String url = file.toUri().toString();
+
+        final var provider = new CsvProvider(new CsvSettings(url, ';', true, false, false, false));
+        // The index is created for the first offset and then reused.
+        for (final int offset : new int[] { 1, 2000, 4095, rowsCount - 2 }) {
+            final var expected = new LinkedHashMap<String, @Nullable String>();
+            expected.put("id_" + offset, "a,\nb " + offset);
+            expected.put("id_" + (offset + 1), "a,\nb " + (offset + 1));
+            assertEquals(expected, pullValues(provider, 2, offset), "Values differ for offset " + offset + ".");
+        }
+
+        // With a comma, each line is a row (the quote isn't at the start of the value). So the other separator needs its own index.
+        final var commaProvider = new CsvProvider(new CsvSettings(url, ',', true, false, false, false));
+        assertEquals(1, pullValues(commaProvider, 1, 2000).size());
+        assertTrue(Files.exists(directory.resolve("rows.csv.separator-3b.offsets")));
+        assertTrue(Files.exists(directory.resolve("rows.csv.separator-2c.offsets")));
+        assertEquals(List.of("id_1000"), List.copyOf(pullValues(provider, 1, 1000).keySet()));
+    }
+
+}
@@ -0,0 +1,189 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.abstractwrappers.utils.FileShards;
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.mapping.AccessPathBuilder;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
+import cz.matfyz.wrappercsv.CsvProvider;
+import cz.matfyz.wrappercsv.CsvProvider.CsvSettings;
+import cz.matfyz.wrappercsv.CsvPullWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A kind can be split into multiple (possibly compressed) files. They're read one after another as if they were one file.
+ */
+class FileShardsTests {
+
+    @TempDir
+    Path directory;
+
+    private static void writeGzip(Path file, String content) throws IOException {
+        try (
+            OutputStream output = new GZIPOutputStream(Files.newOutputStream(file));
+        ) {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeZstd(Path file, String content) throws IOException {
+        try (
+            OutputStream output = new ZstdOutputStream(Files.newOutputStream(file));
+        ) {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        try (
+            input;
+        ) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String url(Path path) {
+        return path.toUri().toString();
+    }
+
+    @Test
+    void directoryStandsForAllFiles() throws IOException {
+        final Path orders = Files.createDirectory(directory.resolve("orders"));
+        Files.writeString(orders.resolve("part-2.csv"), "");
+        Files.writeString(orders.resolve("part-1.csv"), "");
+        Files.writeString(orders.resolve("part-10.csv"), "");
+        // Neither the hidden files, nor the indexes, nor the subdirectories are shards.
+        Files.writeString(orders.resolve(".hidden.csv"), "");
+        Files.writeString(orders.resolve("part-1.csv.offsets"), "");
+        Files.createDirectory(orders.resolve("nested"));
+
+        assertEquals(
+            List.of(url(orders.resolve("part-1.csv")), url(orders.resolve("part-10.csv")), url(orders.resolve("part-2.csv"))),
+            FileShards.resolve(url(orders))
+        );
+        assertEquals("orders", FileShards.extractKindName(url(orders)));
+    }
+
+    @Test
+    void globStandsForMatchingFiles() throws IOException {
+        final Path orders = Files.createDirectory(directory.resolve("orders"));
+        Files.writeString(orders.resolve("part-1.jsonl.gz"), "");
+        Files.writeString(orders.resolve("part-2.jsonl.gz"), "");
+        Files.writeString(orders.resolve("part-3.jsonl"), "");
+        Files.writeString(orders.resolve("other-1.jsonl.gz"), "");
+
+        final String glob = url(orders) + "part-*.jsonl.gz";
+        assertEquals(List.of(url(orders.resolve("part-1.jsonl.gz")), url(orders.resolve("part-2.jsonl.gz"))), FileShards.resolve(glob));
+        assertEquals("orders", FileShards.extractKindName(glob));
+
+        // The characters that aren't allowed in urls have to be encoded.
+        assertEquals(List.of(url(orders.resolve("part-3.jsonl"))), FileShards.resolve(url(orders) + "part-%5B3-9%5D.jsonl"));
+        assertEquals(List.of(), FileShards.resolve(url(orders) + "part-*.csv"));
+    }
+
+    @Test
+    void otherUrlsAreSingleShards() throws IOException {
+        final Path file = Files.writeString(directory.resolve("orders.jsonl.gz"), "");
+        assertEquals(List.of(url(file)), FileShards.resolve(url(file)));
+        assertEquals("orders", FileShards.extractKindName(url(file)));
+
+        // The missing file is reported by the reader.
+        final String missing = url(directory.resolve("missing.csv"));
+        assertEquals(List.of(missing), FileShards.resolve(missing));
+
+        assertEquals(List.of("https://example.com/data/*.csv"), FileShards.resolve("https://example.com/data/*.csv"));
+        assertEquals("orders", FileShards.extractKindName("https://example.com/data/orders.csv.zst"));
+    }
+
+    @Test
+    void compressedShardsAreDecompressed() throws IOException {
+        final String content = "žluťoučký kůň 🐴\n".repeat(10_000);
+        final Path gzip = directory.resolve("data.csv.gz");
+        final Path zstd = directory.resolve("data.csv.zst");
+        writeGzip(gzip, content);
+        writeZstd(zstd, content);
+
+        assertEquals(content, readAll(FileShards.open(url(gzip))));
+        assertEquals(content, readAll(FileShards.open(url(zstd))));
+        assertTrue(FileShards.isCompressed(url(gzip)));
+        assertTrue(FileShards.isCompressed(url(zstd)));
+        assertFalse(FileShards.isCompressed(url(directory.resolve("data.csv"))));
+    }
+
+    @Test
+    void shardsAreConcatenated() throws IOException {
+        final Path first = Files.writeString(directory.resolve("1.csv"), "id,text\r\na,1\r\n");
+        // The missing trailing newlines are added, so the last row isn't merged with the next one.
+        final Path second = directory.resolve("2.csv.gz");
+        writeGzip(second, "id,text\nb,2\nc,3");
+        final Path empty = directory.resolve("3.csv");
+        Files.writeString(empty, "");
+        final Path onlyHeader = directory.resolve("4.csv.zst");
+        writeZstd(onlyHeader, "id,text");
+        final Path last = directory.resolve("5.csv");
+        Files.writeString(last, "id,text\nd,4");
+
+        final List<String> urls = List.of(url(first), url(second), url(empty), url(onlyHeader), url(last));
+        assertEquals("id,text\r\na,1\r\nb,2\nc,3\nd,4\n", readAll(FileShards.openAll(urls, 1)));
+        assertEquals("id,text\r\na,1\r\nid,text\nb,2\nc,3\nid,text\nid,text\nd,4\n", readAll(FileShards.openAll(urls, 0)));
+        // A single shard is read as it is.
+        assertEquals("id,text\nb,2\nc,3", readAll(FileShards.openAll(List.of(url(second)), 1)));
+    }
+
+    @Test
+    void csvShardsArePulledAsOneKind() throws IOException {
+        final Path orders = Files.createDirectory(directory.resolve("orders"));
+        final var expected = new LinkedHashMap<String, String>();
+        final var sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("order_").append(i).append(",\"text ").append(i).append(" 🐴\"\n");
+            expected.put("order_" + i, "text " + i + " 🐴");
+        }
+        final String[] rows = sb.toString().split("(?<=\n)");
+
+        // Each shard repeats the header. The last rows don't end with a newline.
+        final String header = "id,text\n";
+        Files.writeString(orders.resolve("part-1.csv"), header + String.join("", List.of(rows).subList(0, 1000)));
+        writeGzip(orders.resolve("part-2.csv.gz"), header + String.join("", List.of(rows).subList(1000, 2000)).stripTrailing());
+        writeZstd(orders.resolve("part-3.csv.zst"), header + String.join("", List.of(rows).subList(2000, 3000)).stripTrailing());
+
+        final Signature idSignature = Signature.createBase(1);
+        final Signature textSignature = Signature.createBase(2);
+        final var b = new AccessPathBuilder();
+        final ComplexProperty path = b.root(
+            b.simple("id", idSignature),
+            b.simple("text", textSignature)
+        );
+
+        final var provider = new CsvProvider(new CsvSettings(url(orders), ',', true, false, false, false));
+        assertEquals("orders", provider.getKindName());
+
+        final ForestOfRecords forest = new CsvPullWrapper(provider).pullForest(path, new KindNameQuery(provider.getKindName()));
+        final Map<String, String> output = new LinkedHashMap<>();
+        for (final RootRecord rootRecord : forest)
+            output.put(rootRecord.findScalarValue(idSignature, true), rootRecord.findScalarValue(textSignature, true));
+
+        assertEquals(expected, output);
+    }
+
+}
@@ -0,0 +1,137 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.core.identifiers.Signature;
+import cz.matfyz.core.mapping.AccessPathBuilder;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
+import cz.matfyz.tests.mock.MockJsonProvider;
+import cz.matfyz.wrapperjson.JsonPullWrapper;
+import cz.matfyz.wrapperjson.JsonProvider;
+import cz.matfyz.wrapperjson.JsonProvider.JsonSettings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Large local JSON Lines files are split into chunks (at the line boundaries) that are parsed in parallel.
+ * The lines around the chunk boundaries have all kinds of line endings, blank lines, and multi-byte characters, so each chunk should start right at a record.
+ */
+class JsonLinesTests {
+
+    /** The file has to have at least 8 MB to be split (into chunks of at least 4 MB). */
+    private static final int LINES_COUNT = 220_000;
+
+    private static final AccessPathBuilder b = new AccessPathBuilder();
+    private static final ComplexProperty path = b.root(
+        b.simple("number", Signature.createBase(1)),
+        b.simple("text", Signature.createBase(2))
+    );
+
+    @TempDir
+    static Path directory;
+    private static Path file;
+    private static String content;
+
+    @BeforeAll
+    static void createFile() throws IOException {
+        content = generateLines();
+        file = directory.resolve("lines.jsonl");
+        Files.writeString(file, content);
+    }
+
+    private static String generateLines() {
+        final var sb = new StringBuilder();
+        for (int i = 0; i < LINES_COUNT; i++) {
+            final String padding = "x".repeat(i % 97);
+            sb.append("{\"number\":\"n_").append(i).append("\",");
+
+            switch (i % 6) {
+                case 0 -> sb.append("\"text\":\"").append(padding).append("\"}\n");
+                case 1 -> sb.append("\"text\":\"crlf ").append(padding).append("\"}\r\n");
+                case 2 -> sb.append("\"text\":\"blank lines ").append(padding).append("\"}\n\n  \t\n");
+                case 3 -> sb.append("\"text\":\"žluťoučký kůň 🐴 ").append(padding).append("\"}\n");
+                case 4 -> sb.append("\"text\":\"escaped \\n \\\"}{\\\" ").append(padding).append("\"}\n");
+                default -> sb.append("\"extra\":{\"a\":[1,2,{\"b\":\"}\\n\"}]},\"text\":\"").append(padding).append("\"}\n");
+            }
+        }
+
+        // The last line doesn't have to end with a newline.
+        return sb.append("{\"number\":\"last\",\"text\":\"no newline\"}").toString();
+    }
+
+    private static JsonPullWrapper createPullWrapper(JsonProvider provider, int parallelism) {
+        return new JsonPullWrapper(provider).parallelism(parallelism);
+    }
+
+    private static JsonProvider createFileProvider() {
+        return new JsonProvider(new JsonSettings(file.toUri().toString(), false, false, false));
+    }
+
+    /** The order of the records is kept only within the chunks. */
+    private static List<String> toSortedStrings(ForestOfRecords forest) {
+        final var output = new ArrayList<String>(forest.size());
+        for (final RootRecord rootRecord : forest)
+            output.add(rootRecord.toComparableString());
+
+        output.sort(null);
+        return output;
+    }
+
+    @Test
+    void parallelReadMatchesSequentialRead() {
+        final var provider = createFileProvider();
+        final var query = new KindNameQuery(provider.getKindName());
+
+        final ForestOfRecords sequential = createPullWrapper(provider, 1).pullForest(path, query);
+        assertEquals(LINES_COUNT + 1, sequential.size());
+        final var expected = toSortedStrings(sequential);
+
+        // Each parallelism splits the file at different places.
+        for (int parallelism = 2; parallelism <= 5; parallelism++) {
+            final ForestOfRecords parallel = createPullWrapper(provider, parallelism).pullForest(path, query);
+            assertEquals(expected, toSortedStrings(parallel), "Records differ for parallelism " + parallelism + ".");
+        }
+    }
+
+    @Test
+    void longFirstLineIsNotSplit() throws IOException {
+        // Only the beginning of the file is probed. So the file is read as one document (by the sequential parser), even though it's in the JSON Lines format.
+        final String longLine = "{\"number\":\"long\",\"text\":\"" + "x".repeat(1 << 17) + "\"}\n";
+        final Path longFile = directory.resolve("long-first-line.jsonl");
+        Files.writeString(longFile, longLine + content);
+
+        final var provider = new JsonProvider(new JsonSettings(longFile.toUri().toString(), false, false, false));
+        final var query = new KindNameQuery(provider.getKindName());
+
+        final ForestOfRecords sequential = createPullWrapper(provider, 1).pullForest(path, query);
+        assertEquals(LINES_COUNT + 2, sequential.size());
+        assertEquals(toSortedStrings(sequential), toSortedStrings(createPullWrapper(provider, 4).pullForest(path, query)));
+    }
+
+    @Test
+    void offsetIsFoundByRecordIndex() {
+        final var fileProvider = createFileProvider();
+        // The in-memory file doesn't have a local path, so all records before the offset are just skipped by the parser.
+        final var memoryProvider = new MockJsonProvider(content);
+
+        for (final int offset : new int[] { 1, 5, 1000, LINES_COUNT - 3, LINES_COUNT }) {
+            final var query = new KindNameQuery(fileProvider.getKindName(), 10, offset);
+            final ForestOfRecords fromIndex = createPullWrapper(fileProvider, 1).pullForest(path, query);
+            final ForestOfRecords fromParser = createPullWrapper(memoryProvider, 1).pullForest(path, query);
+
+            assertEquals(fromParser.toComparableString(), fromIndex.toComparableString(), "Records differ for offset " + offset + ".");
+        }
+    }
+
+}
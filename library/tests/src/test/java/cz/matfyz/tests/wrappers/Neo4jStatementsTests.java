@@ -0,0 +1,101 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.core.instance.InstanceBuilder;
+import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.mapping.Mapping;
+import cz.matfyz.core.schema.SchemaCategory;
+import cz.matfyz.tests.example.basic.Neo4j;
+import cz.matfyz.tests.example.basic.PostgreSQL;
+import cz.matfyz.tests.example.basic.Schema;
+import cz.matfyz.transformations.algorithms.DMLAlgorithm;
+import cz.matfyz.transformations.algorithms.ICAlgorithm;
+import cz.matfyz.wrapperneo4j.Neo4jDMLWrapper;
+import cz.matfyz.wrapperneo4j.Neo4jICWrapper;
+import cz.matfyz.wrapperneo4j.Neo4jMergeStatement;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The nodes are constrained by their identifiers (the relationships can't be). Then all rows of a kind are merged by one parametrized query.
+ */
+class Neo4jStatementsTests {
+
+    private static final SchemaCategory schema = Schema.newSchema();
+
+    private static final Mapping order = Neo4j.order(schema).mapping();
+    private static final Mapping product = Neo4j.product(schema).mapping();
+    private static final Mapping item = Neo4j.item(schema).mapping();
+    private static final Mapping contact = Neo4j.contact(schema).mapping();
+    private static final Mapping hasContact = Neo4j.hasContact(schema).mapping();
+    private static final List<Mapping> allMappings = List.of(order, product, item, contact, hasContact);
+
+    private static List<String> createConstraints(Mapping mapping) {
+        return ICAlgorithm.run(mapping, allMappings, new Neo4jICWrapper()).stream()
+            .map(AbstractStatement::getContent)
+            .toList();
+    }
+
+    @Test
+    void nodesAreConstrained() {
+        assertEquals(
+            List.of("CREATE CONSTRAINT `Order_PRIMARY_KEY` IF NOT EXISTS FOR (n:`Order`) REQUIRE (n.`number`) IS UNIQUE;"),
+            createConstraints(order)
+        );
+        assertEquals(
+            List.of("CREATE CONSTRAINT `Product_PRIMARY_KEY` IF NOT EXISTS FOR (n:`Product`) REQUIRE (n.`id`) IS UNIQUE;"),
+            createConstraints(product)
+        );
+    }
+
+    @Test
+    void relationshipsAreNotConstrained() {
+        assertEquals(List.of(), createConstraints(item));
+        // The identifier contains a property of the relationship itself. It still isn't a label of nodes.
+        assertEquals(List.of(), createConstraints(hasContact));
+    }
+
+    private static InstanceCategory createInstance() {
+        final var builder = new InstanceBuilder(schema);
+        PostgreSQL.addOrder(builder, "o_100");
+        PostgreSQL.addOrder(builder, "o_200");
+        PostgreSQL.addProduct(builder, "123", "Clean Code", "125");
+        PostgreSQL.addProduct(builder, "765", "The Lord of the Rings", "199");
+        PostgreSQL.addItem(builder, 0, 0, "1");
+        PostgreSQL.addItem(builder, 1, 1, "2");
+        return builder.build();
+    }
+
+    private static List<Neo4jMergeStatement> createMerges(Mapping mapping) {
+        return DMLAlgorithm.run(mapping, createInstance(), new Neo4jDMLWrapper()).stream()
+            .map(statement -> (Neo4jMergeStatement) statement)
+            .toList();
+    }
+
+    @Test
+    void nodesAreMergedByUnwind() {
+        final var merges = createMerges(order);
+        assertEquals(2, merges.size());
+        // The missing values are merged as nulls, so all rows have the same shape.
+        for (final var merge : merges)
+            assertEquals("UNWIND $rows AS row\nMERGE (n:`Order` { `number`: row.`number`, `customer`: row.`customer` })", merge.getUnwindQuery());
+    }
+
+    @Test
+    void relationshipsAreMergedByUnwind() {
+        final var merges = createMerges(item);
+        assertEquals(2, merges.size());
+        for (final var merge : merges) {
+            assertEquals("""
+                UNWIND $rows AS row
+                MERGE (from:`Order` { `number`: row.from.`number` })
+                MERGE (to:`Product` { `id`: row.to.`id` })
+                MERGE (from)-[:`ITEM` { `quantity`: row.properties.`quantity` }]->(to)""", merge.getUnwindQuery());
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package cz.matfyz.tests.wrappers;
+
+import cz.matfyz.abstractwrappers.utils.RecordOffsetIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * The index is kept in a sidecar file, so it has to be rebuilt whenever the indexed file changes.
+ */
+class RecordOffsetIndexTests {
+
+    private static final int RECORDS_COUNT = 3000;
+    /** Each record has this number of bytes. */
+    private static final int RECORD_SIZE = 10;
+
+    @TempDir
+    Path directory;
+    private Path file;
+    private Path sidecar;
+    private int scansCount;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = directory.resolve("data.csv");
+        sidecar = directory.resolve("data.csv.offsets");
+        Files.write(file, new byte[RECORDS_COUNT * RECORD_SIZE]);
+        scansCount = 0;
+    }
+
+    /** Reports the records by the size of the file (the content doesn't matter). */
+    private RecordOffsetIndex getIndex() throws IOException {
+        return RecordOffsetIndex.getOrCreate(file, (scannedFile, onRecordStart) -> {
+            scansCount++;
+            final long size = Files.size(scannedFile);
+            for (long offset = 0; offset < size; offset += RECORD_SIZE)
+                onRecordStart.accept(offset);
+        });
+    }
+
+    @Test
+    void findsClosestPosition() throws IOException {
+        final var index = getIndex();
+        assertEquals(RECORDS_COUNT, index.recordsCount());
+
+        assertEquals(new RecordOffsetIndex.Position(0, 0), index.find(0));
+        assertEquals(new RecordOffsetIndex.Position(0, 0), index.find(1023));
+        assertEquals(new RecordOffsetIndex.Position(1024, 1024 * RECORD_SIZE), index.find(1024));
+        assertEquals(new RecordOffsetIndex.Position(2048, 2048 * RECORD_SIZE), index.find(2500));
+        // There isn't any record after the last stored position.
+        assertEquals(new RecordOffsetIndex.Position(2048, 2048 * RECORD_SIZE), index.find(100_000));
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Files.write(file, new byte[0]);
+        final var index = getIndex();
+
+        assertEquals(0, index.recordsCount());
+        assertEquals(new RecordOffsetIndex.Position(0, 0), index.find(10));
+    }
+
+    @Test
+    void sidecarIsReused() throws IOException {
+        getIndex();
+        assertTrue(Files.exists(sidecar));
+
+        final var index = getIndex();
+        assertEquals(1, scansCount);
+        assertEquals(RECORDS_COUNT, index.recordsCount());
+        assertEquals(new RecordOffsetIndex.Position(1024, 1024 * RECORD_SIZE), index.find(2000));
+    }
+
+    @Test
+    void sidecarIsInvalidatedBySize() throws IOException {
+        getIndex();
+        final FileTime lastModified = Files.getLastModifiedTime(file);
+
+        Files.write(file, new byte[(RECORDS_COUNT + 100) * RECORD_SIZE]);
+        // Only the size is different.
+        Files.setLastModifiedTime(file, lastModified);
+
+        assertEquals(RECORDS_COUNT + 100, getIndex().recordsCount());
+        assertEquals(2, scansCount);
+    }
+
+    @Test
+    void sidecarIsInvalidatedByLastModifiedTime() throws IOException {
+        getIndex();
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 60_000));
+
+        getIndex();
+        assertEquals(2, scansCount);
+        // The new index is saved.
+        getIndex();
+        assertEquals(2, scansCount);
+    }
+
+    @Test
+    void brokenSidecarIsIgnored() throws IOException {
+        Files.writeString(sidecar, "not an index");
+
+        assertEquals(RECORDS_COUNT, getIndex().recordsCount());
+        assertEquals(1, scansCount);
+
+        // A truncated one as well.
+        final byte[] saved = Files.readAllBytes(sidecar);
+        Files.write(sidecar, Arrays.copyOf(saved, saved.length / 2));
+
+        assertEquals(RECORDS_COUNT, getIndex().recordsCount());
+        assertEquals(2, scansCount);
+    }
+
+}
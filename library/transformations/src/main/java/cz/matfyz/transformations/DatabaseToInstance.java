@@ -1,28 +1,41 @@
 package cz.matfyz.transformations;
 
+import cz.matfyz.abstractwrappers.AbstractControlWrapper;
 import cz.matfyz.abstractwrappers.AbstractPullWrapper;
 import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.core.exception.NamedException;
 import cz.matfyz.core.exception.OtherException;
+import cz.matfyz.core.instance.DeferredMerger;
+import cz.matfyz.core.instance.InstanceBuilder;
 import cz.matfyz.core.instance.InstanceCategory;
 import cz.matfyz.core.mapping.Mapping;
 import cz.matfyz.core.record.ForestOfRecords;
 import cz.matfyz.core.utils.Statistics;
+import cz.matfyz.core.utils.UniqueIdGenerator;
 import cz.matfyz.transformations.algorithms.MTCAlgorithm;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class DatabaseToInstance {
 
-    private Mapping mapping;
+    private List<Mapping> mappings;
     private InstanceCategory currentInstance;
-    private AbstractPullWrapper pullWrapper;
+    /** Each mapping is pulled by its own wrapper, because the wrappers aren't thread-safe. */
+    private Supplier<AbstractPullWrapper> pullWrappers;
     private @Nullable KindNameQuery query = null;
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
     public DatabaseToInstance input(Mapping mapping, InstanceCategory currentInstance, AbstractPullWrapper pullWrapper) {
-        this.mapping = mapping;
+        this.mappings = List.of(mapping);
         this.currentInstance = currentInstance;
-        this.pullWrapper = pullWrapper;
+        this.pullWrappers = () -> pullWrapper;
 
         return this;
     }
@@ -33,6 +46,31 @@ public class DatabaseToInstance {
         return this.input(mapping, currentInstance, pullWrapper);
     }
 
+    /**
+     * The mappings are pulled (and processed by the MTC algorithm) concurrently, each one on its own virtual thread with its own pull wrapper.
+     * At most {@link AbstractPullWrapper#maxConcurrentStreams()} mappings are pulled at once.
+     * The first one is imported directly into the current instance, the other ones into partial instances.
+     * Then the partial instances are merged into the current instance in the order of the mappings, so the result doesn't depend on the scheduling.
+     */
+    public DatabaseToInstance input(List<Mapping> mappings, InstanceCategory currentInstance, AbstractControlWrapper control) {
+        this.mappings = mappings;
+        this.currentInstance = currentInstance;
+        this.pullWrappers = control::getPullWrapper;
+
+        return this;
+    }
+
+    /**
+     * The records are pulled and processed by the MTC algorithm in batches of this size. So only a few batches have to be in memory at once (not the whole kind).
+     */
+    public DatabaseToInstance batchSize(int batchSize) {
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
     public InstanceCategory run() {
         try {
             return innerRun();
@@ -46,25 +84,94 @@ public class DatabaseToInstance {
     }
 
     private InstanceCategory innerRun() throws Exception {
-        Statistics.start(RUN_INTERVAL);
+        if (query != null && mappings.size() > 1)
+            throw new IllegalArgumentException("A query can be used only with a single mapping.");
 
-        final var finalQuery = query != null ? query : new KindNameQuery(mapping.kindName());
-
-        final ForestOfRecords forest = pullWrapper.pullForest(mapping.accessPath(), finalQuery);
+        Statistics.start(RUN_INTERVAL);
 
-        Statistics.set(RECORDS_COUNTER, forest.size());
+        // The generated ids have to be unique across all batches (and mappings).
+        final var idGenerator = UniqueIdGenerator.create();
+        long recordsCount = 0;
+        if (mappings.size() > 1)
+            recordsCount = importMappingsConcurrently(idGenerator);
+        else if (mappings.size() == 1)
+            recordsCount = importMapping(mappings.getFirst(), currentInstance, pullWrappers.get(), idGenerator);
 
-        Statistics.start(MTC_INTERVAL);
-        MTCAlgorithm.run(mapping, currentInstance, forest);
-        Statistics.end(MTC_INTERVAL);
+        Statistics.set(RECORDS_COUNTER, recordsCount);
 
         Statistics.end(RUN_INTERVAL);
 
         return currentInstance;
     }
 
+    private long importMappingsConcurrently(UniqueIdGenerator idGenerator) throws Exception {
+        final var partialInstances = new ArrayList<InstanceCategory>();
+        final var futures = new ArrayList<Future<Long>>();
+        long recordsCount = 0;
+
+        final List<AbstractPullWrapper> wrappers = mappings.stream().map(mapping -> pullWrappers.get()).toList();
+        final int concurrency = Math.max(1, Math.min(wrappers.getFirst().maxConcurrentStreams(), mappings.size()));
+
+        try (
+            final var executor = Executors.newFixedThreadPool(concurrency, Thread.ofVirtual().factory());
+        ) {
+            for (int i = 0; i < mappings.size(); i++) {
+                final Mapping mapping = mappings.get(i);
+                final AbstractPullWrapper pullWrapper = wrappers.get(i);
+                final var target = partialInstances.isEmpty()
+                    ? currentInstance
+                    : new InstanceBuilder(currentInstance.schema(), currentInstance.domainStorage()).build();
+                partialInstances.add(target);
+                futures.add(executor.submit(() -> importMapping(mapping, target, pullWrapper, idGenerator)));
+            }
+
+            try {
+                for (final var future : futures)
+                    recordsCount += future.get();
+            }
+            catch (ExecutionException e) {
+                // There is no point in waiting for the other mappings.
+                executor.shutdownNow();
+                throw e.getCause() instanceof final Exception cause ? cause : e;
+            }
+        }
+
+        Statistics.start(MERGE_INTERVAL);
+        final var merger = new DeferredMerger(currentInstance);
+        for (final var partialInstance : partialInstances.subList(1, partialInstances.size()))
+            merger.appendInstance(partialInstance);
+        merger.mergeAll();
+        Statistics.end(MERGE_INTERVAL);
+
+        return recordsCount;
+    }
+
+    /** Returns the number of the pulled records. */
+    private long importMapping(Mapping mapping, InstanceCategory target, AbstractPullWrapper pullWrapper, UniqueIdGenerator idGenerator) throws Exception {
+        final var finalQuery = query != null ? query : new KindNameQuery(mapping.kindName());
+        long recordsCount = 0;
+
+        try (
+            final var batches = new RecordBatches(pullWrapper.streamForest(mapping.accessPath(), finalQuery), batchSize);
+        ) {
+            ForestOfRecords batch;
+            while ((batch = batches.next()) != null) {
+                recordsCount += batch.size();
+
+                Statistics.start(MTC_INTERVAL);
+                MTCAlgorithm.run(mapping, target, batch, idGenerator);
+                Statistics.end(MTC_INTERVAL);
+            }
+        }
+
+        return recordsCount;
+    }
+
     public static final String RUN_INTERVAL = "database-to-instance";
+    /** If the mappings are imported concurrently, this is the sum over all of them. */
     public static final String MTC_INTERVAL = "mtc-algorithm";
+    /** Merging the partial instances of the concurrently imported mappings. */
+    public static final String MERGE_INTERVAL = "merge-mappings";
     public static final String RECORDS_COUNTER = "pulled-records";
 
 }
@@ -3,10 +3,11 @@ package cz.matfyz.transformations;
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
 import cz.matfyz.abstractwrappers.AbstractICWrapper;
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.core.exception.NamedException;
 import cz.matfyz.core.exception.OtherException;
-import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.ReadableInstance;
 import cz.matfyz.core.mapping.Mapping;
 import cz.matfyz.core.utils.Statistics;
 import cz.matfyz.transformations.algorithms.DDLAlgorithm;
@@ -15,40 +16,76 @@ import cz.matfyz.transformations.algorithms.ICAlgorithm;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class InstanceToDatabase {
 
     private Collection<Mapping> allMappings;
-    private InstanceCategory currentInstance;
+    private ReadableInstance currentInstance;
     private AbstractDDLWrapper ddlWrapper;
-    private AbstractDMLWrapper dmlWrapper;
+    private Supplier<? extends AbstractDMLWrapper> dmlWrappers;
     private AbstractICWrapper icWrapper;
+    private int parallelism = 1;
 
+    /**
+     * @param dmlWrappers Creates a new DML wrapper for each thread of the DML algorithm (the wrappers are stateful, so they can't be shared between threads).
+     */
     public InstanceToDatabase input(
         Collection<Mapping> allMappings,
-        InstanceCategory currentInstance,
+        ReadableInstance currentInstance,
         AbstractDDLWrapper ddlWrapper,
-        AbstractDMLWrapper dmlWrapper,
+        Supplier<? extends AbstractDMLWrapper> dmlWrappers,
         AbstractICWrapper icWrapper
     ) {
         this.allMappings = allMappings;
         this.currentInstance = currentInstance;
         this.ddlWrapper = ddlWrapper;
-        this.dmlWrapper = dmlWrapper;
+        this.dmlWrappers = dmlWrappers;
         this.icWrapper = icWrapper;
 
         return this;
     }
 
+    /**
+     * The number of threads used by the DML algorithm. If it's more than 1, the rows of the mappings are split into ranges that are processed in parallel.
+     * The order of the statements stays the same. By default, it's 1, so that no threads are started unless the caller asks for them (the server configures it by <code>server.dmlParallelism</code>).
+     */
+    public InstanceToDatabase parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
     public record InstanceToDatabaseResult(
         String statementsAsString,
         Collection<AbstractStatement> statements
     ) {}
 
+    /**
+     * Collects all statements in memory. For large instances, use {@link #run(AbstractPushWrapper)} instead.
+     */
     public InstanceToDatabaseResult run() {
+        final var statements = new ArrayList<AbstractStatement>();
+        wrapExceptions(() -> innerRun(statements::add));
+
+        final var statementsAsString = statementsToString(statements);
+
+        return new InstanceToDatabaseResult(statementsAsString, statements);
+    }
+
+    /**
+     * Pushes the statements to the output as soon as they are created. Only the DDL and IC statements (i.e., a few per mapping) are kept in memory.
+     * The output isn't closed here.
+     * @return The number of all pushed statements.
+     */
+    public long run(AbstractPushWrapper output) {
+        return wrapExceptions(() -> innerRun(output::push));
+    }
+
+    private static long wrapExceptions(Supplier<Long> function) {
         try {
-            return innerRun();
+            return function.get();
         }
         catch (NamedException e) {
             throw e;
@@ -58,26 +95,23 @@ public class InstanceToDatabase {
         }
     }
 
-    private InstanceToDatabaseResult innerRun() {
+    private long innerRun(Consumer<AbstractStatement> output) {
         if (allMappings.size() == 0)
-            return new InstanceToDatabaseResult("", List.of());
+            return 0;
 
         Statistics.start(RUN_INTERVAL);
+        Statistics.start(CTM_INTERVAL);
 
         final var ddlStatements = new ArrayList<AbstractStatement>();
         final var icStatements = new ArrayList<AbstractStatement>();
-        final var dmlStatements = new ArrayList<AbstractStatement>();
 
         for (final var mapping : allMappings) {
-            Statistics.start(CTM_INTERVAL);
-
             ddlStatements.add(DDLAlgorithm.run(mapping, currentInstance, ddlWrapper));
             icStatements.addAll(ICAlgorithm.run(mapping, allMappings, icWrapper));
-            dmlStatements.addAll(DMLAlgorithm.run(mapping, currentInstance, dmlWrapper));
-
-            Statistics.end(CTM_INTERVAL);
         }
 
+        Statistics.end(CTM_INTERVAL);
+
         final var sortedIcStatements = AbstractStatement.sortByPriority(icStatements);
 
         // The mappings can be processed in whatever order. However, the final statements must be:
@@ -86,24 +120,33 @@ public class InstanceToDatabase {
         //  - All IC statements.
         // So that the IC statements can work with tables defined by the DDL statements and there are no FK constraints violations in the DML statements.
         // Also, there might be several dependency groups of IC statements, so they must be sorted by priority.
+        // The exception are the datasources whose constraints speed up the inserts instead - for them, the IC statements go right after the DDL statements.
+        // The DML statements are by far the most numerous, so they are streamed to the output right away (they are created in parallel, but in a deterministic order).
 
-        final var statements = new ArrayList<AbstractStatement>();
-        statements.addAll(ddlStatements);
-        statements.addAll(dmlStatements);
-        statements.addAll(sortedIcStatements);
+        ddlStatements.forEach(output);
 
-        Statistics.set(STATEMENTS_COUNTER, dmlStatements.size());
-        Statistics.end(RUN_INTERVAL);
+        final boolean isICBeforeData = icWrapper.isCreatedBeforeData();
+        if (isICBeforeData)
+            sortedIcStatements.forEach(output);
 
-        final var statementsAsString = statementsToString(statements, dmlWrapper);
+        // The interval now also contains the time spent by the output (e.g., writing to a file).
+        Statistics.start(CTM_INTERVAL);
+        final long dmlCount = DMLAlgorithm.runParallel(allMappings, currentInstance, dmlWrappers, parallelism, output);
+        Statistics.end(CTM_INTERVAL);
 
-        return new InstanceToDatabaseResult(statementsAsString, statements);
+        if (!isICBeforeData)
+            sortedIcStatements.forEach(output);
+
+        Statistics.set(STATEMENTS_COUNTER, dmlCount);
+        Statistics.end(RUN_INTERVAL);
+
+        return ddlStatements.size() + dmlCount + sortedIcStatements.size();
     }
 
-    private String statementsToString(Collection<AbstractStatement> statements, AbstractDMLWrapper dmlWrapper) {
+    private static String statementsToString(Collection<AbstractStatement> statements) {
         final var sb = new StringBuilder();
-        for (final var ddlStatement : statements)
-            sb.append(ddlStatement.getContent()).append("\n");
+        for (final var statement : statements)
+            sb.append(statement.getContent()).append("\n");
 
         return sb.toString();
     }
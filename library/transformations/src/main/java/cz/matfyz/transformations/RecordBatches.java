@@ -0,0 +1,110 @@
+package cz.matfyz.transformations;
+
+import cz.matfyz.core.exception.OtherException;
+import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RootRecord;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Splits a stream of records into forests of the given size.
+ * The next batch is pulled by a background thread while the current one is being processed, so the pulling overlaps with the processing.
+ * There are at most three batches in memory at once - the processed one, the waiting one, and the one being pulled.
+ */
+final class RecordBatches implements AutoCloseable {
+
+    /** Marks the end of the stream (or an error). */
+    private static final ForestOfRecords END = new ForestOfRecords();
+
+    private final Stream<RootRecord> stream;
+    private final int batchSize;
+    private final BlockingQueue<ForestOfRecords> queue = new ArrayBlockingQueue<>(1);
+    private final Thread producer;
+
+    /** Set by the producer before it sends the {@link #END}. Either a {@link RuntimeException} or an {@link Error}. */
+    private volatile @Nullable Throwable error = null;
+    private boolean isFinished = false;
+
+    RecordBatches(Stream<RootRecord> stream, int batchSize) {
+        this.stream = stream;
+        this.batchSize = Math.max(batchSize, 1);
+        this.producer = Thread.ofVirtual().name("record-batches").start(this::produce);
+    }
+
+    private void produce() {
+        try {
+            try {
+                final var iterator = stream.iterator();
+                var batch = new ForestOfRecords();
+
+                while (iterator.hasNext()) {
+                    batch.addRecord(iterator.next());
+                    if (batch.size() < batchSize)
+                        continue;
+
+                    queue.put(batch);
+                    batch = new ForestOfRecords();
+                }
+
+                if (batch.size() > 0)
+                    queue.put(batch);
+            }
+            catch (RuntimeException | Error e) {
+                error = e;
+            }
+
+            queue.put(END);
+        }
+        catch (InterruptedException e) {
+            // The batches were closed before all of them were consumed, so there is nobody to wait for the rest.
+        }
+    }
+
+    /**
+     * Returns the next batch or null if there are no more records.
+     * If the pulling failed, the exception is rethrown here.
+     */
+    @Nullable ForestOfRecords next() {
+        if (isFinished)
+            return null;
+
+        final ForestOfRecords batch;
+        try {
+            batch = queue.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OtherException(e);
+        }
+
+        if (batch != END)
+            return batch;
+
+        isFinished = true;
+        final var currentError = error;
+        if (currentError instanceof final RuntimeException runtimeException)
+            throw runtimeException;
+        if (currentError instanceof final Error otherError)
+            throw otherError;
+
+        return null;
+    }
+
+    @Override public void close() {
+        producer.interrupt();
+        try {
+            producer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+}
@@ -4,7 +4,7 @@ import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper.PathSegment;
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper.PropertyPath;
-import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.ReadableInstance;
 import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.mapping.Name.DynamicName;
@@ -21,15 +21,15 @@ import java.util.TreeSet;
 
 public class DDLAlgorithm {
 
-    public static AbstractStatement run(Mapping mapping, InstanceCategory instance, AbstractDDLWrapper wrapper) {
+    public static AbstractStatement run(Mapping mapping, ReadableInstance instance, AbstractDDLWrapper wrapper) {
         return new DDLAlgorithm(mapping, instance, wrapper).run();
     }
 
     private final Mapping mapping;
-    private final InstanceCategory instance;
+    private final ReadableInstance instance;
     private final AbstractDDLWrapper wrapper;
 
-    private DDLAlgorithm(Mapping mapping, InstanceCategory instance, AbstractDDLWrapper wrapper) {
+    private DDLAlgorithm(Mapping mapping, ReadableInstance instance, AbstractDDLWrapper wrapper) {
         this.mapping = mapping;
         this.instance = instance;
         this.wrapper = wrapper;
@@ -78,11 +78,10 @@ public class DDLAlgorithm {
 
     private Set<String> getDynamicPropertyNames(ComplexProperty map) {
         final var schemaPath = mapping.category().getPath(map.signature());
-        final var mapObjex = instance.getObjex(schemaPath.to());
         final var names = new TreeSet<String>();
         final var keyProperty = map.getTypedSubpath(TypedName.KEY);
 
-        for (final var row : mapObjex.allRows()) {
+        for (final var row : instance.allRows(schemaPath.to())) {
             // It has to be a scalar value because each map entry has to have a single name.
             final var name = row.tryFindScalarValue(keyProperty.signature());
             if (name != null)
@@ -4,8 +4,8 @@ import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.core.identifiers.Signature;
-import cz.matfyz.core.instance.DomainRow;
-import cz.matfyz.core.instance.InstanceCategory;
+import cz.matfyz.core.instance.InstanceRow;
+import cz.matfyz.core.instance.ReadableInstance;
 import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.mapping.Name.DynamicName;
@@ -17,9 +17,14 @@ import cz.matfyz.transformations.exception.InvalidStateException;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
@@ -33,36 +38,141 @@ public class DMLAlgorithm {
     @SuppressWarnings({ "java:s1068", "unused" })
     private static final Logger LOGGER = LoggerFactory.getLogger(DMLAlgorithm.class);
 
-    public static List<AbstractStatement> run(Mapping mapping, InstanceCategory instance, AbstractDMLWrapper wrapper) {
-        return new DMLAlgorithm(mapping, instance, wrapper).run();
+    public static List<AbstractStatement> run(Mapping mapping, ReadableInstance instance, AbstractDMLWrapper wrapper) {
+        final List<AbstractStatement> output = new ArrayList<>();
+        new DMLAlgorithm(mapping, instance, wrapper).run(output::add);
+
+        return output;
+    }
+
+    /**
+     * Passes each statement to the output right after it's created, so they don't have to be collected first.
+     * @return The number of created statements.
+     */
+    public static long run(Mapping mapping, ReadableInstance instance, AbstractDMLWrapper wrapper, Consumer<AbstractStatement> output) {
+        return new DMLAlgorithm(mapping, instance, wrapper).run(output);
+    }
+
+    /** The rows of each mapping are split into ranges of this size. Each range is one task. */
+    public static final int DEFAULT_RANGE_SIZE = 1000;
+    /** How many ranges (per thread) can wait for the output at once. It limits the number of statements in memory. */
+    private static final int PENDING_RANGES_PER_THREAD = 4;
+
+    /**
+     * Creates the statements of all mappings. The rows of each mapping are split into ranges that are processed in parallel.
+     * The wrappers are stateful, so each thread has its own one (which it keeps for all its ranges, so the caches of the wrapper aren't lost).
+     * The statements are passed to the output (on the calling thread) in the same order as if they were created one by one, so the result doesn't depend on the scheduling.
+     * If the parallelism is 1, everything is done on the calling thread by a single wrapper.
+     * @return The number of created statements.
+     */
+    public static long runParallel(Collection<Mapping> mappings, ReadableInstance instance, Supplier<? extends AbstractDMLWrapper> wrappers, int parallelism, Consumer<AbstractStatement> output) {
+        return runParallel(mappings, instance, wrappers, parallelism, DEFAULT_RANGE_SIZE, output);
+    }
+
+    /**
+     * @param rangeSize The number of rows in each range.
+     */
+    public static long runParallel(Collection<Mapping> mappings, ReadableInstance instance, Supplier<? extends AbstractDMLWrapper> wrappers, int parallelism, int rangeSize, Consumer<AbstractStatement> output) {
+        if (parallelism <= 1) {
+            final AbstractDMLWrapper wrapper = wrappers.get();
+            long count = 0;
+            for (final Mapping mapping : mappings)
+                count += run(mapping, instance, wrapper, output);
+
+            return count;
+        }
+
+        final int maxPendingRanges = parallelism * PENDING_RANGES_PER_THREAD;
+        final Deque<ForkJoinTask<List<AbstractStatement>>> pendingRanges = new ArrayDeque<>();
+        // The threads of the pool end with it, so do their wrappers.
+        final ThreadLocal<AbstractDMLWrapper> threadWrappers = ThreadLocal.withInitial(wrappers::get);
+        long count = 0;
+
+        try (var pool = new ForkJoinPool(parallelism)) {
+            try {
+                for (final Mapping mapping : mappings) {
+                    var range = new ArrayList<InstanceRow>(rangeSize);
+                    for (final InstanceRow row : instance.allRows(mapping.rootObjex())) {
+                        range.add(row);
+                        if (range.size() < rangeSize)
+                            continue;
+
+                        pendingRanges.addLast(submitRange(pool, mapping, instance, threadWrappers, range));
+                        range = new ArrayList<>(rangeSize);
+                        count += emitRanges(pendingRanges, maxPendingRanges, output);
+                    }
+
+                    if (!range.isEmpty())
+                        pendingRanges.addLast(submitRange(pool, mapping, instance, threadWrappers, range));
+                }
+
+                count += emitRanges(pendingRanges, 0, output);
+            }
+            catch (RuntimeException e) {
+                // Either a task or the output failed, so there is no reason to finish the other tasks.
+                pendingRanges.forEach(task -> task.cancel(false));
+                throw e;
+            }
+        }
+
+        return count;
+    }
+
+    private static ForkJoinTask<List<AbstractStatement>> submitRange(ForkJoinPool pool, Mapping mapping, ReadableInstance instance, ThreadLocal<AbstractDMLWrapper> threadWrappers, List<InstanceRow> range) {
+        return pool.submit(() -> {
+            final List<AbstractStatement> statements = new ArrayList<>(range.size());
+            new DMLAlgorithm(mapping, instance, threadWrappers.get()).run(range, statements::add);
+            return statements;
+        });
+    }
+
+    /**
+     * Passes the statements of the finished ranges to the output (in the order in which the ranges were submitted).
+     * Waits for the unfinished ones until there are at most the given number of them.
+     */
+    private static long emitRanges(Deque<ForkJoinTask<List<AbstractStatement>>> pendingRanges, int maxPendingRanges, Consumer<AbstractStatement> output) {
+        long count = 0;
+        while (!pendingRanges.isEmpty() && (pendingRanges.size() > maxPendingRanges || pendingRanges.peekFirst().isDone())) {
+            final List<AbstractStatement> statements = pendingRanges.peekFirst().join();
+            pendingRanges.removeFirst();
+            statements.forEach(output);
+            count += statements.size();
+        }
+
+        return count;
     }
 
     private final Mapping mapping;
-    private final InstanceCategory instance;
+    private final ReadableInstance instance;
     private final AbstractDMLWrapper wrapper;
 
-    private DMLAlgorithm(Mapping mapping, InstanceCategory instance, AbstractDMLWrapper wrapper) {
+    private DMLAlgorithm(Mapping mapping, ReadableInstance instance, AbstractDMLWrapper wrapper) {
         this.mapping = mapping;
         this.instance = instance;
         this.wrapper = wrapper;
     }
 
-    private record StackJob(ComplexProperty complexProperty, String prefix, DomainRow row) {}
+    private record StackJob(ComplexProperty complexProperty, String prefix, InstanceRow row) {}
 
     private final Deque<StackJob> stack = new ArrayDeque<>();
 
-    private List<AbstractStatement> run() {
-        stack.clear();
+    private long run(Consumer<AbstractStatement> output) {
+        return run(instance.allRows(mapping.rootObjex()), output);
+    }
 
-        final List<AbstractStatement> output = new ArrayList<>();
+    private long run(Iterable<? extends InstanceRow> rows, Consumer<AbstractStatement> output) {
+        stack.clear();
 
-        for (final DomainRow row : instance.getObjex(mapping.rootObjex()).allRows())
-            output.add(buildStatement(row));
+        long count = 0;
+        for (final InstanceRow row : rows) {
+            output.accept(buildStatement(row));
+            count++;
+        }
 
-        return output;
+        return count;
     }
 
-    private AbstractStatement buildStatement(DomainRow row) {
+    private AbstractStatement buildStatement(InstanceRow row) {
         wrapper.clear();
         wrapper.setKindName(mapping.kindName());
 
@@ -76,7 +186,7 @@ public class DMLAlgorithm {
         return wrapper.createDMLStatement();
     }
 
-    private void processComplexProperty(ComplexProperty path, String prefix, DomainRow row) {
+    private void processComplexProperty(ComplexProperty path, String prefix, InstanceRow row) {
         for (final AccessPath subpath : path.subpaths()) {
             if (subpath.name() instanceof DynamicName) {
                 processMap((ComplexProperty) subpath, prefix, row);
@@ -88,11 +198,11 @@ public class DMLAlgorithm {
         }
     }
 
-    private void processMap(ComplexProperty map, String prefix, DomainRow parentRow) {
+    private void processMap(ComplexProperty map, String prefix, InstanceRow parentRow) {
         final var keyProperty = map.getTypedSubpath(TypedName.KEY);
         final var valueSubpath = map.getTypedSubpath(TypedName.VALUE);
 
-        for (final DomainRow entryRow : parentRow.traverseThrough(map.signature())) {
+        for (final InstanceRow entryRow : parentRow.traverseThrough(map.signature())) {
             final var suffix = entryRow.tryFindScalarValue(keyProperty.signature());
             if (suffix == null)
                 throw InvalidStateException.dynamicNameNotFound((DynamicName) map.name());
@@ -102,7 +212,7 @@ public class DMLAlgorithm {
         }
     }
 
-    private void processSubpath(AccessPath subpath, String name, DomainRow row) {
+    private void processSubpath(AccessPath subpath, String name, InstanceRow row) {
         if (!(subpath instanceof ComplexProperty complex)) {
             processSimpleSubpath((SimpleProperty) subpath, name, row);
             return;
@@ -128,7 +238,7 @@ public class DMLAlgorithm {
         // It's a complex array without mapped indexes.
         final var schemaPath = mapping.category().getPath(complex.signature());
         int index = 0;
-        for (final DomainRow elementRow : row.traverseThrough(schemaPath)) {
+        for (final InstanceRow elementRow : row.traverseThrough(schemaPath)) {
             addComplex(complex, name + "[" + index + "]", elementRow);
             index++;
         }
@@ -138,7 +248,7 @@ public class DMLAlgorithm {
             addEmpty(name);
     }
 
-    private @Nullable DomainRow getScalarChildRow(ComplexProperty path, DomainRow parentRow) {
+    private @Nullable InstanceRow getScalarChildRow(ComplexProperty path, InstanceRow parentRow) {
         if (path.isAuxiliary())
             return parentRow;
 
@@ -151,7 +261,7 @@ public class DMLAlgorithm {
         return childRows.iterator().next();
     }
 
-    private void processSimpleSubpath(SimpleProperty subpath, String name, DomainRow row) {
+    private void processSimpleSubpath(SimpleProperty subpath, String name, InstanceRow row) {
         // Now we know it's a normal property with a string name.
         if (!subpath.signature().hasDual()) {
             // Not an array.
@@ -172,7 +282,7 @@ public class DMLAlgorithm {
             addEmpty(name);
     }
 
-    private void processArray(ComplexProperty array, String prefix, DomainRow parentRow) {
+    private void processArray(ComplexProperty array, String prefix, InstanceRow parentRow) {
         final var indexSignatures = array.getIndexSubpaths().stream().map(AccessPath::signature).toArray(Signature[]::new);
         final var schemaPath = mapping.category().getPath(array.signature());
 
@@ -201,7 +311,7 @@ public class DMLAlgorithm {
         }
     }
 
-    private record ArrayElement(int[] indexes, DomainRow row) implements Comparable<ArrayElement> {
+    private record ArrayElement(int[] indexes, InstanceRow row) implements Comparable<ArrayElement> {
 
         @Override public int compareTo(ArrayElement other) {
             for (int i = 0; i < indexes.length; i++) {
@@ -231,7 +341,7 @@ public class DMLAlgorithm {
         wrapper.append(name, simpleValue);
     }
 
-    private void addComplex(ComplexProperty subpath, String name, DomainRow complexValue) {
+    private void addComplex(ComplexProperty subpath, String name, InstanceRow complexValue) {
         stack.push(new StackJob(subpath, name, complexValue));
     }
 
@@ -50,7 +50,7 @@ public class ICAlgorithm {
         final IdentifierStructure identifierStructure = collectNames(mapping.accessPath(), mapping.primaryKey());
         // If there are no signatures, we can't create the primary key.
         if (!identifierStructure.isEmpty())
-            wrapper.appendIdentifier(mapping.kindName(), identifierStructure);
+            wrapper.appendIdentifier(mapping, identifierStructure);
 
         // Reference keys constraints.
         processPath(mapping.accessPath(), mapping, Signature.empty());
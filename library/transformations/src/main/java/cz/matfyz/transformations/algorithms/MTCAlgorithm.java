@@ -39,21 +39,28 @@ public class MTCAlgorithm {
     private static final Logger LOGGER = LoggerFactory.getLogger(MTCAlgorithm.class);
 
     public static void run(Mapping mapping, InstanceCategory instance, ForestOfRecords forest) {
-        new MTCAlgorithm(mapping, instance, forest).run();
+        run(mapping, instance, forest, UniqueIdGenerator.create());
+    }
+
+    /**
+     * The id generator should be shared by all runs that process parts of the same kind (e.g., batches of records) so that the generated ids don't collide.
+     */
+    public static void run(Mapping mapping, InstanceCategory instance, ForestOfRecords forest, UniqueIdGenerator idGenerator) {
+        new MTCAlgorithm(mapping, instance, forest, idGenerator).run();
     }
 
     private final ForestOfRecords forest;
     private final Mapping mapping;
     private final InstanceCategory instance;
+    private final UniqueIdGenerator idGenerator;
 
-    private MTCAlgorithm(Mapping mapping, InstanceCategory instance, ForestOfRecords forest) {
+    private MTCAlgorithm(Mapping mapping, InstanceCategory instance, ForestOfRecords forest, UniqueIdGenerator idGenerator) {
         this.forest = forest;
         this.mapping = mapping;
         this.instance = instance;
+        this.idGenerator = idGenerator;
     }
 
-    private final UniqueIdGenerator idGenerator = UniqueIdGenerator.create();
-
     private void run() {
         LOGGER.debug("Model To Category algorithm");
         final ComplexProperty rootAccessPath = mapping.accessPath()
@@ -230,7 +237,7 @@ public class MTCAlgorithm {
             // If the root objex has a generated id, we generate it now. This is an exception, because we don't normally generate the ids for the auxiliary properties (which the root objex always is).
             return SuperIdValues.fromEmptySignature(idGenerator.next());
 
-        final var builder = new SuperIdValues.Mutator();
+        final var builder = new SuperIdValues.Mutator(instance.getObjex(objex).layout());
 
         for (final Signature signature : objex.superId()) {
             final @Nullable String value = rootRecord.findScalarValue(signature, false);
@@ -247,7 +254,7 @@ public class MTCAlgorithm {
             // The generated id can't be a part of any signature id, so we can't find it in the parent row. By definition, it's not in the record. So we have to generate it.
             return SuperIdValues.fromEmptySignature(idGenerator.next());
 
-        final var builder = new SuperIdValues.Mutator();
+        final var builder = new SuperIdValues.Mutator(childObjex.layout());
 
         final var record = childRecord != null ? childRecord : job.parentRecord;
         final var isChildRecord = childRecord != null;
@@ -280,7 +287,7 @@ public class MTCAlgorithm {
             // The generated id can't be a part of any signature id, so we can't find it in the parent row. By definition, it's not in the record. So we have to generate it.
             return SuperIdValues.fromEmptySignature(idGenerator.next());
 
-        final var builder = new SuperIdValues.Mutator();
+        final var builder = new SuperIdValues.Mutator(childObjex.layout());
 
         final var record = job.parentRecord;
         final var isChildRecord = false;
@@ -311,7 +318,7 @@ public class MTCAlgorithm {
     }
 
     private SuperIdValues findSuperIdForRelation(SchemaObjex objex, DomainRow parentRow, Signature pathToParent, DomainRow childRow, Signature pathToChild, ComplexRecord parentRecord) {
-        final var builder = new SuperIdValues.Mutator();
+        final var builder = new SuperIdValues.Mutator(instance.getObjex(objex).layout());
 
         for (final var signature : objex.superId()) {
             // The value is in either the first row ...
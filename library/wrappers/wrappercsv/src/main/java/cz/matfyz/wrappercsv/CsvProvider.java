@@ -1,11 +1,13 @@
 package cz.matfyz.wrappercsv;
 
 import cz.matfyz.abstractwrappers.AbstractDatasourceProvider;
-import cz.matfyz.core.utils.FileUtils;
+import cz.matfyz.abstractwrappers.utils.FileShards;
 import cz.matfyz.core.utils.InputStreamProvider.UrlInputStreamProvider;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -28,7 +30,7 @@ public class CsvProvider implements AbstractDatasourceProvider {
     }
 
     @Override public boolean isStillValid(Object settings) {
-        // We don't cache anything so the provider is always valid.
+        // The downloaded files are cached by their urls (not by the providers), so the provider is always valid.
         return true;
     }
 
@@ -39,16 +41,47 @@ public class CsvProvider implements AbstractDatasourceProvider {
     private @Nullable String kindName = null;
 
     public String getKindName() {
-        if (kindName != null)
-            kindName = FileUtils.extractBaseName(settings.url);
+        if (kindName == null)
+            kindName = FileShards.extractKindName(settings.url);
         return kindName;
     }
 
     /**
-     * Retrieves an input stream for the specified CSV file.
+     * The urls of all files (shards) of the datasource. There are more of them if the url is a local directory or a glob pattern (see {@link FileShards}).
+     */
+    public List<String> getShardUrls() throws IOException {
+        return FileShards.resolve(settings.url);
+    }
+
+    /**
+     * Retrieves an input stream for the specified CSV file. If there are multiple shards, they are read one after another. Compressed shards are decompressed.
      */
     public InputStream getInputStream() throws IOException {
-        return new UrlInputStreamProvider(settings.url).getInputStream();
+        return FileShards.openAll(getShardUrls(), settings.hasHeader() ? 1 : 0);
+    }
+
+    /**
+     * Returns the path to the CSV file if it's a local one (i.e., its url has the file scheme) or to its cached copy if it's downloaded from http(s). Otherwise returns null.
+     * The local files can be memory-mapped and indexed, so they don't have to be read as streams.
+     * Returns null also if there are multiple shards or if the file is compressed.
+     */
+    public @Nullable Path getLocalPath() {
+        try {
+            final List<String> shardUrls = getShardUrls();
+            if (shardUrls.size() != 1 || FileShards.isCompressed(shardUrls.getFirst()))
+                return null;
+
+            return new UrlInputStreamProvider(shardUrls.getFirst()).getLocalPath();
+        }
+        catch (IOException e) {
+            // The file will be read as a stream, which reports the error.
+            return null;
+        }
+    }
+
+    /** A provider of just one shard of this datasource. */
+    CsvProvider forShard(String shardUrl) {
+        return new CsvProvider(new CsvSettings(shardUrl, settings.separator(), settings.hasHeader(), settings.isWritable(), settings.isQueryable(), settings.isClonable()));
     }
 
     /**
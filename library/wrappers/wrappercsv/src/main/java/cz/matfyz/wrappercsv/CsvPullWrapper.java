@@ -3,27 +3,33 @@ package cz.matfyz.wrappercsv;
 import cz.matfyz.abstractwrappers.AbstractPullWrapper;
 import cz.matfyz.abstractwrappers.AbstractQueryWrapper.QueryStatement;
 import cz.matfyz.abstractwrappers.exception.PullForestException;
+import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.querying.QueryResult;
 import cz.matfyz.core.mapping.Name.DynamicName;
 import cz.matfyz.core.mapping.Name.StringName;
 import cz.matfyz.core.adminer.AdminerFilter;
-import cz.matfyz.core.adminer.DataResponse;
+import cz.matfyz.core.adminer.TableResponse;
 import cz.matfyz.core.adminer.Reference;
 import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RecordLayout;
 import cz.matfyz.core.record.RootRecord;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 
@@ -42,77 +48,154 @@ public class CsvPullWrapper implements AbstractPullWrapper {
         this.provider = provider;
     }
 
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of threads used for reading multiple shards. A single file is always read sequentially.
+     */
+    public CsvPullWrapper parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
     /**
      * Pulls a forest of records from a CSV file based on a complex property path and query content.
      */
     @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) throws PullForestException {
-        final var forest = new ForestOfRecords();
+        try (
+            Stream<RootRecord> stream = streamForest(path, query);
+        ) {
+            return ForestOfRecords.fromStream(stream);
+        }
+    }
 
-        final CsvSchema baseSchema = CsvSchema.emptySchema()
-            .withColumnSeparator(provider.settings.separator())
-            .withEscapeChar('\\');
+    /**
+     * Streams the records from a CSV file. The lines are read only as the stream is consumed.
+     * The header is resolved to the column positions just once, then only the mapped columns are decoded from each row.
+     * Local files are memory-mapped.
+     * If there are multiple shards, each of them is read by its own worker (so the order of the records isn't kept).
+     * The filters, offset, and limit of the {@link KindNameQuery} and {@link KindNameFilterQuery} are applied during the scan.
+     */
+    @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) throws PullForestException {
+        final var layout = RecordLayout.create(path);
+
+        CsvRowScan scan = null;
+        try {
+            final List<String> shardUrls = provider.getShardUrls();
+            if (shardUrls.size() > 1 && isWholeFile(query))
+                return streamShards(path, query, shardUrls);
+
+            scan = CsvRowScan.open(provider, query, provider.settings.hasHeader() ? null : createHeader(path));
+            final var columns = createColumns(scan.header, path);
+            scan.select(columns.isSelected());
+
+            final var rowScan = scan;
+            final var spliterator = new Spliterators.AbstractSpliterator<RootRecord>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override public boolean tryAdvance(Consumer<? super RootRecord> action) {
+                    try {
+                        if (!rowScan.next())
+                            return false;
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    action.accept(createRecord(layout, columns, rowScan.reader));
+                    return true;
+                }
+            };
+
+            return StreamSupport.stream(spliterator, false).onClose(() -> closeScan(rowScan));
+        }
+        catch (IOException | IllegalArgumentException e) {
+            if (scan != null)
+                closeScan(scan);
+            throw PullForestException.inner(e);
+        }
+    }
 
-        final CsvSchema schema = provider.settings.hasHeader()
-            ? baseSchema.withHeader()
-            : baseSchema.withColumnsFrom(createHeaderSchema(path));
+    /** Whether the query selects all rows (so they can be read in any order). */
+    private static boolean isWholeFile(QueryContent query) {
+        if (query instanceof KindNameFilterQuery)
+            return false;
 
-        try (
-            InputStream inputStream = provider.getInputStream();
-        ) {
-            final MappingIterator<Map<String, String>> reader = new CsvMapper()
-                .readerFor(Map.class)
-                .with(schema)
-                .readValues(inputStream);
+        return !(query instanceof final KindNameQuery kindNameQuery) || (!kindNameQuery.hasLimit() && !kindNameQuery.hasOffset());
+    }
 
-            @Nullable Map<String, AccessPath> columns = null;
+    private Stream<RootRecord> streamShards(ComplexProperty path, QueryContent query, List<String> shardUrls) {
+        ParallelRecordStream.initializeForThreads(path);
 
-            while (reader.hasNext()) {
-                if (columns == null)
-                    columns = createColumns(reader.next(), path);
+        final List<ParallelRecordStream.Partition> partitions = shardUrls.stream()
+            .<ParallelRecordStream.Partition>map(shardUrl -> output -> {
+                try (
+                    Stream<RootRecord> stream = new CsvPullWrapper(provider.forShard(shardUrl)).streamForest(path, query);
+                ) {
+                    stream.forEach(output);
+                }
+            })
+            .toList();
 
-                forest.addRecord(createRecord(columns, reader.nextValue()));
-            }
+        return ParallelRecordStream.create(partitions, parallelism, "csv-shards");
+    }
+
+    private static void closeScan(CsvRowScan scan) {
+        try {
+            scan.close();
         }
         catch (IOException e) {
-            throw PullForestException.inner(e);
+            throw new UncheckedIOException(e);
         }
-
-        return forest;
     }
 
-    private CsvSchema createHeaderSchema(ComplexProperty path) {
+    private List<String> createHeader(ComplexProperty path) {
         // If no header is provided, we have to hope the columns are in the correct order ...
-        final var builder = CsvSchema.builder();
-        path.subpaths().stream()
+        return path.subpaths().stream()
             .map(property -> ((StringName) property.name()).value)
-            .forEach(builder::addColumn);
-
-        return builder.build();
+            .toList();
     }
 
-    private Map<String, AccessPath> createColumns(Map<String, String> row, ComplexProperty path) {
-        final Map<String, AccessPath> columns = new TreeMap<>();
+    /**
+     * The mapped columns of the file.
+     * @param positions The positions of the columns in the rows.
+     * @param names The names of the columns (from the header).
+     * @param properties The properties to which the columns are mapped.
+     * @param isSelected Whether the column on the given position is mapped.
+     */
+    private record Columns(int[] positions, String[] names, AccessPath[] properties, boolean[] isSelected) {}
 
-        for (final String name : row.keySet()) {
-            final @Nullable AccessPath property = path.findSubpathByName(name);
+    private Columns createColumns(List<String> header, ComplexProperty path) {
+        final var positions = new ArrayList<Integer>();
+        final var properties = new ArrayList<AccessPath>();
+        final boolean[] isSelected = new boolean[header.size()];
 
-            if (property != null)
-                columns.put(name, property);
+        for (int i = 0; i < header.size(); i++) {
+            final @Nullable AccessPath property = path.findSubpathByName(header.get(i));
+            if (property == null)
+                continue;
+
+            positions.add(i);
+            properties.add(property);
+            isSelected[i] = true;
         }
 
-        return columns;
+        return new Columns(
+            positions.stream().mapToInt(Integer::intValue).toArray(),
+            positions.stream().map(header::get).toArray(String[]::new),
+            properties.toArray(AccessPath[]::new),
+            isSelected
+        );
     }
 
-    private RootRecord createRecord(Map<String, AccessPath> columns, Map<String, String> line) {
-        final var rootRecord = new RootRecord();
+    private RootRecord createRecord(RecordLayout layout, Columns columns, CsvRowReader reader) {
+        final var rootRecord = new RootRecord(layout);
 
-        for (final var entry : columns.entrySet()) {
-            final var name = entry.getKey();
-            final var property = entry.getValue();
-            final var value = line.get(name);
+        for (int i = 0; i < columns.positions.length; i++) {
+            final var property = columns.properties[i];
+            final var value = reader.value(columns.positions[i]);
 
             if (property.name() instanceof DynamicName) {
-                rootRecord.addDynamicRecordWithValue(property, name, value);
+                rootRecord.addDynamicRecordWithValue(property, columns.names[i], value);
                 continue;
             }
 
@@ -132,16 +215,45 @@ public class CsvPullWrapper implements AbstractPullWrapper {
         return List.of(provider.getKindName());
     }
 
-    @Override public DataResponse getRecords(String kindName, @Nullable Integer limit, @Nullable Integer offset, @Nullable List<AdminerFilter> filter) {
-        throw new UnsupportedOperationException("CsvPullWrapper.getRecords not implemented.");
+    @Override public TableResponse getRecords(String kindName, @Nullable Integer limit, @Nullable Integer offset, @Nullable List<AdminerFilter> filters) {
+        final var kindNameQuery = new KindNameQuery(kindName, limit, offset);
+        if (filters == null)
+            return getQueryResult(kindNameQuery);
+
+        return getQueryResult(new KindNameFilterQuery(kindNameQuery, filters));
     }
 
     @Override public List<Reference> getReferences(String datasourceId, String kindName) {
         throw new UnsupportedOperationException("CsvPullWrapper.getReferences not implemented.");
     }
 
-    @Override public DataResponse getQueryResult(QueryContent query) {
-        throw new UnsupportedOperationException("CsvPullWrapper.getQueryResult not implemented.");
+    /**
+     * Returns the rows with all their columns. The item count is the number of all matching rows (so the rest of the file has to be scanned unless there are no filters and the file is local).
+     */
+    @Override public TableResponse getQueryResult(QueryContent query) {
+        if (!(query instanceof KindNameQuery) && !(query instanceof KindNameFilterQuery))
+            throw PullForestException.invalidQuery(this, query);
+
+        try (
+            final var scan = CsvRowScan.open(provider, query, null);
+        ) {
+            final boolean[] isSelected = new boolean[scan.header.size()];
+            Arrays.fill(isSelected, true);
+            scan.select(isSelected);
+
+            final List<List<String>> data = new ArrayList<>();
+            while (scan.next()) {
+                final var row = new ArrayList<String>(scan.header.size());
+                for (int i = 0; i < scan.header.size(); i++)
+                    row.add(scan.reader.value(i));
+                data.add(row);
+            }
+
+            return new TableResponse(data, scan.countAll(), scan.header);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            throw PullForestException.inner(e);
+        }
     }
 
     // #endregion
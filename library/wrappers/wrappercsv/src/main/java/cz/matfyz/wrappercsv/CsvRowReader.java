@@ -0,0 +1,415 @@
+package cz.matfyz.wrappercsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads the rows of a CSV file directly from its bytes. Only the selected columns are decoded to strings, the other ones are just skipped.
+ * The values are stored by their positions, so there aren't any per-row maps.
+ * The format is the same as the one the Jackson CSV parser reads (with the <code>\</code> escape character):
+ * <ul>
+ *   <li>A value starting with <code>"</code> is quoted - it can contain the separators and newlines and the <code>""</code> stands for <code>"</code>.</li>
+ *   <li>The escape character makes the next character literal (both in quoted and unquoted values).</li>
+ *   <li>The lines can end with <code>\n</code>, <code>\r\n</code>, or <code>\r</code>.</li>
+ * </ul>
+ * The separator has to be an ASCII character so that it can't be a part of a multi-byte UTF-8 character.
+ */
+final class CsvRowReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Local files are mapped by windows of this size. */
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private static final byte QUOTE = '"';
+    private static final byte ESCAPE = '\\';
+    private static final byte NEWLINE = '\n';
+    private static final byte RETURN = '\r';
+    /** Returned instead of the byte that ended a value if it was ended by the end of the input. */
+    private static final int END_OF_INPUT = -1;
+
+    private final InputStream input;
+    private final byte separator;
+    /** The bytes that can end an unquoted value or start a quoted one. */
+    private final boolean[] isSpecial = new boolean[256];
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    /** The offset of the start of the buffer in the input. */
+    private long bufferOffset = 0;
+    /** The start of the value that is being read (or -1). The bytes after it are kept in the buffer when it's refilled. */
+    private int mark = -1;
+
+    /** For the values with quotes or escapes. */
+    private byte[] scratch = new byte[256];
+    private int scratchLength = 0;
+
+    private boolean[] isSelected = new boolean[0];
+    private String[] values = new String[0];
+    private int valuesCount = 0;
+
+    private CsvRowReader(InputStream input, char separator) {
+        if (separator >= 0x80)
+            throw new IllegalArgumentException("The CSV separator has to be an ASCII character.");
+
+        this.input = input;
+        this.separator = (byte) separator;
+
+        for (final byte b : new byte[] { this.separator, QUOTE, ESCAPE, NEWLINE, RETURN })
+            isSpecial[b] = true;
+    }
+
+    static CsvRowReader fromStream(InputStream input, char separator) throws IOException {
+        final var reader = new CsvRowReader(input, separator);
+        reader.skipByteOrderMark();
+
+        return reader;
+    }
+
+    /** The file is memory-mapped instead of being read through a stream. */
+    static CsvRowReader fromFile(Path file, char separator) throws IOException {
+        final var channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return fromStream(new MappedInputStream(channel), separator);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        while (limit < 3 && fill());
+
+        if (limit >= 3 && buffer[0] == (byte) 0xEF && buffer[1] == (byte) 0xBB && buffer[2] == (byte) 0xBF)
+            position = 3;
+    }
+
+    /** Reads all values of the next row. Returns null if there are no more rows. */
+    @Nullable List<String> readHeader() throws IOException {
+        if (!hasInput())
+            return null;
+
+        final var output = new ArrayList<String>();
+        int end;
+        do {
+            end = readValue(true);
+            output.add(decodeValue());
+        } while (end == separator);
+
+        return output;
+    }
+
+    /** Only the columns on the selected positions will be decoded by the {@link #nextRow()}. */
+    void select(boolean[] isSelected) {
+        this.isSelected = isSelected;
+        this.values = new String[isSelected.length];
+    }
+
+    /** Reads the next row. Returns false if there are no more rows. */
+    boolean nextRow() throws IOException {
+        return readRow(true);
+    }
+
+    /** Like {@link #nextRow()}, but no values are decoded. */
+    boolean skipRow() throws IOException {
+        return readRow(false);
+    }
+
+    private boolean readRow(boolean isDecoded) throws IOException {
+        if (!hasInput())
+            return false;
+
+        int column = 0;
+        int end;
+        do {
+            final boolean isColumnSelected = isDecoded && column < isSelected.length && isSelected[column];
+            end = readValue(isColumnSelected);
+            if (isColumnSelected)
+                values[column] = decodeValue();
+            column++;
+        } while (end == separator);
+
+        valuesCount = column;
+        return true;
+    }
+
+    /** Returns the value of the selected column in the current row or null if the row is too short. */
+    @Nullable String value(int column) {
+        return column < valuesCount ? values[column] : null;
+    }
+
+    /** Returns the offset (in the input) of the next row or -1 if there are no more rows. */
+    long nextRowOffset() throws IOException {
+        return hasInput() ? bufferOffset + position : -1;
+    }
+
+    /**
+     * Continues reading from the given offset (it should be the start of a row). Only the memory-mapped files can be read this way.
+     */
+    void seek(long offset) throws IOException {
+        if (!(input instanceof final MappedInputStream mappedInput))
+            throw new UnsupportedOperationException("Only a CSV file can be read from an offset.");
+
+        mappedInput.seek(offset);
+        bufferOffset = offset;
+        position = 0;
+        limit = 0;
+        mark = -1;
+    }
+
+    /**
+     * Reports the offsets of all rows in the file (the header included).
+     * The separator matters - a quote starts a quoted value (which can contain newlines) only right after a separator.
+     */
+    static void scanRows(Path file, char separator, LongConsumer onRowStart) throws IOException {
+        try (
+            final var reader = fromFile(file, separator);
+        ) {
+            long offset;
+            while ((offset = reader.nextRowOffset()) != -1) {
+                onRowStart.accept(offset);
+                reader.skipRow();
+            }
+        }
+    }
+
+    private boolean hasInput() throws IOException {
+        // The previous value isn't needed anymore.
+        mark = -1;
+        return position < limit || fill();
+    }
+
+    // #region Values
+
+    /** Whether the current value is in the buffer (from the {@link #mark}, with the {@link #valueLength}) or in the {@link #scratch}. */
+    private boolean isInScratch;
+    private int valueLength;
+
+    /**
+     * Reads the value on the current position and the byte that ends it (so that the position is at the start of the next value or row).
+     * Returns the ending byte or {@link #END_OF_INPUT}. Both newline types are returned as {@link #NEWLINE}.
+     */
+    private int readValue(boolean isSelected) throws IOException {
+        isInScratch = false;
+        mark = position;
+
+        while (true) {
+            // Most of the bytes are just skipped, so this loop should be as tight as possible.
+            final byte[] bytes = buffer;
+            final int end = limit;
+            int i = position;
+            while (i < end && !isSpecial[bytes[i] & 0xFF])
+                i++;
+            position = i;
+
+            if (i == end) {
+                if (fill())
+                    continue;
+
+                valueLength = position - mark;
+                return END_OF_INPUT;
+            }
+
+            final byte b = bytes[i];
+            if (b == separator) {
+                valueLength = position++ - mark;
+                return separator;
+            }
+            if (b == NEWLINE || b == RETURN) {
+                valueLength = position++ - mark;
+                skipLineFeedAfter(b);
+                return NEWLINE;
+            }
+            if (b == ESCAPE || position == mark)
+                return readComplexValue(isSelected);
+
+            // A quote that isn't at the start of the value is just a normal character.
+            position++;
+        }
+    }
+
+    private void skipLineFeedAfter(byte b) throws IOException {
+        // The fill keeps the marked value in the buffer, so it can be still decoded.
+        if (b == RETURN && (position < limit || fill()) && buffer[position] == NEWLINE)
+            position++;
+    }
+
+    /** The value contains quotes or escapes, so it has to be copied to the scratch. */
+    private int readComplexValue(boolean isSelected) throws IOException {
+        isInScratch = true;
+        scratchLength = 0;
+        if (isSelected)
+            appendToScratch(buffer, mark, position - mark);
+        mark = -1;
+
+        boolean isQuoted = false;
+        if (buffer[position] == QUOTE) {
+            isQuoted = true;
+            position++;
+        }
+
+        while (position < limit || fill()) {
+            final byte b = buffer[position++];
+
+            if (b == ESCAPE) {
+                if (position < limit || fill()) {
+                    if (isSelected)
+                        appendToScratch(buffer[position]);
+                    position++;
+                }
+                continue;
+            }
+
+            if (isQuoted) {
+                if (b != QUOTE) {
+                    if (isSelected)
+                        appendToScratch(b);
+                    continue;
+                }
+
+                if ((position < limit || fill()) && buffer[position] == QUOTE) {
+                    // An escaped quote.
+                    if (isSelected)
+                        appendToScratch(QUOTE);
+                    position++;
+                    continue;
+                }
+
+                isQuoted = false;
+                continue;
+            }
+
+            if (b == separator)
+                return separator;
+            if (b == NEWLINE || b == RETURN) {
+                skipLineFeedAfter(b);
+                return NEWLINE;
+            }
+
+            if (isSelected)
+                appendToScratch(b);
+        }
+
+        return END_OF_INPUT;
+    }
+
+    private String decodeValue() {
+        return isInScratch
+            ? new String(scratch, 0, scratchLength, StandardCharsets.UTF_8)
+            : new String(buffer, mark, valueLength, StandardCharsets.UTF_8);
+    }
+
+    private void appendToScratch(byte b) {
+        if (scratchLength == scratch.length)
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        scratch[scratchLength++] = b;
+    }
+
+    private void appendToScratch(byte[] source, int offset, int length) {
+        if (scratchLength + length > scratch.length)
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + length));
+        System.arraycopy(source, offset, scratch, scratchLength, length);
+        scratchLength += length;
+    }
+
+    // #endregion
+
+    // #region Buffer
+
+    /**
+     * Reads more bytes to the buffer. The bytes after the {@link #mark} are kept (the buffer is enlarged if there isn't enough space for them).
+     * Returns false if there are no more bytes.
+     */
+    private boolean fill() throws IOException {
+        final int keepFrom = mark == -1 ? position : mark;
+        if (keepFrom > 0) {
+            System.arraycopy(buffer, keepFrom, buffer, 0, limit - keepFrom);
+            bufferOffset += keepFrom;
+            limit -= keepFrom;
+            position -= keepFrom;
+            if (mark != -1)
+                mark = 0;
+        }
+
+        if (limit == buffer.length)
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        final int read = input.read(buffer, limit, buffer.length - limit);
+        if (read <= 0)
+            return false;
+
+        limit += read;
+        return true;
+    }
+
+    @Override public void close() throws IOException {
+        input.close();
+    }
+
+    /** Reads a file by mapping its windows to the memory one after another. */
+    private static class MappedInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart = 0;
+        private @Nullable MappedByteBuffer window = null;
+
+        MappedInputStream(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        void seek(long offset) {
+            windowStart = offset;
+            window = null;
+        }
+
+        private boolean nextWindow() throws IOException {
+            if (window != null)
+                windowStart += window.capacity();
+            if (windowStart >= size)
+                return false;
+
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+            return true;
+        }
+
+        @Override public int read() throws IOException {
+            if ((window == null || !window.hasRemaining()) && !nextWindow())
+                return -1;
+
+            return window.get() & 0xFF;
+        }
+
+        @Override public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if ((window == null || !window.hasRemaining()) && !nextWindow())
+                return -1;
+
+            final int count = Math.min(length, window.remaining());
+            window.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    // #endregion
+
+}
@@ -0,0 +1,201 @@
+package cz.matfyz.wrappercsv;
+
+import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
+import cz.matfyz.abstractwrappers.querycontent.QueryContent;
+import cz.matfyz.abstractwrappers.utils.AdminerFilterMatcher;
+import cz.matfyz.abstractwrappers.utils.RecordOffsetIndex;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads the rows of a CSV file that match a query - i.e., its filters, offset, and limit (all other queries just select all rows).
+ * The filters are evaluated on the raw values, so nothing is created for the rows that don't match.
+ * If there are no filters, the offset of a local file is applied by jumping to the closest row from the {@link RecordOffsetIndex}.
+ * The rest of the skipped rows isn't decoded at all.
+ */
+final class CsvRowScan implements AutoCloseable {
+
+    final CsvRowReader reader;
+    /** The names of the columns - either from the header or from the mapping (or generated) if there isn't any. */
+    final List<String> header;
+
+    private final CsvProvider provider;
+    private final @Nullable AdminerFilterMatcher matcher;
+    private final Map<String, Integer> filterColumns = new TreeMap<>();
+    private final Function<String, @Nullable String> filterValues;
+
+    private final long offset;
+    private long remainingLimit;
+    private boolean isStarted = false;
+    /** The number of matching rows before the current position. */
+    private long matchedCount = 0;
+
+    private CsvRowScan(CsvProvider provider, CsvRowReader reader, List<String> header, @Nullable KindNameQuery query, @Nullable AdminerFilterMatcher matcher) {
+        this.provider = provider;
+        this.reader = reader;
+        this.header = header;
+        this.matcher = matcher;
+        this.offset = query != null && query.hasOffset() ? query.getOffset() : 0;
+        this.remainingLimit = query != null && query.hasLimit() ? query.getLimit() : Long.MAX_VALUE;
+
+        if (matcher != null) {
+            for (int i = 0; i < header.size(); i++) {
+                if (matcher.propertyNames().contains(header.get(i)))
+                    filterColumns.putIfAbsent(header.get(i), i);
+            }
+        }
+        this.filterValues = name -> {
+            final @Nullable Integer column = filterColumns.get(name);
+            return column == null ? null : reader.value(column);
+        };
+    }
+
+    /**
+     * @param defaultHeader The names of the columns if the file doesn't have a header. If null, the names are generated (1, 2, ...).
+     */
+    static CsvRowScan open(CsvProvider provider, QueryContent query, @Nullable List<String> defaultHeader) throws IOException {
+        final @Nullable KindNameQuery kindNameQuery = query instanceof final KindNameFilterQuery filterQuery
+            ? filterQuery.kindNameQuery
+            : query instanceof final KindNameQuery knQuery ? knQuery : null;
+        final @Nullable AdminerFilterMatcher matcher = query instanceof final KindNameFilterQuery filterQuery
+            ? AdminerFilterMatcher.create(filterQuery.getFilters())
+            : null;
+
+        final List<String> header = !provider.settings.hasHeader() && defaultHeader == null
+            ? generateHeader(provider)
+            : defaultHeader;
+
+        final CsvRowReader reader = createReader(provider);
+        try {
+            if (!provider.settings.hasHeader())
+                return new CsvRowScan(provider, reader, header, kindNameQuery, matcher);
+
+            final @Nullable List<String> fileHeader = reader.readHeader();
+            return new CsvRowScan(provider, reader, fileHeader == null ? List.of() : fileHeader, kindNameQuery, matcher);
+        }
+        catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private static CsvRowReader createReader(CsvProvider provider) throws IOException {
+        final char separator = provider.settings.separator();
+        final @Nullable Path localPath = provider.getLocalPath();
+
+        return localPath != null
+            ? CsvRowReader.fromFile(localPath, separator)
+            : CsvRowReader.fromStream(provider.getInputStream(), separator);
+    }
+
+    /** The columns are numbered by the first row. */
+    private static List<String> generateHeader(CsvProvider provider) throws IOException {
+        try (
+            final var reader = createReader(provider);
+        ) {
+            final @Nullable List<String> firstRow = reader.readHeader();
+            final var output = new ArrayList<String>();
+            for (int i = 1; firstRow != null && i <= firstRow.size(); i++)
+                output.add(String.valueOf(i));
+
+            return output;
+        }
+    }
+
+    /** Only the selected columns (and the ones needed by the filters) will be available in the rows. */
+    void select(boolean[] isSelected) {
+        final boolean[] allSelected = new boolean[Math.max(isSelected.length, header.size())];
+        System.arraycopy(isSelected, 0, allSelected, 0, isSelected.length);
+        for (final int column : filterColumns.values())
+            allSelected[column] = true;
+
+        reader.select(allSelected);
+    }
+
+    /** Moves to the next matching row. Returns false if there are no more rows (or if the limit was reached). */
+    boolean next() throws IOException {
+        if (!isStarted) {
+            isStarted = true;
+            skipOffset();
+        }
+
+        if (remainingLimit == 0)
+            return false;
+
+        while (reader.nextRow()) {
+            if (matcher != null && !matcher.matches(filterValues))
+                continue;
+
+            matchedCount++;
+            remainingLimit--;
+            return true;
+        }
+
+        return false;
+    }
+
+    private void skipOffset() throws IOException {
+        if (matcher != null) {
+            while (matchedCount < offset && reader.nextRow()) {
+                if (matcher.matches(filterValues))
+                    matchedCount++;
+            }
+            return;
+        }
+
+        final @Nullable Path localPath = provider.getLocalPath();
+        if (offset > 0 && localPath != null) {
+            final int headerRows = provider.settings.hasHeader() ? 1 : 0;
+            final var position = getOffsetIndex(localPath).find(offset + headerRows);
+            if (position.record() > 0) {
+                reader.seek(position.offset());
+                matchedCount = position.record() - headerRows;
+            }
+        }
+
+        while (matchedCount < offset && reader.skipRow())
+            matchedCount++;
+    }
+
+    /** Each separator splits the file into different rows, so it has its own index. */
+    private RecordOffsetIndex getOffsetIndex(Path localPath) throws IOException {
+        final char separator = provider.settings.separator();
+        final String variant = "separator-" + Integer.toHexString(separator);
+        return RecordOffsetIndex.getOrCreate(localPath, variant, (file, onRowStart) -> CsvRowReader.scanRows(file, separator, onRowStart));
+    }
+
+    /** Counts all matching rows in the file (regardless of the offset and the limit). The rest of the file is read, so there can't be any more rows after this. */
+    long countAll() throws IOException {
+        final @Nullable Path localPath = provider.getLocalPath();
+        if (matcher == null && localPath != null) {
+            final int headerRows = provider.settings.hasHeader() ? 1 : 0;
+            return Math.max(getOffsetIndex(localPath).recordsCount() - headerRows, 0);
+        }
+
+        if (!isStarted) {
+            isStarted = true;
+            skipOffset();
+        }
+
+        while (matcher == null ? reader.skipRow() : reader.nextRow()) {
+            if (matcher == null || matcher.matches(filterValues))
+                matchedCount++;
+        }
+
+        return matchedCount;
+    }
+
+    @Override public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -2,6 +2,7 @@ package cz.matfyz.wrapperdummy;
 
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +37,7 @@ public class DummyDMLWrapper implements AbstractDMLWrapper {
     @Override public AbstractStatement createDMLStatement() {
         //methods.add("createDMLStatement()");
         structures.add(structure);
-        return AbstractStatement.createEmpty();
+        // So that the statements from different wrappers can be compared.
+        return StringStatement.create(structure.toString());
     }
 }
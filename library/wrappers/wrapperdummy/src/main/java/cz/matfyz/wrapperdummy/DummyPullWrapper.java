@@ -17,6 +17,7 @@ import cz.matfyz.core.querying.QueryResult;
 import cz.matfyz.core.record.ComplexRecord;
 import cz.matfyz.core.record.ComplexRecord.ArrayCollector;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RecordLayout;
 import cz.matfyz.core.record.RootRecord;
 
 import java.util.List;
@@ -44,10 +45,11 @@ public class DummyPullWrapper implements AbstractPullWrapper {
     private ForestOfRecords innerPullForest(ComplexProperty path, StringQuery query) throws JSONException {
         final var json = new JSONArray(query.content);
         final var forest = new ForestOfRecords();
+        final var layout = RecordLayout.create(path);
 
         for (int i = 0; i < json.length(); i++) {
             final JSONObject object = json.getJSONObject(i);
-            final var rootRecord = new RootRecord();
+            final var rootRecord = new RootRecord(layout);
 
             addKeysToRecord(rootRecord, path, object);
             forest.addRecord(rootRecord);
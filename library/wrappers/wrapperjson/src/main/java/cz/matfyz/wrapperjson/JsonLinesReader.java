@@ -0,0 +1,248 @@
+package cz.matfyz.wrapperjson;
+
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.record.RecordLayout;
+import cz.matfyz.core.record.RootRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads a local JSON Lines file in parallel. The file is split (at the line boundaries) into chunks. Each chunk is memory-mapped and parsed by one of the workers.
+ * The records from all chunks are merged into one stream by the {@link ParallelRecordStream}. Their order is kept only within the chunks.
+ */
+final class JsonLinesReader {
+
+    /** A chunk has to be mapped as a whole, so it can't be larger than 2 GB. */
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    /** Smaller files aren't worth splitting. */
+    private static final long MIN_CHUNK_SIZE = 1L << 22;
+    /** A longer first line isn't probed, so the detection doesn't read the whole file when it's just one large document. */
+    private static final int MAX_FIRST_LINE_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ComplexProperty path;
+    private final RecordLayout layout;
+
+    private JsonLinesReader(FileChannel channel, ComplexProperty path) {
+        this.channel = channel;
+        this.path = path;
+        this.layout = RecordLayout.create(path);
+
+        ParallelRecordStream.initializeForThreads(path);
+    }
+
+    /**
+     * Returns null if the file isn't in the JSON Lines format or if it's too small to be split.
+     */
+    static @Nullable Stream<RootRecord> tryStream(Path file, ComplexProperty path, int parallelism) throws IOException {
+        if (parallelism <= 1)
+            return null;
+
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < 2 * MIN_CHUNK_SIZE || !isJsonLines(channel)) {
+                channel.close();
+                return null;
+            }
+
+            final int count = (int) Math.min(parallelism, size / MIN_CHUNK_SIZE);
+            final var reader = new JsonLinesReader(channel, path);
+            final List<ParallelRecordStream.Partition> partitions = split(channel, count).stream()
+                .<ParallelRecordStream.Partition>map(chunk -> output -> reader.parseChunk(chunk, output))
+                .toList();
+
+            return ParallelRecordStream.create(partitions, count, "json-lines")
+                .onClose(reader::close);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static boolean isJsonLines(Path file) throws IOException {
+        try (
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ) {
+            return channel.size() > 0 && isJsonLines(channel);
+        }
+    }
+
+    /** The file is in the JSON Lines format if its first line is a whole JSON object (that isn't longer than {@link #MAX_FIRST_LINE_SIZE}). */
+    private static boolean isJsonLines(FileChannel channel) throws IOException {
+        final var buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_FIRST_LINE_SIZE));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) <= 0)
+                break;
+        }
+
+        int firstLineEnd = -1;
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                firstLineEnd = i + 1;
+                break;
+            }
+        }
+
+        if (firstLineEnd == -1) {
+            // The first line doesn't fit in the probe.
+            if (channel.size() > MAX_FIRST_LINE_SIZE)
+                return false;
+
+            firstLineEnd = buffer.position();
+        }
+
+        try (
+            final var parser = JsonRecordIterator.jsonFactory.createParser(buffer.array(), 0, firstLineEnd);
+        ) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return false;
+
+            parser.skipChildren();
+            return parser.currentToken() == JsonToken.END_OBJECT;
+        }
+        catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    private record Chunk(long start, long end) {}
+
+    /** Splits the file into (at least) the given number of chunks of approximately the same size. */
+    private static List<Chunk> split(FileChannel channel, int count) throws IOException {
+        final long size = channel.size();
+        final int chunksCount = (int) Math.max(count, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        final var output = new ArrayList<Chunk>(chunksCount);
+
+        long start = 0;
+        for (int i = 1; i <= chunksCount && start < size; i++) {
+            final long end = i == chunksCount ? size : findLineEnd(channel, Math.max(start, size * i / chunksCount));
+            if (end > start)
+                output.add(new Chunk(start, end));
+            start = end;
+        }
+
+        return output;
+    }
+
+    /** Returns the position right after the first newline at or after the given position (or the size of the file if there isn't any). */
+    private static long findLineEnd(FileChannel channel, long position) throws IOException {
+        final var buffer = ByteBuffer.allocate(1 << 16);
+        long current = position;
+
+        while (true) {
+            buffer.clear();
+            final int read = channel.read(buffer, current);
+            if (read <= 0)
+                return channel.size();
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return current + i + 1;
+            }
+
+            current += read;
+        }
+    }
+
+    /**
+     * Reports the offsets of all records in a JSON Lines file (i.e., of all lines that aren't blank).
+     * The lines aren't parsed, so the file has to contain just one object per line.
+     */
+    static void scanRecords(Path file, LongConsumer onRecordStart) throws IOException {
+        try (
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        ) {
+            final var buffer = ByteBuffer.allocate(1 << 20);
+            final byte[] bytes = buffer.array();
+            long bufferOffset = 0;
+            long lineStart = 0;
+            boolean isBlank = true;
+
+            int read;
+            while ((read = channel.read(buffer.clear())) > 0) {
+                for (int i = 0; i < read; i++) {
+                    final byte b = bytes[i];
+                    if (b == '\n') {
+                        if (!isBlank)
+                            onRecordStart.accept(lineStart);
+                        lineStart = bufferOffset + i + 1;
+                        isBlank = true;
+                    }
+                    else if (isBlank && b != ' ' && b != '\t' && b != '\r') {
+                        isBlank = false;
+                    }
+                }
+                bufferOffset += read;
+            }
+
+            if (!isBlank)
+                onRecordStart.accept(lineStart);
+        }
+    }
+
+    private void parseChunk(Chunk chunk, Consumer<RootRecord> output) throws IOException {
+        final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+
+        try (
+            final var parser = JsonRecordIterator.jsonFactory.createParser(new ByteBufferInputStream(buffer));
+        ) {
+            final var iterator = JsonRecordIterator.create(parser, path, layout);
+            while (iterator.hasNext())
+                output.accept(iterator.next());
+        }
+    }
+
+    private void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Reads the buffer from its current position to its limit. */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override public int read(byte[] bytes, int offset, int length) {
+            if (length == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+    }
+
+}
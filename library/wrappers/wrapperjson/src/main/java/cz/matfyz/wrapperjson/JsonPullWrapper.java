@@ -3,28 +3,38 @@ package cz.matfyz.wrapperjson;
 import cz.matfyz.abstractwrappers.AbstractPullWrapper;
 import cz.matfyz.abstractwrappers.AbstractQueryWrapper.QueryStatement;
 import cz.matfyz.abstractwrappers.exception.PullForestException;
+import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
+import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
+import cz.matfyz.abstractwrappers.utils.AdminerFilterMatcher;
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
+import cz.matfyz.abstractwrappers.utils.RecordOffsetIndex;
 import cz.matfyz.core.record.ForestOfRecords;
 import cz.matfyz.core.record.RootRecord;
 import cz.matfyz.core.adminer.AdminerFilter;
-import cz.matfyz.core.adminer.DataResponse;
+import cz.matfyz.core.adminer.DocumentResponse;
 import cz.matfyz.core.adminer.Reference;
-import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.querying.QueryResult;
-import cz.matfyz.core.mapping.Name.DynamicName;
-import cz.matfyz.core.mapping.Name.TypedName;
-import cz.matfyz.core.mapping.SimpleProperty;
-import cz.matfyz.core.record.ComplexRecord;
-import cz.matfyz.core.record.ComplexRecord.ArrayCollector;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
@@ -42,15 +52,25 @@ public class JsonPullWrapper implements AbstractPullWrapper {
         this.provider = provider;
     }
 
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of threads used for parsing large local JSON Lines files (or multiple shards). Other files are always parsed sequentially.
+     */
+    public JsonPullWrapper parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
     /**
      * Pulls a forest of records from a JSON file based on a complex property path and query content.
      */
     @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) {
         try (
-            InputStream inputStream = provider.getInputStream();
-            Stream<ObjectNode> jsonStream = JsonParsedIterator.toStream(inputStream);
+            Stream<RootRecord> stream = streamForest(path, query);
         ) {
-            return processJsonStream(jsonStream, path);
+            return ForestOfRecords.fromStream(stream);
         }
         catch (Exception e) {
             throw PullForestException.inner(e);
@@ -58,84 +78,137 @@ public class JsonPullWrapper implements AbstractPullWrapper {
     }
 
     /**
-     * Processes a JSON input stream and populates a {@link ForestOfRecords} with data parsed from the stream.
+     * Streams the records from a JSON file. The file is parsed only as the stream is consumed.
+     * The records are created directly from the parsed tokens, so the values that aren't in the access path are just skipped.
+     * Large local JSON Lines files are split into chunks and parsed in parallel (so the order of the records isn't kept).
+     * Similarly, if there are multiple shards, each of them is parsed by its own worker.
+     * The filters, offset, and limit of the {@link KindNameQuery} and {@link KindNameFilterQuery} are applied during the parsing.
      */
-    private ForestOfRecords processJsonStream(Stream<ObjectNode> stream, ComplexProperty path) throws IOException {
-        final var forest = new ForestOfRecords();;
+    @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) {
+        final var scanQuery = ScanQuery.create(query);
 
-        stream.forEach(object -> {
-            final RootRecord rootRecord = new RootRecord();
+        JsonParser parser = null;
+        try {
+            final List<String> shardUrls = provider.getShardUrls();
+            if (shardUrls.size() > 1 && scanQuery.isWholeFile())
+                return streamShards(path, query, shardUrls);
+
+            final @Nullable Path localPath = provider.getLocalPath();
+            if (localPath != null && scanQuery.isWholeFile()) {
+                final @Nullable Stream<RootRecord> parallelStream = JsonLinesReader.tryStream(localPath, path, parallelism);
+                if (parallelStream != null)
+                    return parallelStream;
+            }
 
-            addKeysToRecord(rootRecord, path, object);
-            forest.addRecord(rootRecord);
-        });
+            parser = openParser(scanQuery).parser;
+            Stream<RootRecord> stream = JsonRecordIterator.toStream(parser, path, scanQuery.matcher);
+            // The objects before the offset have been already skipped unless they have to be filtered.
+            if (scanQuery.matcher != null && scanQuery.offset > 0)
+                stream = stream.skip(scanQuery.offset);
+            if (scanQuery.limit != Long.MAX_VALUE)
+                stream = stream.limit(scanQuery.limit);
 
-        return forest;
+            return stream;
+        }
+        catch (Exception e) {
+            if (parser != null)
+                closeParser(parser);
+            throw PullForestException.inner(e);
+        }
     }
 
-    private void addKeysToRecord(ComplexRecord record, ComplexProperty path, ObjectNode object) {
-        for (final var entry : object.properties()) {
-            final var key = entry.getKey();
-            final var value = entry.getValue();
-            if (value == null || value.isNull())
-                continue;
+    /** The shards themselves are parsed sequentially. Otherwise, there would be too many threads. */
+    private Stream<RootRecord> streamShards(ComplexProperty path, QueryContent query, List<String> shardUrls) {
+        ParallelRecordStream.initializeForThreads(path);
 
-            final var property = path.findSubpathByName(key);
-            if (property == null)
-                continue;
+        final List<ParallelRecordStream.Partition> partitions = shardUrls.stream()
+            .<ParallelRecordStream.Partition>map(shardUrl -> output -> {
+                try (
+                    Stream<RootRecord> stream = new JsonPullWrapper(provider.forShard(shardUrl)).parallelism(1).streamForest(path, query);
+                ) {
+                    stream.forEach(output);
+                }
+            })
+            .toList();
 
-            if (property.name() instanceof DynamicName) {
-                final var dynamicRecord = record.addDynamicRecord(property, key);
-                final var valueProperty = ((ComplexProperty) property).getTypedSubpath(TypedName.VALUE);
-                addValueToRecord(dynamicRecord, valueProperty, value);
-                continue;
-            }
+        return ParallelRecordStream.create(partitions, parallelism, "json-shards");
+    }
+
+    /**
+     * The offset, limit, and filters of the query. All other queries just select all objects.
+     * @param limit It's {@link Long#MAX_VALUE} if there isn't any.
+     */
+    private record ScanQuery(long offset, long limit, @Nullable AdminerFilterMatcher matcher) {
+
+        static ScanQuery create(QueryContent query) {
+            final @Nullable KindNameQuery kindNameQuery = query instanceof final KindNameFilterQuery filterQuery
+                ? filterQuery.kindNameQuery
+                : query instanceof final KindNameQuery knQuery ? knQuery : null;
+            final @Nullable AdminerFilterMatcher matcher = query instanceof final KindNameFilterQuery filterQuery
+                ? AdminerFilterMatcher.create(filterQuery.getFilters())
+                : null;
+
+            if (kindNameQuery == null)
+                return new ScanQuery(0, Long.MAX_VALUE, matcher);
 
-            addValueToRecord(record, property, value);
+            return new ScanQuery(
+                kindNameQuery.hasOffset() ? kindNameQuery.getOffset() : 0,
+                kindNameQuery.hasLimit() ? kindNameQuery.getLimit() : Long.MAX_VALUE,
+                matcher
+            );
+        }
+
+        boolean isWholeFile() {
+            return offset == 0 && limit == Long.MAX_VALUE && matcher == null;
         }
-    }
 
-    private void addValueToRecord(ComplexRecord parentRecord, AccessPath property, JsonNode value) {
-        if (property.signature().hasDual())
-            addArrayToRecord(parentRecord, property, value);
-        else
-            addScalarValueToRecord(parentRecord, property, value);
     }
 
-    private void addScalarValueToRecord(ComplexRecord parentRecord, AccessPath property, JsonNode value) {
-        if (property instanceof final SimpleProperty simpleProperty) {
-            // If it's a simple value, we add it to the record.
-            parentRecord.addSimpleRecord(simpleProperty.signature(), value.asText());
-            return;
+    /** @param skippedObjects The number of objects before the parser. */
+    private record OpenedParser(JsonParser parser, long skippedObjects) {}
+
+    /**
+     * If there are no filters, the objects before the offset are skipped (without being read).
+     * A local JSON Lines file is opened right at the closest object from its {@link RecordOffsetIndex}, so just a few objects have to be skipped.
+     */
+    private OpenedParser openParser(ScanQuery query) throws IOException {
+        long skippedObjects = 0;
+        final InputStream inputStream;
+
+        final @Nullable Path localPath = provider.getLocalPath();
+        if (query.matcher == null && query.offset > 0 && localPath != null && JsonLinesReader.isJsonLines(localPath)) {
+            final var position = getOffsetIndex(localPath).find(query.offset);
+            inputStream = Channels.newInputStream(FileChannel.open(localPath, StandardOpenOption.READ).position(position.offset()));
+            skippedObjects = position.record();
+        }
+        else {
+            inputStream = provider.getInputStream();
         }
 
-        final ComplexRecord childRecord = parentRecord.addComplexRecord(property.signature());
-        addKeysToRecord(childRecord, (ComplexProperty) property, (ObjectNode) value);
-    }
+        final var parser = JsonRecordIterator.jsonFactory.createParser(inputStream);
+        try {
+            while (query.matcher == null && skippedObjects < query.offset && JsonRecordIterator.skipObject(parser))
+                skippedObjects++;
 
-    private void addArrayToRecord(ComplexRecord parentRecord, AccessPath property, JsonNode array) {
-        if (!(property instanceof final ComplexProperty complexProperty) || complexProperty.getIndexSubpaths().isEmpty()) {
-            for (final var element : array)
-                addScalarValueToRecord(parentRecord, property, element);
-            return;
+            return new OpenedParser(parser, skippedObjects);
+        }
+        catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
         }
+    }
 
-        final var collector = new ArrayCollector(parentRecord, complexProperty);
-        processArrayDimension(collector, array);
+    private static RecordOffsetIndex getOffsetIndex(Path localPath) throws IOException {
+        return RecordOffsetIndex.getOrCreate(localPath, JsonLinesReader::scanRecords);
     }
 
-    private void processArrayDimension(ArrayCollector collector, JsonNode array) {
-        final var isValueDimension = collector.nextDimension();
-        int i = 0;
-        for (final var element : array) {
-            collector.setIndex(i);
-            if (isValueDimension)
-                addValueToRecord(collector.addIndexedRecord(), collector.valueSubpath, element);
-            else
-                processArrayDimension(collector, element);
-            i++;
+    private static void closeParser(JsonParser parser) {
+        try {
+            parser.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        collector.prevDimension();
     }
 
     // #region Querying
@@ -148,16 +221,95 @@ public class JsonPullWrapper implements AbstractPullWrapper {
         return List.of(provider.getKindName());
     }
 
-    @Override public DataResponse getRecords(String kindName, @Nullable Integer limit, @Nullable Integer offset, @Nullable List<AdminerFilter> filter) {
-        throw new UnsupportedOperationException("JsonPullWrapper.getRow not implemented.");
+    @Override public DocumentResponse getRecords(String kindName, @Nullable Integer limit, @Nullable Integer offset, @Nullable List<AdminerFilter> filters) {
+        final var kindNameQuery = new KindNameQuery(kindName, limit, offset);
+        if (filters == null)
+            return getQueryResult(kindNameQuery);
+
+        return getQueryResult(new KindNameFilterQuery(kindNameQuery, filters));
     }
 
     @Override public List<Reference> getReferences(String datasourceId, String kindName) {
         throw new UnsupportedOperationException("JsonPullWrapper.getReferences not implemented.");
     }
 
-    @Override public DataResponse getQueryResult(QueryContent query) {
-        throw new UnsupportedOperationException("JsonPullWrapper.getQueryResult not implemented.");
+    /**
+     * Returns the whole objects. The filters are evaluated on their top-level properties.
+     * The item count is the number of all matching objects (so the rest of the file has to be scanned unless there are no filters and the file is a local JSON Lines file).
+     */
+    @Override public DocumentResponse getQueryResult(QueryContent query) {
+        if (!(query instanceof KindNameQuery) && !(query instanceof KindNameFilterQuery))
+            throw PullForestException.invalidQuery(this, query);
+
+        final var scanQuery = ScanQuery.create(query);
+        final @Nullable AdminerFilterMatcher matcher = scanQuery.matcher;
+
+        final OpenedParser opened;
+        try {
+            opened = openParser(scanQuery);
+        }
+        catch (IOException e) {
+            throw PullForestException.inner(e);
+        }
+
+        try (
+            final JsonParser parser = opened.parser;
+        ) {
+            final List<Document> data = new ArrayList<>();
+            final Set<String> propertyNames = new LinkedHashSet<>();
+            long matchedCount = opened.skippedObjects;
+
+            while (data.size() < scanQuery.limit && JsonRecordIterator.moveToObject(parser)) {
+                final Map<String, Object> object = objectMapper.readValue(parser, MAP_TYPE);
+                if (matcher != null) {
+                    if (!matcher.matches(name -> getFilterValue(object, name)))
+                        continue;
+                    if (++matchedCount <= scanQuery.offset)
+                        continue;
+                }
+                else {
+                    matchedCount++;
+                }
+
+                data.add(new Document(object));
+                propertyNames.addAll(object.keySet());
+            }
+
+            return new DocumentResponse(data, countAll(parser, matcher, matchedCount), List.copyOf(propertyNames));
+        }
+        catch (IOException | RuntimeException e) {
+            throw PullForestException.inner(e);
+        }
+    }
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private static @Nullable String getFilterValue(Map<String, Object> object, String name) {
+        final @Nullable Object value = object.get(name);
+        return value == null || value instanceof Map || value instanceof List ? null : value.toString();
+    }
+
+    /** Counts all matching objects in the file. The parser is after the already counted objects. */
+    private long countAll(JsonParser parser, @Nullable AdminerFilterMatcher matcher, long matchedCount) throws IOException {
+        final @Nullable Path localPath = provider.getLocalPath();
+        if (matcher == null && localPath != null && JsonLinesReader.isJsonLines(localPath))
+            return getOffsetIndex(localPath).recordsCount();
+
+        long output = matchedCount;
+        if (matcher == null) {
+            while (JsonRecordIterator.skipObject(parser))
+                output++;
+            return output;
+        }
+
+        while (JsonRecordIterator.moveToObject(parser)) {
+            final Map<String, Object> object = objectMapper.readValue(parser, MAP_TYPE);
+            if (matcher.matches(name -> getFilterValue(object, name)))
+                output++;
+        }
+
+        return output;
     }
 
     // #endregion
@@ -0,0 +1,248 @@
+package cz.matfyz.wrapperjson;
+
+import cz.matfyz.abstractwrappers.utils.AdminerFilterMatcher;
+import cz.matfyz.core.mapping.AccessPath;
+import cz.matfyz.core.mapping.ComplexProperty;
+import cz.matfyz.core.mapping.SimpleProperty;
+import cz.matfyz.core.mapping.Name.DynamicName;
+import cz.matfyz.core.mapping.Name.TypedName;
+import cz.matfyz.core.record.ComplexRecord;
+import cz.matfyz.core.record.RecordLayout;
+import cz.matfyz.core.record.RootRecord;
+import cz.matfyz.core.record.ComplexRecord.ArrayCollector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Parses an input stream directly to a stream of records, i.e., without creating the JSON trees (like the {@link JsonParsedIterator} does).
+ * The values that aren't in the access path are skipped by the parser.
+ * Also supports the JSON Lines format (newline-delimited JSON).
+ */
+class JsonRecordIterator implements Iterator<RootRecord> {
+
+    static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ComplexProperty path;
+    private final RecordLayout layout;
+    private final @Nullable AdminerFilterMatcher matcher;
+    /** The top-level values of the current object that are needed by the matcher. */
+    private final Map<String, String> filterValues = new TreeMap<>();
+
+    private @Nullable RootRecord next;
+
+    private JsonRecordIterator(JsonParser parser, ComplexProperty path, RecordLayout layout, @Nullable AdminerFilterMatcher matcher) {
+        this.parser = parser;
+        this.path = path;
+        this.layout = layout;
+        this.matcher = matcher;
+    }
+
+    /** The layout should be created from the path. It's a parameter so that it can be shared by more iterators. */
+    static JsonRecordIterator create(JsonParser parser, ComplexProperty path, RecordLayout layout) throws IOException {
+        return create(parser, path, layout, null);
+    }
+
+    /** Only the objects that match the filters (evaluated on their top-level properties) are returned. */
+    static JsonRecordIterator create(JsonParser parser, ComplexProperty path, RecordLayout layout, @Nullable AdminerFilterMatcher matcher) throws IOException {
+        final var iterator = new JsonRecordIterator(parser, path, layout, matcher);
+        iterator.advance();
+
+        return iterator;
+    }
+
+    /**
+     * Skips the next object without reading it. Returns false if there are no more objects.
+     * The objects are found in the same way as by the iterator, so the skipped objects would be the records.
+     */
+    static boolean skipObject(JsonParser parser) throws IOException {
+        if (!moveToObject(parser))
+            return false;
+
+        parser.skipChildren();
+        return true;
+    }
+
+    /** Moves the parser to the start of the next object. Returns false if there are no more objects. */
+    static boolean moveToObject(JsonParser parser) throws IOException {
+        // Just like in the JsonParsedIterator, we skip everything until the start of the next object.
+        while (parser.nextToken() != null) {
+            if (parser.currentToken() == JsonToken.START_OBJECT)
+                return true;
+        }
+
+        return false;
+    }
+
+    static Stream<RootRecord> toStream(InputStream input, ComplexProperty path) throws IOException {
+        return toStream(jsonFactory.createParser(input), path, null);
+    }
+
+    /** The stream closes the parser. */
+    static Stream<RootRecord> toStream(JsonParser parser, ComplexProperty path, @Nullable AdminerFilterMatcher matcher) throws IOException {
+        final var iterator = create(parser, path, RecordLayout.create(path), matcher);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    parser.close();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    @Override public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override public RootRecord next() {
+        if (next == null)
+            throw new NoSuchElementException();
+
+        try {
+            final var output = next;
+            advance();
+            return output;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void advance() throws IOException {
+        next = null;
+
+        while (moveToObject(parser)) {
+            final var rootRecord = new RootRecord(layout);
+            addKeysToRecord(rootRecord, path, matcher != null);
+            if (matcher != null) {
+                final boolean isMatched = matcher.matches(filterValues::get);
+                filterValues.clear();
+                if (!isMatched)
+                    continue;
+            }
+
+            next = rootRecord;
+            return;
+        }
+    }
+
+    /**
+     * The parser has to be at the start of an object. It ends at the end of the object.
+     * @param isFiltered Whether the values needed by the matcher should be collected (only from the top-level object).
+     */
+    private void addKeysToRecord(ComplexRecord record, ComplexProperty path, boolean isFiltered) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String key = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL)
+                continue;
+
+            if (isFiltered && parser.currentToken().isScalarValue() && matcher.propertyNames().contains(key))
+                filterValues.put(key, readText());
+
+            final var property = path.findSubpathByName(key);
+            if (property == null) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (property.name() instanceof DynamicName) {
+                final var dynamicRecord = record.addDynamicRecord(property, key);
+                final var valueProperty = ((ComplexProperty) property).getTypedSubpath(TypedName.VALUE);
+                addValueToRecord(dynamicRecord, valueProperty);
+                continue;
+            }
+
+            addValueToRecord(record, property);
+        }
+    }
+
+    /** The parser has to be at the start of the value. It ends at the end of the value. */
+    private void addValueToRecord(ComplexRecord parentRecord, AccessPath property) throws IOException {
+        if (property.signature().hasDual())
+            addArrayToRecord(parentRecord, property);
+        else
+            addScalarValueToRecord(parentRecord, property);
+    }
+
+    private void addScalarValueToRecord(ComplexRecord parentRecord, AccessPath property) throws IOException {
+        if (property instanceof final SimpleProperty simpleProperty) {
+            // If it's a simple value, we add it to the record.
+            parentRecord.addSimpleRecord(simpleProperty.signature(), readText());
+            return;
+        }
+
+        // Only objects can be mapped to complex properties.
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        final ComplexRecord childRecord = parentRecord.addComplexRecord(property.signature());
+        addKeysToRecord(childRecord, (ComplexProperty) property, false);
+    }
+
+    /** Returns the same text as {@link com.fasterxml.jackson.databind.JsonNode#asText()} would. */
+    private String readText() throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_FLOAT -> Double.toString(parser.getDoubleValue());
+            case VALUE_NULL -> "null";
+            case START_OBJECT, START_ARRAY -> {
+                parser.skipChildren();
+                yield "";
+            }
+            default -> parser.getText();
+        };
+    }
+
+    private void addArrayToRecord(ComplexRecord parentRecord, AccessPath property) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        if (!(property instanceof final ComplexProperty complexProperty) || complexProperty.getIndexSubpaths().isEmpty()) {
+            while (parser.nextToken() != JsonToken.END_ARRAY)
+                addScalarValueToRecord(parentRecord, property);
+            return;
+        }
+
+        final var collector = new ArrayCollector(parentRecord, complexProperty);
+        processArrayDimension(collector);
+    }
+
+    /** The parser has to be at the start of an array. It ends at the end of the array. */
+    private void processArrayDimension(ArrayCollector collector) throws IOException {
+        final var isValueDimension = collector.nextDimension();
+        int i = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            collector.setIndex(i);
+            if (isValueDimension)
+                addValueToRecord(collector.addIndexedRecord(), collector.valueSubpath);
+            else if (parser.currentToken() == JsonToken.START_ARRAY)
+                processArrayDimension(collector);
+            else
+                parser.skipChildren();
+            i++;
+        }
+        collector.prevDimension();
+    }
+
+}
@@ -13,7 +13,7 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.stream.Collectors;
 
-import com.mongodb.MongoException;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,15 +35,16 @@ public class MongoDBControlWrapper extends BaseControlWrapper {
     }
 
     @Override public void execute(Collection<AbstractStatement> statements) {
-        for (final var statement : statements) {
-            try {
-                if (statement instanceof MongoDBCommandStatement commandStatement)
-                    provider.getDatabase().runCommand(commandStatement.getCommand());
-            }
-            catch (MongoException e) {
-                throw new ExecuteException(e, statements);
-            }
+        final MongoDBPushWrapper output = getPushWrapper();
+        try {
+            statements.forEach(output::push);
+        }
+        catch (RuntimeException e) {
+            output.abort();
+            throw e;
         }
+
+        output.close();
     }
 
     @Override public void execute(Path path) {
@@ -66,6 +67,11 @@ public class MongoDBControlWrapper extends BaseControlWrapper {
         }
     }
 
+    @Override public MongoDBPushWrapper getPushWrapper() {
+        final @Nullable Integer batchSize = provider.settings.writeBatchSize();
+        return new MongoDBPushWrapper(provider.getDatabase(), batchSize != null ? batchSize : MongoDBPushWrapper.DEFAULT_BATCH_SIZE);
+    }
+
     @Override public MongoDBDDLWrapper getDDLWrapper() {
         return new MongoDBDDLWrapper();
     }
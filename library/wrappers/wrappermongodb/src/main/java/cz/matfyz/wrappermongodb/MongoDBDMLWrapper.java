@@ -1,62 +1,127 @@
 package cz.matfyz.wrappermongodb;
 
+import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
-import cz.matfyz.abstractwrappers.utils.JsonDMLConstructor;
-import cz.matfyz.abstractwrappers.utils.JsonDMLConstructor.PropertyValue;
-import cz.matfyz.core.exception.OtherException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.bson.BsonArray;
 import org.bson.BsonDocument;
+import org.bson.BsonNull;
 import org.bson.BsonString;
+import org.bson.BsonValue;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+/**
+ * Builds the documents directly from the appended paths (e.g., <code>address/street</code> or <code>items[2]/name</code>).
+ * A null value means that the property is missing (unless it's an element of an array).
+ */
 public class MongoDBDMLWrapper implements AbstractDMLWrapper {
 
     @Override public void clear() {
         kindName = null;
-        propertyValues.clear();
+        document = new BsonDocument();
     }
 
     private String kindName = null;
-    private final List<PropertyValue> propertyValues = new ArrayList<>();
+    private BsonDocument document = new BsonDocument();
 
     @Override public void setKindName(String name) {
         kindName = name;
     }
 
     @Override public void append(String name, @Nullable Object value) {
-        String stringValue = value == null ? null : value.toString();
-        propertyValues.add(new PropertyValue(name, stringValue));
+        final Key[] keys = keysCache.computeIfAbsent(name, MongoDBDMLWrapper::createKeys);
+        add(keys, value == null ? null : new BsonString(value.toString()));
     }
 
-    @Override public MongoDBCommandStatement createDMLStatement() {
-        final var constructor = new JsonDMLConstructor();
+    @Override public MongoDBInsertStatement createDMLStatement() {
+        return new MongoDBInsertStatement(kindName, document);
+    }
+
+    // #region Paths
 
-        String content = "";
-        try {
-            for (var propertyValue : propertyValues)
-                constructor.addProperty(propertyValue);
+    /** Either a name of a property of a document or an index in an array. */
+    private record Key(@Nullable String name, int index) {
 
-            content = String.format("db.%s.insert(%s);", kindName, constructor.toPrettyString());
+        boolean isName() {
+            return name != null;
         }
-        catch (Exception e) {
-            throw new OtherException(e);
+
+    }
+
+    private static final Pattern ARRAY_PATTERN = Pattern.compile("^([a-zA-Z0-9_-]+)\\[([0-9]+)\\]$");
+
+    /** The same paths are appended for each document, so each of them is parsed only once. */
+    private final Map<String, Key[]> keysCache = new HashMap<>();
+
+    private static Key[] createKeys(String path) {
+        final List<Key> output = new ArrayList<>();
+
+        for (final String part : path.split(AbstractDDLWrapper.PATH_SEPARATOR)) {
+            final Matcher arrayMatcher = ARRAY_PATTERN.matcher(part);
+            if (arrayMatcher.find()) {
+                output.add(new Key(arrayMatcher.group(1), 0));
+                output.add(new Key(null, Integer.parseInt(arrayMatcher.group(2))));
+            }
+            else {
+                output.add(new Key(part, 0));
+            }
         }
 
-        final var command = new BsonDocument();
-        command.append("insert", new BsonString(kindName));
-        command.append("documents", new BsonArray(List.of(BsonDocument.parse(constructor.toString()))));
+        return output.toArray(Key[]::new);
+    }
+
+    private void add(Key[] keys, @Nullable BsonValue value) {
+        BsonValue parent = document;
+
+        for (int i = 0; i < keys.length - 1; i++) {
+            @Nullable BsonValue child = get(parent, keys[i]);
+            if (child == null || child.isNull()) {
+                child = keys[i + 1].isName() ? new BsonDocument() : new BsonArray();
+                put(parent, keys[i], child);
+            }
 
-        return new MongoDBCommandStatement(content, command);
+            parent = child;
+        }
+
+        put(parent, keys[keys.length - 1], value);
+    }
+
+    private static @Nullable BsonValue get(BsonValue parent, Key key) {
+        if (key.isName())
+            return parent.asDocument().get(key.name);
+
+        final BsonArray array = parent.asArray();
+        return key.index < array.size() ? array.get(key.index) : null;
     }
 
-    /*
-    private String escapeString(String input) {
-        return "\"" + input.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    private static void put(BsonValue parent, Key key, @Nullable BsonValue value) {
+        if (key.isName()) {
+            if (value == null)
+                parent.asDocument().remove(key.name);
+            else
+                parent.asDocument().put(key.name, value);
+
+            return;
+        }
+
+        final BsonArray array = parent.asArray();
+        final BsonValue element = value == null ? BsonNull.VALUE : value;
+        while (array.size() < key.index)
+            array.add(BsonNull.VALUE);
+
+        if (key.index < array.size())
+            array.set(key.index, element);
+        else
+            array.add(element);
     }
-    */
+
+    // #endregion
 
 }
@@ -0,0 +1,46 @@
+package cz.matfyz.wrappermongodb;
+
+import cz.matfyz.abstractwrappers.AbstractStatement;
+
+import org.bson.BsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+/**
+ * An insert of one document. The document is inserted by the driver (together with the other documents of the same kind, see {@link MongoDBPushWrapper}).
+ * The shell command is created only if the content is needed (e.g., for a file).
+ */
+public class MongoDBInsertStatement implements AbstractStatement {
+
+    private static final JsonWriterSettings SHELL_SETTINGS = JsonWriterSettings.builder()
+        .outputMode(JsonMode.RELAXED)
+        .indent(true)
+        .indentCharacters("    ")
+        .build();
+
+    private final String kindName;
+    private final BsonDocument document;
+
+    MongoDBInsertStatement(String kindName, BsonDocument document) {
+        this.kindName = kindName;
+        this.document = document;
+    }
+
+    @Override public String getContent() {
+        return String.format("db.%s.insert(%s);", kindName, document.toJson(SHELL_SETTINGS));
+    }
+
+    @Override public int getPriority() {
+        // There is no priority for MongoDB commands.
+        return 0;
+    }
+
+    public String kindName() {
+        return kindName;
+    }
+
+    public BsonDocument document() {
+        return document;
+    }
+
+}
@@ -2,6 +2,8 @@ package cz.matfyz.wrappermongodb;
 
 import cz.matfyz.abstractwrappers.AbstractDatasourceProvider;
 
+import java.util.Objects;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
@@ -20,7 +22,8 @@ public class MongoDBProvider implements AbstractDatasourceProvider {
         this.settings = settings;
     }
 
-    public MongoDatabase getDatabase() {
+    /** Synchronized because the database might be requested from multiple threads at once (e.g., when several mappings are pulled in parallel). */
+    public synchronized MongoDatabase getDatabase() {
         if (mongoClient == null)
             mongoClient = MongoClients.create(settings.createConnectionString());
 
@@ -35,10 +38,12 @@ public class MongoDBProvider implements AbstractDatasourceProvider {
             && this.settings.port.equals(mongoDBSettings.port)
             && this.settings.database.equals(mongoDBSettings.database)
             && this.settings.isWritable == mongoDBSettings.isWritable
-            && this.settings.isQueryable == mongoDBSettings.isQueryable;
+            && this.settings.isQueryable == mongoDBSettings.isQueryable
+            && Objects.equals(this.settings.pullParallelism, mongoDBSettings.pullParallelism)
+            && Objects.equals(this.settings.writeBatchSize, mongoDBSettings.writeBatchSize);
     }
 
-    @Override public void close() {
+    @Override public synchronized void close() {
         if (mongoClient != null)
             mongoClient.close();
     }
@@ -53,7 +58,11 @@ public class MongoDBProvider implements AbstractDatasourceProvider {
         @Nullable String password,
         boolean isWritable,
         boolean isQueryable,
-        boolean isClonable
+        boolean isClonable,
+        /** The number of partitions of a kind that are pulled concurrently (each on its own connection). If null, the kinds aren't partitioned. */
+        @Nullable Integer pullParallelism,
+        /** The maximal number of documents inserted by one (unordered) batch. If null, the default is used. */
+        @Nullable Integer writeBatchSize
     ) {
 
         String createConnectionString() {
@@ -7,12 +7,14 @@ import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
 import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
 import cz.matfyz.abstractwrappers.querycontent.StringQuery;
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
 import cz.matfyz.core.adminer.AdminerFilter;
 import cz.matfyz.core.adminer.DocumentResponse;
 import cz.matfyz.core.adminer.Reference;
 import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.mapping.Name.DynamicName;
+import cz.matfyz.core.mapping.Name.StringName;
 import cz.matfyz.core.mapping.Name.TypedName;
 import cz.matfyz.core.mapping.SimpleProperty;
 import cz.matfyz.core.querying.LeafResult;
@@ -24,6 +26,7 @@ import cz.matfyz.core.querying.ResultStructure;
 import cz.matfyz.core.record.ComplexRecord;
 import cz.matfyz.core.record.ComplexRecord.ArrayCollector;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RecordLayout;
 import cz.matfyz.core.record.RootRecord;
 
 import java.util.ArrayList;
@@ -31,14 +34,30 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeMap;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.BsonTypeCodecMap;
+import org.bson.codecs.DecoderContext;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -49,23 +68,30 @@ public class MongoDBPullWrapper implements AbstractPullWrapper {
 
     public MongoDBPullWrapper(MongoDBProvider provider) {
         this.provider = provider;
+        this.parallelism = provider.settings.pullParallelism() != null ? provider.settings.pullParallelism() : 1;
     }
 
-    private MongoCursor<Document> getDocumentIterator(QueryContent query) {
+    private <T> MongoCursor<T> getDocumentIterator(QueryContent query, Class<T> documentClass, @Nullable Bson projection) {
         if (query instanceof final KindNameQuery kindNameQuery)
-            return getDocumentIteratorFromKindName(kindNameQuery, null);
+            return getDocumentIteratorFromKindName(kindNameQuery, null, documentClass, projection);
 
         if (query instanceof final KindNameFilterQuery kindNameFilterQuery)
-            return getDocumentIteratorFromKindName(kindNameFilterQuery.kindNameQuery, kindNameFilterQuery.getFilters());
+            return getDocumentIteratorFromKindName(kindNameFilterQuery.kindNameQuery, kindNameFilterQuery.getFilters(), documentClass, projection);
 
-        if (query instanceof final MongoDBQuery mongoQuery)
-            return provider.getDatabase().getCollection(mongoQuery.collection).aggregate(mongoQuery.pipeline).iterator();
+        if (query instanceof final MongoDBQuery mongoQuery) {
+            return provider.getDatabase().getCollection(mongoQuery.collection, documentClass)
+                .aggregate(mongoQuery.pipeline)
+                .batchSize(batchSize)
+                .iterator();
+        }
 
         throw PullForestException.invalidQuery(this, query);
     }
 
-    private MongoCursor<Document> getDocumentIteratorFromKindName(KindNameQuery query, @Nullable List<AdminerFilter> filters) {
-        var find = provider.getDatabase().getCollection(query.kindName).find();
+    private <T> MongoCursor<T> getDocumentIteratorFromKindName(KindNameQuery query, @Nullable List<AdminerFilter> filters, Class<T> documentClass, @Nullable Bson projection) {
+        var find = provider.getDatabase().getCollection(query.kindName, documentClass).find().batchSize(batchSize);
+        if (projection != null)
+            find = find.projection(projection);
         if (filters != null && !filters.isEmpty())
             find = find.filter(createFilter(filters));
         if (query.hasOffset())
@@ -77,88 +103,326 @@ public class MongoDBPullWrapper implements AbstractPullWrapper {
     }
 
     @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) throws PullForestException {
-        final var forest = new ForestOfRecords();
-
         try (
-            final var iterator = getDocumentIterator(query);
+            Stream<RootRecord> stream = streamForest(path, query);
         ) {
-            while (iterator.hasNext()) {
-                final Document document = iterator.next();
-                final var rootRecord = new RootRecord();
-                addKeysToRecord(rootRecord, path, document);
-                forest.addRecord(rootRecord);
+            return ForestOfRecords.fromStream(stream);
+        }
+    }
+
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * The number of documents fetched from the server at once.
+     */
+    public MongoDBPullWrapper batchSize(int batchSize) {
+        this.batchSize = batchSize;
+
+        return this;
+    }
+
+    /**
+     * The documents are fetched from the cursor (in batches of the {@link #batchSize(int)} documents) as the stream is consumed.
+     * Only the fields from the access path are fetched from the collection (see {@link #createProjection(ComplexProperty)}).
+     * The documents are kept in the raw BSON form and only the mapped values are decoded from it - the rest is just skipped.
+     */
+    @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) throws PullForestException {
+        final var layout = RecordLayout.create(path);
+
+        try {
+            if (parallelism > 1 && query instanceof final KindNameQuery kindNameQuery && !kindNameQuery.hasLimit() && !kindNameQuery.hasOffset()) {
+                final @Nullable Stream<RootRecord> partitioned = tryStreamPartitions(path, layout, kindNameQuery.kindName);
+                if (partitioned != null)
+                    return partitioned;
             }
 
-            return forest;
+            final MongoCursor<RawBsonDocument> iterator = getDocumentIterator(query, RawBsonDocument.class, createProjection(path));
+            final var spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+
+            return StreamSupport.stream(spliterator, false)
+                .onClose(iterator::close)
+                .map(document -> createRecord(layout, path, document));
         }
         catch (Exception e) {
             throw PullForestException.inner(e);
         }
     }
 
-    private void addKeysToRecord(ComplexRecord record, ComplexProperty path, Document object) {
-        for (final var entry : object.entrySet()) {
-            final var key = entry.getKey();
-            final var value = entry.getValue();
-            if (value == null)
-                continue;
+    private RootRecord createRecord(RecordLayout layout, ComplexProperty path, RawBsonDocument document) {
+        final var rootRecord = new RootRecord(layout);
+        try (
+            final var reader = new BsonBinaryReader(document.getByteBuffer().asNIO());
+        ) {
+            reader.readStartDocument();
+            addKeysToRecord(rootRecord, path, reader);
+            reader.readEndDocument();
+        }
+
+        return rootRecord;
+    }
+
+    // #region Partitioned pull
+
+    /** There are more partitions than workers so that a few large partitions don't delay the whole pull. */
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private int parallelism;
+
+    /**
+     * The number of partitions of a collection that are read concurrently (each by its own cursor). If it's 1, the collections aren't partitioned.
+     * By default, it's taken from the settings of the datasource.
+     */
+    public MongoDBPullWrapper parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    /**
+     * Splits the collection into ranges of the <code>_id</code> that are read concurrently. Their records are merged into one stream (see {@link ParallelRecordStream}).
+     * The cursors don't share a snapshot, so the documents that are modified during the pull might be missed (just like with a single cursor).
+     * Returns null if the collection can't be split (e.g., because it's empty).
+     */
+    private @Nullable Stream<RootRecord> tryStreamPartitions(ComplexProperty path, RecordLayout layout, String kindName) {
+        final List<Bson> filters = createPartitionFilters(kindName, parallelism * PARTITIONS_PER_WORKER);
+        if (filters.size() <= 1)
+            return null;
+
+        final @Nullable Bson projection = createProjection(path);
+        ParallelRecordStream.initializeForThreads(path);
+
+        final List<ParallelRecordStream.Partition> partitions = filters.stream()
+            .<ParallelRecordStream.Partition>map(filter -> output -> readPartition(kindName, filter, projection, path, layout, output))
+            .toList();
+
+        return ParallelRecordStream.create(partitions, parallelism, "mongodb-pull");
+    }
+
+    private void readPartition(String kindName, Bson filter, @Nullable Bson projection, ComplexProperty path, RecordLayout layout, Consumer<RootRecord> output) {
+        var find = provider.getDatabase().getCollection(kindName, RawBsonDocument.class).find(filter).batchSize(batchSize);
+        if (projection != null)
+            find = find.projection(projection);
+
+        try (
+            final MongoCursor<RawBsonDocument> cursor = find.iterator();
+        ) {
+            while (cursor.hasNext())
+                output.accept(createRecord(layout, path, cursor.next()));
+        }
+    }
 
+    /** The more sampled ids per partition, the more even the partitions are. */
+    private static final int SAMPLES_PER_PARTITION = 32;
+
+    /**
+     * Returns the filters of the partitions (at most the given number of them). Together, they cover the whole collection.
+     * The boundaries are taken from a random sample of the ids, so the partitions have approximately the same number of documents.
+     * The <code>$sample</code> stage picks random documents (without reading the whole collection if the sample is small enough), so only the sampled ids have to be sorted.
+     */
+    private List<Bson> createPartitionFilters(String kindName, int count) {
+        final MongoCollection<Document> collection = provider.getDatabase().getCollection(kindName);
+
+        // The range filters match only the values of the same type as the boundary (e.g., an ObjectId can't be less than a string).
+        // So all ids have to be of the same type - which they are if the smallest and the largest one are. Both are found by the index.
+        final @Nullable Object first = findBoundaryId(collection, true);
+        final @Nullable Object last = findBoundaryId(collection, false);
+        if (first == null || last == null || first.getClass() != last.getClass())
+            return List.of();
+
+        final List<Object> samples = collection
+            .aggregate(List.of(
+                Aggregates.sample(count * SAMPLES_PER_PARTITION),
+                Aggregates.project(Projections.include(ID_FIELD)),
+                Aggregates.sort(Sorts.ascending(ID_FIELD))
+            ))
+            .allowDiskUse(true)
+            .map(document -> document.get(ID_FIELD))
+            .into(new ArrayList<>());
+
+        // The sample might contain duplicates (if the collection is too small), so the same boundary can be picked multiple times.
+        final List<Object> boundaries = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            final Object boundary = samples.get((int) ((long) i * samples.size() / count));
+            if (boundary.getClass() == first.getClass() && (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)))
+                boundaries.add(boundary);
+        }
+
+        if (boundaries.isEmpty())
+            return List.of();
+
+        // The first and the last range are open so that the documents inserted during the pull aren't lost.
+        final var output = new ArrayList<Bson>();
+        output.add(Filters.lt(ID_FIELD, boundaries.get(0)));
+        for (int i = 1; i < boundaries.size(); i++)
+            output.add(Filters.and(Filters.gte(ID_FIELD, boundaries.get(i - 1)), Filters.lt(ID_FIELD, boundaries.get(i))));
+        output.add(Filters.gte(ID_FIELD, boundaries.get(boundaries.size() - 1)));
+
+        return output;
+    }
+
+    /** Returns the smallest or the largest id in the collection. */
+    private static @Nullable Object findBoundaryId(MongoCollection<Document> collection, boolean isSmallest) {
+        final @Nullable Document document = collection.find()
+            .projection(Projections.include(ID_FIELD))
+            .sort(isSmallest ? Sorts.ascending(ID_FIELD) : Sorts.descending(ID_FIELD))
+            .limit(1)
+            .first();
+
+        return document == null ? null : document.get(ID_FIELD);
+    }
+
+    // #endregion
+
+    // #region Projection
+
+    /**
+     * Creates a projection with all the fields from the access path. Nested properties are projected by their dotted names so that the unmapped parts of the embedded documents aren't fetched either.
+     * Returns null if the fields can't be determined (e.g., because the root has a dynamically named property).
+     */
+    static @Nullable Bson createProjection(ComplexProperty path) {
+        final var fields = new ArrayList<String>();
+        if (!addProjectedFields(path, "", fields) || fields.isEmpty())
+            return null;
+
+        return fields.contains(ID_FIELD)
+            ? Projections.include(fields)
+            : Projections.fields(Projections.include(fields), Projections.excludeId());
+    }
+
+    private static final String ID_FIELD = "_id";
+
+    /**
+     * Returns false if the object has to be fetched whole (i.e., if some of its properties can't be projected by a name).
+     */
+    private static boolean addProjectedFields(ComplexProperty path, String prefix, List<String> output) {
+        if (path.subpaths().isEmpty())
+            return false;
+
+        final var fields = new ArrayList<String>();
+
+        for (final AccessPath subpath : path.subpaths()) {
+            if (!(subpath.name() instanceof final StringName stringName) || !isProjectable(stringName.value))
+                return false;
+
+            final String field = prefix + stringName.value;
+            // The arrays of documents can be projected by the dotted names as well, but not the multi-dimensional ones (with explicit indexes).
+            final boolean isNested = subpath instanceof final ComplexProperty complexProperty
+                && complexProperty.getIndexSubpaths().isEmpty()
+                && addProjectedFields(complexProperty, field + ".", fields);
+
+            if (!isNested)
+                fields.add(field);
+        }
+
+        output.addAll(fields);
+        return true;
+    }
+
+    private static boolean isProjectable(String name) {
+        return !name.isEmpty() && !name.contains(".") && !name.startsWith("$");
+    }
+
+    // #endregion
+
+    // #region Reading records
+
+    /** Decodes the scalar values to the same objects as the {@link Document} would contain (so that their string forms don't change). */
+    private static final BsonTypeCodecMap CODECS = new BsonTypeCodecMap(new BsonTypeClassMap(), MongoClientSettings.getDefaultCodecRegistry());
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    /** The reader has to be inside of a document. All its fields are read (the unmapped ones are skipped without decoding). */
+    private void addKeysToRecord(ComplexRecord record, ComplexProperty path, BsonReader reader) {
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final var key = reader.readName();
             final var property = path.findSubpathByName(key);
-            if (property == null)
+            if (property == null || reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.skipValue();
                 continue;
+            }
 
             if (property.name() instanceof DynamicName) {
                 final var dynamicRecord = record.addDynamicRecord(property, key);
                 final var valueProperty = ((ComplexProperty) property).getTypedSubpath(TypedName.VALUE);
-                addValueToRecord(dynamicRecord, valueProperty, value);
+                addValueToRecord(dynamicRecord, valueProperty, reader);
                 continue;
             }
 
-            addValueToRecord(record, property, value);
+            addValueToRecord(record, property, reader);
         }
     }
 
-    private void addValueToRecord(ComplexRecord parentRecord, AccessPath property, Object value) {
-        if (property.signature().hasDual())
-            addArrayToRecord(parentRecord, property, (List<?>) value);
+    private void addValueToRecord(ComplexRecord parentRecord, AccessPath property, BsonReader reader) {
+        if (property.signature().hasDual() && reader.getCurrentBsonType() == BsonType.ARRAY)
+            addArrayToRecord(parentRecord, property, reader);
         else
-            addScalarValueToRecord(parentRecord, property, value);
+            addScalarValueToRecord(parentRecord, property, reader);
     }
 
-    private void addScalarValueToRecord(ComplexRecord parentRecord, AccessPath property, Object value) {
+    private void addScalarValueToRecord(ComplexRecord parentRecord, AccessPath property, BsonReader reader) {
+        final BsonType type = reader.getCurrentBsonType();
         if (property instanceof final SimpleProperty simpleProperty) {
             // If it's a simple value, we add it to the record.
-            parentRecord.addSimpleRecord(simpleProperty.signature(), value.toString());
+            final @Nullable String value = readSimpleValue(reader, type);
+            if (value != null)
+                parentRecord.addSimpleRecord(simpleProperty.signature(), value);
+            return;
+        }
+
+        if (type != BsonType.DOCUMENT) {
+            // The value doesn't match the access path.
+            reader.skipValue();
             return;
         }
 
         final ComplexRecord childRecord = parentRecord.addComplexRecord(property.signature());
-        addKeysToRecord(childRecord, (ComplexProperty) property, (Document) value);
+        reader.readStartDocument();
+        addKeysToRecord(childRecord, (ComplexProperty) property, reader);
+        reader.readEndDocument();
     }
 
-    private void addArrayToRecord(ComplexRecord parentRecord, AccessPath property, List<?> array) {
+    private static @Nullable String readSimpleValue(BsonReader reader, BsonType type) {
+        if (type == BsonType.NULL) {
+            reader.readNull();
+            return null;
+        }
+
+        final Object value = CODECS.get(type).decode(reader, DECODER_CONTEXT);
+        return value == null ? null : value.toString();
+    }
+
+    private void addArrayToRecord(ComplexRecord parentRecord, AccessPath property, BsonReader reader) {
         if (!(property instanceof final ComplexProperty complexProperty) || complexProperty.getIndexSubpaths().isEmpty()) {
-            for (int i = 0; i < array.size(); i++)
-                addScalarValueToRecord(parentRecord, property, array.get(i));
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                addScalarValueToRecord(parentRecord, property, reader);
+            reader.readEndArray();
             return;
         }
 
         final var collector = new ArrayCollector(parentRecord, complexProperty);
-        processArrayDimension(collector, array);
+        processArrayDimension(collector, reader);
     }
 
-    private void processArrayDimension(ArrayCollector collector, List<?> array) {
+    private void processArrayDimension(ArrayCollector collector, BsonReader reader) {
         final var isValueDimension = collector.nextDimension();
-        for (int i = 0; i < array.size(); i++) {
+        reader.readStartArray();
+        for (int i = 0; reader.readBsonType() != BsonType.END_OF_DOCUMENT; i++) {
             collector.setIndex(i);
             if (isValueDimension)
-                addValueToRecord(collector.addIndexedRecord(), collector.valueSubpath, array.get(i));
+                addValueToRecord(collector.addIndexedRecord(), collector.valueSubpath, reader);
+            else if (reader.getCurrentBsonType() == BsonType.ARRAY)
+                processArrayDimension(collector, reader);
             else
-                processArrayDimension(collector, (ArrayList<?>) array.get(i));
+                reader.skipValue();
         }
+        reader.readEndArray();
         collector.prevDimension();
     }
 
+    // #endregion
+
     public String readCollectionAsStringForTests(String kindName) {
         final var database = provider.getDatabase();
         final MongoCollection<Document> collection = database.getCollection(kindName);
@@ -177,7 +441,7 @@ public class MongoDBPullWrapper implements AbstractPullWrapper {
         final var output = new ArrayList<MapResult>();
 
         try (
-            var iterator = getDocumentIterator(query.content());
+            var iterator = getDocumentIterator(query.content(), Document.class, null);
         ) {
             while (iterator.hasNext()) {
                 final Document document = iterator.next();
@@ -316,7 +580,7 @@ public class MongoDBPullWrapper implements AbstractPullWrapper {
             }
 
             final List<Document> data = new ArrayList<>();
-            final MongoCursor<Document> iterator = getDocumentIterator(query);
+            final MongoCursor<Document> iterator = getDocumentIterator(query, Document.class, null);
             long itemCount = 0;
 
             while (iterator.hasNext()) {
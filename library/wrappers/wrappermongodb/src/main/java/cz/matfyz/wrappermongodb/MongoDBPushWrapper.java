@@ -0,0 +1,96 @@
+package cz.matfyz.wrappermongodb;
+
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.exception.ExecuteException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.BsonDocument;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consecutive inserts into the same collection are sent together by unordered <code>insertMany</code> (so the server can insert them in parallel). Other commands are run one by one.
+ * The order of the statements is kept, except for the documents within one batch.
+ */
+public class MongoDBPushWrapper implements AbstractPushWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoDBPushWrapper.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final InsertManyOptions INSERT_OPTIONS = new InsertManyOptions().ordered(false);
+
+    private final MongoDatabase database;
+    private final int batchSize;
+
+    MongoDBPushWrapper(MongoDatabase database, int batchSize) {
+        this.database = database;
+        this.batchSize = batchSize;
+    }
+
+    private @Nullable String collectionName;
+    private List<BsonDocument> documents = new ArrayList<>();
+
+    private long insertedCount = 0;
+    private long commandsCount = 0;
+
+    @Override public void push(AbstractStatement statement) {
+        try {
+            if (statement instanceof final MongoDBInsertStatement insert) {
+                if (!insert.kindName().equals(collectionName)) {
+                    flush();
+                    collectionName = insert.kindName();
+                }
+
+                documents.add(insert.document());
+                if (documents.size() >= batchSize)
+                    flush();
+            }
+            else if (statement instanceof final MongoDBCommandStatement command) {
+                // The command might depend on the previous inserts (e.g., it drops the collection).
+                flush();
+                database.runCommand(command.getCommand());
+                commandsCount++;
+            }
+            // Other statements can't be run by the driver.
+        }
+        catch (MongoException e) {
+            throw new ExecuteException(e, List.of(statement));
+        }
+    }
+
+    private void flush() {
+        if (documents.isEmpty())
+            return;
+
+        database.getCollection(collectionName, BsonDocument.class).insertMany(documents, INSERT_OPTIONS);
+        LOGGER.debug("Inserted {} documents into MongoDB collection {}.", documents.size(), collectionName);
+        insertedCount += documents.size();
+        documents = new ArrayList<>(batchSize);
+    }
+
+    @Override public void close() {
+        try {
+            flush();
+        }
+        catch (MongoException e) {
+            throw new ExecuteException(e, List.of());
+        }
+
+        LOGGER.info("Inserted {} MongoDB documents and ran {} commands.", insertedCount, commandsCount);
+    }
+
+    /** There is no transaction, so the already inserted documents stay in the database. */
+    @Override public void abort() {
+        documents = new ArrayList<>();
+        LOGGER.warn("Aborted after {} inserted MongoDB documents and {} commands.", insertedCount, commandsCount);
+    }
+
+}
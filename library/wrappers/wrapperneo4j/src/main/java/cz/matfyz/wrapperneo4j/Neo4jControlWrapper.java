@@ -1,6 +1,5 @@
 package cz.matfyz.wrapperneo4j;
 
-import cz.matfyz.abstractwrappers.AbstractICWrapper;
 import cz.matfyz.abstractwrappers.AbstractInferenceWrapper;
 import cz.matfyz.abstractwrappers.AbstractStatement;
 import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
@@ -8,14 +7,13 @@ import cz.matfyz.abstractwrappers.BaseControlWrapper;
 import cz.matfyz.abstractwrappers.exception.ExecuteException;
 import cz.matfyz.core.datasource.Datasource.DatasourceType;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
-import java.util.stream.Stream;
 
-import org.neo4j.driver.Query;
-import org.neo4j.driver.Session;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,50 +36,69 @@ public class Neo4jControlWrapper extends BaseControlWrapper {
     }
 
     @Override public void execute(Collection<AbstractStatement> statements) {
-        try (
-            Session session = provider.getSession();
-        ) {
-            // TODO transactions?
-            for (final var statement : statements) {
-                if (statement.equals(AbstractStatement.createEmpty()))
-                    continue;
-
-                final var query = new Query(statement.getContent());
-                session.run(query);
-            }
+        final Neo4jPushWrapper output = getPushWrapper();
+        try {
+            statements.forEach(output::push);
         }
-        catch (Exception e) {
-            throw new ExecuteException(e, statements);
+        catch (RuntimeException e) {
+            output.abort();
+            throw e;
         }
+
+        output.close();
     }
 
     /**
      * The point of this method is that the neo4j driver doesn't allow to run whole script at one. So we have to split it manually.
      * This is of course not ideal since we don't want to parse the whole thing. But close enough.
+     * The script is read line by line, so it doesn't have to be in memory at once.
      */
     @Override public void execute(Path path) {
-        try {
-            String script = Files.readString(path);
-            // Split the queries by the ; character, followed by any number of whitespaces and newline.
-            final var statements = Stream.of(script.split(";\\s*\n"))
-                .map(String::strip)
-                .filter(s -> !s.isBlank())
-                .map(s -> (AbstractStatement) StringStatement.create(s))
-                .toList();
-
-            execute(statements);
+        final Neo4jPushWrapper output = getPushWrapper();
+
+        try (
+            BufferedReader reader = Files.newBufferedReader(path);
+        ) {
+            // The statements are separated by the ; character, followed by any number of whitespaces and newline.
+            final var statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String stripped = line.stripTrailing();
+                if (!stripped.endsWith(";")) {
+                    statement.append(line).append('\n');
+                    continue;
+                }
+
+                statement.append(stripped, 0, stripped.length() - 1);
+                output.push(StringStatement.create(statement.toString().strip()));
+                statement.setLength(0);
+            }
+
+            output.push(StringStatement.create(statement.toString().strip()));
         }
         catch (IOException e) {
+            output.abort();
             throw new ExecuteException(e, path);
         }
+        catch (RuntimeException e) {
+            output.abort();
+            throw e;
+        }
+
+        output.close();
+    }
+
+    @Override public Neo4jPushWrapper getPushWrapper() {
+        final @Nullable Integer batchSize = provider.settings.writeBatchSize();
+        return new Neo4jPushWrapper(provider.getSession(), batchSize != null ? batchSize : Neo4jPushWrapper.DEFAULT_BATCH_SIZE);
     }
 
     @Override public Neo4jDDLWrapper getDDLWrapper() {
         return new Neo4jDDLWrapper();
     }
 
-    @Override public AbstractICWrapper getICWrapper() {
-        return AbstractICWrapper.createEmpty();
+    @Override public Neo4jICWrapper getICWrapper() {
+        return new Neo4jICWrapper();
     }
 
     @Override public Neo4jDMLWrapper getDMLWrapper() {
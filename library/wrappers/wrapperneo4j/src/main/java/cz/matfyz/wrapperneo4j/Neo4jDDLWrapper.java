@@ -46,9 +46,18 @@ public class Neo4jDDLWrapper implements AbstractDDLWrapper {
         return deleteStatements;
     }
 
+    /** The constraints created by the {@link Neo4jICWrapper}. */
+    private static final Pattern NAMED_CONSTRAINT_PATTERN = Pattern.compile("CREATE CONSTRAINT (`(?:[^`]|``)+`) IF NOT EXISTS");
+
     private List<String> extractCreatedConstraints(List<String> executionCommands) {
         List<String> constraints = new ArrayList<>();
         for (String command : executionCommands) {
+            Matcher namedMatcher = NAMED_CONSTRAINT_PATTERN.matcher(command);
+            if (namedMatcher.find()) {
+                constraints.add("DROP CONSTRAINT " + namedMatcher.group(1) + " IF EXISTS");
+                continue;
+            }
+
             Matcher matcher = Pattern.compile("CREATE CONSTRAINT ON \\([^)]*\\) ASSERT [^;]+;?").matcher(command);
             if (matcher.find()) {
                 String matched = matcher.group();
@@ -2,31 +2,76 @@ package cz.matfyz.wrapperneo4j;
 
 import cz.matfyz.abstractwrappers.AbstractDDLWrapper;
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
-import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
 import cz.matfyz.abstractwrappers.exception.InvalidNameException;
+import cz.matfyz.wrapperneo4j.Neo4jMergeStatement.Part;
+import cz.matfyz.wrapperneo4j.Neo4jMergeStatement.Shape;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class Neo4jDMLWrapper implements AbstractDMLWrapper {
 
     @Override public void clear() {
         kindName = null;
-        propertyValues.clear();
+        properties.clear();
         fromNodeLabel = null;
-        fromNodeValues.clear();
+        fromNodeProperties.clear();
         toNodeLabel = null;
-        toNodeValues.clear();
+        toNodeProperties.clear();
     }
 
-    private record PropertyValue(String name, String value) {}
-
     private String kindName = null;
-    private final List<PropertyValue> propertyValues = new ArrayList<>();
+    private final PartBuilder properties = new PartBuilder();
     private String fromNodeLabel = null;
-    private final List<PropertyValue> fromNodeValues = new ArrayList<>();
+    private final PartBuilder fromNodeProperties = new PartBuilder();
     private String toNodeLabel = null;
-    private final List<PropertyValue> toNodeValues = new ArrayList<>();
+    private final PartBuilder toNodeProperties = new PartBuilder();
+
+    /** The names and values of the properties of one node or relationship. */
+    private static class PartBuilder {
+
+        final List<String> names = new ArrayList<>();
+        final List<@Nullable String> values = new ArrayList<>();
+
+        void add(String name, @Nullable String value) {
+            names.add(name);
+            values.add(value);
+        }
+
+        void clear() {
+            names.clear();
+            values.clear();
+        }
+
+        boolean isEmpty() {
+            return names.isEmpty();
+        }
+
+        boolean matches(@Nullable Part part, String label) {
+            return part != null && part.label().equals(label) && part.properties().equals(names);
+        }
+
+        Part build(String label) {
+            return new Part(label, List.copyOf(names));
+        }
+
+        Map<String, @Nullable Object> createValues() {
+            final Map<String, @Nullable Object> output = new LinkedHashMap<>();
+            for (int i = 0; i < names.size(); i++)
+                output.put(names.get(i), values.get(i));
+
+            return output;
+        }
+
+    }
 
     @Override public void setKindName(String name) {
         if (!nameIsValid(name))
@@ -35,7 +80,7 @@ public class Neo4jDMLWrapper implements AbstractDMLWrapper {
         kindName = name;
     }
 
-    @Override public void append(String name, Object value) {
+    @Override public void append(String name, @Nullable Object value) {
         final String stringValue = value == null ? null : value.toString();
 
         final var split = name.split(AbstractDDLWrapper.PATH_SEPARATOR);
@@ -43,7 +88,7 @@ public class Neo4jDMLWrapper implements AbstractDMLWrapper {
             if (!nameIsValid(name))
                 throw InvalidNameException.property(name);
 
-            propertyValues.add(new PropertyValue(name, stringValue));
+            properties.add(name, stringValue);
             return;
         }
 
@@ -51,87 +96,83 @@ public class Neo4jDMLWrapper implements AbstractDMLWrapper {
         if (!nameIsValid(propertyName))
             throw InvalidNameException.property(name);
 
-        final var propertyValue = new PropertyValue(propertyName, stringValue);
-
         final var firstPart = split[0];
 
         if (firstPart.startsWith(Neo4jControlWrapper.FROM_NODE_PROPERTY_PREFIX)) {
             fromNodeLabel = firstPart.substring(Neo4jControlWrapper.FROM_NODE_PROPERTY_PREFIX.length());
-            fromNodeValues.add(propertyValue);
+            fromNodeProperties.add(propertyName, stringValue);
         }
         else if (firstPart.startsWith(Neo4jControlWrapper.TO_NODE_PROPERTY_PREFIX)) {
             toNodeLabel = firstPart.substring(Neo4jControlWrapper.TO_NODE_PROPERTY_PREFIX.length());
-            toNodeValues.add(propertyValue);
+            toNodeProperties.add(propertyName, stringValue);
         }
         else {
             throw InvalidNameException.property(name);
         }
     }
 
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[\\w.]+$");
+
+    /** The same names are appended for each row, so each of them is validated only once. */
+    private final Set<String> validNames = new HashSet<>();
+
     private boolean nameIsValid(String name) {
-        return name.matches("^[\\w.]+$");
+        if (validNames.contains(name))
+            return true;
+
+        if (!NAME_PATTERN.matcher(name).matches())
+            return false;
+
+        validNames.add(name);
+        return true;
     }
 
-    @Override public StringStatement createDMLStatement() {
+    @Override public Neo4jMergeStatement createDMLStatement() {
         if (kindName == null)
             throw InvalidNameException.kind(null);
 
-        if (fromNodeValues.isEmpty() || toNodeValues.isEmpty())
+        if (fromNodeProperties.isEmpty() || toNodeProperties.isEmpty())
             return processNode();
         else
             return processRelationship();
     }
 
-    private StringStatement processNode() {
-        return StringStatement.create(
-            createMergeForNode("", kindName, propertyValues) + ";"
-        );
+    private Neo4jMergeStatement processNode() {
+        final Shape shape = lastShape != null && !lastShape.isRelationship() && properties.matches(lastShape.kind(), kindName)
+            ? lastShape
+            : getShape(new Shape(properties.build(kindName), null, null));
+
+        return new Neo4jMergeStatement(shape, properties.createValues());
     }
 
-    private StringStatement processRelationship() {
+    private Neo4jMergeStatement processRelationship() {
         if (fromNodeLabel == null || toNodeLabel == null)
             throw InvalidNameException.node(null);
 
-        final String fromNodeMerge = createMergeForNode("from", fromNodeLabel, fromNodeValues);
-        final String toNodeMerge = createMergeForNode("to", toNodeLabel, toNodeValues);
-        final String relationshipMerge = String.format("MERGE (from)-[:%s %s]->(to)", kindName, propertiesToString(propertyValues));
-
-        return StringStatement.create(
-            fromNodeMerge + "\n"
-            + toNodeMerge + "\n"
-            + relationshipMerge + ";"
-        );
-    }
-
-    private static String createMergeForNode(String boundVariable, String label, List<PropertyValue> properties) {
-        return String.format("MERGE (%s:%s %s)", boundVariable, label, propertiesToString(properties));
-    }
-
-    private static String propertiesToString(List<PropertyValue> properties) {
-        final var sb = new StringBuilder();
-        sb.append("{");
-
-        for (final var property : properties) {
-            sb
-                .append(" ")
-                .append(property.name)
-                .append(": ")
-                .append(escapeString(property.value))
-                .append(",");
-        }
+        final boolean isLastShape = lastShape != null
+            && properties.matches(lastShape.kind(), kindName)
+            && fromNodeProperties.matches(lastShape.from(), fromNodeLabel)
+            && toNodeProperties.matches(lastShape.to(), toNodeLabel);
 
-        if (!properties.isEmpty()) // Remove the last comma
-            sb.deleteCharAt(sb.length() - 1);
+        final Shape shape = isLastShape
+            ? lastShape
+            : getShape(new Shape(properties.build(kindName), fromNodeProperties.build(fromNodeLabel), toNodeProperties.build(toNodeLabel)));
 
-        sb.append(" }");
+        final Map<String, @Nullable Object> row = new HashMap<>();
+        row.put(Neo4jMergeStatement.FROM_KEY, fromNodeProperties.createValues());
+        row.put(Neo4jMergeStatement.TO_KEY, toNodeProperties.createValues());
+        row.put(Neo4jMergeStatement.PROPERTIES_KEY, properties.createValues());
 
-        return sb.toString();
+        return new Neo4jMergeStatement(shape, row);
     }
 
-    private static String escapeString(String input) {
-        return input == null
-            ? "null"
-            : "'" + input.replace("'", "\\'") + "'";
+    private final Map<Shape, Shape> shapes = new HashMap<>();
+    /** The rows of one kind usually come one after another, so the last shape is tried first. */
+    private @Nullable Shape lastShape = null;
+
+    private Shape getShape(Shape shape) {
+        lastShape = shapes.computeIfAbsent(shape, s -> s);
+        return lastShape;
     }
 
 }
@@ -0,0 +1,94 @@
+package cz.matfyz.wrapperneo4j;
+
+import cz.matfyz.abstractwrappers.AbstractICWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
+import cz.matfyz.core.mapping.IdentifierStructure;
+import cz.matfyz.core.mapping.Mapping;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Neo4j doesn't have references, but the identifiers of the nodes can be unique constraints. They are created before the data, because the merges of the nodes (and of the relationships between them) use their indexes.
+ */
+public class Neo4jICWrapper implements AbstractICWrapper {
+
+    @Override public void clear() {
+        constraints.clear();
+    }
+
+    private final List<UniqueConstraintStatement> constraints = new ArrayList<>();
+
+    /** The kind is a label of nodes. */
+    @Override public void appendIdentifier(String kindName, IdentifierStructure identifier) {
+        constraints.add(new UniqueConstraintStatement(kindName, List.copyOf(identifier.properties())));
+    }
+
+    @Override public void appendIdentifier(Mapping mapping, IdentifierStructure identifier) {
+        // The identifiers of relationships consist of the properties of their nodes, which can't be constrained this way.
+        if (!Neo4jQueryWrapper.isRelationship(mapping))
+            appendIdentifier(mapping.kindName(), identifier);
+    }
+
+    @Override public void appendReference(String referencingKind, String referencedKind, Set<AttributePair> attributePairs) {
+        // There are no references in Neo4j.
+    }
+
+    @Override public Collection<AbstractStatement> createICStatements() {
+        return List.copyOf(constraints);
+    }
+
+    @Override public Collection<AbstractStatement> dropICStatements() {
+        return constraints.stream()
+            .map(constraint -> (AbstractStatement) StringStatement.create(constraint.dropCommand()))
+            .toList();
+    }
+
+    @Override public boolean isCreatedBeforeData() {
+        return true;
+    }
+
+    /**
+     * Makes the identifier of the nodes with the label unique.
+     * If the constraint can't be created (e.g., because there already are duplicates), the {@link Neo4jPushWrapper} creates just an index instead.
+     */
+    public static class UniqueConstraintStatement implements AbstractStatement {
+
+        private final String label;
+        private final List<String> properties;
+
+        UniqueConstraintStatement(String label, List<String> properties) {
+            this.label = label;
+            this.properties = properties;
+        }
+
+        private String getName() {
+            return Neo4jMergeStatement.escapeName(label + "_PRIMARY_KEY");
+        }
+
+        private String propertiesToString() {
+            return String.join(", ", properties.stream().map(property -> "n." + Neo4jMergeStatement.escapeName(property)).toList());
+        }
+
+        @Override public String getContent() {
+            return "CREATE CONSTRAINT " + getName() + " IF NOT EXISTS FOR (n:" + Neo4jMergeStatement.escapeName(label) + ") REQUIRE (" + propertiesToString() + ") IS UNIQUE;";
+        }
+
+        String createIndexCommand() {
+            return "CREATE INDEX " + Neo4jMergeStatement.escapeName(label + "_PRIMARY_KEY_INDEX") + " IF NOT EXISTS FOR (n:" + Neo4jMergeStatement.escapeName(label) + ") ON (" + propertiesToString() + ");";
+        }
+
+        String dropCommand() {
+            return "DROP CONSTRAINT " + getName() + " IF EXISTS;";
+        }
+
+        @Override public int getPriority() {
+            return 0;
+        }
+
+    }
+
+}
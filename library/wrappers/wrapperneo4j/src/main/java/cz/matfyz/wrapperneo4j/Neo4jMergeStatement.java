@@ -0,0 +1,136 @@
+package cz.matfyz.wrapperneo4j;
+
+import cz.matfyz.abstractwrappers.AbstractStatement;
+
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A merge of one node or relationship - a shape shared by all rows of the same kind (with the same properties), and the values of this row.
+ * The rows with the same shape are merged together by one parametrized query (see {@link Neo4jPushWrapper}).
+ * The Cypher with the values as literals is created only if the content is needed (e.g., for a file).
+ */
+public class Neo4jMergeStatement implements AbstractStatement {
+
+    /** The properties of a node or relationship. */
+    record Part(String label, List<String> properties) {}
+
+    /**
+     * The shapes are cached by the {@link Neo4jDMLWrapper}, so the rows with the same shape share the same instance. The names have to be already validated.
+     * @param from If null, it's a node. Otherwise, it's a relationship between the from and to nodes.
+     */
+    record Shape(Part kind, @Nullable Part from, @Nullable Part to) {
+
+        boolean isRelationship() {
+            return from != null;
+        }
+
+        /** Merges all rows from the <code>$rows</code> parameter. */
+        String createUnwindQuery() {
+            if (!isRelationship())
+                return "UNWIND $rows AS row\nMERGE (n:" + escapeName(kind.label) + " " + parametersToString(kind.properties, "row") + ")";
+
+            return "UNWIND $rows AS row"
+                + "\nMERGE (from:" + escapeName(from.label) + " " + parametersToString(from.properties, "row." + FROM_KEY) + ")"
+                + "\nMERGE (to:" + escapeName(to.label) + " " + parametersToString(to.properties, "row." + TO_KEY) + ")"
+                + "\nMERGE (from)-[:" + escapeName(kind.label) + " " + parametersToString(kind.properties, "row." + PROPERTIES_KEY) + "]->(to)";
+        }
+
+    }
+
+    static final String FROM_KEY = "from";
+    static final String TO_KEY = "to";
+    static final String PROPERTIES_KEY = "properties";
+
+    private final Shape shape;
+    private final Map<String, @Nullable Object> row;
+
+    /**
+     * @param row For a node, its properties. For a relationship, the properties of the from node, the to node, and the relationship itself (under the {@link #FROM_KEY}, {@link #TO_KEY}, and {@link #PROPERTIES_KEY}).
+     */
+    Neo4jMergeStatement(Shape shape, Map<String, @Nullable Object> row) {
+        this.shape = shape;
+        this.row = row;
+    }
+
+    Shape shape() {
+        return shape;
+    }
+
+    Map<String, @Nullable Object> row() {
+        return row;
+    }
+
+    /** The parametrized query that merges this row together with all other rows of the same shape (see {@link Neo4jPushWrapper}). */
+    public String getUnwindQuery() {
+        return shape.createUnwindQuery();
+    }
+
+    @Override public String getContent() {
+        if (!shape.isRelationship())
+            return createMergeForNode("", shape.kind, row) + ";";
+
+        final String fromNodeMerge = createMergeForNode("from", shape.from, getMap(FROM_KEY));
+        final String toNodeMerge = createMergeForNode("to", shape.to, getMap(TO_KEY));
+        final String relationshipMerge = String.format("MERGE (from)-[:%s %s]->(to)", shape.kind.label, propertiesToString(shape.kind.properties, getMap(PROPERTIES_KEY)));
+
+        return fromNodeMerge + "\n"
+            + toNodeMerge + "\n"
+            + relationshipMerge + ";";
+    }
+
+    @Override public int getPriority() {
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, @Nullable Object> getMap(String key) {
+        return (Map<String, @Nullable Object>) row.get(key);
+    }
+
+    private static String createMergeForNode(String boundVariable, Part part, Map<String, @Nullable Object> values) {
+        return String.format("MERGE (%s:%s %s)", boundVariable, part.label, propertiesToString(part.properties, values));
+    }
+
+    private static String propertiesToString(List<String> properties, Map<String, @Nullable Object> values) {
+        final var sb = new StringBuilder();
+        sb.append("{");
+
+        for (final var property : properties) {
+            sb
+                .append(" ")
+                .append(property)
+                .append(": ")
+                .append(escapeString((String) values.get(property)))
+                .append(",");
+        }
+
+        if (!properties.isEmpty()) // Remove the last comma
+            sb.deleteCharAt(sb.length() - 1);
+
+        sb.append(" }");
+
+        return sb.toString();
+    }
+
+    private static String escapeString(@Nullable String input) {
+        return input == null
+            ? "null"
+            : "'" + input.replace("'", "\\'") + "'";
+    }
+
+    private static String parametersToString(List<String> properties, String source) {
+        final var parameters = properties.stream()
+            .map(property -> escapeName(property) + ": " + source + "." + escapeName(property))
+            .toList();
+
+        return "{ " + String.join(", ", parameters) + " }";
+    }
+
+    static String escapeName(String name) {
+        return '`' + name.replace("`", "``") + '`';
+    }
+
+}
@@ -2,8 +2,11 @@ package cz.matfyz.wrapperneo4j;
 
 import cz.matfyz.abstractwrappers.AbstractDatasourceProvider;
 
+import java.util.Objects;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.neo4j.driver.AccessMode;
 import org.neo4j.driver.AuthToken;
 import org.neo4j.driver.AuthTokens;
 import org.neo4j.driver.Driver;
@@ -24,11 +27,29 @@ public class Neo4jProvider implements AbstractDatasourceProvider {
     }
 
     public Session getSession() {
+        // Sessions are cheap. We can create as many as we want.
+        return getDriver().session(SessionConfig.forDatabase(settings.database));
+    }
+
+    /**
+     * A session for reading large results. The records are pulled from the server in batches of the given size as they are consumed (instead of all at once).
+     */
+    public Session getReadSession(long fetchSize) {
+        final var config = SessionConfig.builder()
+            .withDatabase(settings.database)
+            .withDefaultAccessMode(AccessMode.READ)
+            .withFetchSize(fetchSize)
+            .build();
+
+        return getDriver().session(config);
+    }
+
+    // The sessions might be created by multiple threads at once (e.g., by a parallel pull).
+    private synchronized Driver getDriver() {
         if (driver == null)
             driver = GraphDatabase.driver(settings.createConnectionString(), settings.createAuthToken());
 
-        // Sessions are cheap. We can create as many as we want.
-        return driver.session(SessionConfig.forDatabase(settings.database));
+        return driver;
     }
 
     @Override public boolean isStillValid(Object settings) {
@@ -39,10 +60,12 @@ public class Neo4jProvider implements AbstractDatasourceProvider {
             && this.settings.port.equals(neo4jSettings.port)
             && this.settings.database.equals(neo4jSettings.database)
             && this.settings.isWritable == neo4jSettings.isWritable
-            && this.settings.isQueryable == neo4jSettings.isQueryable;
+            && this.settings.isQueryable == neo4jSettings.isQueryable
+            && Objects.equals(this.settings.pullParallelism, neo4jSettings.pullParallelism)
+            && Objects.equals(this.settings.writeBatchSize, neo4jSettings.writeBatchSize);
     }
 
-    @Override public void close() {
+    @Override public synchronized void close() {
         if (driver != null)
             driver.close();
     }
@@ -56,7 +79,11 @@ public class Neo4jProvider implements AbstractDatasourceProvider {
         String password,
         boolean isWritable,
         boolean isQueryable,
-        boolean isClonable
+        boolean isClonable,
+        /** The number of pages of a kind that are pulled concurrently (each in its own session). If null, the pages are pulled one by one. */
+        @Nullable Integer pullParallelism,
+        /** The maximal number of rows merged by one transaction. If null, the default is used. */
+        @Nullable Integer writeBatchSize
     ) {
 
         String createConnectionString() {
@@ -7,6 +7,7 @@ import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
 import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
 import cz.matfyz.abstractwrappers.querycontent.StringQuery;
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
 import cz.matfyz.core.adminer.AdminerFilter;
 import cz.matfyz.core.adminer.GraphResponse;
 import cz.matfyz.core.adminer.GraphResponse.GraphData;
@@ -22,6 +23,7 @@ import cz.matfyz.core.mapping.Name.DynamicName;
 import cz.matfyz.core.mapping.Name.StringName;
 import cz.matfyz.core.record.ComplexRecord;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RecordLayout;
 import cz.matfyz.core.record.RootRecord;
 
 import java.security.InvalidParameterException;
@@ -32,17 +34,26 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.neo4j.driver.Query;
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
 import org.neo4j.driver.Value;
+import org.neo4j.driver.exceptions.ClientException;
 import org.neo4j.driver.types.TypeSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Neo4jPullWrapper implements AbstractPullWrapper {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Neo4jPullWrapper.class);
+
     private final Neo4jProvider provider;
 
     private static final String RELATIONSHIPS_COUNT = "COUNT(relationship) as recordCount";
@@ -70,6 +81,7 @@ public class Neo4jPullWrapper implements AbstractPullWrapper {
 
     public Neo4jPullWrapper(Neo4jProvider provider) {
         this.provider = provider;
+        this.parallelism = provider.settings.pullParallelism() != null ? provider.settings.pullParallelism() : 1;
     }
 
     private String createRelationshipQueryString(QueryContent query, boolean isCountQuery) {
@@ -335,22 +347,54 @@ public class Neo4jPullWrapper implements AbstractPullWrapper {
     }
 
     @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) throws PullForestException {
-        try {
-            return innerPullForest(path, query);
-        }
-        catch (Exception e) {
-            throw PullForestException.inner(e);
+        try (
+            Stream<RootRecord> stream = streamForest(path, query);
+        ) {
+            return ForestOfRecords.fromStream(stream);
         }
     }
 
-    private ForestOfRecords innerPullForest(ComplexProperty path, QueryContent query) {
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * The number of records pulled from the server at once.
+     */
+    public Neo4jPullWrapper fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+
+        return this;
+    }
+
+    /**
+     * The records are pulled from the server (in batches of the {@link #fetchSize(int)} records) as the stream is consumed.
+     * A whole kind can be read concurrently by pages (see {@link #tryStreamPages}). Other queries are run in a single transaction that is kept open until the stream is closed.
+     */
+    @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) throws PullForestException {
         final @Nullable ComplexProperty fromNodeSubpath = findSubpathByPrefix(path, Neo4jControlWrapper.FROM_NODE_PROPERTY_PREFIX);
         final @Nullable ComplexProperty toNodeSubpath = findSubpathByPrefix(path, Neo4jControlWrapper.TO_NODE_PROPERTY_PREFIX);
         final boolean isRelationship = fromNodeSubpath != null && toNodeSubpath != null;
 
-        return isRelationship
-            ? pullRelationshipPath(path, fromNodeSubpath, toNodeSubpath, query)
-            : pullNodePath(path, query);
+        final var layout = RecordLayout.create(path);
+        final Function<Record, RootRecord> createRecord = isRelationship
+            ? result -> createRelationshipRecord(layout, path, fromNodeSubpath, toNodeSubpath, result)
+            : result -> createNodeRecord(layout, path, result);
+
+        try {
+            final @Nullable Stream<RootRecord> paged = tryStreamPages(path, query, isRelationship, createRecord);
+            if (paged != null)
+                return paged;
+
+            final String queryString = isRelationship
+                ? createRelationshipQueryString(query, false)
+                : createNodeQueryString(query, false);
+
+            return streamQuery(new Query(queryString), createRecord);
+        }
+        catch (Exception e) {
+            throw PullForestException.inner(e);
+        }
     }
 
     private static @Nullable ComplexProperty findSubpathByPrefix(ComplexProperty path, String namePrefix) {
@@ -366,65 +410,175 @@ public class Neo4jPullWrapper implements AbstractPullWrapper {
         return null;
     }
 
-    private ForestOfRecords pullRelationshipPath(ComplexProperty path, ComplexProperty fromNodeSubpath, ComplexProperty toNodeSubpath, QueryContent query) {
-        final var forest = new ForestOfRecords();
+    /** The session (and its transaction) is kept open until the stream is closed. */
+    private Stream<RootRecord> streamQuery(Query query, Function<Record, RootRecord> createRecord) {
+        final Session session = provider.getReadSession(fetchSize);
+        try {
+            final Transaction transaction = session.beginTransaction();
+            return transaction.run(query).stream()
+                .map(createRecord)
+                .onClose(() -> {
+                    // There is nothing to commit, so the transaction is just rolled back.
+                    transaction.close();
+                    session.close();
+                });
+        }
+        catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
 
-        try (
-            Session session = provider.getSession();
-        ) {
-            session
-                .executeRead(tx -> {
-                    final var queryCommand = new Query(createRelationshipQueryString(query, false));
+    private RootRecord createRelationshipRecord(RecordLayout layout, ComplexProperty path, ComplexProperty fromNodeSubpath, ComplexProperty toNodeSubpath, Record result) {
+        final var rootRecord = new RootRecord(layout);
+        addValuePropertiesToRecord(rootRecord, path, result.get("relationship"));
 
-                    return tx
-                        .run(queryCommand)
-                        .stream()
-                        .map(result -> {
-                            final var rootRecord = new RootRecord();
-                            addValuePropertiesToRecord(rootRecord, path, result.get("relationship"));
+        final var fromNodeRecord = rootRecord.addComplexRecord(fromNodeSubpath.signature());
+        addValuePropertiesToRecord(fromNodeRecord, fromNodeSubpath, result.get("from_node"));
 
-                            final var fromNodeRecord = rootRecord.addComplexRecord(fromNodeSubpath.signature());
-                            addValuePropertiesToRecord(fromNodeRecord, fromNodeSubpath, result.get("from_node"));
+        final var toNodeRecord = rootRecord.addComplexRecord(toNodeSubpath.signature());
+        addValuePropertiesToRecord(toNodeRecord, toNodeSubpath, result.get("to_node"));
 
-                            final var toNodeRecord = rootRecord.addComplexRecord(toNodeSubpath.signature());
-                            addValuePropertiesToRecord(toNodeRecord, toNodeSubpath, result.get("to_node"));
+        return rootRecord;
+    }
 
-                            return rootRecord;
-                        })
-                        .toList();
-                })
-                .forEach(forest::addRecord);
-        }
+    private RootRecord createNodeRecord(RecordLayout layout, ComplexProperty path, Record result) {
+        final var rootRecord = new RootRecord(layout);
+        addValuePropertiesToRecord(rootRecord, path, result.get("node"));
 
-        return forest;
+        return rootRecord;
     }
 
-    private ForestOfRecords pullNodePath(ComplexProperty path, QueryContent query) {
-        final var forest = new ForestOfRecords();
+    // #region Paged pull
 
+    /** Each page is read in its own (short) transaction, so there shouldn't be too many records in it. */
+    private static final int DEFAULT_PAGE_SIZE = 100_000;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    /**
+     * The number of records read in one transaction when the kind is read concurrently.
+     */
+    public Neo4jPullWrapper pageSize(int pageSize) {
+        this.pageSize = pageSize;
+
+        return this;
+    }
+
+    private int parallelism;
+
+    /**
+     * The number of parts of a kind that are read concurrently (each in its own session). If it's 1, the kind is read by a single streamed query.
+     * By default, it's taken from the settings of the datasource.
+     */
+    public Neo4jPullWrapper parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    /**
+     * The parts need ids that can be split into ranges. The <code>elementId()</code> strings can't, so the (in Neo4j 5 deprecated) <code>id()</code> function is used.
+     * If it isn't supported anymore, the bounds query fails and the kind is read in a single transaction instead.
+     */
+    private static final String ID_FUNCTION = "id";
+
+    /**
+     * Splits the kind into {@link #parallelism(int)} parts by the ranges of the ids of its nodes (or relationships). The parts are read concurrently and their records are merged into one stream (see {@link ParallelRecordStream}).
+     * Each part is read by pages. A page continues right after the last id of the previous page (i.e., the keyset pagination), so the pages don't have to skip the records before them.
+     * Each page is read in its own transaction, so no transaction has to hold the whole kind.
+     * The transactions don't share a snapshot, so the elements that are modified during the pull might be missed or read twice (e.g., if they're deleted and created again).
+     * Returns null if the kind isn't read concurrently, if the query doesn't select a whole kind (with optional filters), or if the kind fits into one page.
+     */
+    private @Nullable Stream<RootRecord> tryStreamPages(ComplexProperty path, QueryContent query, boolean isRelationship, Function<Record, RootRecord> createRecord) {
+        // A single query is streamed by the fetch size anyway, so there is no need to split it.
+        if (parallelism <= 1)
+            return null;
+
+        final @Nullable KindNameQuery kindNameQuery = query instanceof final KindNameFilterQuery knfQuery
+            ? knfQuery.kindNameQuery
+            : query instanceof final KindNameQuery knQuery ? knQuery : null;
+        if (kindNameQuery == null || kindNameQuery.hasLimit() || kindNameQuery.hasOffset())
+            return null;
+
+        final String alias = isRelationship ? "relationship" : "node";
+        final String matchPart = isRelationship
+            ? "MATCH (from_node)-[relationship: " + kindNameQuery.kindName + "]->(to_node)"
+            : kindNameQuery.kindName.isEmpty() ? "MATCH (node)" : "MATCH (node:" + kindNameQuery.kindName + ")";
+
+        final List<String> conditions = query instanceof final KindNameFilterQuery knfQuery
+            ? createWhereConditions(knfQuery.getFilters(), alias)
+            : new ArrayList<>();
+        if (!isRelationship && kindNameQuery.kindName.isEmpty())
+            conditions.add("size(labels(node)) = 0");
+
+        final String id = ID_FUNCTION + "(" + alias + ")";
+        final String boundsQuery = matchPart + " " + createWhereClause(conditions)
+            + " RETURN min(" + id + ") AS min, max(" + id + ") AS max, count(" + alias + ") AS count;";
+        final long[] boundaries;
         try (
-            Session session = provider.getSession();
+            Session session = provider.getReadSession(fetchSize);
         ) {
-            session
-                .executeRead(tx -> {
-                    final var queryCommand = new Query(createNodeQueryString(query, false));
+            final Record bounds = session.executeRead(tx -> tx.run(boundsQuery).single());
+            final long count = bounds.get("count").asLong();
+            if (count <= pageSize)
+                return null;
+
+            final int partsCount = (int) Math.min(parallelism, (count + pageSize - 1) / pageSize);
+            boundaries = ParallelRecordStream.splitRange(bounds.get("min").asLong(), bounds.get("max").asLong(), partsCount);
+        }
+        catch (ClientException e) {
+            LOGGER.warn("Can't split the Neo4j kind {} into pages, it will be read at once.", kindNameQuery.kindName, e);
+            return null;
+        }
 
-                    return tx
-                        .run(queryCommand)
-                        .stream()
-                        .map(result -> {
-                            final var rootRecord = new RootRecord();
-                            addValuePropertiesToRecord(rootRecord, path, result.get("node"));
-                            return rootRecord;
-                        })
-                        .toList();
-                })
-                .forEach(forest::addRecord);
+        conditions.add(id + " > $after AND " + id + " < $to");
+        final String pageQuery = matchPart + " " + createWhereClause(conditions)
+            + " RETURN " + (isRelationship ? "from_node, relationship, to_node" : "node") + ", " + id + " AS " + PAGE_ID
+            + " ORDER BY " + PAGE_ID + " LIMIT $limit;";
+
+        // The first and the last part are open so that the elements created during the pull aren't lost.
+        final List<ParallelRecordStream.Partition> parts = new ArrayList<>();
+        for (int i = 0; i <= boundaries.length; i++) {
+            final long after = i == 0 ? Long.MIN_VALUE : boundaries[i - 1] - 1;
+            final long to = i == boundaries.length ? Long.MAX_VALUE : boundaries[i];
+            parts.add(output -> readPart(pageQuery, after, to, createRecord, output));
         }
 
-        return forest;
+        ParallelRecordStream.initializeForThreads(path);
+
+        return ParallelRecordStream.create(parts, parallelism, "neo4j-pull");
+    }
+
+    private static final String PAGE_ID = "page_id";
+
+    /** Reads the elements with the ids in the (after, to) range page by page. */
+    private void readPart(String pageQuery, long after, long to, Function<Record, RootRecord> createRecord, Consumer<RootRecord> output) {
+        long lastId = after;
+        while (true) {
+            final var page = new Query(pageQuery, Map.of("after", lastId, "to", to, "limit", pageSize));
+            int readCount = 0;
+            try (
+                Session session = provider.getReadSession(fetchSize);
+                Transaction transaction = session.beginTransaction();
+            ) {
+                final Result result = transaction.run(page);
+                while (result.hasNext()) {
+                    final Record record = result.next();
+                    output.accept(createRecord.apply(record));
+                    lastId = record.get(PAGE_ID).asLong();
+                    readCount++;
+                }
+            }
+
+            // Only the last page isn't full.
+            if (readCount < pageSize)
+                return;
+        }
     }
 
+    // #endregion
+
     private void addValuePropertiesToRecord(ComplexRecord record, ComplexProperty path, Value parentValue) {
         for (final String key : parentValue.keys()) {
             final Value value = parentValue.get(key);
@@ -0,0 +1,164 @@
+package cz.matfyz.wrapperneo4j;
+
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.exception.ExecuteException;
+import cz.matfyz.wrapperneo4j.Neo4jICWrapper.UniqueConstraintStatement;
+import cz.matfyz.wrapperneo4j.Neo4jMergeStatement.Shape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consecutive merges with the same shape are sent together - as the <code>$rows</code> parameter of one <code>UNWIND</code> query. So the server plans the query only once and each batch is one transaction.
+ * Other statements are run in transactions of the same size. The schema commands (constraints, indexes) can't be mixed with writes, so each of them is run on its own.
+ */
+public class Neo4jPushWrapper implements AbstractPushWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Neo4jPushWrapper.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private static final Pattern SCHEMA_COMMAND_PATTERN = Pattern.compile("^(CREATE|DROP)\\s+(CONSTRAINT|INDEX|DATABASE)\\b", Pattern.CASE_INSENSITIVE);
+
+    private final Session session;
+    private final int batchSize;
+
+    Neo4jPushWrapper(Session session, int batchSize) {
+        this.session = session;
+        this.batchSize = batchSize;
+    }
+
+    private @Nullable Shape groupShape;
+    private List<Map<String, @Nullable Object>> rows = new ArrayList<>();
+    /** Other statements that aren't run yet. If there are any, there are no rows. */
+    private final List<String> others = new ArrayList<>();
+
+    private long mergedCount = 0;
+    private long statementsCount = 0;
+
+    @Override public void push(AbstractStatement statement) {
+        try {
+            if (statement instanceof final Neo4jMergeStatement merge) {
+                if (!merge.shape().equals(groupShape)) {
+                    flush();
+                    groupShape = merge.shape();
+                }
+
+                rows.add(merge.row());
+                if (rows.size() >= batchSize)
+                    flushRows();
+
+                return;
+            }
+
+            final String content = statement.getContent().strip();
+            if (content.isEmpty())
+                return;
+
+            if (statement instanceof final UniqueConstraintStatement constraint) {
+                flush();
+                createConstraint(constraint);
+                return;
+            }
+
+            if (SCHEMA_COMMAND_PATTERN.matcher(content).find()) {
+                flush();
+                session.run(content).consume();
+                statementsCount++;
+                return;
+            }
+
+            flushRows();
+            others.add(content);
+            if (others.size() >= batchSize)
+                flushOthers();
+        }
+        catch (Neo4jException e) {
+            throw new ExecuteException(e, List.of(statement));
+        }
+    }
+
+    private void flush() {
+        flushRows();
+        flushOthers();
+    }
+
+    private void flushRows() {
+        if (rows.isEmpty())
+            return;
+
+        final String query = groupShape.createUnwindQuery();
+        final Map<String, Object> parameters = Map.of("rows", rows);
+        session.executeWrite(transaction -> transaction.run(query, parameters).consume());
+
+        LOGGER.debug("Merged {} rows of Neo4j kind {}.", rows.size(), groupShape.kind().label());
+        mergedCount += rows.size();
+        rows = new ArrayList<>(batchSize);
+    }
+
+    private void flushOthers() {
+        if (others.isEmpty())
+            return;
+
+        session.executeWrite(transaction -> {
+            for (final String other : others) {
+                LOGGER.debug("Execute Neo4j statement:\n{}", other);
+                transaction.run(other).consume();
+            }
+            return null;
+        });
+
+        statementsCount += others.size();
+        others.clear();
+    }
+
+    private void createConstraint(UniqueConstraintStatement constraint) {
+        try {
+            session.run(constraint.getContent()).consume();
+        }
+        catch (Neo4jException e) {
+            // E.g., there already are duplicate nodes. The merges can still use a (non-unique) index.
+            LOGGER.warn("Cannot create Neo4j constraint, creating an index instead: {}", e.getMessage());
+            session.run(constraint.createIndexCommand()).consume();
+        }
+
+        statementsCount++;
+    }
+
+    @Override public void close() {
+        try {
+            flush();
+            LOGGER.info("Merged {} Neo4j rows and ran {} other statements.", mergedCount, statementsCount);
+        }
+        catch (Neo4jException e) {
+            throw new ExecuteException(e, List.of());
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    /** Each batch is committed on its own, so the already merged rows stay in the database. */
+    @Override public void abort() {
+        rows = new ArrayList<>();
+        others.clear();
+        LOGGER.warn("Aborted after {} merged Neo4j rows and {} other statements.", mergedCount, statementsCount);
+
+        try {
+            session.close();
+        }
+        catch (Neo4jException e) {
+            LOGGER.warn("Failed to close the Neo4j session.", e);
+        }
+    }
+
+}
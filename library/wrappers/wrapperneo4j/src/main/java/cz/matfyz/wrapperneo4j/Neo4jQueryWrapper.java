@@ -220,7 +220,7 @@ public class Neo4jQueryWrapper extends BaseQueryWrapper implements AbstractQuery
 
     }
 
-    private static boolean isRelationship(Mapping mapping) {
+    static boolean isRelationship(Mapping mapping) {
         final boolean hasFrom = hasSubpathByPrefix(mapping.accessPath(), Neo4jControlWrapper.FROM_NODE_PROPERTY_PREFIX);
         final boolean hasTo = hasSubpathByPrefix(mapping.accessPath(), Neo4jControlWrapper.TO_NODE_PROPERTY_PREFIX);
         return hasFrom && hasTo;
@@ -7,13 +7,13 @@ import cz.matfyz.abstractwrappers.BaseControlWrapper;
 import cz.matfyz.abstractwrappers.exception.ExecuteException;
 import cz.matfyz.core.datasource.Datasource.DatasourceType;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.Collection;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,12 +39,12 @@ public class PostgreSQLControlWrapper extends BaseControlWrapper {
         try (
             Connection connection = provider.getConnection();
         ) {
-            // TODO transactions?
+            // Each statement is committed on its own - some of them (e.g., creating a database) can't run in a transaction. Large loads should use the push wrapper instead.
             for (final var statement : statements) {
                 try (
                     PreparedStatement preparedStatement = connection.prepareStatement(statement.getContent());
                 ) {
-                    LOGGER.info("Execute PostgreSQL statement:\n{}", preparedStatement);
+                    LOGGER.debug("Execute PostgreSQL statement:\n{}", preparedStatement);
                     preparedStatement.execute();
                 }
             }
@@ -54,21 +54,46 @@ public class PostgreSQLControlWrapper extends BaseControlWrapper {
         }
     }
 
+    /** The script is read line by line and pushed to a {@link PostgreSQLPushWrapper}, so it doesn't have to be in memory at once. */
     @Override public void execute(Path path) {
-        try {
-            String script = Files.readString(path);
-            // Split the queries by the ; character, followed by any number of whitespaces and newline.
-            final var statements = Stream.of(script.split(";\\s*\n"))
-                .map(String::strip)
-                .filter(s -> !s.isBlank())
-                .map(s -> (AbstractStatement) StringStatement.create(s))
-                .toList();
-
-            execute(statements);
+        final PostgreSQLPushWrapper output = getPushWrapper();
+
+        try (
+            BufferedReader reader = Files.newBufferedReader(path);
+        ) {
+            // The statements are separated by the ; character, followed by any number of whitespaces and newline.
+            final var statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String stripped = line.stripTrailing();
+                if (!stripped.endsWith(";")) {
+                    statement.append(line).append('\n');
+                    continue;
+                }
+
+                statement.append(stripped, 0, stripped.length() - 1);
+                output.push(StringStatement.create(statement.toString().strip()));
+                statement.setLength(0);
+            }
+
+            output.push(StringStatement.create(statement.toString().strip()));
         }
         catch (IOException e) {
+            // Nothing from an unreadable script should be committed.
+            output.abort();
             throw new ExecuteException(e, path);
         }
+        catch (RuntimeException e) {
+            // Also returns the connection to the pool (without an open transaction).
+            output.abort();
+            throw e;
+        }
+
+        output.close();
+    }
+
+    @Override public PostgreSQLPushWrapper getPushWrapper() {
+        return new PostgreSQLPushWrapper(provider.getConnection(), provider.settings.commitInterval());
     }
 
     @Override public PostgreSQLDDLWrapper getDDLWrapper() {
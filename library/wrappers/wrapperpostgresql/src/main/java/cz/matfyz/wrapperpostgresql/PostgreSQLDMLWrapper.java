@@ -1,11 +1,16 @@
 package cz.matfyz.wrapperpostgresql;
 
 import cz.matfyz.abstractwrappers.AbstractDMLWrapper;
-import cz.matfyz.abstractwrappers.AbstractStatement.StringStatement;
 import cz.matfyz.abstractwrappers.exception.InvalidNameException;
+import cz.matfyz.wrapperpostgresql.PostgreSQLInsertStatement.Shape;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -13,14 +18,14 @@ public class PostgreSQLDMLWrapper implements AbstractDMLWrapper {
 
     @Override public void clear() {
         kindName = null;
-        propertyValues.clear();
+        columns.clear();
+        values.clear();
     }
 
     private String kindName = null;
 
-    private record PropertyValue(String name, String value) {}
-
-    private final List<PropertyValue> propertyValues = new ArrayList<>();
+    private final List<String> columns = new ArrayList<>();
+    private final List<@Nullable String> values = new ArrayList<>();
 
     @Override public void setKindName(String name) {
         if (!nameIsValid(name))
@@ -33,29 +38,46 @@ public class PostgreSQLDMLWrapper implements AbstractDMLWrapper {
         if (!nameIsValid(name))
             throw InvalidNameException.property(name);
 
-        String stringValue = value == null ? null : value.toString();
-        propertyValues.add(new PropertyValue(name, stringValue));
+        columns.add(name);
+        values.add(value == null ? null : value.toString());
     }
 
+    private static final Pattern NAME_PATTERN = Pattern.compile("^[\\w.]+$");
+
+    /** The same names are appended for each row, so each of them is validated only once. */
+    private final Set<String> validNames = new HashSet<>();
+
     private boolean nameIsValid(String name) {
-        return name.matches("^[\\w.]+$");
+        if (validNames.contains(name))
+            return true;
+
+        if (!NAME_PATTERN.matcher(name).matches())
+            return false;
+
+        validNames.add(name);
+        return true;
     }
 
-    @Override public StringStatement createDMLStatement() {
+    private record ShapeKey(String kindName, List<String> columns) {}
+
+    private final Map<ShapeKey, Shape> shapes = new HashMap<>();
+    /** The rows of one kind usually come one after another, so the last shape is tried first. */
+    private @Nullable Shape lastShape = null;
+
+    @Override public PostgreSQLInsertStatement createDMLStatement() {
         if (kindName == null)
             throw InvalidNameException.kind(null);
 
-        List<String> escapedNames = propertyValues.stream().map(propertyValue -> '"' + propertyValue.name + '"').toList();
-        List<String> escapedValues = propertyValues.stream().map(propertyValue -> escapeString(propertyValue.value)).toList();
-
-        String content = String.format("INSERT INTO \"%s\" (%s)\nVALUES (%s);", kindName, String.join(", ", escapedNames), String.join(", ", escapedValues));
-        return StringStatement.create(content);
+        return new PostgreSQLInsertStatement(getShape(), new ArrayList<>(values));
     }
 
-    private String escapeString(String input) {
-        return input == null
-            ? "NULL"
-            : "'" + input.replace("'", "''") + "'";
+    private Shape getShape() {
+        if (lastShape != null && lastShape.kindName().equals(kindName) && lastShape.columns().equals(columns))
+            return lastShape;
+
+        final var key = new ShapeKey(kindName, List.copyOf(columns));
+        lastShape = shapes.computeIfAbsent(key, k -> Shape.create(k.kindName, k.columns));
+        return lastShape;
     }
 
 }
@@ -0,0 +1,82 @@
+package cz.matfyz.wrapperpostgresql;
+
+import cz.matfyz.abstractwrappers.AbstractStatement;
+
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An insert of one row - a shape shared by all rows with the same kind and columns, and the values of this row (bound as parameters).
+ * So the rows of the same kind can be loaded in bulk by one prepared statement (see {@link PostgreSQLPushWrapper}).
+ * The SQL with the values as literals is created only if the content is needed (e.g., for a file).
+ */
+public class PostgreSQLInsertStatement implements AbstractStatement {
+
+    /**
+     * The shapes are cached by the {@link PostgreSQLDMLWrapper}, so the rows with the same shape share the same instance. The names have to be already validated.
+     * @param sql The insert with parameters instead of the values.
+     */
+    record Shape(String kindName, List<String> columns, String sql) {
+
+        static Shape create(String kindName, List<String> columns) {
+            final String parameters = String.join(", ", columns.stream().map(column -> "?").toList());
+            final String sql = String.format("INSERT INTO %s (%s)\nVALUES (%s)", escapeName(kindName), escapeNames(columns), parameters);
+            return new Shape(kindName, columns, sql);
+        }
+
+    }
+
+    private final Shape shape;
+    private final List<@Nullable String> values;
+
+    PostgreSQLInsertStatement(Shape shape, List<@Nullable String> values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    @Override public String getContent() {
+        return String.format("INSERT INTO %s (%s)\nVALUES (%s);", escapeName(shape.kindName), escapeNames(shape.columns), escapeValues(values));
+    }
+
+    @Override public int getPriority() {
+        // All rows can be inserted in any order (the constraints are created after them).
+        return 0;
+    }
+
+    Shape shape() {
+        return shape;
+    }
+
+    public String kindName() {
+        return shape.kindName;
+    }
+
+    public List<String> columns() {
+        return shape.columns;
+    }
+
+    /** In the same order as the {@link #columns()} (and the parameters of the shape). */
+    public List<@Nullable String> values() {
+        return values;
+    }
+
+    static String escapeName(String name) {
+        return '"' + name + '"';
+    }
+
+    static String escapeNames(List<String> names) {
+        return String.join(", ", names.stream().map(PostgreSQLInsertStatement::escapeName).toList());
+    }
+
+    private static String escapeValues(List<@Nullable String> values) {
+        return String.join(", ", values.stream().map(PostgreSQLInsertStatement::escapeValue).toList());
+    }
+
+    private static String escapeValue(@Nullable String value) {
+        return value == null
+            ? "NULL"
+            : "'" + value.replace("'", "''") + "'";
+    }
+
+}
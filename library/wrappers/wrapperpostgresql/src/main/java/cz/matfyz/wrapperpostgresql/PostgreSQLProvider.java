@@ -5,6 +5,7 @@ import cz.matfyz.core.exception.OtherException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.zaxxer.hikari.HikariConfig;
@@ -19,29 +20,38 @@ public class PostgreSQLProvider implements AbstractDatasourceProvider {
     // This also means that there should be at most one instance of this class so it should be cached somewhere.
     private @Nullable HikariDataSource dataSource;
 
+    /** The number of connections in the pool. */
+    static final int POOL_SIZE = 10;
+
     public PostgreSQLProvider(PostgreSQLSettings settings) {
         this.settings = settings;
     }
 
     public Connection getConnection() {
         try {
-            if (dataSource == null) {
-                final var config = new HikariConfig();
-                config.setJdbcUrl(settings.createConnectionString());
-                config.setReadOnly(!settings.isWritable);
-                // There were some problems with too many connections ...
-                // The default pool size is 10 (which should be plenty enough), postgres pool size is 100 (which is, again, plenty).
-                // If the app is runnig out of connections, it's most likely a problem somewhere else (e.g., the provider is not closed during spring boot hot reload, so each time, we block 10 new connections from the 100 limit).
-                dataSource = new HikariDataSource(config);
-            }
-
-            return dataSource.getConnection();
+            return getDataSource().getConnection();
         }
         catch (SQLException e) {
             throw new OtherException(e);
         }
     }
 
+    /** The connections might be requested from multiple threads at once (e.g., when several mappings are pulled in parallel). However, the pool itself has to be waited for outside of the lock. */
+    private synchronized HikariDataSource getDataSource() {
+        if (dataSource == null) {
+            final var config = new HikariConfig();
+            config.setJdbcUrl(settings.createConnectionString());
+            config.setReadOnly(!settings.isWritable);
+            // There were some problems with too many connections ...
+            // The pool size is 10 (which should be plenty enough), postgres pool size is 100 (which is, again, plenty).
+            // If the app is runnig out of connections, it's most likely a problem somewhere else (e.g., the provider is not closed during spring boot hot reload, so each time, we block 10 new connections from the 100 limit).
+            config.setMaximumPoolSize(POOL_SIZE);
+            dataSource = new HikariDataSource(config);
+        }
+
+        return dataSource;
+    }
+
     @Override public boolean isStillValid(Object settings) {
         if (!(settings instanceof PostgreSQLSettings postgreSqlSettings))
             return false;
@@ -50,10 +60,12 @@ public class PostgreSQLProvider implements AbstractDatasourceProvider {
             && this.settings.port.equals(postgreSqlSettings.port)
             && this.settings.database.equals(postgreSqlSettings.database)
             && this.settings.isWritable == postgreSqlSettings.isWritable
-            && this.settings.isQueryable == postgreSqlSettings.isQueryable;
+            && this.settings.isQueryable == postgreSqlSettings.isQueryable
+            && Objects.equals(this.settings.pullParallelism, postgreSqlSettings.pullParallelism)
+            && Objects.equals(this.settings.commitInterval, postgreSqlSettings.commitInterval);
     }
 
-    @Override public void close() {
+    @Override public synchronized void close() {
         if (dataSource != null)
             dataSource.close();
     }
@@ -67,7 +79,11 @@ public class PostgreSQLProvider implements AbstractDatasourceProvider {
         String password,
         boolean isWritable,
         boolean isQueryable,
-        boolean isClonable
+        boolean isClonable,
+        /** The number of partitions of a kind that are pulled concurrently (each on its own connection). If null, the kinds aren't partitioned. */
+        @Nullable Integer pullParallelism,
+        /** The number of statements after which a bulk load commits. If null, the whole load is one transaction. */
+        @Nullable Integer commitInterval
     ) {
 
         String createConnectionString() {
@@ -82,6 +98,8 @@ public class PostgreSQLProvider implements AbstractDatasourceProvider {
                 .append(username)
                 .append("&password=")
                 .append(password)
+                // The batches of the same insert are sent as multi-row inserts.
+                .append("&reWriteBatchedInserts=true")
                 .toString();
         }
 
@@ -7,30 +7,41 @@ import cz.matfyz.abstractwrappers.querycontent.KindNameFilterQuery;
 import cz.matfyz.abstractwrappers.querycontent.KindNameQuery;
 import cz.matfyz.abstractwrappers.querycontent.QueryContent;
 import cz.matfyz.abstractwrappers.querycontent.StringQuery;
+import cz.matfyz.abstractwrappers.utils.ParallelRecordStream;
 import cz.matfyz.core.adminer.AdminerFilter;
 import cz.matfyz.core.adminer.TableResponse;
 import cz.matfyz.core.adminer.Reference;
 import cz.matfyz.core.mapping.AccessPath;
 import cz.matfyz.core.mapping.ComplexProperty;
 import cz.matfyz.core.mapping.Name.DynamicName;
+import cz.matfyz.core.mapping.Name.StringName;
 import cz.matfyz.core.querying.LeafResult;
 import cz.matfyz.core.querying.ListResult;
 import cz.matfyz.core.querying.QueryResult;
 import cz.matfyz.core.record.ForestOfRecords;
+import cz.matfyz.core.record.RecordLayout;
 import cz.matfyz.core.record.RootRecord;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
@@ -45,9 +56,17 @@ public class PostgreSQLPullWrapper implements AbstractPullWrapper {
 
     public PostgreSQLPullWrapper(PostgreSQLProvider provider) {
         this.provider = provider;
+        this.parallelism = provider.settings.pullParallelism() != null ? provider.settings.pullParallelism() : 1;
     }
 
     private PreparedStatement prepareStatement(Connection connection, QueryContent query, boolean isCountQuery) throws SQLException {
+        return prepareStatement(connection, query, isCountQuery, null);
+    }
+
+    /**
+     * @param path If provided, only the columns of its subpaths are selected by the kind name queries.
+     */
+    private PreparedStatement prepareStatement(Connection connection, QueryContent query, boolean isCountQuery, @Nullable ComplexProperty path) throws SQLException {
         if (query instanceof final PostgreSQLQuery postgreSQLQuery) {
             final var statement = connection.prepareStatement(postgreSQLQuery.queryString);
             for (int i = 0; i < postgreSQLQuery.rawVariables.size(); i++)
@@ -59,16 +78,16 @@ public class PostgreSQLPullWrapper implements AbstractPullWrapper {
             return connection.prepareStatement(stringQuery.content);
 
         if (query instanceof final KindNameQuery kindNameQuery)
-            return connection.prepareStatement(kindNameQueryToString(kindNameQuery, null, isCountQuery));
+            return connection.prepareStatement(kindNameQueryToString(kindNameQuery, null, isCountQuery, createColumnList(connection, kindNameQuery.kindName, path)));
 
         if (query instanceof final KindNameFilterQuery kindNameFilterQuery)
-            return connection.prepareStatement(kindNameQueryToString(kindNameFilterQuery.kindNameQuery, kindNameFilterQuery.getFilters(), isCountQuery));
+            return connection.prepareStatement(kindNameQueryToString(kindNameFilterQuery.kindNameQuery, kindNameFilterQuery.getFilters(), isCountQuery, createColumnList(connection, kindNameFilterQuery.kindNameQuery.kindName, path)));
 
         throw PullForestException.invalidQuery(this, query);
     }
 
-    private String kindNameQueryToString(KindNameQuery query, @Nullable List<AdminerFilter> filters, boolean isCountQuery) {
-        String columns = isCountQuery ? "COUNT(1)" : "*";
+    private String kindNameQueryToString(KindNameQuery query, @Nullable List<AdminerFilter> filters, boolean isCountQuery, String columnList) {
+        String columns = isCountQuery ? "COUNT(1)" : columnList;
         // TODO escape all table names globally
         var command = "SELECT " + columns + " FROM " + "\"" + query.kindName + "\"";
         if (filters != null)
@@ -83,6 +102,47 @@ public class PostgreSQLPullWrapper implements AbstractPullWrapper {
         return command;
     }
 
+    /**
+     * Selects only the columns that are mapped by the path (the ones that aren't in the table are ignored, just like they would be with <code>*</code>).
+     * All columns are selected if there isn't any path or if some of its subpaths have dynamic names (so they can match any column).
+     */
+    private static String createColumnList(Connection connection, String kindName, @Nullable ComplexProperty path) throws SQLException {
+        if (path == null)
+            return "*";
+
+        final var mappedColumns = new TreeSet<String>();
+        for (final AccessPath subpath : path.subpaths()) {
+            if (!(subpath.name() instanceof final StringName stringName))
+                return "*";
+
+            mappedColumns.add(stringName.value);
+        }
+
+        final var metadata = connection.getMetaData();
+        final var columns = new ArrayList<String>();
+        try (
+            ResultSet resultSet = metadata.getColumns(null, null, escapePattern(metadata, kindName), null);
+        ) {
+            while (resultSet.next()) {
+                final String name = resultSet.getString("COLUMN_NAME");
+                if (mappedColumns.contains(name))
+                    columns.add(quoteName(name));
+            }
+        }
+
+        return columns.isEmpty() ? "*" : String.join(", ", columns);
+    }
+
+    /** The names in the metadata queries are patterns, so their wildcards have to be escaped. */
+    private static String escapePattern(DatabaseMetaData metadata, String name) throws SQLException {
+        final String escape = metadata.getSearchStringEscape();
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    private static String quoteName(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
     /**
      * Constructs a WHERE clause based on a list of filters.
      */
@@ -166,45 +226,291 @@ public class PostgreSQLPullWrapper implements AbstractPullWrapper {
 
     @Override public ForestOfRecords pullForest(ComplexProperty path, QueryContent query) throws PullForestException {
         try (
-            Connection connection = provider.getConnection();
-            PreparedStatement statement = prepareStatement(connection, query, false);
+            Stream<RootRecord> stream = streamForest(path, query);
+        ) {
+            return ForestOfRecords.fromStream(stream);
+        }
+    }
+
+    private static final int DEFAULT_FETCH_SIZE = 10_000;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * The number of rows fetched from the server at once when pulling records.
+     */
+    public PostgreSQLPullWrapper fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+
+        return this;
+    }
+
+    /**
+     * The connection is kept open until the stream is closed.
+     * The rows are fetched through a server-side cursor (in batches of the {@link #fetchSize(int)} rows), so the whole table is never in the memory.
+     * The driver uses the cursor only in a transaction, so the autocommit is turned off for the connection.
+     * The kind name queries select only the mapped columns.
+     */
+    @Override public Stream<RootRecord> streamForest(ComplexProperty path, QueryContent query) throws PullForestException {
+        if (parallelism > 1 && query instanceof final KindNameQuery kindNameQuery && !kindNameQuery.hasLimit() && !kindNameQuery.hasOffset()) {
+            try {
+                final @Nullable Stream<RootRecord> partitioned = tryStreamPartitions(path, kindNameQuery.kindName);
+                if (partitioned != null)
+                    return partitioned;
+            }
+            catch (Exception e) {
+                throw PullForestException.inner(e);
+            }
+        }
+
+        Connection connection = null;
+        try {
+            connection = provider.getConnection();
+            connection.setAutoCommit(false);
+            final PreparedStatement statement = prepareStatement(connection, query, false, path);
+            statement.setFetchSize(fetchSize);
+            LOGGER.debug("Execute PostgreSQL query:\n{}", statement);
+
+            final ResultSet resultSet = statement.executeQuery();
+            final List<Column> columns = createColumns(resultSet, path);
+            final var layout = RecordLayout.create(path);
+
+            final var spliterator = new Spliterators.AbstractSpliterator<RootRecord>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override public boolean tryAdvance(Consumer<? super RootRecord> action) {
+                    try {
+                        if (!resultSet.next())
+                            return false;
+
+                        action.accept(createRecord(layout, columns, resultSet));
+                        return true;
+                    }
+                    catch (SQLException e) {
+                        throw PullForestException.inner(e);
+                    }
+                }
+            };
+
+            final var closeableConnection = connection;
+            return StreamSupport.stream(spliterator, false).onClose(() -> closeConnection(closeableConnection));
+        }
+        catch (Exception e) {
+            if (connection != null)
+                closeConnection(connection);
+            throw PullForestException.inner(e);
+        }
+    }
+
+    /** Closing the connection closes all its statements and result sets as well. */
+    private static void closeConnection(Connection connection) {
+        try {
+            // There is nothing to commit, the transaction is here just for the cursor.
+            if (!connection.getAutoCommit())
+                connection.rollback();
+            connection.close();
+        }
+        catch (SQLException e) {
+            throw PullForestException.inner(e);
+        }
+    }
+
+    // #region Partitioned pull
+
+    /** One connection from the pool is needed for the snapshot and at least one should stay free for the other requests. */
+    private static final int MAX_PARALLELISM = PostgreSQLProvider.POOL_SIZE - 2;
+    /** There are more partitions than workers so that a few large partitions don't delay the whole pull. */
+    private static final int PARTITIONS_PER_WORKER = 4;
+
+    private int parallelism;
+
+    /**
+     * The number of partitions of a kind that are read concurrently (each on its own connection). If it's 1, the kinds aren't partitioned.
+     * By default, it's taken from the settings of the datasource.
+     */
+    public PostgreSQLPullWrapper parallelism(int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    /** Each stream holds its connections until it's closed. At least one connection should stay free for the other requests. */
+    @Override public int maxConcurrentStreams() {
+        final int connections = parallelism > 1 ? Math.min(parallelism, MAX_PARALLELISM) + 1 : 1;
+        return Math.max(1, (PostgreSQLProvider.POOL_SIZE - 1) / connections);
+    }
+
+    /**
+     * Splits the table into ranges that are read concurrently, each on its own connection. Their records are merged into one stream (see {@link ParallelRecordStream}).
+     * The table is split either by its primary key (if it's a single integer column) or by its physical pages (i.e., by the ctid).
+     * All connections read the same snapshot of the database, so the result is the same as if the table was read by a single query.
+     * Returns null if the table can't be split (e.g., because it's empty or it's a view).
+     */
+    private @Nullable Stream<RootRecord> tryStreamPartitions(ComplexProperty path, String kindName) throws SQLException {
+        final int workers = Math.min(parallelism, MAX_PARALLELISM);
+        final Connection snapshotConnection = provider.getConnection();
+        try {
+            snapshotConnection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            snapshotConnection.setAutoCommit(false);
+
+            final String table = quoteName(kindName);
+            final List<String> conditions = createPartitionConditions(snapshotConnection, kindName, workers * PARTITIONS_PER_WORKER);
+            if (conditions.size() <= 1) {
+                closeConnection(snapshotConnection);
+                return null;
+            }
+
+            final String snapshot = exportSnapshot(snapshotConnection);
+            final String columnList = createColumnList(snapshotConnection, kindName, path);
+            final var layout = RecordLayout.create(path);
+            ParallelRecordStream.initializeForThreads(path);
+
+            final List<ParallelRecordStream.Partition> partitions = conditions.stream()
+                .map(condition -> "SELECT " + columnList + " FROM " + table + " WHERE " + condition + ";")
+                .<ParallelRecordStream.Partition>map(partitionQuery -> output -> readPartition(snapshot, partitionQuery, path, layout, output))
+                .toList();
+
+            // The snapshot is valid only while its transaction is open, so the connection has to be kept until all partitions are read.
+            return ParallelRecordStream.create(partitions, workers, "postgresql-pull")
+                .onClose(() -> closeConnection(snapshotConnection));
+        }
+        catch (SQLException | RuntimeException e) {
+            closeConnection(snapshotConnection);
+            throw e;
+        }
+    }
+
+    private static String exportSnapshot(Connection connection) throws SQLException {
+        try (
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT pg_export_snapshot();");
         ) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private void readPartition(String snapshot, String query, ComplexProperty path, RecordLayout layout, Consumer<RootRecord> output) throws SQLException {
+        final Connection connection = provider.getConnection();
+        try {
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            try (
+                Statement statement = connection.createStatement();
+            ) {
+                // The snapshot has to be set before any other query of the transaction.
+                statement.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "';");
+            }
+
+            final PreparedStatement statement = connection.prepareStatement(query);
+            statement.setFetchSize(fetchSize);
             LOGGER.debug("Execute PostgreSQL query:\n{}", statement);
 
+            final ResultSet resultSet = statement.executeQuery();
+            final List<Column> columns = createColumns(resultSet, path);
+            while (resultSet.next())
+                output.accept(createRecord(layout, columns, resultSet));
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the conditions of the partitions (at most the given number of them). Together, they cover the whole table.
+     * The ranges by the ctid are efficient only since PostgreSQL 14 (older versions have to scan the whole table for each of them).
+     */
+    private static List<String> createPartitionConditions(Connection connection, String kindName, int count) throws SQLException {
+        final @Nullable String key = findIntegerPrimaryKey(connection, kindName);
+        if (key != null) {
             try (
-                ResultSet resultSet = statement.executeQuery()
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + quoteName(kindName) + ";");
             ) {
-                return innerPullForest(path, resultSet);
+                resultSet.next();
+                final long min = resultSet.getLong(1);
+                // The table is empty.
+                if (resultSet.wasNull())
+                    return List.of();
+
+                return createRangeConditions(key, ParallelRecordStream.splitRange(min, resultSet.getLong(2), count), Long::toString);
             }
         }
-        catch (Exception e) {
-            throw PullForestException.inner(e);
+
+        try (
+            PreparedStatement statement = connection.prepareStatement("SELECT pg_relation_size(?::regclass) / current_setting('block_size')::bigint;");
+        ) {
+            statement.setString(1, quoteName(kindName));
+            try (
+                ResultSet resultSet = statement.executeQuery();
+            ) {
+                resultSet.next();
+                final long pages = resultSet.getLong(1);
+                if (pages == 0)
+                    return List.of();
+
+                return createRangeConditions("ctid", ParallelRecordStream.splitRange(0, pages - 1, count), page -> "'(" + page + ",0)'::tid");
+            }
         }
     }
 
-    private ForestOfRecords innerPullForest(ComplexProperty path, ResultSet resultSet) throws SQLException {
-        final ForestOfRecords forest = new ForestOfRecords();
-        final List<Column> columns = createColumns(resultSet, path);
+    /** Returns the quoted name of the primary key column if there is exactly one and it's an integer. */
+    private static @Nullable String findIntegerPrimaryKey(Connection connection, String kindName) throws SQLException {
+        final var metadata = connection.getMetaData();
+        final var keys = new ArrayList<String>();
+        try (
+            ResultSet resultSet = metadata.getPrimaryKeys(null, null, kindName);
+        ) {
+            while (resultSet.next())
+                keys.add(resultSet.getString("COLUMN_NAME"));
+        }
+
+        if (keys.size() != 1)
+            return null;
 
-        while (resultSet.next()) {
-            final var rootRecord = new RootRecord();
+        try (
+            ResultSet resultSet = metadata.getColumns(null, null, escapePattern(metadata, kindName), escapePattern(metadata, keys.get(0)));
+        ) {
+            if (!resultSet.next())
+                return null;
 
-            for (final Column column : columns) {
-                final var property = column.property;
-                final var value = resultSet.getString(column.index);
+            final int type = resultSet.getInt("DATA_TYPE");
+            return type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT
+                ? quoteName(keys.get(0))
+                : null;
+        }
+    }
 
-                if (property.name() instanceof DynamicName) {
-                    rootRecord.addDynamicRecordWithValue(property, column.name, value);
-                    continue;
-                }
+    /** The first and the last range are open so that no rows are lost (e.g., the ones that are outside of the [min, max] interval). */
+    private static List<String> createRangeConditions(String column, long[] boundaries, LongFunction<String> toValue) {
+        if (boundaries.length == 0)
+            return List.of("TRUE");
+
+        final var output = new ArrayList<String>();
+        output.add(column + " < " + toValue.apply(boundaries[0]));
+        for (int i = 1; i < boundaries.length; i++)
+            output.add(column + " >= " + toValue.apply(boundaries[i - 1]) + " AND " + column + " < " + toValue.apply(boundaries[i]));
+        output.add(column + " >= " + toValue.apply(boundaries[boundaries.length - 1]));
+
+        return output;
+    }
+
+    // #endregion
+
+    private RootRecord createRecord(RecordLayout layout, List<Column> columns, ResultSet resultSet) throws SQLException {
+        final var rootRecord = new RootRecord(layout);
+
+        for (final Column column : columns) {
+            final var property = column.property;
+            final var value = resultSet.getString(column.index);
 
-                rootRecord.addSimpleRecord(property.signature(), value);
+            if (property.name() instanceof DynamicName) {
+                rootRecord.addDynamicRecordWithValue(property, column.name, value);
+                continue;
             }
 
-            forest.addRecord(rootRecord);
+            rootRecord.addSimpleRecord(property.signature(), value);
         }
 
-        return forest;
+        return rootRecord;
     }
 
     private record Column(int index, String name, AccessPath property) {}
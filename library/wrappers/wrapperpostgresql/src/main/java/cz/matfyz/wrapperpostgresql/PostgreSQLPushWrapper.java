@@ -0,0 +1,307 @@
+package cz.matfyz.wrapperpostgresql;
+
+import cz.matfyz.abstractwrappers.AbstractPushWrapper;
+import cz.matfyz.abstractwrappers.AbstractStatement;
+import cz.matfyz.abstractwrappers.exception.ExecuteException;
+import cz.matfyz.wrapperpostgresql.PostgreSQLInsertStatement.Shape;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the statements in bulk. All of them are executed on one connection in one transaction (unless there is a commit interval).
+ * The transaction is committed only by {@link #close()}, which has to be called only after all statements were pushed successfully. Otherwise, call {@link #abort()} to roll it back.
+ * A failed statement rolls the transaction back right away - then closing the wrapper doesn't commit anything.
+ * <ul>
+ *  <li>Consecutive inserts with the same shape (i.e., kind and columns) are executed in JDBC batches by one prepared statement.</li>
+ *  <li>If there are many of them, the rest of the kind is streamed by <code>COPY FROM STDIN</code> instead.</li>
+ *  <li>All other statements are executed in JDBC batches.</li>
+ * </ul>
+ * The order of the statements is kept.
+ */
+public class PostgreSQLPushWrapper implements AbstractPushWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSQLPushWrapper.class);
+
+    /** The maximal number of statements (or rows) in one JDBC batch. */
+    private static final int BATCH_SIZE = 1000;
+    /** If a kind has at least this many rows, the following ones are copied. */
+    private static final int COPY_THRESHOLD = 10_000;
+    /** The copied rows are sent to the server in chunks of (approximately) this size. */
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private final Connection connection;
+    private final @Nullable Integer commitInterval;
+
+    /**
+     * @param commitInterval The number of statements after which the transaction is committed. If null, everything is committed at once at the end.
+     */
+    PostgreSQLPushWrapper(Connection connection, @Nullable Integer commitInterval) {
+        this.connection = connection;
+        this.commitInterval = commitInterval;
+        try {
+            connection.setAutoCommit(false);
+        }
+        catch (SQLException e) {
+            closeConnection();
+            throw new ExecuteException(e, List.of());
+        }
+    }
+
+    /** Other statements that aren't executed yet. If there are any, there are no batched rows. */
+    private final List<AbstractStatement> others = new ArrayList<>();
+
+    /** The shape of the last insert. The next insert with the same shape belongs to the same group. */
+    private @Nullable Shape groupShape;
+    private long groupRowsCount = 0;
+    /** Prepared for the current group. */
+    private @Nullable PreparedStatement groupInsert;
+    private int batchedRowsCount = 0;
+    private @Nullable CopyIn copyIn;
+    private final StringBuilder copyBuffer = new StringBuilder();
+
+    private long statementsSinceCommit = 0;
+    private long statementsCount = 0;
+    private long copiedRowsCount = 0;
+    private boolean isFailed = false;
+
+    @Override public void push(AbstractStatement statement) {
+        try {
+            if (statement instanceof final PostgreSQLInsertStatement insert)
+                pushInsert(insert);
+            else if (!statement.getContent().isBlank())
+                pushOther(statement);
+            else
+                return;
+
+            statementsCount++;
+            statementsSinceCommit++;
+            if (commitInterval != null && statementsSinceCommit >= commitInterval)
+                commit();
+        }
+        catch (SQLException e) {
+            abort();
+            throw new ExecuteException(e, List.of(statement));
+        }
+        catch (RuntimeException e) {
+            // E.g., the statement can't be rendered. The partial load must not be committed by a later close.
+            abort();
+            throw e;
+        }
+    }
+
+    private void pushInsert(PostgreSQLInsertStatement insert) throws SQLException {
+        if (!insert.shape().equals(groupShape)) {
+            endGroup();
+            flushOthers();
+            groupShape = insert.shape();
+            groupRowsCount = 0;
+        }
+
+        groupRowsCount++;
+
+        if (groupRowsCount > COPY_THRESHOLD) {
+            copyRow(insert);
+            return;
+        }
+
+        if (groupInsert == null)
+            groupInsert = connection.prepareStatement(groupShape.sql());
+
+        final List<@Nullable String> values = insert.values();
+        for (int i = 0; i < values.size(); i++) {
+            // The type is left for the server to infer (the same as for a quoted literal), so the strings can be inserted to columns of any type.
+            if (values.get(i) == null)
+                groupInsert.setNull(i + 1, Types.OTHER);
+            else
+                groupInsert.setObject(i + 1, values.get(i), Types.OTHER);
+        }
+        groupInsert.addBatch();
+        batchedRowsCount++;
+
+        if (batchedRowsCount >= BATCH_SIZE)
+            flushRows();
+    }
+
+    private void pushOther(AbstractStatement statement) throws SQLException {
+        // The statement might depend on the previous inserts (and vice versa), so the group ends here.
+        endGroup();
+
+        others.add(statement);
+        if (others.size() >= BATCH_SIZE)
+            flushOthers();
+    }
+
+    private void flush() throws SQLException {
+        flushRows();
+        endCopy();
+        flushOthers();
+    }
+
+    private void endGroup() throws SQLException {
+        flushRows();
+        endCopy();
+        closeGroupInsert();
+        groupShape = null;
+    }
+
+    private void flushRows() throws SQLException {
+        if (batchedRowsCount == 0)
+            return;
+
+        groupInsert.executeBatch();
+        LOGGER.debug("Inserted {} rows into PostgreSQL kind {}.", batchedRowsCount, groupShape.kindName());
+        batchedRowsCount = 0;
+    }
+
+    private void closeGroupInsert() throws SQLException {
+        if (groupInsert == null)
+            return;
+
+        groupInsert.close();
+        groupInsert = null;
+    }
+
+    private void flushOthers() throws SQLException {
+        if (others.isEmpty())
+            return;
+
+        try (
+            Statement statement = connection.createStatement();
+        ) {
+            for (final var other : others) {
+                LOGGER.debug("Execute PostgreSQL statement:\n{}", other.getContent());
+                statement.addBatch(other.getContent());
+            }
+            statement.executeBatch();
+        }
+
+        others.clear();
+    }
+
+    // #region Copy
+
+    private void copyRow(PostgreSQLInsertStatement insert) throws SQLException {
+        if (copyIn == null) {
+            // The inserts that came before have to be in the table first.
+            flushRows();
+            closeGroupInsert();
+            final String sql = "COPY " + PostgreSQLInsertStatement.escapeName(insert.kindName())
+                + " (" + PostgreSQLInsertStatement.escapeNames(insert.columns()) + ") FROM STDIN (FORMAT csv)";
+            copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        }
+
+        String separator = "";
+        for (final @Nullable String value : insert.values()) {
+            copyBuffer.append(separator);
+            appendCsvValue(value);
+            separator = ",";
+        }
+        copyBuffer.append('\n');
+        copiedRowsCount++;
+
+        if (copyBuffer.length() >= COPY_BUFFER_SIZE)
+            writeCopyBuffer();
+    }
+
+    /** In the csv format, an unquoted empty value is null, while a quoted one is an empty string. */
+    private void appendCsvValue(@Nullable String value) {
+        if (value == null)
+            return;
+
+        copyBuffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"')
+                copyBuffer.append('"');
+            copyBuffer.append(c);
+        }
+        copyBuffer.append('"');
+    }
+
+    private void writeCopyBuffer() throws SQLException {
+        if (copyIn == null || copyBuffer.isEmpty())
+            return;
+
+        final byte[] bytes = copyBuffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        copyBuffer.setLength(0);
+    }
+
+    private void endCopy() throws SQLException {
+        if (copyIn == null)
+            return;
+
+        writeCopyBuffer();
+        final long copied = copyIn.endCopy();
+        copyIn = null;
+        LOGGER.debug("Copied {} rows into PostgreSQL.", copied);
+    }
+
+    // #endregion
+
+    private void commit() throws SQLException {
+        // The copy can't be open during the commit. The next row of the same kind just starts a new one.
+        flush();
+        connection.commit();
+        statementsSinceCommit = 0;
+    }
+
+    @Override public void close() {
+        if (isFailed)
+            return;
+
+        try {
+            flush();
+            connection.commit();
+            LOGGER.info("Executed {} PostgreSQL statements ({} rows copied).", statementsCount, copiedRowsCount);
+        }
+        catch (SQLException e) {
+            abort();
+            throw new ExecuteException(e, List.of());
+        }
+
+        closeConnection();
+    }
+
+    /** Rolls back whatever isn't committed yet. The wrapper can't be used anymore (closing it does nothing). */
+    @Override public void abort() {
+        if (isFailed)
+            return;
+
+        isFailed = true;
+        others.clear();
+        try {
+            if (copyIn != null && copyIn.isActive())
+                copyIn.cancelCopy();
+            connection.rollback();
+        }
+        catch (SQLException e) {
+            LOGGER.warn("Failed to roll back the PostgreSQL transaction.", e);
+        }
+
+        closeConnection();
+    }
+
+    private void closeConnection() {
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            LOGGER.warn("Failed to close the PostgreSQL connection.", e);
+        }
+    }
+
+}